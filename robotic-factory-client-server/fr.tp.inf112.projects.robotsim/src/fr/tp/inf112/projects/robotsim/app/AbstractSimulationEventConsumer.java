@@ -0,0 +1,102 @@
+package fr.tp.inf112.projects.robotsim.app;
+
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+
+/**
+ * Applies the frames of a simulation to the canvas of a controller, whatever transport brings them.
+ */
+public abstract class AbstractSimulationEventConsumer {
+
+	private static final Logger LOGGER = Logger.getLogger(AbstractSimulationEventConsumer.class.getName());
+
+	private final RemoteSimulatorController controller;
+
+	private final Runnable onListeningCallback;
+	private final Runnable onFirstFrameCallback;
+
+	protected volatile boolean running = true;
+	private boolean isListening = false;
+	private boolean hasReceivedFrame = false;
+
+	// States only apply to the factory of a layout frame, and deltas on top of the frame just before them.
+	private boolean hasLayout = false;
+	private long lastSequence = -1;
+
+	protected AbstractSimulationEventConsumer(RemoteSimulatorController controller, Runnable onListeningCallback,
+			Runnable onFirstFrameCallback) {
+		this.controller = controller;
+		this.onListeningCallback = onListeningCallback;
+		this.onFirstFrameCallback = onFirstFrameCallback;
+	}
+
+	/**
+	 * Receives and applies frames until {@link #stop()} is called.
+	 */
+	public abstract void consumeMessages();
+
+	public void stop() {
+		running = false;
+	}
+
+	/**
+	 * To be called once the transport is ready, so that the simulation starts publishing.
+	 */
+	protected void listening() {
+		if (!isListening) {
+			isListening = true;
+			LOGGER.info("Connected. Requesting Prepare...");
+			if (onListeningCallback != null)
+				onListeningCallback.run();
+		}
+	}
+
+	protected boolean isListening() {
+		return isListening;
+	}
+
+	protected void frameReceived(final FactoryFrame frame) {
+		if (frame == null || !applyFrame(frame))
+			return;
+
+		if (!hasReceivedFrame) {
+			hasReceivedFrame = true;
+			LOGGER.info("First Frame Received. Requesting Run...");
+			if (onFirstFrameCallback != null)
+				onFirstFrameCallback.run();
+			controller.simulationDidStart();
+		}
+	}
+
+	/**
+	 * @return false if the frame was skipped: states received before the layout, or a delta not following the last
+	 *         frame applied.
+	 */
+	private boolean applyFrame(final FactoryFrame frame) {
+		if (frame.isLayout()) {
+			final Factory factory = frame.getFactory();
+			if (factory == null)
+				return false;
+			factory.applyStates(frame.getStates());
+			controller.updateCanvasDuringAnimation(factory);
+			hasLayout = true;
+		} else if (!hasLayout) {
+			LOGGER.fine("Skipping " + frame + ", waiting for the layout");
+			return false;
+		} else if (frame.isKeyframe()) {
+			controller.patchCanvasDuringAnimation(frame.getStates());
+		} else {
+			if (lastSequence < 0 || frame.getSequence() != lastSequence + 1) {
+				LOGGER.fine("Skipping " + frame + ", waiting for a keyframe after " + lastSequence);
+				lastSequence = -1;
+				return false;
+			}
+			controller.patchCanvasDuringAnimation(frame.getStates());
+		}
+
+		lastSequence = frame.getSequence();
+		return true;
+	}
+}
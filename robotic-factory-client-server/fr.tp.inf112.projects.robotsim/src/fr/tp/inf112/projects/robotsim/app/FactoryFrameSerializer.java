@@ -0,0 +1,37 @@
+package fr.tp.inf112.projects.robotsim.app;
+
+import java.io.IOException;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+
+/**
+ * Kafka serializer of the simulation frames, in the binary format of {@link FrameCodec}.
+ */
+public class FactoryFrameSerializer implements Serializer<FactoryFrame> {
+
+	private final FrameCodec codec;
+
+	/**
+	 * @param layoutMapper Mapper of the factories carried by layout frames.
+	 */
+	public FactoryFrameSerializer(ObjectMapper layoutMapper) {
+		this.codec = new FrameCodec(layoutMapper);
+	}
+
+	@Override
+	public byte[] serialize(String topic, FactoryFrame frame) {
+		if (frame == null)
+			return null;
+		try {
+			return codec.encode(frame);
+		} catch (IOException e) {
+			throw new SerializationException("Cannot encode " + frame, e);
+		}
+	}
+}
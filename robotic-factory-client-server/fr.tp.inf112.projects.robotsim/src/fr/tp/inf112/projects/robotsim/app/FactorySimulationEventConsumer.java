@@ -4,61 +4,45 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.io.IOException;
 
 import org.apache.kafka.clients.consumer.*;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 
 import fr.tp.inf112.projects.robotsim.model.*;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameDecodePipeline;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
 
-class FactoryDeserializer implements Deserializer<Factory> {
-	private final ObjectMapper objectMapper;
-
-	public FactoryDeserializer(ObjectMapper objectMapper) {
-		this.objectMapper = objectMapper;
-	}
-
-	@Override
-	public Factory deserialize(String topic, byte[] data) {
-		if (data == null)
-			return null;
-		try {
-			return objectMapper.readValue(new String(data, "UTF-8"), Factory.class);
-		} catch (IOException e) {
-			return null;
-		}
-	}
-}
-
-public class FactorySimulationEventConsumer {
+/**
+ * Receives the frames of a simulation from its Kafka topic.
+ *
+ * The poll thread only fetches the records: they are decoded by a {@link FrameDecodePipeline}, which applies them in
+ * order and skips those a later record of the same poll supersedes.
+ */
+public class FactorySimulationEventConsumer extends AbstractSimulationEventConsumer {
 
 	private static final Logger LOGGER = Logger.getLogger(FactorySimulationEventConsumer.class.getName());
-	private final KafkaConsumer<String, Factory> consumer;
+	private static final int MAX_POLL_RECORDS = 100;
+	private final KafkaConsumer<String, byte[]> consumer;
+	private final FrameCodec codec;
+	private final String factoryId;
 	private final String topicName;
-	private final RemoteSimulatorController controller;
-
-	private final Runnable onListeningCallback;
-	private final Runnable onFirstFrameCallback;
-
-	private volatile boolean running = true;
-	private boolean isListening = false;
-	private boolean hasReceivedFrame = false;
 
 	public FactorySimulationEventConsumer(RemoteSimulatorController controller, String factoryId,
 			Runnable onListeningCallback, Runnable onFirstFrameCallback) {
+		super(controller, onListeningCallback, onFirstFrameCallback);
 
-		this.controller = controller;
-		this.topicName = "simulation-" + factoryId;
-		this.onListeningCallback = onListeningCallback;
-		this.onFirstFrameCallback = onFirstFrameCallback;
+		this.factoryId = factoryId;
+		this.topicName = SimulationServiceUtils.getTopicName(factoryId);
 
 		BasicPolymorphicTypeValidator ptv = BasicPolymorphicTypeValidator.builder()
 				.allowIfSubType(Component.class.getPackageName()).allowIfSubType(PositionedShape.class.getPackageName())
@@ -71,54 +55,74 @@ public class FactorySimulationEventConsumer {
 		Properties props = SimulationServiceUtils.getDefaultConsumerProperties(factoryId);
 		props.put(ConsumerConfig.GROUP_ID_CONFIG, "viewer-" + UUID.randomUUID().toString());
 		props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-		props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 10);
+		props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, MAX_POLL_RECORDS);
 
-		this.consumer = new KafkaConsumer<>(props, new StringDeserializer(), new FactoryDeserializer(mapper));
+		this.consumer = new KafkaConsumer<>(props, new StringDeserializer(), new ByteArrayDeserializer());
+		this.codec = new FrameCodec(mapper);
 		LOGGER.info("Consumer initialized for topic: " + topicName);
 	}
 
+	@Override
 	public void consumeMessages() {
+		// Started here rather than by the constructor, which must not hand out this.
+		final FrameDecodePipeline decodePipeline = new FrameDecodePipeline(codec, this::frameReceived, factoryId);
+
 		try {
-			consumer.subscribe(Collections.singletonList(topicName));
+			if (SimulationServiceUtils.getSharedTopic() == null) {
+				consumer.subscribe(Collections.singletonList(topicName));
+			} else {
+				assignSharedTopicPartition();
+			}
 
 			while (running) {
-				ConsumerRecords<String, Factory> records = consumer.poll(Duration.ofMillis(100));
+				ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofMillis(100));
 
-				if (!isListening && !consumer.assignment().isEmpty()) {
-					isListening = true;
-					LOGGER.info("Kafka Connected. Requesting Prepare...");
-					if (onListeningCallback != null)
-						onListeningCallback.run();
-				}
+				if (!isListening() && !consumer.assignment().isEmpty())
+					listening();
 
 				if (records.isEmpty())
 					continue;
 
-				for (ConsumerRecord<String, Factory> record : records) {
-					if (record.value() == null)
-						continue;
+				List<byte[]> batch = new ArrayList<>(records.count());
 
-					controller.updateCanvasDuringAnimation(record.value());
+				for (ConsumerRecord<String, byte[]> record : records) {
+					// Frames of other simulations sharing the partition
+					if (record.key() != null && !factoryId.equals(record.key()))
+						continue;
 
-					if (!hasReceivedFrame) {
-						hasReceivedFrame = true;
-						LOGGER.info("First Frame Received. Requesting Run...");
-						if (onFirstFrameCallback != null)
-							onFirstFrameCallback.run();
-						controller.simulationDidStart();
-					}
+					if (record.value() != null)
+						batch.add(record.value());
 				}
+
+				decodePipeline.submit(batch);
 			}
 		} catch (Exception e) {
 			if (running)
 				LOGGER.log(Level.SEVERE, "Consumer error", e);
 		} finally {
 			consumer.close();
+			decodePipeline.close();
+			LOGGER.info("Consumer closed, " + decodePipeline.getDecodedFrames() + " frames decoded, "
+					+ decodePipeline.getSkippedFrames() + " skipped");
 		}
 	}
 
+	/**
+	 * Reads only the partition of the factory on the shared topic, from its end: the frames of earlier runs and of
+	 * other simulations are not fetched, and the layout is sent once the position is known.
+	 */
+	private void assignSharedTopicPartition() {
+		final TopicPartition partition = SimulationServiceUtils.getPartition(topicName, factoryId,
+				consumer.partitionsFor(topicName).size());
+		consumer.assign(Collections.singletonList(partition));
+		consumer.seekToEnd(Collections.singletonList(partition));
+		consumer.position(partition);
+		LOGGER.info("Reading " + partition + " of the shared topic");
+	}
+
+	@Override
 	public void stop() {
-		running = false;
+		super.stop();
 		consumer.wakeup();
 	}
 }
\ No newline at end of file
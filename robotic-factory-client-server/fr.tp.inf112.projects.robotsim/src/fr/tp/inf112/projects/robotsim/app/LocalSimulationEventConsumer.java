@@ -0,0 +1,57 @@
+package fr.tp.inf112.projects.robotsim.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.frame.FrameRingBuffer;
+
+/**
+ * Receives the frames of a simulation running in the same JVM from its {@link FrameRingBuffer}, with the same
+ * semantics as from a Kafka topic and no broker in between.
+ */
+public class LocalSimulationEventConsumer extends AbstractSimulationEventConsumer {
+
+	private static final Logger LOGGER = Logger.getLogger(LocalSimulationEventConsumer.class.getName());
+	private static final long POLL_MILLIS = 100;
+
+	private final Supplier<FrameRingBuffer> frameBuffer;
+
+	/**
+	 * @param frameBuffer Supplies the frame buffer of the simulation, null until the simulation is prepared.
+	 */
+	public LocalSimulationEventConsumer(RemoteSimulatorController controller, Supplier<FrameRingBuffer> frameBuffer,
+			Runnable onListeningCallback, Runnable onFirstFrameCallback) {
+		super(controller, onListeningCallback, onFirstFrameCallback);
+		this.frameBuffer = frameBuffer;
+	}
+
+	@Override
+	public void consumeMessages() {
+		try {
+			// Nothing to subscribe to: the simulation can be prepared right away.
+			listening();
+
+			FrameRingBuffer.Reader reader = null;
+
+			while (running) {
+				if (reader == null) {
+					final FrameRingBuffer buffer = frameBuffer.get();
+					if (buffer == null) {
+						Thread.sleep(POLL_MILLIS);
+						continue;
+					}
+					reader = buffer.newReader();
+				}
+
+				frameReceived(reader.poll(POLL_MILLIS, TimeUnit.MILLISECONDS));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			if (running)
+				LOGGER.log(Level.SEVERE, "Consumer error", e);
+		}
+	}
+}
@@ -5,8 +5,17 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -15,17 +24,23 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import fr.tp.inf112.projects.canvas.controller.Observer;
 import fr.tp.inf112.projects.canvas.model.Canvas;
 import fr.tp.inf112.projects.canvas.model.CanvasChooser;
 import fr.tp.inf112.projects.canvas.model.CanvasPersistenceManager;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.ComponentChangeListener;
 import fr.tp.inf112.projects.robotsim.model.Factory;
 import fr.tp.inf112.projects.robotsim.model.LocalFactoryModelChangedNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.ComponentState;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameRingBuffer;
 
 public class RemoteSimulatorController extends SimulatorController {
 
 	private static final Logger LOGGER = Logger.getLogger(RemoteSimulatorController.class.getName());
+	private static final int RENDER_INTERVAL_MILLIS = 1000 / 60;
 	private final HttpClient httpClient;
 	private final String serviceBaseUrl;
 	private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
@@ -33,9 +48,23 @@ public class RemoteSimulatorController extends SimulatorController {
 
 	private volatile boolean animationRunning = false;
 	private boolean isFrameUpdate = false; // Flag to distinguish animation updates from file loading
-	private FactorySimulationEventConsumer eventConsumer;
+	private AbstractSimulationEventConsumer eventConsumer;
+	private Function<String, FrameRingBuffer> localFrameSource;
 	private JDialog loadingDialog;
 
+	// Latest-frame-wins mailbox between the consumer thread and the EDT, drained once per display refresh
+	private final Object mailboxLock = new Object();
+	private Factory pendingLayout;
+	private final Map<Integer, ComponentState> pendingStates = new TreeMap<>();
+	private int pendingFrames;
+	// Created with the first frame received rather than by the constructor, which must not hand out this.
+	private Timer renderTimer;
+	private final AtomicLong receivedFrames = new AtomicLong();
+	private final AtomicLong renderedFrames = new AtomicLong();
+	private final AtomicLong droppedFrames = new AtomicLong();
+	private final AtomicLong patchedLayouts = new AtomicLong();
+	private final List<ComponentChangeListener> componentChangeListeners = new CopyOnWriteArrayList<>();
+
 	public RemoteSimulatorController(Factory factoryModel, CanvasPersistenceManager persistenceManager) {
 		this(factoryModel, persistenceManager, "http://localhost:8080/simulation");
 	}
@@ -52,17 +81,148 @@ public class RemoteSimulatorController extends SimulatorController {
 		}
 	}
 
+	/**
+	 * Takes the frames of the simulations from the given in-process buffers instead of Kafka, when the simulation
+	 * service runs in the same JVM.
+	 *
+	 * @param localFrameSource Gives the frame buffer of a factory id, or null while it is not prepared.
+	 */
+	public void setLocalFrameSource(final Function<String, FrameRingBuffer> localFrameSource) {
+		this.localFrameSource = localFrameSource;
+	}
+
+	/**
+	 * Shows the factory of a layout frame at the next display refresh, with the states posted after it. When it has
+	 * the same components as the factory shown, the latter is patched in place instead of replaced.
+	 */
 	public void updateCanvasDuringAnimation(final Factory remoteFactoryModel) {
-		SwingUtilities.invokeLater(() -> {
-			isFrameUpdate = true; // Lock: This is an animation update, not a user load
-			try {
-				super.setCanvas(remoteFactoryModel);
-				remoteFactoryModel.setNotifier(localNotifier);
-				localNotifier.notifyObservers();
-			} finally {
-				isFrameUpdate = false; // Unlock
+		synchronized (mailboxLock) {
+			// States posted before refer to the former layout.
+			pendingLayout = remoteFactoryModel;
+			pendingStates.clear();
+			pendingFrames++;
+		}
+		frameReceived();
+	}
+
+	/**
+	 * Applies the component states of a frame to the factory shown at the next display refresh. States posted since
+	 * the last refresh are merged, the latest one winning.
+	 */
+	public void patchCanvasDuringAnimation(final List<ComponentState> states) {
+		synchronized (mailboxLock) {
+			for (final ComponentState state : states) {
+				pendingStates.put(state.getIndex(), state);
 			}
-		});
+			pendingFrames++;
+		}
+		frameReceived();
+	}
+
+	private void frameReceived() {
+		receivedFrames.incrementAndGet();
+		synchronized (mailboxLock) {
+			if (renderTimer == null)
+				renderTimer = new Timer(RENDER_INTERVAL_MILLIS, e -> renderPendingFrames());
+			if (!renderTimer.isRunning())
+				renderTimer.start();
+		}
+	}
+
+	/**
+	 * Renders the frames received since the last refresh as one, on the EDT.
+	 */
+	private void renderPendingFrames() {
+		final Factory layout;
+		final List<ComponentState> states;
+		final int frames;
+
+		synchronized (mailboxLock) {
+			if (pendingFrames == 0)
+				return;
+			layout = pendingLayout;
+			states = new ArrayList<>(pendingStates.values());
+			frames = pendingFrames;
+			pendingLayout = null;
+			pendingStates.clear();
+			pendingFrames = 0;
+		}
+
+		final Set<Component> changed = new LinkedHashSet<>();
+		boolean replaced = false;
+
+		if (layout != null) {
+			// The factory shown is kept whenever the layout only moves its components.
+			final Factory shown = getCanvas() instanceof Factory ? (Factory) getCanvas() : null;
+			if (shown != null && shown.patchFrom(layout, changed)) {
+				patchedLayouts.incrementAndGet();
+			} else {
+				isFrameUpdate = true; // Lock: This is an animation update, not a user load
+				try {
+					super.setCanvas(layout);
+					layout.setNotifier(localNotifier);
+				} finally {
+					isFrameUpdate = false; // Unlock
+				}
+				replaced = true;
+			}
+		}
+
+		final Factory factory = getCanvas() instanceof Factory ? (Factory) getCanvas() : null;
+		if (factory != null)
+			factory.applyStates(states, changed);
+
+		renderedFrames.incrementAndGet();
+		droppedFrames.addAndGet(frames - 1);
+
+		if (!replaced && changed.isEmpty())
+			return;
+
+		if (factory != null && !changed.isEmpty()) {
+			for (final ComponentChangeListener listener : componentChangeListeners)
+				listener.componentsChanged(factory, changed);
+		}
+
+		localNotifier.notifyObservers();
+	}
+
+	/**
+	 * Tells the listener, on the EDT, which components each display refresh moved or changed.
+	 */
+	public void addComponentChangeListener(final ComponentChangeListener listener) {
+		componentChangeListeners.add(listener);
+	}
+
+	public void removeComponentChangeListener(final ComponentChangeListener listener) {
+		componentChangeListeners.remove(listener);
+	}
+
+	/**
+	 * @return the number of layout frames applied to the factory shown instead of replacing it.
+	 */
+	public long getPatchedLayouts() {
+		return patchedLayouts.get();
+	}
+
+	/**
+	 * @return the number of frames received from the simulation.
+	 */
+	public long getReceivedFrames() {
+		return receivedFrames.get();
+	}
+
+	/**
+	 * @return the number of display refreshes that rendered frames.
+	 */
+	public long getRenderedFrames() {
+		return renderedFrames.get();
+	}
+
+	/**
+	 * @return the number of frames merged into a later one before being rendered.
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
 	}
 
 	@Override
@@ -124,9 +284,17 @@ public class RemoteSimulatorController extends SimulatorController {
 
 				LOGGER.info("1. Starting Consumer...");
 
-				eventConsumer = new FactorySimulationEventConsumer(this, factoryId, () -> sendPrepareCommand(factoryId),
-						() -> sendRunCommand(factoryId)
-				);
+				if (localFrameSource != null) {
+					eventConsumer = new LocalSimulationEventConsumer(this, () -> localFrameSource.apply(factoryId),
+							() -> sendPrepareCommand(factoryId), () -> sendRunCommand(factoryId));
+				} else if (SimulationServiceUtils.isStreamingTransport()) {
+					// The stream endpoint prepares the simulation itself.
+					eventConsumer = new StreamingSimulationEventConsumer(this, httpClient,
+							new URI(serviceBaseUrl + "/stream/" + factoryId), null, () -> sendRunCommand(factoryId));
+				} else {
+					eventConsumer = new FactorySimulationEventConsumer(this, factoryId,
+							() -> sendPrepareCommand(factoryId), () -> sendRunCommand(factoryId));
+				}
 
 				new Thread(() -> eventConsumer.consumeMessages()).start();
 				animationRunning = true;
@@ -185,6 +353,15 @@ public class RemoteSimulatorController extends SimulatorController {
 				}
 				animationRunning = false;
 
+				// The state persisted is the last one received, rendered or not.
+				synchronized (mailboxLock) {
+					if (renderTimer != null)
+						renderTimer.stop();
+				}
+				SwingUtilities.invokeAndWait(this::renderPendingFrames);
+				LOGGER.info("Frames received: " + getReceivedFrames() + ", rendered: " + getRenderedFrames()
+						+ ", dropped: " + getDroppedFrames() + ", layouts patched in place: " + getPatchedLayouts());
+
 				LOGGER.info("2. Persisting state before reset...");
 				if (getCanvas() != null) {
 					synchronized (getCanvas()) {
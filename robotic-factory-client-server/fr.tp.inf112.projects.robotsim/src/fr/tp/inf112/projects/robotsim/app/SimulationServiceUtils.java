@@ -1,7 +1,10 @@
 package fr.tp.inf112.projects.robotsim.app;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
 import fr.tp.inf112.projects.robotsim.model.Factory;
 
 /**
@@ -15,6 +18,25 @@ public class SimulationServiceUtils {
 	private static final String AUTO_OFFSET_RESET = "earliest";
 	private static final String TOPIC_PREFIX = "simulation-";
 
+	/**
+	 * System property naming the topic shared by all simulations, when the simulation service is started with the
+	 * same simulation.kafka.shared-topic.
+	 */
+	public static final String SHARED_TOPIC_PROPERTY = "simulation.kafka.shared-topic";
+
+	/**
+	 * System property choosing how viewers receive the frames: "kafka" (default) or "sse" to stream them straight
+	 * from the simulation service.
+	 */
+	public static final String TRANSPORT_PROPERTY = "simulation.transport";
+
+	/**
+	 * @return true if the frames are streamed from the simulation service rather than read from Kafka.
+	 */
+	public static boolean isStreamingTransport() {
+		return "sse".equalsIgnoreCase(System.getProperty(TRANSPORT_PROPERTY));
+	}
+
 	/**
 	 * Gets the unique topic name for a given factory model.
 	 *
@@ -25,6 +47,39 @@ public class SimulationServiceUtils {
 		return TOPIC_PREFIX + factoryModel.getId();
 	}
 
+	/**
+	 * Gets the topic carrying the frames of a factory: the shared topic if one is configured, its own topic otherwise.
+	 *
+	 * @param factoryId The id of the factory model.
+	 * @return The Kafka topic name.
+	 */
+	public static String getTopicName(String factoryId) {
+		final String sharedTopic = getSharedTopic();
+		return sharedTopic == null ? TOPIC_PREFIX + factoryId : sharedTopic;
+	}
+
+	/**
+	 * @return the topic shared by all simulations, or null if each simulation has its own.
+	 */
+	public static String getSharedTopic() {
+		final String sharedTopic = System.getProperty(SHARED_TOPIC_PROPERTY);
+		return sharedTopic == null || sharedTopic.isBlank() ? null : sharedTopic.trim();
+	}
+
+	/**
+	 * Gets the partition of a topic holding the frames of a factory, as chosen by the default partitioner of the
+	 * producer for records keyed by factory id.
+	 *
+	 * @param topicName The topic name.
+	 * @param factoryId The id of the factory model.
+	 * @param partitionCount The number of partitions of the topic.
+	 * @return The partition of the factory.
+	 */
+	public static TopicPartition getPartition(String topicName, String factoryId, int partitionCount) {
+		final byte[] key = factoryId.getBytes(StandardCharsets.UTF_8);
+		return new TopicPartition(topicName, Utils.toPositive(Utils.murmur2(key)) % partitionCount);
+	}
+
 	/**
 	 * Gets the default properties for a Kafka Consumer.
 	 *
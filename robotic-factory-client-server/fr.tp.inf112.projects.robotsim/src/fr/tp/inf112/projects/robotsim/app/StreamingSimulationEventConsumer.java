@@ -0,0 +1,108 @@
+package fr.tp.inf112.projects.robotsim.app;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+
+import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+
+/**
+ * Receives the frames of a simulation as server-sent events, straight from the simulation service: no broker round
+ * trip and no consumer group to join before the first frame.
+ */
+public class StreamingSimulationEventConsumer extends AbstractSimulationEventConsumer {
+
+	private static final Logger LOGGER = Logger.getLogger(StreamingSimulationEventConsumer.class.getName());
+
+	private final HttpClient httpClient;
+	private final URI streamUri;
+	private final FrameCodec codec;
+	private volatile Stream<String> lines;
+
+	/**
+	 * @param streamUri The stream endpoint of the simulation, which prepares it if needed.
+	 */
+	public StreamingSimulationEventConsumer(RemoteSimulatorController controller, HttpClient httpClient,
+			URI streamUri, Runnable onListeningCallback, Runnable onFirstFrameCallback) {
+		super(controller, onListeningCallback, onFirstFrameCallback);
+		this.httpClient = httpClient;
+		this.streamUri = streamUri;
+
+		BasicPolymorphicTypeValidator ptv = BasicPolymorphicTypeValidator.builder()
+				.allowIfSubType(Component.class.getPackageName()).allowIfSubType(PositionedShape.class.getPackageName())
+				.allowIfSubType(BasicVertex.class.getPackageName()).allowIfSubType(ArrayList.class.getName())
+				.allowIfSubType(LinkedHashSet.class.getName()).build();
+
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.activateDefaultTyping(ptv, ObjectMapper.DefaultTyping.NON_FINAL);
+		this.codec = new FrameCodec(mapper);
+	}
+
+	@Override
+	public void consumeMessages() {
+		try {
+			final HttpRequest request = HttpRequest.newBuilder().uri(streamUri).header("Accept", "text/event-stream")
+					.timeout(Duration.ofSeconds(10)).GET().build();
+			final HttpResponse<Stream<String>> response = httpClient.send(request,
+					HttpResponse.BodyHandlers.ofLines());
+
+			if (response.statusCode() != 200) {
+				LOGGER.severe("Stream refused with status " + response.statusCode() + ": " + streamUri);
+				response.body().close();
+				return;
+			}
+
+			lines = response.body();
+			listening();
+
+			final StringBuilder data = new StringBuilder();
+			final Iterator<String> iterator = lines.iterator();
+
+			while (running && iterator.hasNext()) {
+				final String line = iterator.next();
+
+				if (line.isEmpty()) {
+					// End of event
+					if (data.length() > 0) {
+						frameReceived(codec.decode(Base64.getDecoder().decode(data.toString())));
+						data.setLength(0);
+					}
+				} else if (line.startsWith("data:")) {
+					data.append(line.substring(line.startsWith("data: ") ? 6 : 5));
+				}
+				// Event names, ids and comments: the frame carries its own type and sequence.
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			if (running)
+				LOGGER.log(Level.SEVERE, "Stream error", e);
+		} finally {
+			if (lines != null)
+				lines.close();
+		}
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		final Stream<String> current = lines;
+		if (current != null)
+			current.close();
+	}
+}
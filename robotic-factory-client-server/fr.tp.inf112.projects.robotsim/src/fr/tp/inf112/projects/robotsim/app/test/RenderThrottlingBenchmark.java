@@ -0,0 +1,170 @@
+package fr.tp.inf112.projects.robotsim.app.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+import fr.tp.inf112.projects.canvas.controller.Observer;
+import fr.tp.inf112.projects.robotsim.app.RemoteSimulatorController;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.ComponentState;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrameBuilder;
+import fr.tp.inf112.projects.robotsim.model.test.BenchmarkFixtures;
+
+/**
+ * How far behind the simulation the viewer is when frames arrive faster than it renders, with one EDT task per frame
+ * and with the latest-frame-wins mailbox of {@link RemoteSimulatorController}.
+ *
+ * Delta frames recorded from a simulation run are posted at a fixed rate to a viewer whose observer takes a fixed time
+ * per repaint. Once all are posted, the time until the canvas shows the last one is measured.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.app.test.RenderThrottlingBenchmark [framesPerSecond] [seconds] [paintMillis]
+ */
+public class RenderThrottlingBenchmark {
+
+	private static final int ROBOTS = 12;
+
+	public static void main(String[] args) throws Exception {
+		final int framesPerSecond = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		final long paintMillis = args.length > 2 ? Long.parseLong(args[2]) : 8;
+
+		System.setProperty("java.awt.headless", "true");
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+		Logger.getLogger("").setLevel(Level.OFF);
+
+		final List<List<ComponentState>> deltas = recordDeltas(framesPerSecond * seconds);
+
+		System.out.println("================================================================================");
+		System.out.println("                    RENDER THROTTLING BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Frame rate:             " + framesPerSecond + " / s");
+		System.out.println("  Frames:                 " + deltas.size());
+		System.out.println("  Paint time:             " + paintMillis + " ms");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  renderer        repaints   dropped   lag after last frame ms");
+
+		run(false, deltas, framesPerSecond, paintMillis);
+		run(true, deltas, framesPerSecond, paintMillis);
+		System.out.println("================================================================================");
+		// The event dispatch thread and the HTTP client of the controllers keep the JVM alive.
+		System.exit(0);
+	}
+
+	private static void run(final boolean mailbox, final List<List<ComponentState>> deltas,
+			final int framesPerSecond, final long paintMillis) throws Exception {
+		final Factory viewed = createFactory();
+		final RemoteSimulatorController controller = new RemoteSimulatorController(viewed,
+				new RemoteFactoryPersistenceManager(null, "localhost", 1), "http://localhost:1/simulation");
+		final AtomicLong repaints = new AtomicLong();
+		final Observer painter = new Observer() {
+
+			@Override
+			public void modelChanged() {
+				repaints.incrementAndGet();
+				try {
+					Thread.sleep(paintMillis);
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		controller.addObserver(painter);
+
+		final long periodNanos = 1_000_000_000L / framesPerSecond;
+		long nextPost = System.nanoTime();
+
+		for (final List<ComponentState> states : deltas) {
+			while (System.nanoTime() < nextPost) {
+				Thread.onSpinWait();
+			}
+
+			nextPost += periodNanos;
+
+			if (mailbox) {
+				controller.patchCanvasDuringAnimation(states);
+			} else {
+				// Former behaviour: one EDT task applying and repainting per frame.
+				SwingUtilities.invokeLater(() -> {
+					((Factory) controller.getCanvas()).applyStates(states);
+					painter.modelChanged();
+				});
+			}
+		}
+
+		final long lastPostTime = System.nanoTime();
+		final Factory expected = createFactory();
+
+		for (final List<ComponentState> states : deltas) {
+			expected.applyStates(states);
+		}
+
+		final AtomicBoolean upToDate = new AtomicBoolean();
+
+		while (!upToDate.get()) {
+			SwingUtilities.invokeAndWait(() -> upToDate.set(matches(expected, (Factory) controller.getCanvas())));
+			Thread.sleep(1);
+		}
+
+		final double lagMillis = (System.nanoTime() - lastPostTime) / 1e6;
+		final long dropped = mailbox ? controller.getDroppedFrames() : 0;
+		System.out.println(String.format("  %-14s %9d %9d %25.1f", mailbox ? "mailbox" : "per frame", repaints.get(),
+				dropped, lagMillis));
+	}
+
+	private static boolean matches(final Factory expected, final Factory actual) {
+		for (int index = 0; index < expected.getComponents().size(); index++) {
+			final Component original = expected.getComponents().get(index);
+			final Component copy = actual.getComponents().get(index);
+
+			if (original.getxCoordinate() != copy.getxCoordinate()
+					|| original.getyCoordinate() != copy.getyCoordinate()
+					|| original.getStateFlags() != copy.getStateFlags()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the states of the deltas of a simulation run, applying to a factory just created.
+	 */
+	private static List<List<ComponentState>> recordDeltas(final int count) {
+		final Factory factory = createFactory();
+		final List<Robot> robots = BenchmarkFixtures.getRobots(factory);
+
+		final FactoryFrameBuilder frameBuilder = new FactoryFrameBuilder(factory, Integer.MAX_VALUE);
+		frameBuilder.nextFrame();
+		final List<List<ComponentState>> deltas = new ArrayList<>();
+
+		while (deltas.size() < count) {
+			for (final Robot robot : robots) {
+				robot.behave();
+			}
+
+			final FactoryFrame frame = frameBuilder.nextFrame();
+
+			if (frame != null) {
+				deltas.add(frame.getStates());
+			}
+		}
+
+		return deltas;
+	}
+
+	private static Factory createFactory() {
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Render Benchmark Factory", ROBOTS);
+		factory.setId("render_benchmark.factory");
+		return factory;
+	}
+}
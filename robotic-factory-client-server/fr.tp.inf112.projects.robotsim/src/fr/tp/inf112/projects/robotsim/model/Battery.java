@@ -21,17 +21,33 @@ public class Battery implements Serializable {
 	}
 	
 	public float consume(float energy) {
-		level-= energy;
+		level = Math.max(0, level - energy);
 		
 		return level;
 	}
 	
 	public float charge(float energy) {
-		level+= energy;
+		level = Math.min(capacity, level + energy);
 		
 		return level;
 	}
 
+	public float getCapacity() {
+		return capacity;
+	}
+
+	public float getLevel() {
+		return level;
+	}
+
+	public boolean isEmpty() {
+		return level <= 0;
+	}
+
+	public boolean isFull() {
+		return level >= capacity;
+	}
+
 	@Override
 	public String toString() {
 		return "Battery [capacity=" + capacity + "]";
@@ -3,6 +3,8 @@ package fr.tp.inf112.projects.robotsim.model;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class ChargingStation extends Component {
 	
 	private static final long serialVersionUID = -154228412357092561L;
@@ -41,6 +43,18 @@ public class ChargingStation extends Component {
 		this.charging = charging;
 	}
 
+	@JsonIgnore
+	@Override
+	public int getStateFlags() {
+		return isCharging() ? STATE_CHARGING : 0;
+	}
+
+	@Override
+	public void applyState(final int xCoordinate, final int yCoordinate, final int stateFlags) {
+		super.applyState(xCoordinate, yCoordinate, stateFlags);
+		charging = (stateFlags & STATE_CHARGING) != 0;
+	}
+
 	@Override
 	public boolean canBeOverlayed(final PositionedShape shape) {
 		return true;
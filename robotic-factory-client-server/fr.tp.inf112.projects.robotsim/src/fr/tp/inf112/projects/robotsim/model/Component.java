@@ -19,6 +19,13 @@ public abstract class Component implements Figure, Serializable, Runnable {
 
 	private static final Logger LOGGER = Logger.getLogger(Component.class.getName());
 
+	/**
+	 * State flags of {@link #getStateFlags()}.
+	 */
+	public static final int STATE_BLOCKED = 1;
+	public static final int STATE_OPEN = 2;
+	public static final int STATE_CHARGING = 4;
+
 	private String id;
 
 	@JsonBackReference("factory-components")
@@ -162,6 +169,27 @@ public abstract class Component implements Figure, Serializable, Runnable {
 		return false;
 	}
 
+	/**
+	 * @return the state of the component that changes during a simulation, as a combination of the STATE_ flags.
+	 */
+	@JsonIgnore
+	public int getStateFlags() {
+		return 0;
+	}
+
+	/**
+	 * Sets the position and state flags of a replica of this component, as received from the simulation. Observers
+	 * are not notified.
+	 */
+	public void applyState(final int xCoordinate, final int yCoordinate, final int stateFlags) {
+		final PositionedShape shape = getPositionedShape();
+
+		if (shape != null) {
+			shape.setxCoordinate(xCoordinate);
+			shape.setyCoordinate(yCoordinate);
+		}
+	}
+
 	public boolean overlays(final Component component) {
 		return overlays(component.getPositionedShape());
 	}
@@ -170,6 +198,10 @@ public abstract class Component implements Figure, Serializable, Runnable {
 		return getPositionedShape().overlays(shape);
 	}
 
+	public boolean overlays(final int xCoordinate, final int yCoordinate, final int width, final int height) {
+		return getPositionedShape().overlays(xCoordinate, yCoordinate, width, height);
+	}
+
 	public boolean canBeOverlayed(final PositionedShape shape) {
 		return false;
 	}
@@ -0,0 +1,15 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.util.Collection;
+
+/**
+ * Told which components of a factory replica moved or changed state, for views redrawing only those.
+ */
+public interface ComponentChangeListener {
+
+	/**
+	 * @param factory The factory the components belong to.
+	 * @param changed The components whose position or state flags changed, never empty.
+	 */
+	void componentsChanged(Factory factory, Collection<Component> changed);
+}
@@ -111,6 +111,18 @@ public class Door extends Component {
 		return open;
 	}
 
+	@JsonIgnore
+	@Override
+	public int getStateFlags() {
+		return isOpen() ? STATE_OPEN : 0;
+	}
+
+	@Override
+	public void applyState(final int xCoordinate, final int yCoordinate, final int stateFlags) {
+		super.applyState(xCoordinate, yCoordinate, stateFlags);
+		open = (stateFlags & STATE_OPEN) != 0;
+	}
+
 	public boolean open() {
 		if (isOpen()) {
 			return false;
@@ -5,6 +5,8 @@ import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import fr.tp.inf112.projects.canvas.controller.Observable;
@@ -12,6 +14,7 @@ import fr.tp.inf112.projects.canvas.controller.Observer;
 import fr.tp.inf112.projects.canvas.model.Canvas;
 import fr.tp.inf112.projects.canvas.model.Figure;
 import fr.tp.inf112.projects.canvas.model.Style;
+import fr.tp.inf112.projects.robotsim.model.frame.ComponentState;
 import fr.tp.inf112.projects.robotsim.model.motion.Motion;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
@@ -34,6 +37,16 @@ public class Factory extends Component implements Canvas, Observable {
 
 	private transient boolean simulationStarted;
 
+	@JsonIgnore
+	private transient RobotStateStore robotStateStore;
+
+	@JsonIgnore
+	private transient long snapshotSequence;
+
+	// Incremented each time a component is added or removed, which changes the indexes of the components.
+	@JsonIgnore
+	private transient long structureVersion;
+
 	public Factory() {
 		super();
 		components = new ArrayList<>();
@@ -53,12 +66,139 @@ public class Factory extends Component implements Canvas, Observable {
 		this.notifier = notifier;
 	}
 
-	public synchronized void debugLogMobileComponents() {
-		LOGGER.info("=== MOBILE COMPONENTS STATE ===");
-		for (final Component component : getComponents()) {
-			if (component.isMobile()) {
-				LOGGER.info("  " + component.getName() + " at " + component.getPosition() + " - Running: "
-						+ component.isSimulationStarted());
+	/**
+	 * Copies the positions and states of the components. Since moves are applied holding the factory monitor, the
+	 * snapshot never contains half a move.
+	 */
+	@JsonIgnore
+	public synchronized FactorySnapshot getSnapshot() {
+		return new FactorySnapshot(++snapshotSequence, structureVersion, getComponents(), null);
+	}
+
+	/**
+	 * Same as {@link #getSnapshot()}, together with a serialized copy of the whole factory taken in the same move, so
+	 * that the copy can be sent later, from another thread, and still match the states of the snapshot.
+	 *
+	 * @see FactorySnapshot#getLayout()
+	 */
+	@JsonIgnore
+	public synchronized FactorySnapshot getSnapshotWithLayout() {
+		final byte[] layout;
+
+		try {
+			layout = PersistenceProtocol.serialize(this);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot copy the layout of " + getName(), e);
+		}
+
+		return new FactorySnapshot(++snapshotSequence, structureVersion, getComponents(), layout);
+	}
+
+	/**
+	 * Applies the component states of a frame received from the simulation to this replica of its factory.
+	 *
+	 * @return false if a state refers to a component this factory does not have.
+	 */
+	public boolean applyStates(final List<ComponentState> states) {
+		return applyStates(states, null);
+	}
+
+	/**
+	 * Applies the component states of a frame received from the simulation to this replica of its factory.
+	 *
+	 * @param changed Receives the components whose position or state flags changed, may be null.
+	 * @return false if a state refers to a component this factory does not have.
+	 */
+	public synchronized boolean applyStates(final List<ComponentState> states, final Collection<Component> changed) {
+		final List<Component> components = getComponents();
+		boolean applied = true;
+
+		for (int index = 0; index < states.size(); index++) {
+			final ComponentState state = states.get(index);
+
+			if (state.getIndex() < 0 || state.getIndex() >= components.size()) {
+				applied = false;
+				continue;
+			}
+
+			applyState(components.get(state.getIndex()), state.getxCoordinate(), state.getyCoordinate(),
+					state.getStateFlags(), changed);
+		}
+
+		return applied;
+	}
+
+	/**
+	 * Brings the components of this factory to the positions and states of those of another copy of it, such as the
+	 * factory of a layout frame, keeping the components of this one.
+	 *
+	 * @param changed Receives the components whose position or state flags changed, may be null.
+	 * @return false, leaving this factory unchanged, if the other one does not have the same components in the same
+	 *         order.
+	 */
+	public synchronized boolean patchFrom(final Factory layout, final Collection<Component> changed) {
+		if (!hasSameComponents(layout)) {
+			return false;
+		}
+
+		final List<Component> sources = layout.getComponents();
+
+		for (int index = 0; index < components.size(); index++) {
+			final Component source = sources.get(index);
+			applyState(components.get(index), source.getxCoordinate(), source.getyCoordinate(),
+					source.getStateFlags(), changed);
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return true if the other factory has components of the same classes, with the same ids, or names when they
+	 *         have none, in the same order: the component states of one then apply to the other.
+	 */
+	public boolean hasSameComponents(final Factory other) {
+		final List<Component> otherComponents = other.getComponents();
+
+		if (otherComponents.size() != components.size()) {
+			return false;
+		}
+
+		for (int index = 0; index < components.size(); index++) {
+			final Component component = components.get(index);
+			final Component otherComponent = otherComponents.get(index);
+
+			if (component.getClass() != otherComponent.getClass()
+					|| !Objects.equals(component.getId(), otherComponent.getId())
+					|| component.getId() == null && !Objects.equals(component.getName(), otherComponent.getName())) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static void applyState(final Component component, final int xCoordinate, final int yCoordinate,
+			final int stateFlags, final Collection<Component> changed) {
+		if (changed != null && component.getxCoordinate() == xCoordinate && component.getyCoordinate() == yCoordinate
+				&& component.getStateFlags() == stateFlags) {
+			return;
+		}
+
+		component.applyState(xCoordinate, yCoordinate, stateFlags);
+
+		if (changed != null) {
+			changed.add(component);
+		}
+	}
+
+	public void debugLogMobileComponents() {
+		final FactorySnapshot snapshot = getSnapshot();
+		final boolean running = isSimulationStarted();
+		LOGGER.info("=== MOBILE COMPONENTS STATE (snapshot " + snapshot.getSequence() + ") ===");
+		for (int index = 0; index < snapshot.size(); index++) {
+			if (snapshot.isMobile(index)) {
+				LOGGER.info("  " + snapshot.getName(index) + " at (" + snapshot.getxCoordinate(index) + ", "
+						+ snapshot.getyCoordinate(index) + ") - Running: " + running);
 			}
 		}
 		LOGGER.info("=== END MOBILE COMPONENTS ===");
@@ -94,32 +234,77 @@ public class Factory extends Component implements Canvas, Observable {
 		}
 	}
 
+	/**
+	 * The component list is only changed holding the factory monitor so that snapshots can be taken while the
+	 * simulation runs; observers are notified after releasing it.
+	 */
 	public boolean addComponent(final Component component) {
-		if (components.add(component)) {
-			LOGGER.fine("Component added: " + component.getName());
-			notifyObservers();
+		synchronized (this) {
+			if (!components.add(component)) {
+				return false;
+			}
+
+			structureVersion++;
 
-			return true;
+			if (robotStateStore != null && component instanceof Robot) {
+				robotStateStore.add((Robot) component);
+			}
 		}
 
-		return false;
+		LOGGER.fine("Component added: " + component.getName());
+		notifyObservers();
+
+		return true;
 	}
 
 	public boolean removeComponent(final Component component) {
-		if (components.remove(component)) {
-			LOGGER.fine("Component removed: " + component.getName());
-			notifyObservers();
+		synchronized (this) {
+			if (!components.remove(component)) {
+				return false;
+			}
+
+			structureVersion++;
 
-			return true;
+			if (robotStateStore != null && component instanceof Robot) {
+				robotStateStore.remove((Robot) component);
+			}
 		}
 
-		return false;
+		LOGGER.fine("Component removed: " + component.getName());
+		notifyObservers();
+
+		return true;
 	}
 
 	public List<Component> getComponents() {
 		return components;
 	}
 
+	/**
+	 * Switches the robots of this factory, present and future, to a {@link RobotStateStore}, which the collision
+	 * checks then scan instead of the components. Worth it for large fleets; robots are the only mobile components.
+	 *
+	 * @return the store, created on the first call.
+	 */
+	public synchronized RobotStateStore enableRobotStateStore() {
+		if (robotStateStore == null) {
+			robotStateStore = new RobotStateStore();
+
+			for (final Component component : getComponents()) {
+				if (component instanceof Robot) {
+					robotStateStore.add((Robot) component);
+				}
+			}
+		}
+
+		return robotStateStore;
+	}
+
+	@JsonIgnore
+	public RobotStateStore getRobotStateStore() {
+		return robotStateStore;
+	}
+
 	@JsonIgnore
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
@@ -167,19 +352,28 @@ public class Factory extends Component implements Canvas, Observable {
 
 	public synchronized int moveComponent(final Motion motion, final Component componentToMove) {
 
-		Position targetPos = motion.getTargetPosition();
-		PositionedShape componentShape = componentToMove.getPositionedShape();
-
-		RectangularShape targetShape = new RectangularShape(targetPos.getxCoordinate(), targetPos.getyCoordinate(),
-				componentShape.getWidth(), componentShape.getHeight());
+		final Position targetPos = motion.getTargetPosition();
+		final PositionedShape componentShape = componentToMove.getPositionedShape();
 
-		if (hasMobileComponentAt(targetShape, componentToMove)) {
-			LOGGER.finest("Factory blocked " + componentToMove.getName() + " from moving to " + targetPos);
+		if (hasMobileComponentAt(targetPos.getxCoordinate(), targetPos.getyCoordinate(), componentShape.getWidth(),
+				componentShape.getHeight(), componentToMove)) {
+			if (LOGGER.isLoggable(Level.FINEST)) {
+				LOGGER.finest("Factory blocked " + componentToMove.getName() + " from moving to " + targetPos);
+			}
 			return 0;
 		}
 
-		LOGGER.finest("Factory allowing " + componentToMove.getName() + " to move to " + targetPos);
-		return motion.moveToTarget();
+		if (LOGGER.isLoggable(Level.FINEST)) {
+			LOGGER.finest("Factory allowing " + componentToMove.getName() + " to move to " + targetPos);
+		}
+		final int displacement = motion.moveToTarget();
+
+		if (displacement != 0 && robotStateStore != null && componentToMove instanceof Robot) {
+			robotStateStore.setPosition((Robot) componentToMove, componentToMove.getxCoordinate(),
+					componentToMove.getyCoordinate());
+		}
+
+		return displacement;
 	}
 
 	@Override
@@ -220,13 +414,20 @@ public class Factory extends Component implements Canvas, Observable {
 		return false;
 	}
 
+	/**
+	 * Allocation-free variant of {@link #hasMobileComponentAt(PositionedShape, Component)} used on the robot step path.
+	 */
+	public boolean hasMobileComponentAt(final int xCoordinate, final int yCoordinate, final int width,
+			final int height, final Component movingComponent) {
+		return getMobileComponentAt(xCoordinate, yCoordinate, width, height, movingComponent) != null;
+	}
+
 	public Component getMobileComponentAt(final Position position, final Component ignoredComponent) {
 		if (position == null) {
 			return null;
 		}
 
-		return getMobileComponentAt(new RectangularShape(position.getxCoordinate(), position.getyCoordinate(), 2, 2),
-				ignoredComponent);
+		return getMobileComponentAt(position.getxCoordinate(), position.getyCoordinate(), 2, 2, ignoredComponent);
 	}
 
 	public Component getMobileComponentAt(final PositionedShape shape, final Component ignoredComponent) {
@@ -242,6 +443,29 @@ public class Factory extends Component implements Canvas, Observable {
 
 		return null;
 	}
+
+	public Component getMobileComponentAt(final int xCoordinate, final int yCoordinate, final int width,
+			final int height, final Component ignoredComponent) {
+		final RobotStateStore stateStore = robotStateStore;
+
+		if (stateStore != null) {
+			return stateStore.findOverlapping(xCoordinate, yCoordinate, width, height,
+					ignoredComponent instanceof Robot ? (Robot) ignoredComponent : null);
+		}
+
+		final List<Component> components = getComponents();
+
+		for (int index = 0; index < components.size(); index++) {
+			final Component component = components.get(index);
+
+			if (component != ignoredComponent && component.isMobile()
+					&& component.overlays(xCoordinate, yCoordinate, width, height)) {
+				return component;
+			}
+		}
+
+		return null;
+	}
 	
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
 		in.defaultReadObject();
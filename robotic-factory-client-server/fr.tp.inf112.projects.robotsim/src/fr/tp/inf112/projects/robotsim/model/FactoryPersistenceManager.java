@@ -10,6 +10,11 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 import fr.tp.inf112.projects.canvas.model.Canvas;
 import fr.tp.inf112.projects.canvas.model.CanvasChooser;
@@ -46,12 +51,34 @@ public class FactoryPersistenceManager extends AbstractCanvasPersistenceManager
 	@Override
 	public void persist(Canvas canvasModel)
 	throws IOException {
-		try (
-			final OutputStream fileOutStream = new FileOutputStream(canvasModel.getId());
-			final OutputStream bufOutStream = new BufferedOutputStream(fileOutStream);
-			final ObjectOutputStream objOutStream = new ObjectOutputStream(bufOutStream);
-		) {	
-			objOutStream.writeObject(canvasModel);
+		final Path canvasFile = Paths.get(canvasModel.getId()).toAbsolutePath();
+		
+		// Written aside then renamed over the file, so that a crash or a concurrent save never leaves it half written.
+		final Path temporaryFile = canvasFile.resolveSibling("." + canvasFile.getFileName() + "."
+				+ ProcessHandle.current().pid() + "." + Thread.currentThread().getId() + ".tmp");
+
+		try {
+			try (
+				final FileOutputStream fileOutStream = new FileOutputStream(temporaryFile.toFile());
+				final OutputStream bufOutStream = new BufferedOutputStream(fileOutStream);
+				final ObjectOutputStream objOutStream = new ObjectOutputStream(bufOutStream);
+			) {	
+				objOutStream.writeObject(canvasModel);
+				objOutStream.flush();
+				fileOutStream.getFD().sync();
+			}
+			
+			try {
+				Files.move(temporaryFile, canvasFile, StandardCopyOption.ATOMIC_MOVE,
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (AtomicMoveNotSupportedException ex) {
+				Files.move(temporaryFile, canvasFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		catch (IOException ex) {
+			Files.deleteIfExists(temporaryFile);
+			throw ex;
 		}
 	}
 
@@ -0,0 +1,134 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Immutable copy of the positions and states of the components of a factory, taken between two moves.
+ *
+ * Taking a snapshot holds the factory monitor only for the time of a few array copies; readers (notifiers,
+ * serializers, loggers) then work on it at their own pace without blocking the moving robots, and never see a
+ * half-applied move. Component {@code i} of the snapshot is component {@code i} of the factory at the time it was
+ * taken.
+ */
+public final class FactorySnapshot {
+
+	private final long sequence;
+
+	private final long structureVersion;
+
+	private final String[] names;
+
+	private final int[] xCoordinates;
+
+	private final int[] yCoordinates;
+
+	private final int[] stateFlags;
+
+	private final boolean[] mobile;
+
+	private final byte[] layout;
+
+	/**
+	 * Must be called holding the factory monitor.
+	 *
+	 * @param layout The factory serialized by {@link PersistenceProtocol#serialize(Factory)}, or null.
+	 */
+	FactorySnapshot(final long sequence, final long structureVersion, final List<Component> components,
+			final byte[] layout) {
+		final int size = components.size();
+		this.sequence = sequence;
+		this.structureVersion = structureVersion;
+		this.layout = layout;
+		this.names = new String[size];
+		this.xCoordinates = new int[size];
+		this.yCoordinates = new int[size];
+		this.stateFlags = new int[size];
+		this.mobile = new boolean[size];
+
+		for (int index = 0; index < size; index++) {
+			final Component component = components.get(index);
+			names[index] = component.getName();
+			xCoordinates[index] = component.getxCoordinate();
+			yCoordinates[index] = component.getyCoordinate();
+			stateFlags[index] = component.getStateFlags();
+			mobile[index] = component.isMobile();
+		}
+	}
+
+	/**
+	 * @return the rank of the snapshot among those taken from the same factory.
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the number of components added to or removed from the factory before the snapshot was taken: two
+	 *         snapshots of the same version index the same components.
+	 */
+	public long getStructureVersion() {
+		return structureVersion;
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	public String getName(final int index) {
+		return names[index];
+	}
+
+	public int getxCoordinate(final int index) {
+		return xCoordinates[index];
+	}
+
+	public int getyCoordinate(final int index) {
+		return yCoordinates[index];
+	}
+
+	/**
+	 * @see Component#getStateFlags()
+	 */
+	public int getStateFlags(final int index) {
+		return stateFlags[index];
+	}
+
+	public boolean isMobile(final int index) {
+		return mobile[index];
+	}
+
+	/**
+	 * @return a copy of the factory as it was when the snapshot was taken by {@link Factory#getSnapshotWithLayout()},
+	 *         a new one on each call, or null if the snapshot was taken without it.
+	 */
+	public Factory getLayout() {
+		if (layout == null) {
+			return null;
+		}
+
+		try {
+			return PersistenceProtocol.deserialize(layout);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read the layout of " + this, e);
+		}
+	}
+
+	/**
+	 * @return the index of the component with the given name, or -1.
+	 */
+	public int indexOf(final String name) {
+		for (int index = 0; index < names.length; index++) {
+			if (names[index] != null && names[index].equals(name)) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " [sequence=" + sequence + ", components=" + names.length + "]";
+	}
+}
@@ -0,0 +1,217 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Kept-alive connection to the persistence server, shared by concurrent requests: each request is written as soon as
+ * it is made, and a reader thread hands each response to the request of the same id. Requests and responses are
+ * {@link PersistenceProtocol} frames; factories are serialized and deserialized by the threads making the requests.
+ */
+class PersistenceConnection implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(PersistenceConnection.class.getName());
+
+	enum Command {
+		READ, PERSIST, LIST, PING
+	}
+
+	private final Socket socket;
+
+	private final DataOutputStream out;
+
+	private final DataInputStream in;
+
+	private final Map<Long, CompletableFuture<PersistenceProtocol.Frame>> pending;
+
+	private final AtomicLong nextId;
+
+	private final AtomicLong completedRequests;
+
+	private volatile boolean open;
+
+	private volatile long lastUsedMillis;
+
+	PersistenceConnection(final String host, final int port, final int timeoutMillis) throws IOException {
+		this.socket = new Socket();
+		this.pending = new ConcurrentHashMap<>();
+		this.nextId = new AtomicLong();
+		this.completedRequests = new AtomicLong();
+
+		try {
+			socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+			socket.setTcpNoDelay(true);
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(PersistenceProtocol.MAGIC);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		} catch (final IOException e) {
+			socket.close();
+			throw e;
+		}
+
+		this.open = true;
+		this.lastUsedMillis = System.currentTimeMillis();
+		final Thread reader = new Thread(this::readResponses, "Persistence connection " + socket.getLocalPort());
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * Sends a request and waits for its response; the connection is closed if none comes within the timeout.
+	 *
+	 * @return the result of the request, which is the {@link IOException} the server failed with if it did.
+	 */
+	Object call(final Command command, final String canvasId, final Factory factory,
+			final long timeoutMillis) throws IOException {
+		final byte opcode;
+		final byte[] payload;
+
+		switch (command) {
+		case READ:
+			opcode = PersistenceProtocol.READ;
+			payload = PersistenceProtocol.utf8(canvasId);
+			break;
+		case PERSIST:
+			opcode = PersistenceProtocol.PERSIST;
+			payload = PersistenceProtocol.encodePersist(factory.getId(), PersistenceProtocol.serialize(factory));
+			break;
+		case LIST:
+			opcode = PersistenceProtocol.LIST;
+			payload = new byte[0];
+			break;
+		default:
+			opcode = PersistenceProtocol.PING;
+			payload = new byte[0];
+		}
+
+		final long id = nextId.incrementAndGet();
+		final CompletableFuture<PersistenceProtocol.Frame> response = new CompletableFuture<>();
+		pending.put(id, response);
+		final PersistenceProtocol.Frame frame;
+
+		try {
+			synchronized (out) {
+				if (!open) {
+					throw new IOException("Connection to persistence server closed");
+				}
+
+				PersistenceProtocol.writeFrame(out, opcode, id, payload);
+				out.flush();
+			}
+
+			lastUsedMillis = System.currentTimeMillis();
+			frame = response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			close();
+			throw new SocketTimeoutException("No response to " + command + " within " + timeoutMillis + " ms");
+		} catch (final ExecutionException e) {
+			throw new IOException(e.getCause().getMessage(), e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for " + command);
+		} catch (final IOException e) {
+			close();
+			throw e;
+		} finally {
+			pending.remove(id);
+		}
+
+		if (!frame.isIntact()) {
+			throw new IOException("Corrupted response to " + command);
+		}
+
+		if (frame.getOpcode() == PersistenceProtocol.ERROR) {
+			return new IOException(PersistenceProtocol.utf8(frame.getPayload()));
+		}
+
+		switch (command) {
+		case READ:
+			final Factory read = PersistenceProtocol.deserialize(frame.getPayload());
+			read.setId(canvasId);
+			return read;
+		case PERSIST:
+			return "SUCCESS";
+		case LIST:
+			return PersistenceProtocol.decodeList(frame.getPayload());
+		default:
+			return "PONG";
+		}
+	}
+
+	boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * @return the number of requests answered so far.
+	 */
+	long getCompletedRequests() {
+		return completedRequests.get();
+	}
+
+	int getPendingRequests() {
+		return pending.size();
+	}
+
+	long getIdleMillis() {
+		return System.currentTimeMillis() - lastUsedMillis;
+	}
+
+	/**
+	 * Closes the connection; the requests waiting for a response fail.
+	 */
+	@Override
+	public void close() {
+		open = false;
+
+		try {
+			socket.close();
+		} catch (final IOException e) {
+			LOGGER.log(Level.FINE, "Error closing socket", e);
+		}
+
+		final IOException closed = new IOException("Connection to persistence server closed");
+
+		for (final CompletableFuture<PersistenceProtocol.Frame> response : pending.values()) {
+			response.completeExceptionally(closed);
+		}
+	}
+
+	private void readResponses() {
+		try {
+			while (open) {
+				final PersistenceProtocol.Frame response = PersistenceProtocol.readFrame(in);
+				final CompletableFuture<PersistenceProtocol.Frame> waiting = pending.remove(response.getRequestId());
+
+				if (waiting != null) {
+					completedRequests.incrementAndGet();
+					lastUsedMillis = System.currentTimeMillis();
+					waiting.complete(response);
+				}
+			}
+		} catch (IOException e) {
+			if (open) {
+				LOGGER.log(Level.FINE, "Connection to persistence server lost", e);
+			}
+		} finally {
+			close();
+		}
+	}
+}
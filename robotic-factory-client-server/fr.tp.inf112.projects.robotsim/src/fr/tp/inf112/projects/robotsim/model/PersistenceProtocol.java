@@ -0,0 +1,204 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Framed binary protocol of the persistence server.
+ *
+ * A connection starts with {@link #MAGIC}, which Java serialization streams never start with, so that the server still
+ * answers clients sending a single serialized object. Then each request and each response is a frame:
+ *
+ * <pre>
+ * byte opcode | long request id | int payload length | int CRC32 of the payload | payload
+ * </pre>
+ *
+ * The server dispatches on the opcode without decoding the payload, and factories travel as the bytes of their file, so
+ * that it neither deserializes the factories it stores nor serializes those it reads. A response has the opcode of its
+ * request, or {@link #ERROR} with the message as payload.
+ *
+ * <ul>
+ * <li>{@link #READ}: UTF-8 file id; answered with the serialized factory.</li>
+ * <li>{@link #PERSIST}: file id as written by {@link DataOutputStream#writeUTF(String)}, then the serialized factory;
+ * answered with an empty payload.</li>
+ * <li>{@link #LIST}: empty; answered with the number of files then their names, each as written by
+ * {@link DataOutputStream#writeUTF(String)}.</li>
+ * <li>{@link #PING}: empty; answered with an empty payload.</li>
+ * </ul>
+ */
+public final class PersistenceProtocol {
+
+	// "FPB1"
+	public static final int MAGIC = 0x46504231;
+
+	public static final int MAX_PAYLOAD_LENGTH = 64 * 1024 * 1024;
+
+	public static final byte READ = 1;
+
+	public static final byte PERSIST = 2;
+
+	public static final byte LIST = 3;
+
+	public static final byte PING = 4;
+
+	public static final byte ERROR = 0x7F;
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private PersistenceProtocol() {
+	}
+
+	public static final class Frame {
+
+		private final byte opcode;
+
+		private final long requestId;
+
+		private final byte[] payload;
+
+		private final boolean intact;
+
+		private Frame(final byte opcode, final long requestId, final byte[] payload, final boolean intact) {
+			this.opcode = opcode;
+			this.requestId = requestId;
+			this.payload = payload;
+			this.intact = intact;
+		}
+
+		public byte getOpcode() {
+			return opcode;
+		}
+
+		public long getRequestId() {
+			return requestId;
+		}
+
+		public byte[] getPayload() {
+			return payload;
+		}
+
+		/**
+		 * @return whether the payload matches its checksum; the frames after one that does not are still read.
+		 */
+		public boolean isIntact() {
+			return intact;
+		}
+	}
+
+	public static void writeFrame(final DataOutputStream out, final byte opcode, final long requestId,
+			final byte[] payload) throws IOException {
+		writeHeader(out, opcode, requestId, payload.length, checksum(payload));
+		out.write(payload);
+	}
+
+	/**
+	 * Writes the header of a frame whose payload is written by other means.
+	 */
+	public static void writeHeader(final DataOutputStream out, final byte opcode, final long requestId,
+			final int length, final int checksum) throws IOException {
+		out.writeByte(opcode);
+		out.writeLong(requestId);
+		out.writeInt(length);
+		out.writeInt(checksum);
+	}
+
+	/**
+	 * @throws IOException if the stream ends or the frame announces an impossible length, after which the stream is
+	 *                     out of step and must be closed.
+	 */
+	public static Frame readFrame(final DataInputStream in) throws IOException {
+		final byte opcode = in.readByte();
+		final long requestId = in.readLong();
+		final int length = in.readInt();
+		final int checksum = in.readInt();
+
+		if (length < 0 || length > MAX_PAYLOAD_LENGTH) {
+			throw new IOException("Invalid frame length " + length + " for request " + requestId);
+		}
+
+		final byte[] payload = length == 0 ? EMPTY : new byte[length];
+		in.readFully(payload);
+
+		return new Frame(opcode, requestId, payload, checksum(payload) == checksum);
+	}
+
+	public static byte[] utf8(final String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	public static String utf8(final byte[] payload) {
+		return new String(payload, StandardCharsets.UTF_8);
+	}
+
+	public static byte[] encodePersist(final String fileId, final byte[] factory) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(factory.length + fileId.length() + 2);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(fileId);
+		out.write(factory);
+		return bytes.toByteArray();
+	}
+
+	public static byte[] encodeList(final String[] fileNames) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(fileNames.length);
+
+		for (final String fileName : fileNames) {
+			out.writeUTF(fileName);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	public static String[] decodeList(final byte[] payload) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		final String[] fileNames = new String[in.readInt()];
+
+		for (int index = 0; index < fileNames.length; index++) {
+			fileNames[index] = in.readUTF();
+		}
+
+		return fileNames;
+	}
+
+	/**
+	 * @return the bytes of the factory as the persistence manager writes them to a file.
+	 */
+	public static byte[] serialize(final Factory factory) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(factory);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	public static Factory deserialize(final byte[] bytes) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return (Factory) in.readObject();
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Not a factory: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @return whether the bytes start as a Java serialization stream does.
+	 */
+	public static boolean isSerialized(final byte[] bytes, final int offset) {
+		return bytes.length >= offset + 2 && (bytes[offset] & 0xFF) == 0xAC && (bytes[offset + 1] & 0xFF) == 0xED;
+	}
+
+	private static int checksum(final byte[] payload) {
+		final CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		return (int) crc.getValue();
+	}
+}
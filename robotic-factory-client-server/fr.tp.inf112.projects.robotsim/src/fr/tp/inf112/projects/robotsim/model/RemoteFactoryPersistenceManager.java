@@ -6,6 +6,7 @@ import java.io.ObjectOutputStream;
 import java.net.ConnectException;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,14 +22,34 @@ public class RemoteFactoryPersistenceManager implements CanvasPersistenceManager
 	private static final Logger LOGGER = Logger.getLogger(RemoteFactoryPersistenceManager.class.getName());
 	private static final int SOCKET_TIMEOUT_MS = 10000; 
 
+	public static final int DEFAULT_POOL_SIZE = 2;
+
+	// Below the keep-alive timeout of the server, so that it seldom closes a connection a request is sent on.
+	private static final long MAX_IDLE_MILLIS = 30000;
+
 	private final String serverHost;
 	private final int serverPort;
 	private CanvasChooser canvasChooser;
 
+	// Null when each request opens a connection of its own.
+	private final PersistenceConnection[] connections;
+	private final AtomicInteger nextConnection;
+
 	public RemoteFactoryPersistenceManager(CanvasChooser canvasChooser, String serverHost, int serverPort) {
+		this(canvasChooser, serverHost, serverPort, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * @param poolSize Number of connections kept alive and shared by concurrent requests, 0 to open a connection per
+	 *                 request as servers without keep-alive support expect.
+	 */
+	public RemoteFactoryPersistenceManager(CanvasChooser canvasChooser, String serverHost, int serverPort,
+			int poolSize) {
 		this.canvasChooser = canvasChooser;
 		this.serverHost = serverHost;
 		this.serverPort = serverPort;
+		this.connections = poolSize > 0 ? new PersistenceConnection[poolSize] : null;
+		this.nextConnection = new AtomicInteger();
 	}
 
 	@Override
@@ -48,26 +69,15 @@ public class RemoteFactoryPersistenceManager implements CanvasPersistenceManager
 		LOGGER.info("Persisting factory to server: " + fileId);
 
 		synchronized (factory) {
-			Socket socket = null;
 			try {
-				socket = new Socket(serverHost, serverPort);
-				socket.setSoTimeout(SOCKET_TIMEOUT_MS);
-
-				try (ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-						ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-
-					out.writeObject(factory);
-					out.flush();
-					
-					Object response = in.readObject();
-
-					if (response instanceof String && "SUCCESS".equals(response)) {
-						LOGGER.info("Factory persisted successfully: " + fileId);
-					} else if (response instanceof IOException) {
-						throw (IOException) response;
-					} else {
-						throw new IOException("Unexpected server response: " + response);
-					}
+				Object response = exchange(PersistenceConnection.Command.PERSIST, null, factory);
+
+				if (response instanceof String && "SUCCESS".equals(response)) {
+					LOGGER.info("Factory persisted successfully: " + fileId);
+				} else if (response instanceof IOException) {
+					throw (IOException) response;
+				} else {
+					throw new IOException("Unexpected server response: " + response);
 				}
 
 			} catch (ConnectException e) {
@@ -84,14 +94,6 @@ public class RemoteFactoryPersistenceManager implements CanvasPersistenceManager
 			} catch (IOException e) {
 				LOGGER.log(Level.SEVERE, "Failed to persist factory", e);
 				throw e;
-			} finally {
-				if (socket != null && !socket.isClosed()) {
-					try {
-						socket.close();
-					} catch (IOException e) {
-						LOGGER.log(Level.WARNING, "Error closing socket", e);
-					}
-				}
 			}
 		}
 	}
@@ -100,27 +102,16 @@ public class RemoteFactoryPersistenceManager implements CanvasPersistenceManager
 	public Canvas read(String canvasId) throws IOException {
 		LOGGER.info("Reading factory from server: " + canvasId);
 
-		Socket socket = null;
 		try {
-			socket = new Socket(serverHost, serverPort);
-			socket.setSoTimeout(SOCKET_TIMEOUT_MS);
-
-			try (ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-					ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-
-				out.writeObject(canvasId);
-				out.flush();
-				
-				Object response = in.readObject();
-
-				if (response instanceof Factory) {
-					LOGGER.info("Factory read successfully: " + canvasId);
-					return (Factory) response;
-				} else if (response instanceof IOException) {
-					throw (IOException) response;
-				} else {
-					throw new IOException("Unexpected server response: " + response);
-				}
+			Object response = exchange(PersistenceConnection.Command.READ, canvasId, null);
+
+			if (response instanceof Factory) {
+				LOGGER.info("Factory read successfully: " + canvasId);
+				return (Factory) response;
+			} else if (response instanceof IOException) {
+				throw (IOException) response;
+			} else {
+				throw new IOException("Unexpected server response: " + response);
 			}
 
 		} catch (ConnectException e) {
@@ -151,37 +142,20 @@ public class RemoteFactoryPersistenceManager implements CanvasPersistenceManager
 			LOGGER.log(Level.SEVERE, "Failed to read factory", e);
 			throw e;
 
-		} finally {
-			if (socket != null && !socket.isClosed()) {
-				try {
-					socket.close();
-				} catch (IOException e) {
-					LOGGER.log(Level.WARNING, "Error closing socket", e);
-				}
-			}
 		}
 	}
 
 	public String[] listFactoryFiles() throws IOException {
 		LOGGER.info("Listing factory files from server");
-		Socket socket = null;
 		try {
-			socket = new Socket(serverHost, serverPort);
-			socket.setSoTimeout(SOCKET_TIMEOUT_MS);
-			try (ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
-					ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
-
-				out.writeObject("LIST");
-				out.flush();
-
-				Object response = in.readObject();
-				if (response instanceof String[]) {
-					String[] files = (String[]) response;
-					LOGGER.info("Received " + files.length + " files from server");
-					return files;
-				} else {
-					throw new IOException("Unexpected server response: " + response);
-				}
+			Object response = exchange(PersistenceConnection.Command.LIST, null, null);
+
+			if (response instanceof String[]) {
+				String[] files = (String[]) response;
+				LOGGER.info("Received " + files.length + " files from server");
+				return files;
+			} else {
+				throw new IOException("Unexpected server response: " + response);
 			}
 
 		} catch (ConnectException e) {
@@ -198,14 +172,6 @@ public class RemoteFactoryPersistenceManager implements CanvasPersistenceManager
 		} catch (IOException e) {
 			LOGGER.log(Level.WARNING, "Failed to list factory files", e);
 			throw e;
-		} finally {
-			if (socket != null && !socket.isClosed()) {
-				try {
-					socket.close();
-				} catch (IOException e) {
-					LOGGER.log(Level.WARNING, "Error closing socket", e);
-				}
-			}
 		}
 	}
 
@@ -226,6 +192,10 @@ public class RemoteFactoryPersistenceManager implements CanvasPersistenceManager
 
 	public boolean testConnection() {
 		try {
+			if (connections != null) {
+				return "PONG".equals(exchange(PersistenceConnection.Command.PING, null, null));
+			}
+
 			Socket socket = new Socket(serverHost, serverPort);
 			socket.setSoTimeout(3000);
 			socket.close();
@@ -235,4 +205,90 @@ public class RemoteFactoryPersistenceManager implements CanvasPersistenceManager
 			return false;
 		}
 	}
+
+	/**
+	 * Closes the kept-alive connections; later requests open new ones.
+	 */
+	public void close() {
+		if (connections == null) {
+			return;
+		}
+
+		synchronized (connections) {
+			for (int index = 0; index < connections.length; index++) {
+				if (connections[index] != null) {
+					connections[index].close();
+					connections[index] = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the response of the server to the request, on a pooled connection unless the pool is disabled.
+	 */
+	private Object exchange(PersistenceConnection.Command command, String canvasId, Factory factory)
+			throws IOException, ClassNotFoundException {
+		if (connections == null) {
+			return exchangeOnce(command == PersistenceConnection.Command.PERSIST ? factory
+					: command == PersistenceConnection.Command.LIST ? "LIST" : canvasId);
+		}
+
+		PersistenceConnection connection = pooledConnection();
+		final boolean reused = connection.getCompletedRequests() > 0;
+
+		try {
+			return connection.call(command, canvasId, factory, SOCKET_TIMEOUT_MS);
+		} catch (SocketTimeoutException e) {
+			throw e;
+		} catch (IOException e) {
+			// The server may have closed the connection for being idle just as the request was sent.
+			if (!reused || connection.isOpen()) {
+				throw e;
+			}
+
+			LOGGER.log(Level.FINE, "Retrying " + command + " on a new connection", e);
+			connection = pooledConnection();
+			return connection.call(command, canvasId, factory, SOCKET_TIMEOUT_MS);
+		}
+	}
+
+	private PersistenceConnection pooledConnection() throws IOException {
+		final int slot = Math.floorMod(nextConnection.getAndIncrement(), connections.length);
+
+		synchronized (connections) {
+			PersistenceConnection connection = connections[slot];
+
+			if (connection != null && (!connection.isOpen()
+					|| connection.getPendingRequests() == 0 && connection.getIdleMillis() > MAX_IDLE_MILLIS)) {
+				connection.close();
+				connection = null;
+			}
+
+			if (connection == null) {
+				connection = new PersistenceConnection(serverHost, serverPort, SOCKET_TIMEOUT_MS);
+				connections[slot] = connection;
+			}
+
+			return connection;
+		}
+	}
+
+	/**
+	 * Sends a request on a connection of its own, closed once the response is read.
+	 */
+	private Object exchangeOnce(Object request) throws IOException, ClassNotFoundException {
+		try (Socket socket = new Socket(serverHost, serverPort)) {
+			socket.setSoTimeout(SOCKET_TIMEOUT_MS);
+
+			try (ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+					ObjectInputStream in = new ObjectInputStream(socket.getInputStream())) {
+
+				out.writeObject(request);
+				out.flush();
+
+				return in.readObject();
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -1,5 +1,8 @@
 package fr.tp.inf112.projects.robotsim.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -12,6 +15,8 @@ import java.util.logging.Level;
 
 import fr.tp.inf112.projects.canvas.model.Style;
 import fr.tp.inf112.projects.canvas.model.impl.RGBColor;
+import fr.tp.inf112.projects.robotsim.model.dispatch.ChargingScheduler;
+import fr.tp.inf112.projects.robotsim.model.dispatch.Dispatcher;
 import fr.tp.inf112.projects.robotsim.model.motion.Motion;
 import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
 import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
@@ -33,6 +38,9 @@ public class Robot extends Component {
 	private static final Style BLOCKED_STYLE = new ComponentStyle(RGBColor.RED, RGBColor.BLACK, 3.0f,
 			new float[] { 4.0f });
 
+	private static final float ENERGY_PER_DISTANCE = 0.005f;
+	private static final float CHARGE_PER_TICK = 0.05f;
+
 	private final Battery battery;
 	private int speed;
 
@@ -49,7 +57,8 @@ public class Robot extends Component {
 
 	@JsonIgnore
 	private transient Iterator<Position> currentPathPositionsIter;
-	@JsonProperty
+	// Only written when serializing, the store holds the flag.
+	@JsonIgnore
 	private boolean blocked;
 	@JsonProperty
 	private transient Position memorizedTargetPosition;
@@ -57,6 +66,15 @@ public class Robot extends Component {
 	@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class")
 	private transient FactoryPathFinder pathFinder;
 
+	@JsonIgnore
+	private transient Dispatcher dispatcher;
+	@JsonIgnore
+	private transient ChargingScheduler chargingScheduler;
+	@JsonIgnore
+	private transient ChargingStation chargingStation;
+	@JsonIgnore
+	private transient Component interruptedTarget;
+
 	@JsonIgnore
 	private transient Position currentWaypoint;
 	@JsonIgnore
@@ -69,17 +87,36 @@ public class Robot extends Component {
 	@JsonIgnore
 	private transient boolean stateRestored = false;
 	@JsonIgnore
-	private transient int moveAttempts = 0;
+	private transient int reachedTargets = 0;
+	@JsonIgnore
+	private transient int chargingTicks = 0;
 	@JsonIgnore
-	private transient int successfulMoves = 0;
+	private transient int chargingWaitTicks = 0;
 	@JsonIgnore
-	private transient int blockedMoves = 0;
+	private transient int depletedTicks = 0;
+
+	// State store holding the waypoint index, blocked flag and move counters of the robot, and slot of the robot in
+	// it: the one of the factory, which also mirrors its coordinates for the collision checks, or else one of its
+	// own. Not initialized here since the factory attaches the robot from the Component constructor.
+	@JsonIgnore
+	private transient volatile RobotStateStore stateStore;
+	@JsonIgnore
+	private transient int stateSlot;
+
+	// Scratch objects reused by every step so that a steady-state move does not allocate.
+	@JsonIgnore
+	private transient Position stepPosition;
+	@JsonIgnore
+	private transient Position blockedStepPosition;
+	@JsonIgnore
+	private transient Motion stepMotion;
 
 	public Robot() {
 		super();
 		this.battery = null;
 		this.targetComponents = new ArrayList<>();
 		this.random = new Random();
+		new RobotStateStore(1).add(this);
 	}
 
 	public Robot(final Factory factory, final FactoryPathFinder pathFinder, final CircularShape shape,
@@ -92,9 +129,12 @@ public class Robot extends Component {
 		currTargetComponent = null;
 		currentPathPositionsIter = null;
 		speed = 5;
-		blocked = false;
 		memorizedTargetPosition = null;
 		this.random = new Random();
+
+		if (stateStore == null) {
+			new RobotStateStore(1).add(this);
+		}
 	}
 
 	@Override
@@ -120,15 +160,23 @@ public class Robot extends Component {
 		} catch (Exception e) {
 			LOGGER.log(Level.SEVERE, "!!! CRITICAL ERROR IN " + robotName + " THREAD !!!", e);
 		} finally {
+			if (pathFinder != null) {
+				pathFinder.release(this);
+			}
+			if (chargingScheduler != null) {
+				chargingScheduler.release(this);
+			}
 			LOGGER.info(">>> " + robotName + " THREAD TERMINATED <<<");
 
+			final int moveAttempts = getMoveAttempts();
 			if (moveAttempts > 0) {
+				final int blockedMoves = getBlockedMoves();
 				double blockRate = (double) blockedMoves / moveAttempts * 100.0;
 				LOGGER.info(String.format(
 						"===== %s MOVEMENT STATS =====\n" + "  Total Move Attempts: %d\n"
 								+ "  Successful Moves:    %d\n" + "  Blocked Moves:       %d\n"
 								+ "  BLOCK RATE:          %.2f%%\n" + "====================================",
-						robotName, moveAttempts, successfulMoves, blockedMoves, blockRate));
+						robotName, moveAttempts, getSuccessfulMoves(), blockedMoves, blockRate));
 			} else {
 				LOGGER.info("===== " + robotName + " MOVEMENT STATS: No moves attempted. =====");
 			}
@@ -173,13 +221,15 @@ public class Robot extends Component {
 			currentPathPositionsIter = null;
 			currentWaypoint = null;
 			memorizedTargetPosition = null;
-			blocked = false;
+			setBlocked(false);
 			blockedMoveCounter = 0;
 			stepAsideCooldown = 0;
 
-			moveAttempts = 0;
-			successfulMoves = 0;
-			blockedMoves = 0;
+			stateStore.resetCounters(stateSlot);
+			reachedTargets = 0;
+			chargingTicks = 0;
+			chargingWaitTicks = 0;
+			depletedTicks = 0;
 
 			targetComponentsIterator = null;
 			LOGGER.info(robotName + ": ✓ State restored, ready to compute fresh paths");
@@ -191,31 +241,56 @@ public class Robot extends Component {
 	public boolean behave() {
 		ensureTransientState();
 		if (pathFinder == null) {
-			blocked = true;
+			setBlocked(true);
 			return false;
 		}
 
-		if (getTargetComponents().isEmpty())
+		if (dispatcher == null && getTargetComponents().isEmpty())
 			return false;
 
 		if (stepAsideCooldown > 0) {
-			LOGGER.info(getName() + ": In step-aside cooldown... " + stepAsideCooldown + " ticks left.");
+			if (LOGGER.isLoggable(Level.INFO)) {
+				LOGGER.info(getName() + ": In step-aside cooldown... " + stepAsideCooldown + " ticks left.");
+			}
 			stepAsideCooldown--;
-			blocked = true;
+			setBlocked(true);
 			return false;
 		}
 
-		if (currTargetComponent == null || hasReachedCurrentTarget()) {
-			if (currTargetComponent != null) {
-				LOGGER.info(getName() + ": Reached " + currTargetComponent.getName());
+		if (chargingScheduler != null && chargingStation == null && chargingScheduler.needsCharging(this)
+				&& !requestChargingStation()) {
+			stopMoving();
+			setBlocked(false);
+			return false;
+		}
+
+		if (chargingStation != null) {
+			if (chargeIfDocked())
+				return false;
+		} else if (dispatcher != null && currTargetComponent != null
+				&& !dispatcher.isAssigned(this, currTargetComponent)) {
+			// The dispatcher gave the job to a closer robot.
+			currTargetComponent = null;
+		}
+
+		if (chargingStation == null && (currTargetComponent == null || hasReachedCurrentTarget())) {
+			final Component reachedTarget = currTargetComponent;
+			if (reachedTarget != null) {
+				reachedTargets++;
+				if (LOGGER.isLoggable(Level.INFO)) {
+					LOGGER.info(getName() + ": Reached " + reachedTarget.getName());
+				}
 			}
 
-			currTargetComponent = nextTargetComponentToVisit();
+			currTargetComponent = nextTargetComponentToVisit(reachedTarget);
 			if (currTargetComponent != null) {
 				currTargetComponentName = currTargetComponent.getName();
-				LOGGER.info(getName() + ": New target: " + currTargetComponent.getName());
+				if (LOGGER.isLoggable(Level.INFO)) {
+					LOGGER.info(getName() + ": New target: " + currTargetComponent.getName());
+				}
 			} else {
 				currTargetComponentName = null;
+				stopMoving();
 				return false;
 			}
 
@@ -229,7 +304,7 @@ public class Robot extends Component {
 			computePathToCurrentTargetComponent();
 			currentWaypoint = null;
 			if (currentPathPositionsIter == null || !currentPathPositionsIter.hasNext()) {
-				blocked = true;
+				setBlocked(true);
 				currentPathPositionsIter = null;
 				return false;
 			}
@@ -240,9 +315,18 @@ public class Robot extends Component {
 				memorizedTargetPosition = null;
 
 			if (currentPathPositionsIter.hasNext()) {
-				currentWaypoint = currentPathPositionsIter.next();
+				final Position nextWaypoint = currentPathPositionsIter.next();
+				setWaypointIndex(getWaypointIndex() + 1);
+				currentWaypoint = nextWaypoint;
+				if (nextWaypoint.equals(getPosition())) {
+					// Timed path: the robot waits here for this tick.
+					setBlocked(false);
+					return false;
+				}
 			} else {
-				LOGGER.fine(getName() + ": Path finished, but target not reached. Re-computing.");
+				if (LOGGER.isLoggable(Level.FINE)) {
+					LOGGER.fine(getName() + ": Path finished, but target not reached. Re-computing.");
+				}
 				currentPathPositionsIter = null;
 				return false;
 			}
@@ -251,14 +335,172 @@ public class Robot extends Component {
 		return moveToWaypoint();
 	}
 
+	/**
+	 * Asks the scheduler for a station and heads for it once granted.
+	 *
+	 * @return false while the robot is queued.
+	 */
+	private boolean requestChargingStation() {
+		chargingStation = chargingScheduler.requestStation(this);
+		if (chargingStation == null) {
+			chargingWaitTicks++;
+			return false;
+		}
+		if (LOGGER.isLoggable(Level.INFO)) {
+			LOGGER.info(getName() + ": Battery low, going to " + chargingStation.getName());
+		}
+		interruptedTarget = currTargetComponent;
+		setCurrentTarget(chargingStation);
+		return true;
+	}
+
+	/**
+	 * Charges the battery for a tick if the robot is on its station, and resumes the interrupted target once full.
+	 *
+	 * @return true if the robot is on its station.
+	 */
+	private boolean chargeIfDocked() {
+		if (!getPositionedShape().overlays(chargingStation.getPositionedShape()))
+			return false;
+
+		stopMoving();
+		chargingTicks++;
+		chargingStation.setCharging(true);
+		battery.charge(CHARGE_PER_TICK);
+		setBlocked(false);
+
+		if (battery.isFull()) {
+			chargingStation.setCharging(false);
+			chargingScheduler.release(this);
+			chargingStation = null;
+			setCurrentTarget(interruptedTarget);
+			interruptedTarget = null;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Gives the current path up when the robot stops for a while, so that path finders plan around it.
+	 */
+	private void stopMoving() {
+		if (currentPathPositionsIter != null) {
+			pathFinder.release(this);
+			currentPathPositionsIter = null;
+			currentWaypoint = null;
+			memorizedTargetPosition = null;
+		}
+	}
+
+	private void setCurrentTarget(final Component target) {
+		currTargetComponent = target;
+		currTargetComponentName = target == null ? null : target.getName();
+		currentPathPositionsIter = null;
+		currentWaypoint = null;
+		memorizedTargetPosition = null;
+		blockedMoveCounter = 0;
+	}
+
+	/**
+	 * Robots are only seen without a store while the Component constructor adds them to their factory.
+	 */
 	public boolean isBlocked() {
-		return blocked;
+		final RobotStateStore store = stateStore;
+
+		return store != null && store.isBlocked(stateSlot);
+	}
+
+	@JsonIgnore
+	@Override
+	public int getStateFlags() {
+		return isBlocked() ? STATE_BLOCKED : 0;
+	}
+
+	@JsonProperty("blocked")
+	private void setBlocked(final boolean blocked) {
+		stateStore.setBlocked(stateSlot, blocked);
+	}
+
+	int getWaypointIndex() {
+		final RobotStateStore store = stateStore;
+
+		return store == null ? 0 : store.getWaypointIndex(stateSlot);
+	}
+
+	private void setWaypointIndex(final int waypointIndex) {
+		stateStore.setWaypointIndex(stateSlot, waypointIndex);
+	}
+
+	private void countMoveAttempt() {
+		stateStore.countMoveAttempt(stateSlot);
+	}
+
+	private void countSuccessfulMove() {
+		stateStore.countSuccessfulMove(stateSlot);
+	}
+
+	private void countBlockedMove() {
+		stateStore.countBlockedMove(stateSlot);
+	}
+
+	/**
+	 * Called by the store, holding its monitor, when the robot gets a slot in it.
+	 */
+	void attachStateStore(final RobotStateStore stateStore, final int stateSlot) {
+		this.stateSlot = stateSlot;
+		this.stateStore = stateStore;
+	}
+
+	/**
+	 * Takes the blocked flag out of the state store, which is not serialized.
+	 */
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+		blocked = isBlocked();
+		out.defaultWriteObject();
+	}
+
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		new RobotStateStore(1).add(this);
+		setBlocked(blocked);
+	}
+
+	RobotStateStore getStateStore() {
+		return stateStore;
+	}
+
+	int getStateSlot() {
+		return stateSlot;
+	}
+
+	@Override
+	public void applyState(final int xCoordinate, final int yCoordinate, final int stateFlags) {
+		super.applyState(xCoordinate, yCoordinate, stateFlags);
+		setBlocked((stateFlags & STATE_BLOCKED) != 0);
+
+		stateStore.setPosition(stateSlot, xCoordinate, yCoordinate);
 	}
 
 	public void setPathFinder(FactoryPathFinder pathFinder) {
 		this.pathFinder = pathFinder;
 	}
 
+	/**
+	 * Makes the robot go charging when its battery runs low, and stop moving when it is empty. Called by
+	 * {@link ChargingScheduler#addRobot(Robot)}.
+	 */
+	public void setChargingScheduler(final ChargingScheduler chargingScheduler) {
+		this.chargingScheduler = chargingScheduler;
+	}
+
+	/**
+	 * Makes the robot take its targets from the given dispatcher instead of its own target list. Called by
+	 * {@link Dispatcher#addRobot(Robot)}.
+	 */
+	public void setDispatcher(final Dispatcher dispatcher) {
+		this.dispatcher = dispatcher;
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + " battery=" + battery + "]";
@@ -305,7 +547,19 @@ public class Robot extends Component {
 	}
 
 	private boolean moveToWaypoint() {
-		moveAttempts++;
+		if (chargingScheduler != null && battery != null && battery.isEmpty()) {
+			// Stranded until rescued: the station is of no use to this robot any more.
+			if (chargingStation != null) {
+				chargingScheduler.release(this);
+				chargingStation = null;
+			}
+			stopMoving();
+			depletedTicks++;
+			setBlocked(true);
+			return false;
+		}
+
+		countMoveAttempt();
 		Position targetWaypoint = currentWaypoint;
 		if (memorizedTargetPosition != null)
 			targetWaypoint = memorizedTargetPosition;
@@ -313,52 +567,62 @@ public class Robot extends Component {
 		if (targetWaypoint == null)
 			return false;
 
-		int dx = targetWaypoint.getxCoordinate() - getPosition().getxCoordinate();
-		int dy = targetWaypoint.getyCoordinate() - getPosition().getyCoordinate();
-		double distance = Math.sqrt(dx * dx + dy * dy);
+		final Position position = getPosition();
+		final int dx = targetWaypoint.getxCoordinate() - position.getxCoordinate();
+		final int dy = targetWaypoint.getyCoordinate() - position.getyCoordinate();
+		final int currentSpeed = getSpeed();
 
 		Position nextStepPosition;
 
-		if (distance <= getSpeed()) {
+		if (dx * dx + dy * dy <= currentSpeed * currentSpeed) {
 			nextStepPosition = targetWaypoint;
 		} else {
-			int currentSpeed = getSpeed();
 			int stepX = 0;
 			int stepY = 0;
 			if (Math.abs(dx) > Math.abs(dy)) {
-				stepX = (int) Math.signum(dx) * Math.min(Math.abs(dx), currentSpeed);
+				stepX = Integer.signum(dx) * Math.min(Math.abs(dx), currentSpeed);
 			} else {
-				stepY = (int) Math.signum(dy) * Math.min(Math.abs(dy), currentSpeed);
+				stepY = Integer.signum(dy) * Math.min(Math.abs(dy), currentSpeed);
 			}
-			nextStepPosition = new Position(getPosition().getxCoordinate() + stepX,
-					getPosition().getyCoordinate() + stepY);
+			nextStepPosition = getStepPosition();
+			nextStepPosition.setxCoordinate(position.getxCoordinate() + stepX);
+			nextStepPosition.setyCoordinate(position.getyCoordinate() + stepY);
 		}
 
-		if (nextStepPosition.equals(getPosition())) {
+		if (nextStepPosition.equals(position)) {
 			nextStepPosition = targetWaypoint;
 		}
 
-		final Motion motion = new Motion(getPosition(), nextStepPosition);
-		final int displacement = getFactory().moveComponent(motion, this);
+		final int displacement = getFactory().moveComponent(getStepMotion().set(position, nextStepPosition), this);
 
 		if (displacement != 0) {
-			successfulMoves++;
+			countSuccessfulMove();
 			notifyObservers();
 			memorizedTargetPosition = null;
-			blocked = false;
+			setBlocked(false);
 			blockedMoveCounter = 0;
 			return true;
 		} else {
-			blockedMoves++;
-			memorizedTargetPosition = nextStepPosition;
-			blocked = true;
+			countBlockedMove();
+			memorizedTargetPosition = memorizeBlockedStep(nextStepPosition);
+			setBlocked(true);
 			blockedMoveCounter++;
-			LOGGER.warning(
-					getName() + " Move BLOCKED at " + nextStepPosition + " (Patience: " + blockedMoveCounter + ")");
 
-			Component blocker = getFactory().getMobileComponentAt(nextStepPosition, this);
-			if (blocker != null)
-				LOGGER.warning(getName() + " Blocked by: " + blocker.getName());
+			final Component blocker = getFactory().getMobileComponentAt(memorizedTargetPosition, this);
+			if (LOGGER.isLoggable(Level.WARNING)) {
+				LOGGER.warning(getName() + " Move BLOCKED at " + memorizedTargetPosition + " (Patience: "
+						+ blockedMoveCounter + ")");
+				if (blocker != null)
+					LOGGER.warning(getName() + " Blocked by: " + blocker.getName());
+			}
+
+			if (pathFinder.isTimed(this)) {
+				// Behind schedule: the rest of a timed path is no longer valid, plan again from here.
+				currentPathPositionsIter = null;
+				currentWaypoint = null;
+				memorizedTargetPosition = null;
+				return false;
+			}
 
 			if (blockedMoveCounter > 5) {
 				LOGGER.severe(getName() + " is STUCK. Trying to resolve...");
@@ -368,15 +632,14 @@ public class Robot extends Component {
 						LOGGER.warning(getName() + " lost tie-break, stepping aside.");
 						Position stepAsidePos = findRandomFreeNeighbouringPosition();
 						if (stepAsidePos != null) {
-							final Motion stepAsideMotion = new Motion(getPosition(), stepAsidePos);
-							if (getFactory().moveComponent(stepAsideMotion, this) != 0) {
+							if (getFactory().moveComponent(getStepMotion().set(position, stepAsidePos), this) != 0) {
 								LOGGER.info(getName() + " Successfully stepped aside to " + getPosition());
 								notifyObservers();
 								this.stepAsideCooldown = 10;
 								currentPathPositionsIter = null;
 								currentWaypoint = null;
 								memorizedTargetPosition = null;
-								blocked = false;
+								setBlocked(false);
 								blockedMoveCounter = 0;
 								return true;
 							}
@@ -397,7 +660,34 @@ public class Robot extends Component {
 		}
 	}
 
-	private Component nextTargetComponentToVisit() {
+	private Position getStepPosition() {
+		if (stepPosition == null)
+			stepPosition = new Position();
+		return stepPosition;
+	}
+
+	private Motion getStepMotion() {
+		if (stepMotion == null)
+			stepMotion = new Motion().setEnergySource(battery, ENERGY_PER_DISTANCE);
+		return stepMotion;
+	}
+
+	/**
+	 * Copies the blocked step into a dedicated scratch position, so that the memorized target survives the reuse of
+	 * the step scratch position on the next tick.
+	 */
+	private Position memorizeBlockedStep(final Position nextStepPosition) {
+		if (blockedStepPosition == null)
+			blockedStepPosition = new Position();
+		blockedStepPosition.setxCoordinate(nextStepPosition.getxCoordinate());
+		blockedStepPosition.setyCoordinate(nextStepPosition.getyCoordinate());
+		return blockedStepPosition;
+	}
+
+	private Component nextTargetComponentToVisit(final Component reachedTarget) {
+		if (dispatcher != null) {
+			return dispatcher.nextTarget(this, reachedTarget);
+		}
 		if (targetComponentsIterator == null || !targetComponentsIterator.hasNext()) {
 			targetComponentsIterator = getTargetComponents().iterator();
 		}
@@ -411,24 +701,30 @@ public class Robot extends Component {
 			return;
 		}
 
-		LOGGER.info(getName() + " Computing path from " + getPosition() + " to " + currTargetComponent.getName());
+		final boolean infoLoggable = LOGGER.isLoggable(Level.INFO);
+		if (infoLoggable) {
+			LOGGER.info(getName() + " Computing path from " + getPosition() + " to " + currTargetComponent.getName());
+		}
 		List<Position> currentPathPositions = pathFinder.findPath(this, currTargetComponent);
 
 		if (currentPathPositions.isEmpty()) {
 			LOGGER.warning(getName() + ": PathFinder returned EMPTY path.");
 		} else {
-			if (currentPathPositions.get(0).equals(getPosition())) {
-				LOGGER.info(getName() + ": Path started with current position. Removing it.");
+			if (!pathFinder.isTimed(this) && currentPathPositions.get(0).equals(getPosition())) {
+				if (infoLoggable) {
+					LOGGER.info(getName() + ": Path started with current position. Removing it.");
+				}
 				currentPathPositions.remove(0);
 			}
 
-			if (!currentPathPositions.isEmpty()) {
+			if (infoLoggable && !currentPathPositions.isEmpty()) {
 				LOGGER.info(String.format("%s: Path found with %d steps. Next Waypoint: %s", getName(),
 						currentPathPositions.size(), currentPathPositions.get(0)));
 			}
 		}
 
 		currentPathPositionsIter = currentPathPositions.iterator();
+		setWaypointIndex(0);
 	}
 
 	private Position findRandomFreeNeighbouringPosition() {
@@ -481,9 +777,60 @@ public class Robot extends Component {
 		return pathFinder;
 	}
 
+	@JsonIgnore
+	public int getMoveAttempts() {
+		final RobotStateStore store = stateStore;
+
+		return store == null ? 0 : store.getMoveAttempts(stateSlot);
+	}
+
+	@JsonIgnore
+	public int getSuccessfulMoves() {
+		final RobotStateStore store = stateStore;
+
+		return store == null ? 0 : store.getSuccessfulMoves(stateSlot);
+	}
+
+	@JsonIgnore
+	public int getBlockedMoves() {
+		final RobotStateStore store = stateStore;
+
+		return store == null ? 0 : store.getBlockedMoves(stateSlot);
+	}
+
+	@JsonIgnore
+	public int getReachedTargets() {
+		return reachedTargets;
+	}
+
+	@JsonIgnore
+	public int getChargingTicks() {
+		return chargingTicks;
+	}
+
+	@JsonIgnore
+	public int getChargingWaitTicks() {
+		return chargingWaitTicks;
+	}
+
+	@JsonIgnore
+	public int getDepletedTicks() {
+		return depletedTicks;
+	}
+
+	@JsonIgnore
+	public Battery getBattery() {
+		return battery;
+	}
+
+	@JsonIgnore
+	public float getEnergyPerDistance() {
+		return ENERGY_PER_DISTANCE;
+	}
+
 	@JsonIgnore
 	@Override
 	public Style getStyle() {
-		return blocked ? BLOCKED_STYLE : STYLE;
+		return isBlocked() ? BLOCKED_STYLE : STYLE;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,352 @@
+package fr.tp.inf112.projects.robotsim.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Structure-of-arrays store of the hot state of robots: coordinates, size, waypoint index, blocked flag and move
+ * counters, one primitive array per field and one slot per robot.
+ *
+ * Collision queries scan the coordinate arrays instead of walking the component list, which is what dominates the
+ * tick of a large fleet. A factory owns a store once {@link Factory#enableRobotStateStore()} is called; until then,
+ * and after leaving it, every robot has a store of its own with a single slot, so that its slot is always the only
+ * place holding its waypoint index, blocked flag and counters.
+ *
+ * A robot keeps its slot as long as it stays in the store, and is the only writer of its waypoint index, blocked flag
+ * and counters, so per-slot reads and writes do not lock. Coordinates are written by whoever moves the robot, which
+ * is the robot thread or a frame being applied. The arrays are grown by chunks that are never copied, so that a write
+ * is never lost to a growth, and accessed with opaque operations so that queries of other threads see them. Adding
+ * and removing robots holds the store monitor; a freed slot is cleared and reused by the next robot added.
+ */
+public class RobotStateStore {
+
+	private static final int CHUNK_CAPACITY = 256;
+
+	private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private static final VarHandle BOOLEANS = MethodHandles.arrayElementVarHandle(boolean[].class);
+
+	private static final VarHandle ROBOTS = MethodHandles.arrayElementVarHandle(Robot[].class);
+
+	/**
+	 * Arrays of a fixed number of slots.
+	 */
+	private static final class Chunk {
+
+		private final Robot[] robots;
+
+		private final int[] xCoordinates;
+
+		private final int[] yCoordinates;
+
+		private final int[] widths;
+
+		private final int[] heights;
+
+		private final int[] waypointIndexes;
+
+		private final boolean[] blockedFlags;
+
+		private final int[] moveAttempts;
+
+		private final int[] successfulMoves;
+
+		private final int[] blockedMoves;
+
+		private Chunk(final int capacity) {
+			robots = new Robot[capacity];
+			xCoordinates = new int[capacity];
+			yCoordinates = new int[capacity];
+			widths = new int[capacity];
+			heights = new int[capacity];
+			waypointIndexes = new int[capacity];
+			blockedFlags = new boolean[capacity];
+			moveAttempts = new int[capacity];
+			successfulMoves = new int[capacity];
+			blockedMoves = new int[capacity];
+		}
+	}
+
+	/**
+	 * Chunks of the store and number of slots handed out so far, free or not.
+	 */
+	private static final class Slots {
+
+		private final Chunk[] chunks;
+
+		private final int limit;
+
+		private Slots(final Chunk[] chunks, final int limit) {
+			this.chunks = chunks;
+			this.limit = limit;
+		}
+	}
+
+	private final int chunkCapacity;
+
+	private volatile Slots slots;
+
+	private volatile int size;
+
+	private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+	public RobotStateStore() {
+		this(CHUNK_CAPACITY);
+	}
+
+	/**
+	 * Store growing by chunks of the given number of slots.
+	 */
+	public RobotStateStore(final int chunkCapacity) {
+		this.chunkCapacity = Math.max(1, chunkCapacity);
+		slots = new Slots(new Chunk[] { new Chunk(this.chunkCapacity) }, 0);
+	}
+
+	private Chunk chunk(final int slot) {
+		return slots.chunks[slot / chunkCapacity];
+	}
+
+	private int offset(final int slot) {
+		return slot % chunkCapacity;
+	}
+
+	/**
+	 * Gives the robot a slot, with the coordinates and size of its shape, and taking over its waypoint index, blocked
+	 * flag and counters from the store it was in, if any.
+	 */
+	synchronized void add(final Robot robot) {
+		final RobotStateStore previous = robot.getStateStore();
+
+		if (previous == this) {
+			return;
+		}
+
+		final Slots current = slots;
+		final Integer freeSlot = freeSlots.poll();
+		final int slot = freeSlot != null ? freeSlot : current.limit;
+		final Chunk[] chunks = slot / chunkCapacity < current.chunks.length ? current.chunks
+				: Arrays.copyOf(current.chunks, current.chunks.length + 1);
+
+		if (chunks != current.chunks) {
+			chunks[chunks.length - 1] = new Chunk(chunkCapacity);
+		}
+
+		final Chunk chunk = chunks[slot / chunkCapacity];
+		final int offset = offset(slot);
+
+		INTS.setOpaque(chunk.xCoordinates, offset, robot.getxCoordinate());
+		INTS.setOpaque(chunk.yCoordinates, offset, robot.getyCoordinate());
+		INTS.setOpaque(chunk.widths, offset, robot.getWidth());
+		INTS.setOpaque(chunk.heights, offset, robot.getHeight());
+
+		if (previous != null) {
+			previous.release(robot, chunk, offset);
+		}
+
+		if (slot >= current.limit || chunks != current.chunks) {
+			slots = new Slots(chunks, Math.max(current.limit, slot + 1));
+		}
+
+		ROBOTS.setRelease(chunk.robots, offset, robot);
+		robot.attachStateStore(this, slot);
+		size++;
+	}
+
+	/**
+	 * Moves the robot to a store of its own.
+	 */
+	synchronized void remove(final Robot robot) {
+		if (robot.getStateStore() == this) {
+			new RobotStateStore(1).add(robot);
+		}
+	}
+
+	/**
+	 * Copies the state the robot owns into the given slot of another store, then clears and frees its slot.
+	 */
+	private synchronized void release(final Robot robot, final Chunk target, final int targetOffset) {
+		final int slot = robot.getStateSlot();
+		final Chunk chunk = chunk(slot);
+		final int offset = offset(slot);
+
+		copy(chunk.waypointIndexes, offset, target.waypointIndexes, targetOffset);
+		BOOLEANS.setOpaque(target.blockedFlags, targetOffset, (boolean) BOOLEANS.getOpaque(chunk.blockedFlags, offset));
+		copy(chunk.moveAttempts, offset, target.moveAttempts, targetOffset);
+		copy(chunk.successfulMoves, offset, target.successfulMoves, targetOffset);
+		copy(chunk.blockedMoves, offset, target.blockedMoves, targetOffset);
+
+		ROBOTS.setRelease(chunk.robots, offset, null);
+		INTS.setOpaque(chunk.widths, offset, 0);
+		INTS.setOpaque(chunk.heights, offset, 0);
+		INTS.setOpaque(chunk.waypointIndexes, offset, 0);
+		BOOLEANS.setOpaque(chunk.blockedFlags, offset, false);
+		INTS.setOpaque(chunk.moveAttempts, offset, 0);
+		INTS.setOpaque(chunk.successfulMoves, offset, 0);
+		INTS.setOpaque(chunk.blockedMoves, offset, 0);
+		freeSlots.push(slot);
+		size--;
+	}
+
+	private static void copy(final int[] source, final int sourceOffset, final int[] target, final int targetOffset) {
+		INTS.setOpaque(target, targetOffset, (int) INTS.getOpaque(source, sourceOffset));
+	}
+
+	/**
+	 * Same test as {@link fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape#overlays(int, int, int, int)}.
+	 */
+	private static boolean intersects(final int coordinate1, final int width1, final int coordinate2,
+			final int width2) {
+		if (coordinate1 <= coordinate2) {
+			return coordinate1 + width1 > coordinate2;
+		}
+
+		return coordinate2 + width2 > coordinate1;
+	}
+
+	/**
+	 * @return the first robot, other than the ignored one, overlaying the given rectangle, or null. A robot moving
+	 *         meanwhile may be seen halfway through its move.
+	 */
+	public Robot findOverlapping(final int xCoordinate, final int yCoordinate, final int width, final int height,
+			final Robot ignoredRobot) {
+		final Slots current = slots;
+
+		for (int chunkIndex = 0; chunkIndex < current.chunks.length; chunkIndex++) {
+			final Chunk chunk = current.chunks[chunkIndex];
+			final int end = Math.min(chunkCapacity, current.limit - chunkIndex * chunkCapacity);
+
+			final int[] xs = chunk.xCoordinates;
+			final int[] ys = chunk.yCoordinates;
+			final int[] ws = chunk.widths;
+			final int[] hs = chunk.heights;
+
+			for (int offset = 0; offset < end; offset++) {
+				if (intersects(xs[offset], ws[offset], xCoordinate, width)
+						&& intersects(ys[offset], hs[offset], yCoordinate, height)) {
+					final Robot robot = (Robot) ROBOTS.getAcquire(chunk.robots, offset);
+
+					if (robot != ignoredRobot && robot != null) {
+						return robot;
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Writes the position of the robot if it is in the store.
+	 */
+	void setPosition(final Robot robot, final int xCoordinate, final int yCoordinate) {
+		if (robot.getStateStore() == this) {
+			setPosition(robot.getStateSlot(), xCoordinate, yCoordinate);
+		}
+	}
+
+	void setPosition(final int slot, final int xCoordinate, final int yCoordinate) {
+		final Chunk chunk = chunk(slot);
+		INTS.setOpaque(chunk.xCoordinates, offset(slot), xCoordinate);
+		INTS.setOpaque(chunk.yCoordinates, offset(slot), yCoordinate);
+	}
+
+	int getWaypointIndex(final int slot) {
+		return (int) INTS.getOpaque(chunk(slot).waypointIndexes, offset(slot));
+	}
+
+	void setWaypointIndex(final int slot, final int waypointIndex) {
+		INTS.setOpaque(chunk(slot).waypointIndexes, offset(slot), waypointIndex);
+	}
+
+	boolean isBlocked(final int slot) {
+		return (boolean) BOOLEANS.getOpaque(chunk(slot).blockedFlags, offset(slot));
+	}
+
+	void setBlocked(final int slot, final boolean blocked) {
+		BOOLEANS.setOpaque(chunk(slot).blockedFlags, offset(slot), blocked);
+	}
+
+	int getMoveAttempts(final int slot) {
+		return (int) INTS.getOpaque(chunk(slot).moveAttempts, offset(slot));
+	}
+
+	int getSuccessfulMoves(final int slot) {
+		return (int) INTS.getOpaque(chunk(slot).successfulMoves, offset(slot));
+	}
+
+	int getBlockedMoves(final int slot) {
+		return (int) INTS.getOpaque(chunk(slot).blockedMoves, offset(slot));
+	}
+
+	/**
+	 * The counters only have the robot as writer, so that incrementing them needs no atomic update.
+	 */
+	void countMoveAttempt(final int slot) {
+		increment(chunk(slot).moveAttempts, offset(slot));
+	}
+
+	void countSuccessfulMove(final int slot) {
+		increment(chunk(slot).successfulMoves, offset(slot));
+	}
+
+	void countBlockedMove(final int slot) {
+		increment(chunk(slot).blockedMoves, offset(slot));
+	}
+
+	void resetCounters(final int slot) {
+		final Chunk chunk = chunk(slot);
+		final int offset = offset(slot);
+		INTS.setOpaque(chunk.moveAttempts, offset, 0);
+		INTS.setOpaque(chunk.successfulMoves, offset, 0);
+		INTS.setOpaque(chunk.blockedMoves, offset, 0);
+	}
+
+	private static void increment(final int[] counters, final int offset) {
+		INTS.setOpaque(counters, offset, (int) INTS.getOpaque(counters, offset) + 1);
+	}
+
+	/**
+	 * Freed slots are cleared, so that the totals below only count the robots in the store.
+	 */
+	public int countBlocked() {
+		final Slots current = slots;
+		int blocked = 0;
+
+		for (int slot = 0; slot < current.limit; slot++) {
+			if ((boolean) BOOLEANS.getOpaque(current.chunks[slot / chunkCapacity].blockedFlags, slot % chunkCapacity)) {
+				blocked++;
+			}
+		}
+
+		return blocked;
+	}
+
+	public long getTotalMoveAttempts() {
+		final Slots current = slots;
+		long total = 0;
+
+		for (int slot = 0; slot < current.limit; slot++) {
+			total += (int) INTS.getOpaque(current.chunks[slot / chunkCapacity].moveAttempts, slot % chunkCapacity);
+		}
+
+		return total;
+	}
+
+	public long getTotalBlockedMoves() {
+		final Slots current = slots;
+		long total = 0;
+
+		for (int slot = 0; slot < current.limit; slot++) {
+			total += (int) INTS.getOpaque(current.chunks[slot / chunkCapacity].blockedMoves, slot % chunkCapacity);
+		}
+
+		return total;
+	}
+}
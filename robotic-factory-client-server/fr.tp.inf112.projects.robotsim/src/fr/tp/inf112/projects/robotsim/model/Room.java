@@ -77,6 +77,14 @@ public class Room extends Component {
 			   topWall.overlays(shape) || bottomWall.overlays(shape);
 	}
 
+	@Override
+	public boolean overlays(final int xCoordinate, final int yCoordinate, final int width, final int height) {
+		return leftWall.overlays(xCoordinate, yCoordinate, width, height) ||
+			   rightWall.overlays(xCoordinate, yCoordinate, width, height) ||
+			   topWall.overlays(xCoordinate, yCoordinate, width, height) ||
+			   bottomWall.overlays(xCoordinate, yCoordinate, width, height);
+	}
+
 	@Override
 	public boolean canBeOverlayed(final PositionedShape shape) {
 		final Door overlayedDoor = getOverlayedDoor(shape);
@@ -0,0 +1,173 @@
+package fr.tp.inf112.projects.robotsim.model.dispatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.ChargingStation;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+
+/**
+ * Sends the robots of a fleet to charge before they run out of energy.
+ *
+ * A robot needs charging once its battery level falls to what it takes to reach the nearest station, with a safety
+ * factor, plus a reserve. Stations are granted first come, first served: a robot asking while all the stations are
+ * taken is queued, and gets the nearest station freed once the robots queued before it are served.
+ */
+public class ChargingScheduler {
+
+	private static final Logger LOGGER = Logger.getLogger(ChargingScheduler.class.getName());
+
+	private static final float TRAVEL_SAFETY_FACTOR = 1.5f;
+
+	private final List<ChargingStation> stations;
+
+	private final TravelCostEstimator costEstimator;
+
+	private final float reserveRatio;
+
+	private final Map<ChargingStation, Robot> occupants;
+
+	private final LinkedList<Robot> queue;
+
+	private int grantedCharges;
+
+	private int maxQueueLength;
+
+	public ChargingScheduler(final TravelCostEstimator costEstimator) {
+		this(costEstimator, 0.1f);
+	}
+
+	/**
+	 * @param costEstimator Estimates the trips to the stations.
+	 * @param reserveRatio Share of the capacity kept on top of the trip to the nearest station.
+	 */
+	public ChargingScheduler(final TravelCostEstimator costEstimator, final float reserveRatio) {
+		this.stations = new ArrayList<>();
+		this.costEstimator = costEstimator;
+		this.reserveRatio = reserveRatio;
+		this.occupants = new HashMap<>();
+		this.queue = new LinkedList<>();
+	}
+
+	public synchronized void addStation(final ChargingStation station) {
+		if (!stations.contains(station)) {
+			stations.add(station);
+		}
+	}
+
+	public synchronized void addRobot(final Robot robot) {
+		robot.setChargingScheduler(this);
+	}
+
+	/**
+	 * Tells whether the given robot should stop what it is doing and go charging.
+	 */
+	public synchronized boolean needsCharging(final Robot robot) {
+		final Battery battery = robot.getBattery();
+
+		// An empty robot cannot reach any station any more.
+		if (battery == null || battery.getCapacity() <= 0 || battery.isEmpty() || stations.isEmpty()) {
+			return false;
+		}
+
+		int nearestStationCost = Integer.MAX_VALUE;
+
+		for (final ChargingStation station : stations) {
+			nearestStationCost = Math.min(nearestStationCost,
+					costEstimator.estimate(robot.getPosition(), station.getPosition()));
+		}
+
+		if (nearestStationCost == Integer.MAX_VALUE) {
+			return false;
+		}
+
+		final float tripEnergy = nearestStationCost * robot.getEnergyPerDistance() * TRAVEL_SAFETY_FACTOR;
+
+		return battery.getLevel() <= tripEnergy + reserveRatio * battery.getCapacity();
+	}
+
+	/**
+	 * Asks for a station, queuing the robot if none can be granted yet. Asking again is harmless.
+	 *
+	 * @return the station granted to the robot, or null while it is queued.
+	 */
+	public synchronized ChargingStation requestStation(final Robot robot) {
+		for (final Map.Entry<ChargingStation, Robot> occupant : occupants.entrySet()) {
+			if (occupant.getValue() == robot) {
+				return occupant.getKey();
+			}
+		}
+
+		if (!queue.contains(robot)) {
+			queue.add(robot);
+			maxQueueLength = Math.max(maxQueueLength, queue.size());
+		}
+
+		grantStations();
+
+		for (final Map.Entry<ChargingStation, Robot> occupant : occupants.entrySet()) {
+			if (occupant.getValue() == robot) {
+				return occupant.getKey();
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Frees the station of a robot done charging.
+	 */
+	public synchronized void release(final Robot robot) {
+		occupants.values().remove(robot);
+		queue.remove(robot);
+		grantStations();
+	}
+
+	private void grantStations() {
+		final Iterator<Robot> queuedRobots = queue.iterator();
+
+		while (queuedRobots.hasNext() && occupants.size() < stations.size()) {
+			final Robot robot = queuedRobots.next();
+			ChargingStation nearestStation = null;
+			int nearestStationCost = Integer.MAX_VALUE;
+
+			for (final ChargingStation station : stations) {
+				if (!occupants.containsKey(station)) {
+					final int cost = costEstimator.estimate(robot.getPosition(), station.getPosition());
+
+					if (nearestStation == null || cost < nearestStationCost) {
+						nearestStation = station;
+						nearestStationCost = cost;
+					}
+				}
+			}
+
+			occupants.put(nearestStation, robot);
+			queuedRobots.remove();
+			grantedCharges++;
+
+			if (LOGGER.isLoggable(Level.FINE)) {
+				LOGGER.fine(robot.getName() + " granted " + nearestStation.getName());
+			}
+		}
+	}
+
+	public synchronized int getQueueLength() {
+		return queue.size();
+	}
+
+	public synchronized int getMaxQueueLength() {
+		return maxQueueLength;
+	}
+
+	public synchronized int getGrantedCharges() {
+		return grantedCharges;
+	}
+}
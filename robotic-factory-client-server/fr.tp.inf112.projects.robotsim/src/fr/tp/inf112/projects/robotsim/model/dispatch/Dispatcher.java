@@ -0,0 +1,234 @@
+package fr.tp.inf112.projects.robotsim.model.dispatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+
+/**
+ * Shared transport job queue feeding the robots registered with it, in place of their fixed target lists.
+ *
+ * Jobs go to the idle robot with the cheapest estimated trip to the pickup. Whenever a robot becomes idle, it may
+ * also take over a job still on its way to pickup if it is clearly closer than the robot the job was given to, which
+ * re-balances the fleet as robots finish.
+ */
+public class Dispatcher {
+
+	private static final Logger LOGGER = Logger.getLogger(Dispatcher.class.getName());
+
+	/**
+	 * Cost a robot must save, in distance units, to take a job over from another robot.
+	 */
+	private static final int REBALANCE_MARGIN = 20;
+
+	private final TravelCostEstimator costEstimator;
+
+	private final LongSupplier clock;
+
+	private final List<Robot> robots;
+
+	private final LinkedList<TransportJob> pendingJobs;
+
+	private final Map<Robot, TransportJob> robotJobs;
+
+	private int completedJobs;
+
+	private int reassignments;
+
+	private long totalWaitTime;
+
+	private long totalServiceTime;
+
+	public Dispatcher(final TravelCostEstimator costEstimator) {
+		this(costEstimator, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param costEstimator Estimates the trips to the pickups.
+	 * @param clock Time source of the job statistics (milliseconds, simulation ticks...).
+	 */
+	public Dispatcher(final TravelCostEstimator costEstimator, final LongSupplier clock) {
+		this.costEstimator = costEstimator;
+		this.clock = clock;
+		this.robots = new ArrayList<>();
+		this.pendingJobs = new LinkedList<>();
+		this.robotJobs = new HashMap<>();
+	}
+
+	public synchronized void addRobot(final Robot robot) {
+		if (!robots.contains(robot)) {
+			robots.add(robot);
+			robot.setDispatcher(this);
+		}
+	}
+
+	public synchronized void removeRobot(final Robot robot) {
+		if (robots.remove(robot)) {
+			robot.setDispatcher(null);
+
+			final TransportJob job = robotJobs.remove(robot);
+
+			// A job already picked up is lost with its robot.
+			if (job != null && job.getState() == TransportJob.State.ASSIGNED) {
+				job.assign(null, clock.getAsLong());
+				pendingJobs.addFirst(job);
+			}
+		}
+	}
+
+	public synchronized void submit(final TransportJob job) {
+		job.submitted(clock.getAsLong());
+		pendingJobs.add(job);
+	}
+
+	/**
+	 * Called by a robot needing a new target.
+	 *
+	 * @param robot The robot.
+	 * @param reachedTarget The target the robot just reached, or null.
+	 * @return the next component the robot must go to, or null if it has nothing to do.
+	 */
+	public synchronized Component nextTarget(final Robot robot, final Component reachedTarget) {
+		TransportJob job = robotJobs.get(robot);
+
+		if (job != null && reachedTarget != null && reachedTarget == job.getNextStop()) {
+			if (job.getState() == TransportJob.State.ASSIGNED) {
+				job.pickedUp();
+			} else {
+				delivered(robot, job);
+				job = null;
+			}
+		}
+
+		if (job == null) {
+			dispatch();
+			job = robotJobs.get(robot);
+		}
+
+		return job == null ? null : job.getNextStop();
+	}
+
+	/**
+	 * Tells whether the given target is still where the robot must go: it is not when its job was taken over.
+	 */
+	public synchronized boolean isAssigned(final Robot robot, final Component target) {
+		final TransportJob job = robotJobs.get(robot);
+
+		return job != null && job.getNextStop() == target;
+	}
+
+	private void delivered(final Robot robot, final TransportJob job) {
+		final long time = clock.getAsLong();
+		job.delivered(time);
+		robotJobs.remove(robot);
+		completedJobs++;
+		totalWaitTime += job.getAssignTime() - job.getSubmitTime();
+		totalServiceTime += time - job.getSubmitTime();
+
+		if (LOGGER.isLoggable(Level.FINE)) {
+			LOGGER.fine(robot.getName() + " delivered " + job.getName());
+		}
+	}
+
+	/**
+	 * Greedy assignment: repeatedly gives the cheapest (idle robot, job) trip, pending jobs first choice and jobs not
+	 * picked up yet when the saving exceeds {@link #REBALANCE_MARGIN}. Every take-over strictly lowers the total
+	 * estimated cost, so the loop ends.
+	 */
+	private void dispatch() {
+		while (true) {
+			Robot bestRobot = null;
+			TransportJob bestJob = null;
+			int bestCost = Integer.MAX_VALUE;
+
+			for (final Robot robot : robots) {
+				if (robotJobs.containsKey(robot)) {
+					continue;
+				}
+
+				for (final TransportJob job : pendingJobs) {
+					final int cost = costEstimator.estimate(robot.getPosition(), job.getPickup().getPosition());
+
+					if (cost < bestCost) {
+						bestCost = cost;
+						bestRobot = robot;
+						bestJob = job;
+					}
+				}
+
+				for (final TransportJob job : robotJobs.values()) {
+					if (job.getState() != TransportJob.State.ASSIGNED) {
+						continue;
+					}
+
+					final int cost = costEstimator.estimate(robot.getPosition(), job.getPickup().getPosition());
+					final int currentCost = costEstimator.estimate(job.getRobot().getPosition(),
+							job.getPickup().getPosition());
+
+					if (cost < bestCost && cost != Integer.MAX_VALUE
+							&& (currentCost == Integer.MAX_VALUE || cost + REBALANCE_MARGIN < currentCost)) {
+						bestCost = cost;
+						bestRobot = robot;
+						bestJob = job;
+					}
+				}
+			}
+
+			if (bestJob == null) {
+				return;
+			}
+
+			if (bestJob.getState() == TransportJob.State.PENDING) {
+				pendingJobs.remove(bestJob);
+			} else {
+				robotJobs.remove(bestJob.getRobot());
+				reassignments++;
+
+				if (LOGGER.isLoggable(Level.FINE)) {
+					LOGGER.fine(bestRobot.getName() + " takes " + bestJob.getName() + " over from "
+							+ bestJob.getRobot().getName());
+				}
+			}
+
+			bestJob.assign(bestRobot, clock.getAsLong());
+			robotJobs.put(bestRobot, bestJob);
+		}
+	}
+
+	public synchronized int getPendingJobs() {
+		return pendingJobs.size();
+	}
+
+	public synchronized int getActiveJobs() {
+		return robotJobs.size();
+	}
+
+	public synchronized int getCompletedJobs() {
+		return completedJobs;
+	}
+
+	public synchronized int getReassignments() {
+		return reassignments;
+	}
+
+	/**
+	 * @return the mean time between the submission and the assignment of the delivered jobs.
+	 */
+	public synchronized double getMeanWaitTime() {
+		return completedJobs == 0 ? 0.0 : (double) totalWaitTime / completedJobs;
+	}
+
+	/**
+	 * @return the mean time between the submission and the delivery of the delivered jobs.
+	 */
+	public synchronized double getMeanServiceTime() {
+		return completedJobs == 0 ? 0.0 : (double) totalServiceTime / completedJobs;
+	}
+}
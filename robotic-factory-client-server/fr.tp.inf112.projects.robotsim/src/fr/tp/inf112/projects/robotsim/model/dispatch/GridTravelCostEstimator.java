@@ -0,0 +1,38 @@
+package fr.tp.inf112.projects.robotsim.model.dispatch;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.path.CellGrid;
+import fr.tp.inf112.projects.robotsim.model.path.SpaceTimeFactoryPathFinder;
+
+/**
+ * Path-cost estimates on the grid of a space-time path finder: the exact number of moves around walls, from one
+ * breadth-first search per destination, cached since destinations (machines, conveyors, stations) do not move.
+ */
+public class GridTravelCostEstimator implements TravelCostEstimator {
+
+	private final SpaceTimeFactoryPathFinder pathFinder;
+
+	private final Map<Integer, int[]> distancesByGoal;
+
+	public GridTravelCostEstimator(final SpaceTimeFactoryPathFinder pathFinder) {
+		this.pathFinder = pathFinder;
+		this.distancesByGoal = new HashMap<>();
+	}
+
+	@Override
+	public synchronized int estimate(final Position from, final Position to) {
+		final int startCell = pathFinder.getCell(from);
+		final int goalCell = pathFinder.getCell(to);
+
+		if (startCell == CellGrid.NO_CELL || goalCell == CellGrid.NO_CELL) {
+			return Integer.MAX_VALUE;
+		}
+
+		final int moves = distancesByGoal.computeIfAbsent(goalCell, pathFinder.getCellGrid()::distancesTo)[startCell];
+
+		return moves == Integer.MAX_VALUE ? moves : moves * pathFinder.getResolution();
+	}
+}
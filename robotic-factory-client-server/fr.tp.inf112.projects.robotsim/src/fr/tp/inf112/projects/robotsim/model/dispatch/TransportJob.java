@@ -0,0 +1,110 @@
+package fr.tp.inf112.projects.robotsim.model.dispatch;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+
+/**
+ * A transport job: fetch a load (e.g. a puck) at a pickup component and bring it to a dropoff component.
+ */
+public class TransportJob {
+
+	public static enum State {PENDING, ASSIGNED, PICKED_UP, DELIVERED};
+
+	private final String name;
+
+	private final Component pickup;
+
+	private final Component dropoff;
+
+	private State state;
+
+	private Robot robot;
+
+	private long submitTime;
+
+	private long assignTime;
+
+	private long deliveryTime;
+
+	public TransportJob(final String name, final Component pickup, final Component dropoff) {
+		this.name = name;
+		this.pickup = pickup;
+		this.dropoff = dropoff;
+		this.state = State.PENDING;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Component getPickup() {
+		return pickup;
+	}
+
+	public Component getDropoff() {
+		return dropoff;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return the robot carrying out the job, or null while it is pending.
+	 */
+	public Robot getRobot() {
+		return robot;
+	}
+
+	/**
+	 * @return the component the assigned robot must go to next, or null if there is none.
+	 */
+	public Component getNextStop() {
+		switch (state) {
+		case ASSIGNED:
+			return pickup;
+		case PICKED_UP:
+			return dropoff;
+		default:
+			return null;
+		}
+	}
+
+	public long getSubmitTime() {
+		return submitTime;
+	}
+
+	public long getAssignTime() {
+		return assignTime;
+	}
+
+	public long getDeliveryTime() {
+		return deliveryTime;
+	}
+
+	void submitted(final long time) {
+		state = State.PENDING;
+		submitTime = time;
+	}
+
+	void assign(final Robot robot, final long time) {
+		this.robot = robot;
+		state = robot == null ? State.PENDING : State.ASSIGNED;
+		assignTime = time;
+	}
+
+	void pickedUp() {
+		state = State.PICKED_UP;
+	}
+
+	void delivered(final long time) {
+		state = State.DELIVERED;
+		deliveryTime = time;
+	}
+
+	@Override
+	public String toString() {
+		return "TransportJob [name=" + name + ", pickup=" + pickup.getName() + ", dropoff=" + dropoff.getName()
+				+ ", state=" + state + "]";
+	}
+}
@@ -0,0 +1,20 @@
+package fr.tp.inf112.projects.robotsim.model.dispatch;
+
+import fr.tp.inf112.projects.robotsim.model.Position;
+
+/**
+ * Estimates the cost, in distance units, of travelling between two positions.
+ */
+public interface TravelCostEstimator {
+
+	/**
+	 * Straight-line estimate ignoring obstacles.
+	 */
+	TravelCostEstimator MANHATTAN = (from, to) -> Math.abs(to.getxCoordinate() - from.getxCoordinate())
+			+ Math.abs(to.getyCoordinate() - from.getyCoordinate());
+
+	/**
+	 * @return the estimated cost, or {@link Integer#MAX_VALUE} if the destination cannot be reached.
+	 */
+	int estimate(Position from, Position to);
+}
@@ -0,0 +1,24 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+/**
+ * What a {@link CoalescingFrameNotifier} does with a new frame when its queue of frames not yet taken by the sink is
+ * full.
+ */
+public enum BackpressurePolicy {
+
+	/**
+	 * Discards the oldest queued frame; the next frame is then a keyframe, so that consumers resume after the gap.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Builds no frame until the queue has room; the changes in between are folded into the next delta, so the frame
+	 * sequence has no gap.
+	 */
+	CONFLATE_LATEST,
+
+	/**
+	 * Waits for the queue to have room. Only the publisher thread waits, the robots keep moving.
+	 */
+	BLOCK
+}
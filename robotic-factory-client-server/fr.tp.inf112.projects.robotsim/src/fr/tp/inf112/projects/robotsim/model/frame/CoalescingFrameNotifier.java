@@ -0,0 +1,289 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.canvas.controller.Observer;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
+
+/**
+ * Notifier publishing at most one frame per interval, whatever the number of changes in between.
+ *
+ * Notifying only raises a flag, so the robot threads never pay for building, serializing or sending frames: a single
+ * publisher thread checks the flag every interval and queues the frame bringing consumers up to date, and a sender
+ * thread hands the queued frames to the sink. The queue is bounded; when the sink falls behind, the
+ * {@link BackpressurePolicy} decides between dropping, conflating and waiting.
+ */
+public class CoalescingFrameNotifier implements FactoryModelChangedNotifier, AutoCloseable {
+
+	private static final Logger LOGGER = Logger.getLogger(CoalescingFrameNotifier.class.getName());
+
+	public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+	public static final BackpressurePolicy DEFAULT_POLICY = BackpressurePolicy.CONFLATE_LATEST;
+
+	private final FactoryFrameBuilder frameBuilder;
+
+	private final FrameSink sink;
+
+	private final ScheduledExecutorService publisher;
+
+	private final BlockingQueue<FactoryFrame> queue;
+
+	private final BackpressurePolicy policy;
+
+	private final Thread sender;
+
+	private volatile boolean closed;
+
+	// Set when closing gives up on the queued frames; not an interrupt, which would close the channels of a sink.
+	private volatile boolean abandoned;
+
+	private final AtomicBoolean changed;
+
+	private final AtomicBoolean layoutRequested;
+
+	private final AtomicBoolean keyframeRequested;
+
+	private final AtomicLong notifications;
+
+	private final AtomicLong publishedFrames;
+
+	private final AtomicLong droppedFrames;
+
+	private final AtomicLong conflatedFrames;
+
+	public CoalescingFrameNotifier(final Factory factory, final FrameSink sink) {
+		this(factory, sink, DEFAULT_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * @param intervalMillis Minimum time between two frames, typically the tick of the robots.
+	 */
+	public CoalescingFrameNotifier(final Factory factory, final FrameSink sink, final long intervalMillis) {
+		this(factory, sink, intervalMillis, DEFAULT_QUEUE_CAPACITY, DEFAULT_POLICY);
+	}
+
+	/**
+	 * @param intervalMillis Minimum time between two frames, typically the tick of the robots.
+	 * @param queueCapacity Maximum number of frames waiting for the sink.
+	 * @param policy What to do with a new frame when the queue is full.
+	 */
+	public CoalescingFrameNotifier(final Factory factory, final FrameSink sink, final long intervalMillis,
+			final int queueCapacity, final BackpressurePolicy policy) {
+		this.frameBuilder = new FactoryFrameBuilder(factory);
+		this.sink = sink;
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.policy = policy;
+		this.changed = new AtomicBoolean();
+		this.layoutRequested = new AtomicBoolean();
+		this.keyframeRequested = new AtomicBoolean();
+		this.notifications = new AtomicLong();
+		this.publishedFrames = new AtomicLong();
+		this.droppedFrames = new AtomicLong();
+		this.conflatedFrames = new AtomicLong();
+		this.sender = new Thread(this::send, "Frame sender " + factory.getName());
+		this.sender.setDaemon(true);
+		this.sender.start();
+		this.publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "Frame publisher " + factory.getName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.publisher.scheduleWithFixedDelay(this::publish, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void notifyObservers() {
+		notifications.incrementAndGet();
+		changed.set(true);
+	}
+
+	/**
+	 * Makes the next frame a layout frame, for consumers that just connected.
+	 */
+	public void requestLayout() {
+		layoutRequested.set(true);
+	}
+
+	/**
+	 * Makes the next frame a keyframe, for consumers that lost frames.
+	 */
+	public void requestKeyframe() {
+		keyframeRequested.set(true);
+	}
+
+	private void publish() {
+		try {
+			if (policy == BackpressurePolicy.CONFLATE_LATEST && queue.remainingCapacity() == 0) {
+				// The pending changes stay flagged and go with the next frame built.
+				if (changed.get() || layoutRequested.get() || keyframeRequested.get()) {
+					conflatedFrames.incrementAndGet();
+				}
+				return;
+			}
+
+			final FactoryFrame frame;
+
+			if (layoutRequested.getAndSet(false)) {
+				changed.set(false);
+				keyframeRequested.set(false);
+				frame = frameBuilder.nextLayoutFrame();
+			} else if (keyframeRequested.getAndSet(false)) {
+				changed.set(false);
+				frame = frameBuilder.nextKeyframe();
+			} else if (changed.getAndSet(false)) {
+				frame = frameBuilder.nextFrame();
+			} else {
+				return;
+			}
+
+			if (frame != null) {
+				enqueue(frame);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final RuntimeException e) {
+			// An exception would cancel the periodic task.
+			LOGGER.log(Level.WARNING, "Failed to publish frame", e);
+		}
+	}
+
+	private void enqueue(final FactoryFrame frame) throws InterruptedException {
+		if (policy == BackpressurePolicy.BLOCK) {
+			queue.put(frame);
+			return;
+		}
+
+		while (!queue.offer(frame)) {
+			final FactoryFrame dropped = queue.poll();
+
+			if (dropped != null) {
+				droppedFrames.incrementAndGet();
+				// The frames queued after it no longer follow the previous one.
+				if (dropped.isLayout()) {
+					layoutRequested.set(true);
+				} else {
+					keyframeRequested.set(true);
+				}
+				LOGGER.fine("Dropped " + dropped + ", the sink is behind");
+			}
+		}
+	}
+
+	private void send() {
+		try {
+			while (!abandoned && (!closed || !queue.isEmpty())) {
+				final FactoryFrame frame = queue.poll(DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+				if (frame == null) {
+					continue;
+				}
+
+				try {
+					sink.publish(frame);
+					publishedFrames.incrementAndGet();
+				} catch (final RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Failed to publish " + frame, e);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the number of change notifications received.
+	 */
+	public long getNotifications() {
+		return notifications.get();
+	}
+
+	/**
+	 * @return the number of frames handed to the sink.
+	 */
+	public long getPublishedFrames() {
+		return publishedFrames.get();
+	}
+
+	/**
+	 * @return the number of queued frames discarded with {@link BackpressurePolicy#DROP_OLDEST}.
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	/**
+	 * @return the number of intervals whose changes were folded into a later frame with
+	 *         {@link BackpressurePolicy#CONFLATE_LATEST}.
+	 */
+	public long getConflatedFrames() {
+		return conflatedFrames.get();
+	}
+
+	/**
+	 * @return the number of frames waiting for the sink.
+	 */
+	public int getQueuedFrames() {
+		return queue.size();
+	}
+
+	public BackpressurePolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Publishes the pending changes, stops the publisher thread and lets the sender thread hand the queued frames to
+	 * the sink for up to a second, then drops the frames left. Returns once the sender thread has terminated, so that
+	 * the sink can be closed.
+	 */
+	@Override
+	public void close() {
+		if (publisher.isShutdown()) {
+			return;
+		}
+
+		publisher.submit(this::publish);
+		publisher.shutdown();
+
+		try {
+			publisher.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		closed = true;
+
+		try {
+			sender.join(1000);
+
+			if (sender.isAlive()) {
+				LOGGER.warning("Sink behind on close, dropping " + queue.size() + " queued frames");
+				abandoned = true;
+				sender.join();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public boolean addObserver(final Observer observer) {
+		return false;
+	}
+
+	@Override
+	public boolean removeObserver(final Observer observer) {
+		return false;
+	}
+}
@@ -0,0 +1,56 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Position and state flags of the component of given index in the component list of its factory.
+ */
+public final class ComponentState {
+
+	@JsonProperty
+	private int index;
+
+	@JsonProperty
+	private int xCoordinate;
+
+	@JsonProperty
+	private int yCoordinate;
+
+	@JsonProperty
+	private int stateFlags;
+
+	public ComponentState() {
+	}
+
+	public ComponentState(final int index, final int xCoordinate, final int yCoordinate, final int stateFlags) {
+		this.index = index;
+		this.xCoordinate = xCoordinate;
+		this.yCoordinate = yCoordinate;
+		this.stateFlags = stateFlags;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public int getxCoordinate() {
+		return xCoordinate;
+	}
+
+	public int getyCoordinate() {
+		return yCoordinate;
+	}
+
+	/**
+	 * @see fr.tp.inf112.projects.robotsim.model.Component#getStateFlags()
+	 */
+	public int getStateFlags() {
+		return stateFlags;
+	}
+
+	@Override
+	public String toString() {
+		return "ComponentState [index=" + index + ", (" + xCoordinate + ", " + yCoordinate + "), flags=" + stateFlags
+				+ "]";
+	}
+}
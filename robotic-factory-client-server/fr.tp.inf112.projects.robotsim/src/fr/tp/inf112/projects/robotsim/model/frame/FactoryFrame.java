@@ -0,0 +1,85 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Unit of the simulation event stream.
+ *
+ * The static part of the factory (rooms, walls, machines...) goes out once, in a layout frame, together with the
+ * state of all its components. After that, the stream only carries component states: a keyframe has the state of all
+ * the components, a delta only those of the components that moved or changed state since the previous frame. Both
+ * apply to the factory of the last layout frame.
+ */
+public final class FactoryFrame {
+
+	public enum Type {
+		LAYOUT, KEYFRAME, DELTA
+	}
+
+	@JsonProperty
+	private Type type;
+
+	@JsonProperty
+	private long sequence;
+
+	@JsonProperty
+	private Factory factory;
+
+	@JsonProperty
+	private List<ComponentState> states;
+
+	public FactoryFrame() {
+		this.states = new ArrayList<>();
+	}
+
+	FactoryFrame(final Type type, final long sequence, final Factory factory, final List<ComponentState> states) {
+		this.type = type;
+		this.sequence = sequence;
+		this.factory = factory;
+		this.states = states;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return true if the frame has the state of all the components, which is the case of layout frames too.
+	 */
+	@JsonIgnore
+	public boolean isKeyframe() {
+		return type != Type.DELTA;
+	}
+
+	@JsonIgnore
+	public boolean isLayout() {
+		return type == Type.LAYOUT;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the factory of a layout frame, null otherwise. It is a copy, not the simulated factory; its component
+	 *         states are those of the frame once {@link Factory#applyStates(List)} was called with {@link #getStates()}.
+	 */
+	public Factory getFactory() {
+		return factory;
+	}
+
+	public List<ComponentState> getStates() {
+		return states;
+	}
+
+	@Override
+	public String toString() {
+		return "FactoryFrame [" + type + " " + sequence + ", " + states.size() + " states]";
+	}
+}
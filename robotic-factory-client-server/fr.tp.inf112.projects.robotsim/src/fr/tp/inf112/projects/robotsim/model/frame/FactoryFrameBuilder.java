@@ -0,0 +1,119 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
+
+/**
+ * Turns the successive states of a factory into frames: a layout frame to start with and whenever components are
+ * added or removed, a keyframe every {@code keyframeInterval} frames so that lossy consumers catch up, and deltas
+ * otherwise.
+ */
+public class FactoryFrameBuilder {
+
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+	private final Factory factory;
+
+	private final int keyframeInterval;
+
+	private FactorySnapshot previousSnapshot;
+
+	private long sequence;
+
+	private int framesSinceKeyframe;
+
+	public FactoryFrameBuilder(final Factory factory) {
+		this(factory, DEFAULT_KEYFRAME_INTERVAL);
+	}
+
+	public FactoryFrameBuilder(final Factory factory, final int keyframeInterval) {
+		this.factory = factory;
+		this.keyframeInterval = keyframeInterval;
+	}
+
+	/**
+	 * @return the frame bringing consumers to the current state of the factory, or null if nothing changed since the
+	 *         previous frame.
+	 */
+	public synchronized FactoryFrame nextFrame() {
+		final FactorySnapshot snapshot = factory.getSnapshot();
+
+		if (isStructureChanged(snapshot)) {
+			return keyframe(FactoryFrame.Type.LAYOUT, factory.getSnapshotWithLayout());
+		}
+
+		if (framesSinceKeyframe >= keyframeInterval) {
+			return keyframe(FactoryFrame.Type.KEYFRAME, snapshot);
+		}
+
+		final List<ComponentState> states = new ArrayList<>();
+
+		for (int index = 0; index < snapshot.size(); index++) {
+			if (snapshot.getxCoordinate(index) != previousSnapshot.getxCoordinate(index)
+					|| snapshot.getyCoordinate(index) != previousSnapshot.getyCoordinate(index)
+					|| snapshot.getStateFlags(index) != previousSnapshot.getStateFlags(index)) {
+				states.add(state(snapshot, index));
+			}
+		}
+
+		if (states.isEmpty()) {
+			return null;
+		}
+
+		previousSnapshot = snapshot;
+		framesSinceKeyframe++;
+
+		return new FactoryFrame(FactoryFrame.Type.DELTA, ++sequence, null, states);
+	}
+
+	/**
+	 * @return a layout frame of the current state of the factory, for consumers that just connected.
+	 */
+	public synchronized FactoryFrame nextLayoutFrame() {
+		return keyframe(FactoryFrame.Type.LAYOUT, factory.getSnapshotWithLayout());
+	}
+
+	/**
+	 * @return a keyframe of the current state of the factory, for consumers that lost frames.
+	 */
+	public synchronized FactoryFrame nextKeyframe() {
+		final FactorySnapshot snapshot = factory.getSnapshot();
+
+		if (isStructureChanged(snapshot)) {
+			return keyframe(FactoryFrame.Type.LAYOUT, factory.getSnapshotWithLayout());
+		}
+
+		return keyframe(FactoryFrame.Type.KEYFRAME, snapshot);
+	}
+
+	/**
+	 * @return whether components were added or removed since the previous frame, even if their number did not
+	 *         change: the states of the snapshot then no longer index the components of the previous layout.
+	 */
+	private boolean isStructureChanged(final FactorySnapshot snapshot) {
+		return previousSnapshot == null || previousSnapshot.getStructureVersion() != snapshot.getStructureVersion();
+	}
+
+	private FactoryFrame keyframe(final FactoryFrame.Type type, final FactorySnapshot snapshot) {
+		final List<ComponentState> states = new ArrayList<>(snapshot.size());
+
+		for (int index = 0; index < snapshot.size(); index++) {
+			states.add(state(snapshot, index));
+		}
+
+		previousSnapshot = snapshot;
+		framesSinceKeyframe = 0;
+
+		// The factory of a layout frame is a copy taken with the states: the frame is encoded later, on the sending
+		// thread, while the simulation goes on.
+		return new FactoryFrame(type, ++sequence, snapshot.getLayout(), states);
+	}
+
+	private static ComponentState state(final FactorySnapshot snapshot, final int index) {
+		return new ComponentState(index, snapshot.getxCoordinate(index), snapshot.getyCoordinate(index),
+				snapshot.getStateFlags(index));
+	}
+}
@@ -0,0 +1,260 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Compact binary encoding of the frames.
+ *
+ * <pre>
+ * frame     := MAGIC VERSION type sequence count state* [layout]
+ * type      := 0 (keyframe) | 1 (delta) | 2 (layout)
+ * sequence  := varlong
+ * count     := varint
+ * state     := indexGap x y flags      indexGap: varint, gap to the index of the previous state (states are sorted)
+ *                                      x, y: zigzag varints, flags: varint
+ * layout    := length bytes            layout frames only: the factory as JSON
+ * </pre>
+ *
+ * A state of a small factory takes 4 bytes instead of about a hundred in JSON.
+ */
+public class FrameCodec {
+
+	public static final byte MAGIC = (byte) 0xF7;
+
+	public static final byte VERSION = 2;
+
+	private static final byte KEYFRAME = 0;
+
+	private static final byte DELTA = 1;
+
+	private static final byte LAYOUT = 2;
+
+	// Four varints of one byte at least.
+	private static final int MIN_STATE_BYTES = 4;
+
+	private final ObjectMapper layoutMapper;
+
+	/**
+	 * @param layoutMapper Mapper of the factories carried by layout frames.
+	 */
+	public FrameCodec(final ObjectMapper layoutMapper) {
+		this.layoutMapper = layoutMapper;
+	}
+
+	public byte[] encode(final FactoryFrame frame) throws IOException {
+		final List<ComponentState> states = frame.getStates();
+		final ByteArrayOutputStream output = new ByteArrayOutputStream(16 + 4 * states.size());
+		output.write(MAGIC);
+		output.write(VERSION);
+		output.write(frame.isLayout() ? LAYOUT : frame.isKeyframe() ? KEYFRAME : DELTA);
+		writeVarLong(output, frame.getSequence());
+		writeVarLong(output, states.size());
+
+		int previousIndex = 0;
+
+		for (int index = 0; index < states.size(); index++) {
+			final ComponentState state = states.get(index);
+
+			if (state.getIndex() < previousIndex) {
+				throw new IllegalArgumentException("Component states must be sorted by index: " + frame);
+			}
+
+			writeVarLong(output, state.getIndex() - previousIndex);
+			writeVarLong(output, zigzag(state.getxCoordinate()));
+			writeVarLong(output, zigzag(state.getyCoordinate()));
+			writeVarLong(output, state.getStateFlags());
+			previousIndex = state.getIndex();
+		}
+
+		if (frame.isLayout()) {
+			final byte[] layout = frame.getFactory() == null ? new byte[0]
+					: layoutMapper.writeValueAsBytes(frame.getFactory());
+			writeVarLong(output, layout.length);
+			output.write(layout);
+		}
+
+		return output.toByteArray();
+	}
+
+	/**
+	 * Reads the type of a frame from its header only, without decoding its states or its layout.
+	 *
+	 * @throws IOException if the data is not a frame of a supported version.
+	 */
+	public FactoryFrame.Type peekType(final byte[] data) throws IOException {
+		final Reader reader = new Reader(data);
+
+		if (reader.readByte() != MAGIC) {
+			throw new IOException("Not a binary frame");
+		}
+
+		final byte version = reader.readByte();
+
+		if (version != VERSION) {
+			throw new IOException("Unsupported frame version " + version);
+		}
+
+		switch (reader.readByte()) {
+		case KEYFRAME:
+			return FactoryFrame.Type.KEYFRAME;
+		case DELTA:
+			return FactoryFrame.Type.DELTA;
+		case LAYOUT:
+			return FactoryFrame.Type.LAYOUT;
+		default:
+			throw new IOException("Unknown frame type");
+		}
+	}
+
+	/**
+	 * Reads the sequence of a frame from its header only.
+	 *
+	 * @throws IOException if the data is not a frame of a supported version.
+	 */
+	public long peekSequence(final byte[] data) throws IOException {
+		peekType(data);
+		final Reader reader = new Reader(data);
+		reader.skip(3);
+		return reader.readVarLong();
+	}
+
+	/**
+	 * @throws IOException if the data is not a frame of a supported version.
+	 */
+	public FactoryFrame decode(final byte[] data) throws IOException {
+		final Reader reader = new Reader(data);
+
+		if (reader.readByte() != MAGIC) {
+			throw new IOException("Not a binary frame");
+		}
+
+		final byte version = reader.readByte();
+
+		if (version != VERSION) {
+			throw new IOException("Unsupported frame version " + version);
+		}
+
+		final byte type = reader.readByte();
+
+		if (type != KEYFRAME && type != DELTA && type != LAYOUT) {
+			throw new IOException("Unknown frame type " + type);
+		}
+
+		final long sequence = reader.readVarLong();
+		final long count = reader.readVarLong();
+
+		// Checked before sizing the list: a corrupt count must not allocate.
+		if (count < 0 || count > reader.remaining() / MIN_STATE_BYTES) {
+			throw new IOException("Invalid state count " + count + " for " + reader.remaining() + " bytes left");
+		}
+
+		final List<ComponentState> states = new ArrayList<>((int) count);
+		int index = 0;
+
+		for (int stateIndex = 0; stateIndex < count; stateIndex++) {
+			index += (int) reader.readVarLong();
+			final int xCoordinate = unzigzag(reader.readVarLong());
+			final int yCoordinate = unzigzag(reader.readVarLong());
+			final int stateFlags = (int) reader.readVarLong();
+			states.add(new ComponentState(index, xCoordinate, yCoordinate, stateFlags));
+		}
+
+		if (type == KEYFRAME) {
+			return new FactoryFrame(FactoryFrame.Type.KEYFRAME, sequence, null, states);
+		}
+
+		Factory factory = null;
+
+		if (type == LAYOUT) {
+			final long length = reader.readVarLong();
+
+			if (length < 0 || length > reader.remaining()) {
+				throw new IOException("Truncated frame");
+			}
+
+			final int offset = reader.position;
+			reader.skip((int) length);
+
+			if (length > 0) {
+				factory = layoutMapper.readValue(data, offset, (int) length, Factory.class);
+			}
+
+			return new FactoryFrame(FactoryFrame.Type.LAYOUT, sequence, factory, states);
+		}
+
+		return new FactoryFrame(FactoryFrame.Type.DELTA, sequence, null, states);
+	}
+
+	private static long zigzag(final int value) {
+		return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+	}
+
+	private static int unzigzag(final long value) {
+		final int encoded = (int) value;
+		return (encoded >>> 1) ^ -(encoded & 1);
+	}
+
+	private static void writeVarLong(final ByteArrayOutputStream output, final long value) {
+		long remaining = value;
+
+		while ((remaining & ~0x7FL) != 0) {
+			output.write((int) (remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+
+		output.write((int) remaining);
+	}
+
+	private static class Reader {
+
+		private final byte[] data;
+
+		private int position;
+
+		Reader(final byte[] data) {
+			this.data = data;
+		}
+
+		byte readByte() throws IOException {
+			if (position >= data.length) {
+				throw new IOException("Truncated frame");
+			}
+
+			return data[position++];
+		}
+
+		long readVarLong() throws IOException {
+			long value = 0;
+
+			for (int shift = 0; shift < 64; shift += 7) {
+				final byte current = readByte();
+				value |= (long) (current & 0x7F) << shift;
+
+				if ((current & 0x80) == 0) {
+					return value;
+				}
+			}
+
+			throw new IOException("Malformed varint");
+		}
+
+		int remaining() {
+			return data.length - position;
+		}
+
+		void skip(final int length) throws IOException {
+			if (length < 0 || position + length > data.length) {
+				throw new IOException("Truncated frame");
+			}
+
+			position += length;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+
+/**
+ * Folds successive frames into one, for a consumer slower than the simulation: the states of the components are
+ * merged, the latest one winning, so that applying the folded frame gives the same factory as applying each frame in
+ * turn.
+ *
+ * Frames are checked as the simulation event consumer does: states are only kept once a layout was offered, and a
+ * delta not following the previous frame is refused until the next keyframe. The frames pending before such a gap
+ * are still valid and stay pending.
+ */
+public class FrameConflater {
+
+	private final Map<Integer, ComponentState> states;
+
+	private FactoryFrame.Type pendingType;
+
+	private Factory pendingFactory;
+
+	private int pendingFrames;
+
+	private boolean hasLayout;
+
+	private boolean waitingForKeyframe;
+
+	private long lastSequence = -1;
+
+	private long conflatedFrames;
+
+	public FrameConflater() {
+		this.states = new TreeMap<>();
+	}
+
+	/**
+	 * @return false if the frame was refused: states before the layout, or a delta following a gap.
+	 */
+	public boolean offer(final FactoryFrame frame) {
+		if (frame.isLayout()) {
+			if (frame.getFactory() == null) {
+				return false;
+			}
+
+			// Components may have been added or removed: the indexes of the former states no longer hold.
+			states.clear();
+			pendingType = FactoryFrame.Type.LAYOUT;
+			pendingFactory = frame.getFactory();
+			hasLayout = true;
+		} else if (!hasLayout) {
+			return false;
+		} else if (frame.isKeyframe()) {
+			if (pendingType != FactoryFrame.Type.LAYOUT) {
+				pendingType = FactoryFrame.Type.KEYFRAME;
+			}
+		} else if (waitingForKeyframe || frame.getSequence() != lastSequence + 1) {
+			waitingForKeyframe = true;
+			return false;
+		} else if (pendingType == null) {
+			pendingType = FactoryFrame.Type.DELTA;
+		}
+
+		for (final ComponentState state : frame.getStates()) {
+			states.put(state.getIndex(), state);
+		}
+
+		if (pendingFrames++ > 0) {
+			conflatedFrames++;
+		}
+
+		waitingForKeyframe = false;
+		lastSequence = frame.getSequence();
+		return true;
+	}
+
+	public boolean hasPending() {
+		return pendingType != null;
+	}
+
+	/**
+	 * @return true if a delta was refused since the last keyframe or layout.
+	 */
+	public boolean isWaitingForKeyframe() {
+		return waitingForKeyframe;
+	}
+
+	/**
+	 * @return the number of frames folded into another one.
+	 */
+	public long getConflatedFrames() {
+		return conflatedFrames;
+	}
+
+	/**
+	 * @param sequence Sequence of the frame returned, numbered by the caller for its consumer.
+	 * @return the pending frames folded into one, or null if none is pending.
+	 */
+	public FactoryFrame drain(final long sequence) {
+		if (pendingType == null) {
+			return null;
+		}
+
+		final FactoryFrame frame = new FactoryFrame(pendingType, sequence, pendingFactory,
+				new ArrayList<>(states.values()));
+		states.clear();
+		pendingType = null;
+		pendingFactory = null;
+		pendingFrames = 0;
+		return frame;
+	}
+}
@@ -0,0 +1,212 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decodes encoded frames on a few worker threads and hands them to a consumer in the order they were submitted, so
+ * that the thread receiving them never waits for a large layout to be deserialized.
+ *
+ * Within a batch, the frames a later one makes useless are not decoded at all: everything before the last layout, and
+ * the keyframes and deltas before the last keyframe. Only the header of each frame is read to tell. Each layout is
+ * decoded by a task of its own; the other frames, cheap to decode, are grouped into one task per run between layouts.
+ */
+public class FrameDecodePipeline {
+
+	private static final Logger LOGGER = Logger.getLogger(FrameDecodePipeline.class.getName());
+
+	public static final int DEFAULT_WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private static final long POLL_MILLIS = 100;
+
+	private final FrameCodec codec;
+
+	private final Consumer<FactoryFrame> consumer;
+
+	private final ExecutorService workers;
+
+	private final BlockingQueue<Future<List<FactoryFrame>>> pending;
+
+	private final Thread deliverer;
+
+	private volatile boolean closed;
+
+	private final AtomicLong decodedFrames;
+
+	private final AtomicLong skippedFrames;
+
+	public FrameDecodePipeline(final FrameCodec codec, final Consumer<FactoryFrame> consumer, final String name) {
+		this(codec, consumer, name, DEFAULT_WORKERS, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param consumer Receives the decoded frames, in order, on a single thread.
+	 * @param workers Number of threads decoding frames.
+	 * @param capacity Maximum number of decoding tasks submitted and not yet delivered; submitting waits beyond.
+	 */
+	public FrameDecodePipeline(final FrameCodec codec, final Consumer<FactoryFrame> consumer, final String name,
+			final int workers, final int capacity) {
+		this.codec = codec;
+		this.consumer = consumer;
+		this.pending = new ArrayBlockingQueue<>(capacity);
+		this.decodedFrames = new AtomicLong();
+		this.skippedFrames = new AtomicLong();
+		final AtomicInteger workerCount = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+			final Thread thread = new Thread(runnable, "Frame decoder " + name + " " + workerCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.deliverer = new Thread(this::deliver, "Frame deliverer " + name);
+		this.deliverer.setDaemon(true);
+		this.deliverer.start();
+	}
+
+	/**
+	 * Submits the frames of a batch for decoding, skipping those superseded by a later frame of the batch. Waits while
+	 * the pipeline is full.
+	 */
+	public void submit(final List<byte[]> batch) throws InterruptedException {
+		final FactoryFrame.Type[] types = new FactoryFrame.Type[batch.size()];
+		int lastLayout = -1;
+		int lastKeyframe = -1;
+
+		for (int index = 0; index < batch.size(); index++) {
+			try {
+				types[index] = codec.peekType(batch.get(index));
+			} catch (final IOException e) {
+				LOGGER.log(Level.WARNING, "Skipping record: " + e.getMessage());
+				continue;
+			}
+
+			if (types[index] == FactoryFrame.Type.LAYOUT) {
+				lastLayout = index;
+			} else if (types[index] == FactoryFrame.Type.KEYFRAME) {
+				lastKeyframe = index;
+			}
+		}
+
+		List<byte[]> run = new ArrayList<>();
+
+		for (int index = 0; index < batch.size(); index++) {
+			final FactoryFrame.Type type = types[index];
+
+			if (type == null || index < lastLayout
+					|| index < lastKeyframe && type != FactoryFrame.Type.LAYOUT) {
+				skippedFrames.incrementAndGet();
+				continue;
+			}
+
+			if (type == FactoryFrame.Type.LAYOUT) {
+				run = submitRun(run);
+				submitRun(List.of(batch.get(index)));
+			} else {
+				run.add(batch.get(index));
+			}
+		}
+
+		submitRun(run);
+	}
+
+	/**
+	 * @return a new run, the given one being submitted unless empty.
+	 */
+	private List<byte[]> submitRun(final List<byte[]> run) throws InterruptedException {
+		if (run.isEmpty()) {
+			return run;
+		}
+
+		pending.put(workers.submit(() -> {
+			final List<FactoryFrame> frames = new ArrayList<>(run.size());
+
+			for (final byte[] data : run) {
+				try {
+					frames.add(codec.decode(data));
+				} catch (final IOException e) {
+					skippedFrames.incrementAndGet();
+					LOGGER.log(Level.WARNING, "Skipping record: " + e.getMessage());
+				}
+			}
+
+			return frames;
+		}));
+
+		return new ArrayList<>();
+	}
+
+	/**
+	 * @return the number of frames decoded and delivered.
+	 */
+	public long getDecodedFrames() {
+		return decodedFrames.get();
+	}
+
+	/**
+	 * @return the number of frames not decoded, superseded by a later one or not frames at all.
+	 */
+	public long getSkippedFrames() {
+		return skippedFrames.get();
+	}
+
+	/**
+	 * @return the number of decoding tasks submitted and not yet delivered.
+	 */
+	public int getPendingTasks() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops decoding; the frames not yet delivered are discarded.
+	 */
+	public void close() {
+		closed = true;
+		workers.shutdownNow();
+		deliverer.interrupt();
+
+		try {
+			deliverer.join(1000);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void deliver() {
+		try {
+			while (!closed) {
+				final Future<List<FactoryFrame>> decoding = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+				if (decoding == null) {
+					continue;
+				}
+
+				try {
+					for (final FactoryFrame frame : decoding.get()) {
+						decodedFrames.incrementAndGet();
+						consumer.accept(frame);
+					}
+				} catch (final ExecutionException e) {
+					LOGGER.log(Level.WARNING, "Failed to decode frames", e.getCause());
+				} catch (final RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Failed to deliver frame", e);
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
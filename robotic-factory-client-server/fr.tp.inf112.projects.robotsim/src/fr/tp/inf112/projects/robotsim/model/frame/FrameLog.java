@@ -0,0 +1,465 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only, memory-mapped record of the frames of a simulation run, for replaying it once the run and its topic
+ * are gone.
+ *
+ * <pre>
+ * log       := MAGIC VERSION record* 0
+ * record    := length timeMillis frame      length: int, timeMillis: long, frame: length bytes of {@link FrameCodec}
+ * index     := entry*                       in a file of its own, next to the log
+ * entry     := sequence offset type         sequence, offset: long, type: byte (0 keyframe, 2 layout)
+ * </pre>
+ *
+ * The log is mapped in regions of {@value #REGION_SIZE} bytes, so appending a frame is a memory copy. Layout frames
+ * and keyframes are indexed as they are appended: {@link #newReader(long)} finds where to start reading with a binary
+ * search, whatever the length of the run. Readers may read a log while it is written. Frames beyond 2 GiB are not
+ * logged.
+ */
+public class FrameLog implements FrameSink, AutoCloseable {
+
+	private static final Logger LOGGER = Logger.getLogger(FrameLog.class.getName());
+
+	public static final String LOG_EXTENSION = ".frames";
+
+	public static final String INDEX_EXTENSION = ".index";
+
+	private static final int MAGIC = 0x464C4F47;
+
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final int RECORD_HEADER_SIZE = 12;
+
+	private static final long REGION_SIZE = 16 * 1024 * 1024;
+
+	// Readers map the log as one buffer, indexed by int.
+	private static final long MAX_LENGTH = Integer.MAX_VALUE;
+
+	private static final byte KEYFRAME = 0;
+
+	private static final byte LAYOUT = 2;
+
+	private final Path file;
+
+	private final FrameCodec codec;
+
+	private final FileChannel channel;
+
+	private final DataOutputStream indexOutput;
+
+	private MappedByteBuffer region;
+
+	private long regionStart;
+
+	// Bytes of the log holding complete records, readers never read beyond.
+	private volatile long length;
+
+	// Index entries; the arrays are replaced before the count is raised when they grow.
+	private long[] indexSequences = new long[64];
+
+	private long[] indexOffsets = new long[64];
+
+	private byte[] indexTypes = new byte[64];
+
+	// Entry of the latest layout frame at or before each entry, -1 if none.
+	private int[] indexLayouts = new int[64];
+
+	private volatile int indexSize;
+
+	private volatile long frameCount;
+
+	private volatile long lastSequence = -1;
+
+	private boolean full;
+
+	private volatile boolean closed;
+
+	private FrameLog(final Path file, final FrameCodec codec, final FileChannel channel,
+			final DataOutputStream indexOutput) {
+		this.file = file;
+		this.codec = codec;
+		this.channel = channel;
+		this.indexOutput = indexOutput;
+	}
+
+	/**
+	 * Creates the log of a new run and its index, next to each other.
+	 *
+	 * @param file The log file, ending with {@value #LOG_EXTENSION}; must not exist.
+	 */
+	public static FrameLog create(final Path file, final FrameCodec codec) throws IOException {
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		final DataOutputStream indexOutput = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(indexFile(file), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+		final FrameLog log = new FrameLog(file, codec, channel, indexOutput);
+		log.mapRegion(0);
+		log.region.putInt(MAGIC);
+		log.region.putInt(VERSION);
+		log.length = HEADER_SIZE;
+		return log;
+	}
+
+	/**
+	 * Opens the log of a past run for reading. The index is read from its file, then completed by scanning the records
+	 * appended after its last entry, or the whole log if the index is missing.
+	 */
+	public static FrameLog open(final Path file, final FrameCodec codec) throws IOException {
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		final FrameLog log = new FrameLog(file, codec, channel, null);
+
+		try {
+			log.load();
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		return log;
+	}
+
+	/**
+	 * @return the index file of a log file.
+	 */
+	public static Path indexFile(final Path file) {
+		final String name = file.getFileName().toString();
+		final String base = name.endsWith(LOG_EXTENSION) ? name.substring(0, name.length() - LOG_EXTENSION.length())
+				: name;
+		return file.resolveSibling(base + INDEX_EXTENSION);
+	}
+
+	/**
+	 * Appends a frame; called by the single sender thread of the simulation. Frames published once the log is closed
+	 * are dropped: the mapped regions may no longer be backed by the file.
+	 */
+	@Override
+	public synchronized void publish(final FactoryFrame frame) {
+		if (indexOutput == null) {
+			throw new IllegalStateException("Log opened for reading: " + file);
+		}
+
+		if (closed) {
+			LOGGER.fine("Log closed, dropped " + frame + ": " + file);
+			return;
+		}
+
+		try {
+			final byte[] encoded = codec.encode(frame);
+			final long offset = length;
+
+			if (offset + RECORD_HEADER_SIZE + encoded.length + 4 > MAX_LENGTH) {
+				if (!full) {
+					full = true;
+					LOGGER.warning("Frame log full, no longer appending: " + file);
+				}
+				return;
+			}
+
+			final byte[] header = new byte[RECORD_HEADER_SIZE];
+			putInt(header, 0, encoded.length);
+			putLong(header, 4, System.currentTimeMillis());
+			write(offset, header);
+			write(offset + RECORD_HEADER_SIZE, encoded);
+
+			if (frame.isLayout() || frame.isKeyframe()) {
+				final byte type = frame.isLayout() ? LAYOUT : KEYFRAME;
+				indexOutput.writeLong(frame.getSequence());
+				indexOutput.writeLong(offset);
+				indexOutput.writeByte(type);
+				indexOutput.flush();
+				addIndexEntry(frame.getSequence(), offset, type);
+			}
+
+			frameCount++;
+			lastSequence = frame.getSequence();
+			length = offset + RECORD_HEADER_SIZE + encoded.length;
+		} catch (final IOException e) {
+			throw new IllegalStateException("Cannot append " + frame + " to " + file, e);
+		}
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * @return true while frames may still be appended to this log.
+	 */
+	public boolean isAppending() {
+		return indexOutput != null && !closed;
+	}
+
+	/**
+	 * @return the number of bytes of the log, header included.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return the number of layout frames and keyframes indexed.
+	 */
+	public int getIndexSize() {
+		return indexSize;
+	}
+
+	/**
+	 * @return the sequence of the first frame indexed, -1 if none.
+	 */
+	public long getFirstSequence() {
+		return indexSize == 0 ? -1 : indexSequences[0];
+	}
+
+	/**
+	 * @return the sequence of the last frame appended, -1 if none.
+	 */
+	public long getLastSequence() {
+		return lastSequence;
+	}
+
+	/**
+	 * @return a reader returning the latest layout frame at or before the given sequence, then the frames from the
+	 *         latest keyframe at or before it, or null if the log holds no layout frame before it.
+	 */
+	public Reader newReader(final long sequence) {
+		final int size = indexSize;
+		final long[] sequences = indexSequences;
+		final long[] offsets = indexOffsets;
+		final int[] layouts = indexLayouts;
+
+		// Last entry at or before the sequence, found in O(log n); entries are in sequence order.
+		int entry = Arrays.binarySearch(sequences, 0, size, sequence);
+		if (entry < 0) {
+			entry = -entry - 2;
+		}
+
+		final int layout = entry < 0 ? -1 : layouts[entry];
+
+		if (layout < 0) {
+			return null;
+		}
+
+		return new Reader(offsets[layout], entry == layout ? -1 : offsets[entry]);
+	}
+
+	/**
+	 * Stops appending, once the frame being appended, if any, is written; the mapped regions are released once
+	 * collected. The log is truncated to its records when the platform allows it while they are mapped.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		if (indexOutput != null) {
+			indexOutput.close();
+			region.force();
+
+			try {
+				channel.truncate(length + 4);
+			} catch (final IOException e) {
+				LOGGER.log(Level.FINE, "Log left at its mapped size: " + file, e);
+			}
+		}
+
+		channel.close();
+	}
+
+	private void load() throws IOException {
+		final long size = Math.min(channel.size(), MAX_LENGTH);
+		final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+		if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a frame log: " + file);
+		}
+
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported frame log version: " + file);
+		}
+
+		final Path index = indexFile(file);
+
+		if (Files.exists(index)) {
+			try (DataInputStream indexInput = new DataInputStream(
+					new BufferedInputStream(Files.newInputStream(index)))) {
+				while (true) {
+					final long sequence = indexInput.readLong();
+					final long offset = indexInput.readLong();
+					final byte type = indexInput.readByte();
+					addIndexEntry(sequence, offset, type);
+				}
+			} catch (final EOFException e) {
+				// End of the index, possibly in the middle of an entry written when the run stopped.
+			}
+		}
+
+		// Only the record lengths are read, except for the records after the last entry indexed.
+		final long lastIndexed = indexSize == 0 ? -1 : indexOffsets[indexSize - 1];
+		long offset = HEADER_SIZE;
+		long lastOffset = -1;
+		long count = 0;
+
+		while (offset + RECORD_HEADER_SIZE <= size) {
+			final int recordLength = buffer.getInt((int) offset);
+
+			if (recordLength <= 0 || offset + RECORD_HEADER_SIZE + recordLength > size) {
+				break;
+			}
+
+			if (offset > lastIndexed) {
+				final byte[] data = new byte[recordLength];
+				buffer.get((int) offset + RECORD_HEADER_SIZE, data);
+				final FactoryFrame.Type type = codec.peekType(data);
+
+				if (type != FactoryFrame.Type.DELTA) {
+					addIndexEntry(codec.peekSequence(data), offset,
+							type == FactoryFrame.Type.LAYOUT ? LAYOUT : KEYFRAME);
+				}
+			}
+
+			lastOffset = offset;
+			offset += RECORD_HEADER_SIZE + recordLength;
+			count++;
+		}
+
+		if (lastOffset >= 0) {
+			final byte[] data = new byte[buffer.getInt((int) lastOffset)];
+			buffer.get((int) lastOffset + RECORD_HEADER_SIZE, data);
+			lastSequence = codec.peekSequence(data);
+		}
+
+		frameCount = count;
+		length = offset;
+	}
+
+	private void addIndexEntry(final long sequence, final long offset, final byte type) {
+		final int size = indexSize;
+
+		if (size == indexSequences.length) {
+			indexSequences = Arrays.copyOf(indexSequences, size * 2);
+			indexOffsets = Arrays.copyOf(indexOffsets, size * 2);
+			indexTypes = Arrays.copyOf(indexTypes, size * 2);
+			indexLayouts = Arrays.copyOf(indexLayouts, size * 2);
+		}
+
+		indexSequences[size] = sequence;
+		indexOffsets[size] = offset;
+		indexTypes[size] = type;
+		indexLayouts[size] = type == LAYOUT ? size : size == 0 ? -1 : indexLayouts[size - 1];
+		indexSize = size + 1;
+	}
+
+	/**
+	 * Writes bytes at the given offset of the log, mapping the next regions as needed.
+	 */
+	private void write(final long offset, final byte[] data) throws IOException {
+		int written = 0;
+
+		while (written < data.length) {
+			final long position = offset + written;
+
+			if (position >= regionStart + REGION_SIZE) {
+				mapRegion(position);
+			}
+
+			final int count = (int) Math.min(data.length - written, regionStart + REGION_SIZE - position);
+			region.put((int) (position - regionStart), data, written, count);
+			written += count;
+		}
+	}
+
+	private void mapRegion(final long start) throws IOException {
+		if (region != null) {
+			region.force();
+		}
+
+		regionStart = start;
+		region = channel.map(FileChannel.MapMode.READ_WRITE, start, REGION_SIZE);
+	}
+
+	private static void putInt(final byte[] data, final int offset, final int value) {
+		for (int index = 0; index < 4; index++) {
+			data[offset + index] = (byte) (value >>> (24 - 8 * index));
+		}
+	}
+
+	private static void putLong(final byte[] data, final int offset, final long value) {
+		for (int index = 0; index < 8; index++) {
+			data[offset + index] = (byte) (value >>> (56 - 8 * index));
+		}
+	}
+
+	/**
+	 * Reads the frames of the log in order from a layout frame, possibly jumping from it to a later keyframe, while
+	 * the log may still be appended to.
+	 */
+	public class Reader {
+
+		private MappedByteBuffer mapping;
+
+		private long position;
+
+		private long jumpTo;
+
+		private long timeMillis;
+
+		Reader(final long layoutOffset, final long keyframeOffset) {
+			this.position = layoutOffset;
+			this.jumpTo = keyframeOffset;
+		}
+
+		/**
+		 * @return the next frame, or null if the frames appended so far were all read.
+		 */
+		public FactoryFrame next() throws IOException {
+			final long end = length;
+
+			if (position >= end) {
+				return null;
+			}
+
+			if (mapping == null || mapping.capacity() < end) {
+				mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+			}
+
+			final int recordLength = mapping.getInt((int) position);
+			timeMillis = mapping.getLong((int) position + 4);
+			final byte[] data = new byte[recordLength];
+			mapping.get((int) position + RECORD_HEADER_SIZE, data);
+			position = jumpTo >= 0 ? jumpTo : position + RECORD_HEADER_SIZE + recordLength;
+			jumpTo = -1;
+			return codec.decode(data);
+		}
+
+		/**
+		 * @return the time the last frame returned was appended at, in milliseconds since the epoch.
+		 */
+		public long getTimeMillis() {
+			return timeMillis;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process frame sink: the frames of a simulation are encoded once into a fixed ring, and every {@link Reader}
+ * decodes its own copy at its own pace, as consumers of a broker topic would, without a broker.
+ *
+ * The sink thread never waits for the readers. A reader falling more than the capacity of the ring behind loses the
+ * overwritten frames and resumes with the oldest frame still held; the frame sequence then has a gap, handled as for
+ * any lossy transport. A new reader starts with the latest layout frame.
+ */
+public class FrameRingBuffer implements FrameSink {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final FrameCodec codec;
+
+	private final byte[][] frames;
+
+	private final long[] publishNanos;
+
+	private final int mask;
+
+	// Number of frames published; slot (cursor & mask) is written before the cursor is advanced.
+	private volatile long cursor;
+
+	private volatile byte[] latestLayout;
+
+	private volatile long latestLayoutPosition = -1;
+
+	private final Object signal = new Object();
+
+	public FrameRingBuffer(final FrameCodec codec) {
+		this(codec, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity Number of frames held, rounded up to a power of two.
+	 */
+	public FrameRingBuffer(final FrameCodec codec, final int capacity) {
+		final int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		this.codec = codec;
+		this.frames = new byte[size][];
+		this.publishNanos = new long[size];
+		this.mask = size - 1;
+	}
+
+	@Override
+	public void publish(final FactoryFrame frame) {
+		final byte[] encoded;
+
+		try {
+			encoded = codec.encode(frame);
+		} catch (final IOException e) {
+			throw new IllegalStateException("Cannot encode " + frame, e);
+		}
+
+		final long position = cursor;
+		final int slot = (int) (position & mask);
+		frames[slot] = encoded;
+		publishNanos[slot] = System.nanoTime();
+
+		if (frame.isLayout()) {
+			latestLayout = encoded;
+			latestLayoutPosition = position;
+		}
+
+		cursor = position + 1;
+
+		synchronized (signal) {
+			signal.notifyAll();
+		}
+	}
+
+	public int getCapacity() {
+		return frames.length;
+	}
+
+	/**
+	 * @return the number of frames published since the buffer was created.
+	 */
+	public long getPublishedFrames() {
+		return cursor;
+	}
+
+	/**
+	 * @return a reader starting with the latest layout frame, or with the next frame if none was published yet.
+	 */
+	public Reader newReader() {
+		final long position = cursor;
+		final long layoutPosition = latestLayoutPosition;
+
+		if (layoutPosition < 0) {
+			return new Reader(position, null);
+		}
+
+		if (position - layoutPosition < frames.length) {
+			return new Reader(layoutPosition, null);
+		}
+
+		// The layout was overwritten: it is delivered first, then the frames following the current ones.
+		return new Reader(position, latestLayout);
+	}
+
+	/**
+	 * Position of one consumer in the ring. A reader is meant to be used by a single thread.
+	 */
+	public final class Reader {
+
+		private long position;
+
+		private byte[] pendingLayout;
+
+		private long lostFrames;
+
+		private long lastPublishNanos;
+
+		private Reader(final long position, final byte[] pendingLayout) {
+			this.position = position;
+			this.pendingLayout = pendingLayout;
+		}
+
+		/**
+		 * @return the next frame, decoded for this reader, or null if none was published within the timeout.
+		 * @throws IOException if the frame cannot be decoded.
+		 */
+		public FactoryFrame poll(final long timeout, final TimeUnit unit) throws InterruptedException, IOException {
+			if (pendingLayout != null) {
+				final byte[] layout = pendingLayout;
+				pendingLayout = null;
+				lastPublishNanos = System.nanoTime();
+				return codec.decode(layout);
+			}
+
+			final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+			while (true) {
+				long published = cursor;
+
+				if (position >= published) {
+					final long remaining = deadline - System.nanoTime();
+
+					if (remaining <= 0) {
+						return null;
+					}
+
+					synchronized (signal) {
+						if (position >= cursor) {
+							TimeUnit.NANOSECONDS.timedWait(signal, remaining);
+						}
+					}
+
+					continue;
+				}
+
+				// The slot of the oldest frame of a full ring is the next one written.
+				if (published - position >= frames.length) {
+					lostFrames += published - frames.length + 1 - position;
+					position = published - frames.length + 1;
+				}
+
+				final int slot = (int) (position & mask);
+				final byte[] encoded = frames[slot];
+				final long nanos = publishNanos[slot];
+
+				// The writer may have overwritten the slot while it was read.
+				published = cursor;
+
+				if (published - position >= frames.length) {
+					continue;
+				}
+
+				position++;
+				lastPublishNanos = nanos;
+				return codec.decode(encoded);
+			}
+		}
+
+		/**
+		 * @return the number of frames overwritten before this reader got to them.
+		 */
+		public long getLostFrames() {
+			return lostFrames;
+		}
+
+		/**
+		 * @return the {@link System#nanoTime()} at which the last frame returned was published.
+		 */
+		public long getLastPublishNanos() {
+			return lastPublishNanos;
+		}
+
+		/**
+		 * @return the number of published frames this reader has not read yet.
+		 */
+		public long getLag() {
+			return Math.min(cursor - position, frames.length);
+		}
+	}
+}
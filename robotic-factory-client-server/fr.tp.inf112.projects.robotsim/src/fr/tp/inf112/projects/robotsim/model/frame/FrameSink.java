@@ -0,0 +1,12 @@
+package fr.tp.inf112.projects.robotsim.model.frame;
+
+/**
+ * Destination of the frames of a simulation (message broker, in-process viewer...).
+ */
+public interface FrameSink {
+
+	/**
+	 * Called with the frames in sequence order, from a single thread.
+	 */
+	void publish(FactoryFrame frame);
+}
@@ -1,12 +1,21 @@
 package fr.tp.inf112.projects.robotsim.model.motion;
 
+import fr.tp.inf112.projects.robotsim.model.Battery;
 import fr.tp.inf112.projects.robotsim.model.Position;
 
 public class Motion {
-	
-	private final Position currentPosition;
 
-	private final Position targetPosition;
+	private Position currentPosition;
+
+	private Position targetPosition;
+
+	private Battery battery;
+
+	private float energyPerDistance;
+
+	public Motion() {
+		this(null, null);
+	}
 
 	public Motion(final Position currentPosition,
 				  final Position targetPosition) {
@@ -14,6 +23,32 @@ public class Motion {
 		this.targetPosition = targetPosition;
 	}
 
+	/**
+	 * Re-targets this motion so that a single instance can be reused for every step.
+	 *
+	 * @return this motion.
+	 */
+	public Motion set(final Position currentPosition,
+					  final Position targetPosition) {
+		this.currentPosition = currentPosition;
+		this.targetPosition = targetPosition;
+
+		return this;
+	}
+
+	/**
+	 * Makes every move drain the given battery in proportion to the distance travelled.
+	 *
+	 * @return this motion.
+	 */
+	public Motion setEnergySource(final Battery battery,
+								  final float energyPerDistance) {
+		this.battery = battery;
+		this.energyPerDistance = energyPerDistance;
+
+		return this;
+	}
+
 	public Position getCurrentPosition() {
 		return currentPosition;
 	}
@@ -21,15 +56,27 @@ public class Motion {
 	public Position getTargetPosition() {
 		return targetPosition;
 	}
-	
+
 	public int moveToTarget() {
 		final int xDisplacement = Math.abs(targetPosition.getxCoordinate() - currentPosition.getxCoordinate());
 		final int yDisplacement = Math.abs(targetPosition.getyCoordinate() - currentPosition.getyCoordinate());
-		final int displacement = (int) Math.round(Math.sqrt(xDisplacement * xDisplacement + yDisplacement * yDisplacement));
-		
+		final int displacement;
+
+		// Robots move along one axis per step, so the square root is only needed for diagonal moves.
+		if (xDisplacement == 0 || yDisplacement == 0) {
+			displacement = xDisplacement + yDisplacement;
+		}
+		else {
+			displacement = (int) Math.round(Math.sqrt(xDisplacement * xDisplacement + yDisplacement * yDisplacement));
+		}
+
 		currentPosition.setxCoordinate(targetPosition.getxCoordinate());
 		currentPosition.setyCoordinate(targetPosition.getyCoordinate());
-		
+
+		if (battery != null) {
+			battery.consume(displacement * energyPerDistance);
+		}
+
 		return displacement;
 	}
 }
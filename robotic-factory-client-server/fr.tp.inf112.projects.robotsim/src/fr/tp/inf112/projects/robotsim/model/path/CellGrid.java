@@ -0,0 +1,171 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+import java.util.Arrays;
+
+/**
+ * Compact 4-connected grid graph. Cells are indexed by {@code yIndex * xSize + xIndex} and edges are kept as one
+ * direction bit mask per cell, so space-time searches can expand neighbours without touching any object.
+ */
+public class CellGrid {
+
+	public static final int NO_CELL = -1;
+
+	public static final int DIRECTIONS = 4;
+
+	private static final int[] X_OFFSETS = { 0, 1, 0, -1 };
+
+	private static final int[] Y_OFFSETS = { -1, 0, 1, 0 };
+
+	private final int xSize;
+
+	private final int ySize;
+
+	private final int resolution;
+
+	private final boolean[] cells;
+
+	private final byte[] edges;
+
+	public CellGrid(final int xSize, final int ySize, final int resolution) {
+		this.xSize = xSize;
+		this.ySize = ySize;
+		this.resolution = resolution;
+		this.cells = new boolean[xSize * ySize];
+		this.edges = new byte[xSize * ySize];
+	}
+
+	public int getxSize() {
+		return xSize;
+	}
+
+	public int getySize() {
+		return ySize;
+	}
+
+	public int getResolution() {
+		return resolution;
+	}
+
+	public int size() {
+		return cells.length;
+	}
+
+	public int getCell(final int xIndex, final int yIndex) {
+		if (xIndex < 0 || yIndex < 0 || xIndex >= xSize || yIndex >= ySize) {
+			return NO_CELL;
+		}
+
+		final int cell = yIndex * xSize + xIndex;
+
+		return cells[cell] ? cell : NO_CELL;
+	}
+
+	public boolean contains(final int cell) {
+		return cell >= 0 && cell < cells.length && cells[cell];
+	}
+
+	public int getxIndex(final int cell) {
+		return cell % xSize;
+	}
+
+	public int getyIndex(final int cell) {
+		return cell / xSize;
+	}
+
+	public int getxCoordinate(final int cell) {
+		return getxIndex(cell) * resolution;
+	}
+
+	public int getyCoordinate(final int cell) {
+		return getyIndex(cell) * resolution;
+	}
+
+	boolean addCell(final int cell) {
+		if (cells[cell]) {
+			return false;
+		}
+
+		cells[cell] = true;
+
+		return true;
+	}
+
+	boolean addEdge(final int fromCell, final int toCell) {
+		final int direction = direction(fromCell, toCell);
+
+		if (direction < 0 || (edges[fromCell] & (1 << direction)) != 0) {
+			return false;
+		}
+
+		edges[fromCell] |= (byte) (1 << direction);
+
+		return true;
+	}
+
+	/**
+	 * @return the cell reached from the given cell in the given direction, or {@link #NO_CELL} when there is no edge.
+	 */
+	public int getNeighbour(final int cell, final int direction) {
+		if ((edges[cell] & (1 << direction)) == 0) {
+			return NO_CELL;
+		}
+
+		return (getyIndex(cell) + Y_OFFSETS[direction]) * xSize + getxIndex(cell) + X_OFFSETS[direction];
+	}
+
+	/**
+	 * Breadth-first distances, in moves, from every cell to the given goal ({@link Integer#MAX_VALUE} when the goal
+	 * cannot be reached). Used as an exact heuristic by the space-time searches.
+	 */
+	public int[] distancesTo(final int goalCell) {
+		final int[] distances = new int[cells.length];
+		Arrays.fill(distances, Integer.MAX_VALUE);
+
+		if (!contains(goalCell)) {
+			return distances;
+		}
+
+		final int[] queue = new int[cells.length];
+		int head = 0;
+		int tail = 0;
+		distances[goalCell] = 0;
+		queue[tail++] = goalCell;
+
+		while (head < tail) {
+			final int cell = queue[head++];
+			final int xIndex = getxIndex(cell);
+			final int yIndex = getyIndex(cell);
+
+			for (int direction = 0; direction < DIRECTIONS; direction++) {
+				final int predecessor = getCell(xIndex + X_OFFSETS[direction], yIndex + Y_OFFSETS[direction]);
+
+				// Edges are directed: walk back along the predecessor's edge pointing at this cell.
+				if (predecessor != NO_CELL && distances[predecessor] == Integer.MAX_VALUE
+						&& getNeighbour(predecessor, (direction + 2) % DIRECTIONS) == cell) {
+					distances[predecessor] = distances[cell] + 1;
+					queue[tail++] = predecessor;
+				}
+			}
+		}
+
+		return distances;
+	}
+
+	private int direction(final int fromCell, final int toCell) {
+		final int xOffset = getxIndex(toCell) - getxIndex(fromCell);
+		final int yOffset = getyIndex(toCell) - getyIndex(fromCell);
+
+		for (int direction = 0; direction < DIRECTIONS; direction++) {
+			if (X_OFFSETS[direction] == xOffset && Y_OFFSETS[direction] == yOffset) {
+				return direction;
+			}
+		}
+
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return "CellGrid [xSize=" + xSize + ", ySize=" + ySize + ", resolution=" + resolution + "]";
+	}
+}
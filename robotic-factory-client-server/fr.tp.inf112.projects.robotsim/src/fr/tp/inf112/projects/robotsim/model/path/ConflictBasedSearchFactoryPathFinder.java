@@ -0,0 +1,427 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Position;
+
+/**
+ * Conflict-Based Search: plans collision-free paths for a whole fleet at once, when all the targets are known up
+ * front. The high level searches a tree of constraints forbidding one robot a cell at a given tick, the low level is
+ * the space-time A* of {@link SpaceTimeFactoryPathFinder}.
+ *
+ * The batch is planned around the reservations of the robots outside of it, and its plan is reserved in the shared
+ * {@link ReservationTable}, so that the legs planned later, one robot at a time, route around it. When the time
+ * budget runs out, the robots of that batch follow plain Dijkstra paths to their targets, then plan their next legs
+ * as usual.
+ */
+public class ConflictBasedSearchFactoryPathFinder extends CooperativeAStarFactoryPathFinder {
+
+	private static final long serialVersionUID = -6279023981432766214L;
+
+	private static final Logger LOGGER = Logger.getLogger(ConflictBasedSearchFactoryPathFinder.class.getName());
+
+	private static final long DEFAULT_BUDGET_MILLIS = 500;
+
+	private transient Map<Component, PlannedPath> plannedPaths;
+
+	private transient FactoryPathFinder fallbackPathFinder;
+
+	// Robots following a Dijkstra path, their batch having found no plan.
+	private transient Set<Component> untimedAgents;
+
+	private int lastExpandedNodes;
+
+	private int lastSumOfCosts;
+
+	private long lastSolveMillis;
+
+	public ConflictBasedSearchFactoryPathFinder(final Factory factoryModel, final int resolution) {
+		super(factoryModel, resolution);
+	}
+
+	public ConflictBasedSearchFactoryPathFinder(final Factory factoryModel, final int resolution,
+			final LongSupplier tickClock) {
+		super(factoryModel, resolution, tickClock);
+	}
+
+	@Override
+	public boolean isTimed() {
+		return true;
+	}
+
+	@Override
+	public boolean isTimed(final Component component) {
+		final Map<Component, PlannedPath> plannedPaths = getPlannedPaths();
+
+		synchronized (plannedPaths) {
+			return !getUntimedAgents().contains(component);
+		}
+	}
+
+	public boolean planFleet(final Map<? extends Component, ? extends Component> assignments) {
+		return planFleet(assignments, DEFAULT_BUDGET_MILLIS);
+	}
+
+	/**
+	 * Plans the paths of all the given robots to their targets, the robots starting to move on the current tick.
+	 *
+	 * @param assignments The target of each robot.
+	 * @param budgetMillis The time after which the search gives up.
+	 * @return true if a collision-free plan was found, false if the robots go to these targets along Dijkstra paths.
+	 */
+	public boolean planFleet(final Map<? extends Component, ? extends Component> assignments,
+			final long budgetMillis) {
+		final long startTime = System.nanoTime();
+		final List<Component> agents = new ArrayList<>(assignments.keySet());
+		final int agentCount = agents.size();
+		final int[] starts = new int[agentCount];
+		final int[] goals = new int[agentCount];
+
+		for (int index = 0; index < agentCount; index++) {
+			starts[index] = getCell(agents.get(index).getPosition());
+			goals[index] = getCell(assignments.get(agents.get(index)).getPosition());
+		}
+
+		final ReservationTable reservations = getReservationTable();
+
+		synchronized (reservations) {
+			final long startTick = reservations.currentTick() - 1;
+
+			// The robots of the batch are planned anew: only the others constrain them.
+			for (final Component agent : agents) {
+				reservations.release(agent);
+			}
+
+			final int[][] paths = solve(agents, starts, goals, startTick, reservations,
+					startTime + budgetMillis * 1_000_000L);
+			lastSolveMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+			final Map<Component, PlannedPath> plannedPaths = getPlannedPaths();
+
+			synchronized (plannedPaths) {
+				plannedPaths.keySet().removeAll(agents);
+
+				if (paths == null) {
+					for (final Component agent : agents) {
+						plannedPaths.put(agent, new PlannedPath(assignments.get(agent), startTick, null));
+					}
+
+					LOGGER.warning("No fleet plan for " + agentCount + " robots within " + budgetMillis
+							+ " ms, falling back to per-robot Dijkstra.");
+
+					return false;
+				}
+
+				for (int index = 0; index < agentCount; index++) {
+					final Component agent = agents.get(index);
+					reservations.reserve(agent, startTick, starts[index], paths[index], GOAL_HOLD_TICKS);
+					plannedPaths.put(agent, new PlannedPath(assignments.get(agent), startTick, paths[index]));
+				}
+			}
+
+			LOGGER.info("Fleet plan for " + agentCount + " robots: sum of costs " + lastSumOfCosts + ", "
+					+ lastExpandedNodes + " constraint nodes, " + lastSolveMillis + " ms.");
+
+			return true;
+		}
+	}
+
+	@Override
+	public List<Position> findPath(final Component sourceComponent, final Component targetComponent) {
+		final PlannedPath plannedPath;
+		final boolean untimed;
+		final Map<Component, PlannedPath> plannedPaths = getPlannedPaths();
+
+		synchronized (plannedPaths) {
+			plannedPath = plannedPaths.remove(sourceComponent);
+			// Only the leg to the target of a batch without plan is untimed.
+			untimed = plannedPath != null && plannedPath.cells == null && plannedPath.target == targetComponent;
+
+			if (untimed) {
+				getUntimedAgents().add(sourceComponent);
+			} else {
+				getUntimedAgents().remove(sourceComponent);
+			}
+		}
+
+		if (untimed) {
+			return getFallbackPathFinder().findPath(sourceComponent, targetComponent);
+		}
+
+		// A robot starting late would break the schedule the other robots rely on: it plans again instead.
+		if (plannedPath != null && plannedPath.cells != null && plannedPath.target == targetComponent
+				&& plannedPath.startTick == getReservationTable().currentTick() - 1) {
+			return toPositions(plannedPath.cells);
+		}
+
+		return super.findPath(sourceComponent, targetComponent);
+	}
+
+	@Override
+	public void release(final Component component) {
+		final Map<Component, PlannedPath> plannedPaths = getPlannedPaths();
+
+		synchronized (plannedPaths) {
+			plannedPaths.remove(component);
+			getUntimedAgents().remove(component);
+		}
+
+		super.release(component);
+	}
+
+	public int getLastExpandedNodes() {
+		return lastExpandedNodes;
+	}
+
+	public int getLastSumOfCosts() {
+		return lastSumOfCosts;
+	}
+
+	public long getLastSolveMillis() {
+		return lastSolveMillis;
+	}
+
+	private synchronized Map<Component, PlannedPath> getPlannedPaths() {
+		if (plannedPaths == null) {
+			plannedPaths = new HashMap<>();
+		}
+
+		return plannedPaths;
+	}
+
+	/**
+	 * Guarded by the planned paths.
+	 */
+	private Set<Component> getUntimedAgents() {
+		if (untimedAgents == null) {
+			untimedAgents = new HashSet<>();
+		}
+
+		return untimedAgents;
+	}
+
+	private synchronized FactoryPathFinder getFallbackPathFinder() {
+		if (fallbackPathFinder == null) {
+			fallbackPathFinder = new CustomDijkstraFactoryPathFinder(getFactoryModel(), getResolution());
+			fallbackPathFinder.init();
+		}
+
+		return fallbackPathFinder;
+	}
+
+	/**
+	 * @param reservations The constraints of the robots outside of the batch, which every path of the batch meets.
+	 */
+	private int[][] solve(final List<Component> agents, final int[] starts, final int[] goals, final long startTick,
+			final SpaceTimeConstraints reservations, final long deadline) {
+		final int agentCount = agents.size();
+		final PriorityQueue<ConstraintNode> openNodes = new PriorityQueue<>();
+		final ConstraintNode root = new ConstraintNode(null, -1, CellGrid.NO_CELL, 0, new int[agentCount][]);
+		lastExpandedNodes = 0;
+		lastSumOfCosts = 0;
+
+		for (int index = 0; index < agentCount; index++) {
+			root.paths[index] = findSpaceTimePath(agents.get(index), starts[index], goals[index], startTick,
+					reservations, MAX_DELAY_TICKS);
+
+			if (root.paths[index] == null) {
+				return null;
+			}
+		}
+
+		root.updateCost();
+		openNodes.add(root);
+
+		while (!openNodes.isEmpty() && System.nanoTime() < deadline) {
+			final ConstraintNode node = openNodes.poll();
+			lastExpandedNodes++;
+
+			final int[] conflict = findConflict(node.paths, starts);
+
+			if (conflict == null) {
+				lastSumOfCosts = node.cost;
+
+				return node.paths;
+			}
+
+			for (int branch = 0; branch < 2; branch++) {
+				final int agentIndex = conflict[2 * branch];
+				final int offset = conflict[2 * branch + 1];
+
+				// Nothing can move a robot off its start cell at the start tick.
+				if (offset <= 0) {
+					continue;
+				}
+
+				final ConstraintNode child = new ConstraintNode(node, agentIndex, conflict[4], offset,
+						node.paths.clone());
+				child.paths[agentIndex] = findSpaceTimePath(agents.get(agentIndex), starts[agentIndex],
+						goals[agentIndex], startTick, child.constraintsFor(agentIndex, startTick, reservations),
+					MAX_DELAY_TICKS);
+
+				if (child.paths[agentIndex] != null) {
+					child.updateCost();
+					openNodes.add(child);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Finds the first tick at which two robots would be on the same cell, or one would enter the cell another is
+	 * leaving (the {@link ReservationTable} rule).
+	 *
+	 * @return {agent 1, tick offset for agent 1, agent 2, tick offset for agent 2, cell}, or null.
+	 */
+	private static int[] findConflict(final int[][] paths, final int[] starts) {
+		int maxOffset = 0;
+
+		for (final int[] path : paths) {
+			maxOffset = Math.max(maxOffset, path.length + GOAL_HOLD_TICKS);
+		}
+
+		for (int offset = 1; offset <= maxOffset; offset++) {
+			for (int index1 = 0; index1 < paths.length; index1++) {
+				final int cell1 = occupiedCell(paths[index1], starts[index1], offset);
+
+				if (cell1 == CellGrid.NO_CELL) {
+					continue;
+				}
+
+				for (int index2 = 0; index2 < paths.length; index2++) {
+					if (index1 == index2) {
+						continue;
+					}
+
+					if (index1 < index2 && cell1 == occupiedCell(paths[index2], starts[index2], offset)) {
+						return new int[] { index1, offset, index2, offset, cell1 };
+					}
+
+					if (cell1 == occupiedCell(paths[index2], starts[index2], offset - 1)) {
+						return new int[] { index1, offset, index2, offset - 1, cell1 };
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private static int occupiedCell(final int[] path, final int start, final int offset) {
+		if (offset == 0) {
+			return start;
+		}
+
+		if (offset <= path.length) {
+			return path[offset - 1];
+		}
+
+		if (offset <= path.length + GOAL_HOLD_TICKS) {
+			return path.length == 0 ? start : path[path.length - 1];
+		}
+
+		return CellGrid.NO_CELL;
+	}
+
+	private static long key(final int cell, final int offset) {
+		return ((long) offset << 32) | cell;
+	}
+
+	private static class PlannedPath {
+
+		private final Component target;
+
+		private final long startTick;
+
+		// Null when the batch found no plan.
+		private final int[] cells;
+
+		private PlannedPath(final Component target, final long startTick, final int[] cells) {
+			this.target = target;
+			this.startTick = startTick;
+			this.cells = cells;
+		}
+	}
+
+	/**
+	 * Node of the constraint tree: its own constraint plus those of its ancestors, and the paths satisfying them.
+	 */
+	private static class ConstraintNode implements Comparable<ConstraintNode> {
+
+		private final ConstraintNode parent;
+
+		private final int agentIndex;
+
+		private final int cell;
+
+		private final int offset;
+
+		private final int[][] paths;
+
+		private int cost;
+
+		private ConstraintNode(final ConstraintNode parent, final int agentIndex, final int cell, final int offset,
+				final int[][] paths) {
+			this.parent = parent;
+			this.agentIndex = agentIndex;
+			this.cell = cell;
+			this.offset = offset;
+			this.paths = paths;
+		}
+
+		private void updateCost() {
+			cost = 0;
+
+			for (final int[] path : paths) {
+				cost += path.length;
+			}
+		}
+
+		private SpaceTimeConstraints constraintsFor(final int constrainedAgent, final long startTick,
+				final SpaceTimeConstraints reservations) {
+			final Set<Long> forbidden = new HashSet<>();
+			final Map<Integer, Integer> lastForbiddenOffsets = new HashMap<>();
+
+			for (ConstraintNode node = this; node.parent != null; node = node.parent) {
+				if (node.agentIndex == constrainedAgent) {
+					forbidden.add(key(node.cell, node.offset));
+					lastForbiddenOffsets.merge(node.cell, node.offset, Math::max);
+				}
+			}
+
+			return new SpaceTimeConstraints() {
+
+				@Override
+				public boolean isAllowed(final Object agent, final int fromCell, final int toCell, final long tick) {
+					return !forbidden.contains(key(toCell, (int) (tick - startTick)))
+							&& reservations.isAllowed(agent, fromCell, toCell, tick);
+				}
+
+				@Override
+				public boolean canRest(final Object agent, final int cell, final long tick) {
+					final Integer lastForbiddenOffset = lastForbiddenOffsets.get(cell);
+
+					return (lastForbiddenOffset == null || lastForbiddenOffset < tick - startTick)
+							&& reservations.canRest(agent, cell, tick);
+				}
+			};
+		}
+
+		@Override
+		public int compareTo(final ConstraintNode other) {
+			return Integer.compare(cost, other.cost);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactorySnapshot;
+import fr.tp.inf112.projects.robotsim.model.Position;
+
+/**
+ * Cooperative A*: robots plan one after the other through a shared {@link ReservationTable}, so each new path avoids
+ * the cells the other robots will occupy, instead of discovering them by bumping into them.
+ */
+public class CooperativeAStarFactoryPathFinder extends SpaceTimeFactoryPathFinder {
+
+	private static final long serialVersionUID = 1580406124562237337L;
+
+	private static final Logger LOGGER = Logger.getLogger(CooperativeAStarFactoryPathFinder.class.getName());
+
+	private static final long TICK_MILLIS = 100;
+
+	protected static final int GOAL_HOLD_TICKS = 3;
+
+	protected static final int MAX_DELAY_TICKS = 30;
+
+	private transient ReservationTable reservationTable;
+
+	public CooperativeAStarFactoryPathFinder(final Factory factoryModel, final int resolution) {
+		this(factoryModel, resolution, ReservationTable.wallClock(TICK_MILLIS));
+	}
+
+	public CooperativeAStarFactoryPathFinder(final Factory factoryModel, final int resolution,
+			final LongSupplier tickClock) {
+		super(factoryModel, resolution);
+
+		reservationTable = new ReservationTable(tickClock);
+	}
+
+	public synchronized ReservationTable getReservationTable() {
+		if (reservationTable == null) {
+			reservationTable = new ReservationTable(ReservationTable.wallClock(TICK_MILLIS));
+		}
+
+		return reservationTable;
+	}
+
+	@Override
+	public List<Position> findPath(final Component sourceComponent, final Component targetComponent) {
+		final int startCell = getCell(sourceComponent.getPosition());
+		final int goalCell = getCell(targetComponent.getPosition());
+		final ReservationTable reservations = getReservationTable();
+
+		synchronized (reservations) {
+			// The robot moves during the current tick, so it is still on its start cell at the previous one.
+			final long startTick = reservations.currentTick() - 1;
+			reservations.release(sourceComponent);
+			int[] cells = findSpaceTimePath(sourceComponent, startCell, goalCell, startTick,
+					avoidingParkedComponents(sourceComponent, reservations), MAX_DELAY_TICKS);
+
+			if (cells == null) {
+				if (LOGGER.isLoggable(Level.FINE)) {
+					LOGGER.fine(sourceComponent.getName() + ": no conflict-free path to " + targetComponent.getName()
+							+ ", planning without reservations.");
+				}
+				cells = findSpaceTimePath(sourceComponent, startCell, goalCell, startTick, SpaceTimeConstraints.NONE,
+						MAX_DELAY_TICKS);
+			}
+
+			if (cells == null) {
+				return new ArrayList<>();
+			}
+
+			reservations.reserve(sourceComponent, startTick, startCell, cells, GOAL_HOLD_TICKS);
+
+			return toPositions(cells);
+		}
+	}
+
+	/**
+	 * Mobile components without any reservation (idle, charging, out of energy) stay where they are: their cells are
+	 * avoided for the whole plan. Read from a snapshot, since the robot threads change the components meanwhile;
+	 * components are told apart by name there.
+	 */
+	private SpaceTimeConstraints avoidingParkedComponents(final Component sourceComponent,
+			final ReservationTable reservations) {
+		final Set<String> movingNames = new HashSet<>();
+
+		for (final Object agent : reservations.getAgents()) {
+			if (agent instanceof Component) {
+				movingNames.add(((Component) agent).getName());
+			}
+		}
+
+		final FactorySnapshot snapshot = getFactoryModel().getSnapshot();
+		final Set<Integer> parkedCells = new HashSet<>();
+
+		for (int index = 0; index < snapshot.size(); index++) {
+			final String name = snapshot.getName(index);
+
+			if (snapshot.isMobile(index) && !movingNames.contains(name) && !name.equals(sourceComponent.getName())) {
+				parkedCells.add(getCell(new Position(snapshot.getxCoordinate(index), snapshot.getyCoordinate(index))));
+			}
+		}
+
+		if (parkedCells.isEmpty()) {
+			return reservations;
+		}
+
+		return (agent, fromCell, toCell, tick) -> !parkedCells.contains(toCell)
+				&& reservations.isAllowed(agent, fromCell, toCell, tick);
+	}
+
+	@Override
+	public void release(final Component component) {
+		getReservationTable().release(component);
+	}
+}
@@ -10,4 +10,25 @@ public interface FactoryPathFinder {
 	List<Position> findPath(Component sourceComponent,
 							Component targetComponent);
 	void init();
+
+	/**
+	 * Timed paths hold exactly one waypoint per tick: a waypoint equal to the previous one means waiting for a tick,
+	 * and a robot falling behind its schedule must ask for a new path.
+	 */
+	default boolean isTimed() {
+		return false;
+	}
+
+	/**
+	 * @return whether the path last found for the given component is timed; some finders plan some paths untimed.
+	 */
+	default boolean isTimed(final Component component) {
+		return isTimed();
+	}
+
+	/**
+	 * Forgets whatever was planned for the given component.
+	 */
+	default void release(final Component component) {
+	}
 }
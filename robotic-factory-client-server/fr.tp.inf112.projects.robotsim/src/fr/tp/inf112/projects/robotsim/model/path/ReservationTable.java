@@ -0,0 +1,123 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Space-time reservation table shared by cooperative path finders: each entry records which agent occupies a cell
+ * at a given tick, so that later plans route around earlier ones.
+ *
+ * A move is refused when the target cell is reserved by another agent at the arrival tick or at the tick before.
+ * The second rule forbids following another robot into the cell it is leaving, which covers head-on swaps and
+ * keeps plans valid whatever order the robot threads run in within a tick.
+ */
+public class ReservationTable implements SpaceTimeConstraints {
+
+	private final LongSupplier tickClock;
+
+	private final Map<Long, Object> reservations;
+
+	private final Map<Object, long[]> agentReservations;
+
+	public ReservationTable(final LongSupplier tickClock) {
+		this.tickClock = tickClock;
+		this.reservations = new HashMap<>();
+		this.agentReservations = new HashMap<>();
+	}
+
+	/**
+	 * Clock ticking once every {@code tickMillis}, matching the sleep period of the component threads.
+	 */
+	public static LongSupplier wallClock(final long tickMillis) {
+		final long origin = System.nanoTime();
+		final long tickNanos = tickMillis * 1_000_000L;
+
+		return () -> (System.nanoTime() - origin) / tickNanos;
+	}
+
+	private static long key(final int cell, final long tick) {
+		return (tick << 32) | cell;
+	}
+
+	public long currentTick() {
+		return tickClock.getAsLong();
+	}
+
+	@Override
+	public synchronized boolean isAllowed(final Object agent, final int fromCell, final int toCell, final long tick) {
+		final Object arrivalOwner = reservations.get(key(toCell, tick));
+
+		if (arrivalOwner != null && arrivalOwner != agent) {
+			return false;
+		}
+
+		final Object previousOwner = reservations.get(key(toCell, tick - 1));
+
+		return previousOwner == null || previousOwner == agent;
+	}
+
+	/**
+	 * Replaces the reservations of the given agent by a timed path.
+	 *
+	 * @param agent The agent owning the path.
+	 * @param startTick The tick at which the agent occupies the start cell.
+	 * @param startCell The start cell.
+	 * @param cells The cells occupied at {@code startTick + 1}, {@code startTick + 2}, ...
+	 * @param holdTicks The number of extra ticks during which the last cell stays reserved.
+	 */
+	public synchronized void reserve(final Object agent, final long startTick, final int startCell, final int[] cells,
+			final int holdTicks) {
+		release(agent);
+
+		final long[] keys = new long[1 + cells.length + holdTicks];
+		int count = 0;
+		keys[count++] = reserveCell(agent, startCell, startTick);
+
+		for (int index = 0; index < cells.length; index++) {
+			keys[count++] = reserveCell(agent, cells[index], startTick + index + 1);
+		}
+
+		final int lastCell = cells.length == 0 ? startCell : cells[cells.length - 1];
+
+		for (int hold = 1; hold <= holdTicks; hold++) {
+			keys[count++] = reserveCell(agent, lastCell, startTick + cells.length + hold);
+		}
+
+		agentReservations.put(agent, keys);
+	}
+
+	private long reserveCell(final Object agent, final int cell, final long tick) {
+		final long key = key(cell, tick);
+		reservations.putIfAbsent(key, agent);
+
+		return key;
+	}
+
+	public synchronized void release(final Object agent) {
+		final long[] keys = agentReservations.remove(agent);
+
+		if (keys != null) {
+			for (final long key : keys) {
+				reservations.remove(key, agent);
+			}
+		}
+	}
+
+	public synchronized boolean hasReservations(final Object agent) {
+		return agentReservations.containsKey(agent);
+	}
+
+	/**
+	 * @return the agents holding reservations, copied.
+	 */
+	public synchronized List<Object> getAgents() {
+		return new ArrayList<>(agentReservations.keySet());
+	}
+
+	public synchronized int size() {
+		return reservations.size();
+	}
+}
@@ -0,0 +1,32 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+/**
+ * Restricts the moves a space-time search may take on a {@link CellGrid}.
+ *
+ */
+public interface SpaceTimeConstraints {
+
+	/**
+	 * No restriction at all: searches degrade to plain shortest paths.
+	 */
+	SpaceTimeConstraints NONE = (agent, fromCell, toCell, tick) -> true;
+
+	/**
+	 * Tells whether the given agent may go from one cell, occupied at {@code tick - 1}, to another cell at
+	 * {@code tick}. Waiting is expressed with {@code fromCell == toCell}.
+	 *
+	 * @param agent The moving agent.
+	 * @param fromCell The cell occupied at {@code tick - 1}.
+	 * @param toCell The cell occupied at {@code tick}.
+	 * @param tick The arrival tick.
+	 * @return true if the move does not conflict with any other agent.
+	 */
+	boolean isAllowed(Object agent, int fromCell, int toCell, long tick);
+
+	/**
+	 * Tells whether the given agent may end its path on a cell at {@code tick} and stay there afterwards.
+	 */
+	default boolean canRest(final Object agent, final int cell, final long tick) {
+		return true;
+	}
+}
@@ -0,0 +1,252 @@
+package fr.tp.inf112.projects.robotsim.model.path;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Base class for path finders planning in space and time on the factory grid: one waypoint per tick, a repeated
+ * waypoint meaning that the robot waits for one tick.
+ */
+public abstract class SpaceTimeFactoryPathFinder extends AbstractFactoryPathFinder<CellGrid, Integer> {
+
+	private static final long serialVersionUID = -3311937284671651093L;
+
+	private static final int WAIT = CellGrid.DIRECTIONS;
+
+	public SpaceTimeFactoryPathFinder(final Factory factoryModel, final int resolution) {
+		super(factoryModel, resolution);
+	}
+
+	@Override
+	public boolean isTimed() {
+		return true;
+	}
+
+	/**
+	 * The grid the paths are planned on, built on first use.
+	 */
+	public CellGrid getCellGrid() {
+		buildGraph();
+
+		return getGraph();
+	}
+
+	/**
+	 * @return the grid cell best covering the given position, or {@link CellGrid#NO_CELL}.
+	 */
+	public int getCell(final Position position) {
+		final Integer cell = getVertex(position);
+
+		return cell == null ? CellGrid.NO_CELL : cell;
+	}
+
+	/**
+	 * Space-time A* from a start cell occupied at {@code startTick} to a goal cell.
+	 *
+	 * @param agent The planning agent, handed over to the constraints.
+	 * @param startCell The start cell.
+	 * @param goalCell The goal cell.
+	 * @param startTick The tick at which the agent occupies the start cell.
+	 * @param constraints The moves the search may not take.
+	 * @param maxDelayTicks The number of ticks the path may take on top of the shortest one (waits and detours).
+	 * @return the cells occupied at {@code startTick + 1}, {@code startTick + 2}, ... up to the goal, at least one, or
+	 *         null if the goal cannot be reached within the allowed delay.
+	 */
+	protected int[] findSpaceTimePath(final Object agent, final int startCell, final int goalCell,
+			final long startTick, final SpaceTimeConstraints constraints, final int maxDelayTicks) {
+		final CellGrid grid = getCellGrid();
+		final int[] distances = grid.distancesTo(goalCell);
+
+		if (startCell == CellGrid.NO_CELL || distances[startCell] == Integer.MAX_VALUE) {
+			return null;
+		}
+
+		// Already there: staying one tick is a path, which the robot follows to arrive rather than seeing no path.
+		if (startCell == goalCell) {
+			return new int[] { startCell };
+		}
+
+		final int maxTicks = distances[startCell] + maxDelayTicks;
+
+		final PriorityQueue<SearchNode> openNodes = new PriorityQueue<>();
+		final Set<Long> closedStates = new HashSet<>();
+		openNodes.add(new SearchNode(startCell, 0, distances[startCell], null));
+
+		while (!openNodes.isEmpty()) {
+			final SearchNode node = openNodes.poll();
+
+			if (node.cell == goalCell && constraints.canRest(agent, goalCell, startTick + node.ticks)) {
+				return node.toCells();
+			}
+
+			if (!closedStates.add(((long) node.ticks << 32) | node.cell) || node.ticks >= maxTicks) {
+				continue;
+			}
+
+			for (int move = 0; move <= WAIT; move++) {
+				final int nextCell = move == WAIT ? node.cell : grid.getNeighbour(node.cell, move);
+
+				if (nextCell == CellGrid.NO_CELL || distances[nextCell] == Integer.MAX_VALUE) {
+					continue;
+				}
+
+				final int nextTicks = node.ticks + 1;
+
+				if (constraints.isAllowed(agent, node.cell, nextCell, startTick + nextTicks)
+						&& !closedStates.contains(((long) nextTicks << 32) | nextCell)) {
+					openNodes.add(new SearchNode(nextCell, nextTicks, nextTicks + distances[nextCell], node));
+				}
+			}
+		}
+
+		return null;
+	}
+
+	protected List<Position> toPositions(final int[] cells) {
+		final CellGrid grid = getCellGrid();
+		final List<Position> positions = new ArrayList<>(cells.length);
+
+		for (final int cell : cells) {
+			positions.add(new Position(grid.getxCoordinate(cell), grid.getyCoordinate(cell)));
+		}
+
+		return positions;
+	}
+
+	/**
+	 * Constant-time lookup of the cell with the largest overlay of a resolution square at the given position: only
+	 * the (up to) four cells around the position can overlap it.
+	 */
+	@Override
+	protected Integer getVertex(final Position position) {
+		final CellGrid grid = getCellGrid();
+		final int resolution = getResolution();
+		final PositionedShape shape = new RectangularShape(position.getxCoordinate(), position.getyCoordinate(),
+				resolution, resolution);
+		final int xIndex = Math.floorDiv(position.getxCoordinate(), resolution);
+		final int yIndex = Math.floorDiv(position.getyCoordinate(), resolution);
+		float currentMaxOverlayedSurface = 0.0f;
+		Integer maxOverlayedSurfaceCell = null;
+
+		for (int yOffset = 0; yOffset <= 1; yOffset++) {
+			for (int xOffset = 0; xOffset <= 1; xOffset++) {
+				final int cell = grid.getCell(xIndex + xOffset, yIndex + yOffset);
+
+				if (cell != CellGrid.NO_CELL) {
+					final float overlayedSurface = overlayedSurface(cell, shape);
+
+					if (overlayedSurface > currentMaxOverlayedSurface) {
+						currentMaxOverlayedSurface = overlayedSurface;
+						maxOverlayedSurfaceCell = cell;
+					}
+				}
+			}
+		}
+
+		return maxOverlayedSurfaceCell;
+	}
+
+	@Override
+	protected CellGrid newGraph() {
+		final int resolution = getResolution();
+
+		return new CellGrid(getFactoryModel().getWidth() / resolution, getFactoryModel().getHeight() / resolution,
+				resolution);
+	}
+
+	@Override
+	protected boolean addVertex(final int xCoordinate, final int yCoordinate) {
+		final CellGrid grid = getGraph();
+		final int resolution = getResolution();
+
+		return grid.addCell(yCoordinate / resolution * grid.getxSize() + xCoordinate / resolution);
+	}
+
+	@Override
+	protected boolean addEdge(final Integer vertex1, final Integer vertex2) {
+		return getGraph().addEdge(vertex1, vertex2);
+	}
+
+	@Override
+	protected int getxCoordinate(final Integer vertex) {
+		return getGraph().getxCoordinate(vertex);
+	}
+
+	@Override
+	protected int getyCoordinate(final Integer vertex) {
+		return getGraph().getyCoordinate(vertex);
+	}
+
+	@Override
+	protected Integer getVertex(final int xIndex, final int yIndex) {
+		final int cell = getGraph().getCell(xIndex, yIndex);
+
+		return cell == CellGrid.NO_CELL ? null : cell;
+	}
+
+	@Override
+	protected float overlayedSurface(final Integer vertex, final PositionedShape shape) {
+		final CellGrid grid = getGraph();
+		final int resolution = getResolution();
+
+		return new RectangularShape(grid.getxCoordinate(vertex), grid.getyCoordinate(vertex), resolution, resolution)
+				.getOverlayedSurface(shape);
+	}
+
+	@Override
+	protected Iterator<Integer> getGraphVertexesIterator() {
+		final CellGrid grid = getGraph();
+
+		return IntStream.range(0, grid.size()).filter(grid::contains).boxed().iterator();
+	}
+
+	private static class SearchNode implements Comparable<SearchNode> {
+
+		private final int cell;
+
+		private final int ticks;
+
+		private final int estimatedTicks;
+
+		private final SearchNode parent;
+
+		private SearchNode(final int cell, final int ticks, final int estimatedTicks, final SearchNode parent) {
+			this.cell = cell;
+			this.ticks = ticks;
+			this.estimatedTicks = estimatedTicks;
+			this.parent = parent;
+		}
+
+		private int[] toCells() {
+			final int[] cells = new int[ticks];
+			SearchNode node = this;
+
+			while (node.parent != null) {
+				cells[node.ticks - 1] = node.cell;
+				node = node.parent;
+			}
+
+			return cells;
+		}
+
+		@Override
+		public int compareTo(final SearchNode other) {
+			if (estimatedTicks != other.estimatedTicks) {
+				return Integer.compare(estimatedTicks, other.estimatedTicks);
+			}
+
+			// Prefer deeper nodes on ties: they are closer to the goal.
+			return Integer.compare(other.ticks, ticks);
+		}
+	}
+}
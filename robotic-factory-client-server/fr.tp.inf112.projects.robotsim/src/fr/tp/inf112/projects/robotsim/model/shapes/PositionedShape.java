@@ -47,6 +47,14 @@ public abstract class PositionedShape implements Shape, Serializable {
 		return getOverlayedSurface(shape) > 0.0f;
 	}
 
+	/**
+	 * Allocation-free variant of {@link #overlays(PositionedShape)} for a rectangle given by its coordinates.
+	 */
+	public boolean overlays(final int xCoordinate, final int yCoordinate, final int width, final int height) {
+		return intersectionLength(getxCoordinate(), getWidth(), xCoordinate, width) > 0
+				&& intersectionLength(getyCoordinate(), getHeight(), yCoordinate, height) > 0;
+	}
+
 	@JsonIgnore
 	public float getOverlayedSurface(final PositionedShape shape) {
 		return xIntersectionLength(shape) * yIntersectionLength(shape);
@@ -0,0 +1,186 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+
+import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
+import fr.tp.inf112.projects.robotsim.model.Area;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Machine;
+import fr.tp.inf112.projects.robotsim.model.Position;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeAStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CustomDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Fixtures shared by the benchmarks of the model, the persistence server and the application.
+ */
+public final class BenchmarkFixtures {
+
+	private static final int RESOLUTION = 5;
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * @return a 160 by 120 factory of four rooms, each with a machine, and a conveyor between them, whose robots carry
+	 *         parts from a machine to the conveyor, planned with cooperative A*. The robots stand on a grid below the
+	 *         conveyor.
+	 */
+	public static Factory createConveyorFactory(final String name, final int robotCount) {
+		return createConveyorFactory(name, robotCount,
+				index -> new CircularShape(60 + index % 5 * 10, 85 + index / 5 * 10, 2));
+	}
+
+	/**
+	 * Same factory, with the robots placed by the given function of their index.
+	 */
+	public static Factory createConveyorFactory(final String name, final int robotCount,
+			final IntFunction<CircularShape> robotShape) {
+		final Factory factory = new Factory(160, 120, name);
+		final List<Component> machines = new ArrayList<>();
+
+		for (int index = 0; index < 4; index++) {
+			final int xCoordinate = index % 2 == 0 ? 10 : 110;
+			final int yCoordinate = index < 2 ? 10 : 70;
+			final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, 40, 40),
+					"Room " + index);
+			new Door(room, index % 2 == 0 ? Room.WALL.RIGHT : Room.WALL.LEFT, 15, 10, true, "Door " + index);
+			final Area area = new Area(room, new RectangularShape(xCoordinate + 10, yCoordinate + 10, 20, 20),
+					"Area " + index);
+			machines.add(new Machine(area, new RectangularShape(xCoordinate + 15, yCoordinate + 15, 10, 10),
+					"Machine " + index));
+		}
+
+		final Conveyor conveyor = new Conveyor(factory, new RectangularShape(75, 55, 10, 5), "Conveyor");
+		final CooperativeAStarFactoryPathFinder pathFinder = new CooperativeAStarFactoryPathFinder(factory,
+				RESOLUTION);
+		pathFinder.init();
+
+		for (int index = 0; index < robotCount; index++) {
+			final Robot robot = new Robot(factory, pathFinder, robotShape.apply(index), new Battery(10),
+					"Robot " + index);
+			robot.addTargetComponent(machines.get(index % machines.size()));
+			robot.addTargetComponent(conveyor);
+		}
+
+		return factory;
+	}
+
+	/**
+	 * @return a 200 by 200 factory of four rooms, each with a machine, and idle robots, planned with Dijkstra; the
+	 *         factory the persistence benchmarks save and read.
+	 */
+	public static Factory createRoomsFactory(final String name, final int robotCount) {
+		return createRoomsFactory(name, robotCount,
+				index -> new CircularShape(5 + index % 10 * 8, 85 + index / 10 * 8, 2));
+	}
+
+	/**
+	 * Same factory, with the robots placed by the given function of their index.
+	 */
+	public static Factory createRoomsFactory(final String name, final int robotCount,
+			final IntFunction<CircularShape> robotShape) {
+		final Factory factory = new Factory(200, 200, name);
+		final CustomDijkstraFactoryPathFinder pathFinder = new CustomDijkstraFactoryPathFinder(factory, RESOLUTION);
+
+		for (int index = 0; index < 4; index++) {
+			final int xCoordinate = index % 2 == 0 ? 10 : 110;
+			final int yCoordinate = index < 2 ? 10 : 110;
+			final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, 60, 60),
+					"Room " + index);
+			new Door(room, Room.WALL.BOTTOM, 5, 10, true, "Door " + index);
+			final Area area = new Area(room, new RectangularShape(xCoordinate + 10, yCoordinate + 10, 40, 40),
+					"Area " + index);
+			new Machine(area, new RectangularShape(xCoordinate + 20, yCoordinate + 20, 10, 10), "Machine " + index);
+		}
+
+		pathFinder.init();
+
+		for (int index = 0; index < robotCount; index++) {
+			new Robot(factory, pathFinder, robotShape.apply(index), new Battery(10), "Robot " + index);
+		}
+
+		return factory;
+	}
+
+	/**
+	 * @return the robots of the factory, in the order of its components.
+	 */
+	public static List<Robot> getRobots(final Factory factory) {
+		final List<Robot> robots = new ArrayList<>();
+
+		for (final Component component : factory.getComponents()) {
+			if (component instanceof Robot) {
+				robots.add((Robot) component);
+			}
+		}
+
+		return robots;
+	}
+
+	/**
+	 * @return a JSON mapper configured as the one of the simulation event stream.
+	 */
+	public static ObjectMapper newMapper() {
+		final BasicPolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+				.allowIfSubType(Component.class.getPackageName()).allowIfSubType(PositionedShape.class.getPackageName())
+				.allowIfSubType(BasicVertex.class.getPackageName()).allowIfSubType(ArrayList.class.getName())
+				.allowIfSubType(LinkedHashSet.class.getName()).build();
+		final ObjectMapper mapper = new ObjectMapper();
+		mapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
+		return mapper;
+	}
+
+	/**
+	 * @return the value of the given rank, between 0 and 1, of the sorted values, or 0 if there are none.
+	 */
+	public static long percentile(final long[] sorted, final double rank) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+
+		return sorted[(int) Math.min(sorted.length - 1, Math.ceil(rank * sorted.length) - 1)];
+	}
+
+	/**
+	 * Straight horizontal paths with one waypoint per resolution step, so that no path search weighs on the
+	 * measurement.
+	 */
+	public static class LanePathFinder implements FactoryPathFinder {
+
+		@Override
+		public List<Position> findPath(final Component sourceComponent, final Component targetComponent) {
+			final int yCoordinate = sourceComponent.getyCoordinate();
+			final int xStart = sourceComponent.getxCoordinate();
+			final int xEnd = targetComponent.getxCoordinate();
+			final int direction = Integer.signum(xEnd - xStart);
+			final List<Position> path = new ArrayList<>();
+
+			for (int xCoordinate = xStart + direction * RESOLUTION; direction != 0
+					&& (xEnd - xCoordinate) * direction >= 0; xCoordinate += direction * RESOLUTION) {
+				path.add(new Position(xCoordinate, yCoordinate));
+			}
+
+			return path;
+		}
+
+		@Override
+		public void init() {
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Area;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.ChargingStation;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Machine;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.dispatch.ChargingScheduler;
+import fr.tp.inf112.projects.robotsim.model.dispatch.Dispatcher;
+import fr.tp.inf112.projects.robotsim.model.dispatch.GridTravelCostEstimator;
+import fr.tp.inf112.projects.robotsim.model.dispatch.TransportJob;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeAStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Fleet throughput with charging downtime: a dispatched fleet moving pucks from machines to conveyors, with
+ * batteries drained by the distance travelled and a varying number of charging stations. The first run uses
+ * batteries large enough never to need charging, as the upper bound.
+ *
+ * Fleet time is split between working (moving or waiting for a job), travelling to or charging on a station,
+ * waiting for a free station and standing still with an empty battery.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.ChargingBenchmark [robots] [ticks]
+ */
+public class ChargingBenchmark {
+
+	private static final int RESOLUTION = 5;
+
+	private static final int JOB_COUNT = 4000;
+
+	private static final float BATTERY_CAPACITY = 10;
+
+	private static final double TICKS_PER_HOUR = 36000.0;
+
+	public static void main(String[] args) {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 6000;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		System.out.println("================================================================================");
+		System.out.println("                    CHARGING BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Ticks:                  " + ticks);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  stations  pucks/hour  charging %  queued %  depleted %  max queue");
+		run(robotCount, ticks, 0);
+
+		for (int stationCount = 1; stationCount <= 3; stationCount++) {
+			run(robotCount, ticks, stationCount);
+		}
+
+		System.out.println("================================================================================");
+	}
+
+	/**
+	 * @param stationCount The number of charging stations, 0 for batteries that never need charging.
+	 */
+	private static void run(final int robotCount, final int ticks, final int stationCount) {
+		final AtomicLong clock = new AtomicLong();
+		final Factory factory = new Factory(160, 120, "Charging Benchmark Factory");
+		final List<Component> pickups = new ArrayList<>();
+		final List<Component> dropoffs = new ArrayList<>();
+
+		for (int index = 0; index < 4; index++) {
+			final int xCoordinate = index % 2 == 0 ? 10 : 110;
+			final int yCoordinate = index < 2 ? 10 : 70;
+			final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, 40, 40),
+					"Room " + index);
+			new Door(room, index % 2 == 0 ? Room.WALL.RIGHT : Room.WALL.LEFT, 15, 10, true, "Door " + index);
+			final Area area = new Area(room, new RectangularShape(xCoordinate + 10, yCoordinate + 10, 20, 20),
+					"Area " + index);
+			pickups.add(new Machine(area, new RectangularShape(xCoordinate + 15, yCoordinate + 15, 10, 10),
+					"Machine " + index));
+		}
+
+		for (int index = 0; index < 4; index++) {
+			dropoffs.add(new Conveyor(factory, new RectangularShape(75, 15 + index * 25, 10, 5),
+					"Conveyor " + index));
+		}
+
+		final CooperativeAStarFactoryPathFinder pathFinder = new CooperativeAStarFactoryPathFinder(factory,
+				RESOLUTION, clock::get);
+		final GridTravelCostEstimator estimator = new GridTravelCostEstimator(pathFinder);
+		final Dispatcher dispatcher = new Dispatcher(estimator, clock::get);
+		final ChargingScheduler chargingScheduler = new ChargingScheduler(estimator);
+
+		for (int index = 0; index < stationCount; index++) {
+			chargingScheduler.addStation(new ChargingStation(factory,
+					new RectangularShape(60 + index * 15, 110, 5, 5), "Charging Station " + index));
+		}
+
+		pathFinder.init();
+
+		final List<Robot> robots = new ArrayList<>();
+
+		for (int index = 0; index < robotCount; index++) {
+			final Battery battery = new Battery(stationCount == 0 ? Float.MAX_VALUE : BATTERY_CAPACITY);
+			final Robot robot = new Robot(factory, pathFinder,
+					new CircularShape(60 + index % 5 * 10, 55 + index / 5 * 10, 2), battery, "Robot " + index);
+			// Spread the first charges over time.
+			battery.consume(BATTERY_CAPACITY * index / (2.0f * robotCount));
+			dispatcher.addRobot(robot);
+			chargingScheduler.addRobot(robot);
+			robots.add(robot);
+		}
+
+		final Random random = new Random(42);
+
+		for (int index = 0; index < JOB_COUNT; index++) {
+			dispatcher.submit(new TransportJob("Job " + index, pickups.get(random.nextInt(pickups.size())),
+					dropoffs.get(random.nextInt(dropoffs.size()))));
+		}
+
+		for (int tick = 0; tick < ticks; tick++) {
+			clock.set(tick);
+			for (int index = 0; index < robots.size(); index++) {
+				robots.get(index).behave();
+			}
+		}
+
+		long chargingTicks = 0;
+		long waitTicks = 0;
+		long depletedTicks = 0;
+
+		for (final Robot robot : robots) {
+			chargingTicks += robot.getChargingTicks();
+			waitTicks += robot.getChargingWaitTicks();
+			depletedTicks += robot.getDepletedTicks();
+		}
+
+		final double fleetTicks = (double) ticks * robotCount;
+
+		System.out.println(String.format("  %8s %11.0f %11.1f %9.1f %11.1f %10d",
+				stationCount == 0 ? "none" : Integer.toString(stationCount),
+				dispatcher.getCompletedJobs() * TICKS_PER_HOUR / ticks, 100.0 * chargingTicks / fleetTicks,
+				100.0 * waitTicks / fleetTicks, 100.0 * depletedTicks / fleetTicks,
+				chargingScheduler.getMaxQueueLength()));
+	}
+}
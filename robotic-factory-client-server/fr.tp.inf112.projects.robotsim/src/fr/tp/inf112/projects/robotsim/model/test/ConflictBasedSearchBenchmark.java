@@ -0,0 +1,176 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.path.CellGrid;
+import fr.tp.inf112.projects.robotsim.model.path.ConflictBasedSearchFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeAStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Solve times and plan quality of the Conflict-Based Search fleet planner on generated layouts: a square factory
+ * with randomly placed rooms (one open door each), robots and targets on random free cells.
+ *
+ * Layouts where a target cannot be reached at all are counted apart, as no planner can solve them. Plan quality is
+ * the sum of the path lengths, compared with the lower bound of independent shortest paths and with prioritized
+ * planning (cooperative A*, robots planning one after the other).
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.ConflictBasedSearchBenchmark [layouts] [budget ms]
+ */
+public class ConflictBasedSearchBenchmark {
+
+	private static final int RESOLUTION = 5;
+
+	private static final int[] FACTORY_SIZES = { 60, 100 };
+
+	private static final int[] ROBOT_COUNTS = { 4, 8, 12 };
+
+	public static void main(String[] args) {
+		final int layouts = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		final long budgetMillis = args.length > 1 ? Long.parseLong(args[1]) : 500;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		System.out.println("================================================================================");
+		System.out.println("                    CONFLICT-BASED SEARCH BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Layouts per scenario:   " + layouts);
+		System.out.println("  Time budget:            " + budgetMillis + " ms");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  size robots  solved  unreach  mean ms   max ms  nodes   SoC CBS  SoC prio  lower bound");
+
+		for (final int factorySize : FACTORY_SIZES) {
+			for (final int robotCount : ROBOT_COUNTS) {
+				runScenario(factorySize, robotCount, layouts, budgetMillis);
+			}
+		}
+
+		System.out.println("================================================================================");
+	}
+
+	private static void runScenario(final int factorySize, final int robotCount, final int layouts,
+			final long budgetMillis) {
+		int solved = 0;
+		int unreachable = 0;
+		long totalMillis = 0;
+		long maxMillis = 0;
+		long totalNodes = 0;
+		long cbsCost = 0;
+		long prioritizedCost = 0;
+		long lowerBound = 0;
+
+		for (int seed = 0; seed < layouts; seed++) {
+			final Factory factory = new Factory(factorySize, factorySize, "Layout " + seed);
+			final Map<Robot, Component> assignments = generateLayout(factory, robotCount, new Random(seed));
+
+			final ConflictBasedSearchFactoryPathFinder cbs = new ConflictBasedSearchFactoryPathFinder(factory,
+					RESOLUTION, () -> 0L);
+			cbs.init();
+			final boolean planned = cbs.planFleet(assignments, budgetMillis);
+
+			totalMillis += cbs.getLastSolveMillis();
+			maxMillis = Math.max(maxMillis, cbs.getLastSolveMillis());
+			totalNodes += cbs.getLastExpandedNodes();
+
+			if (!planned) {
+				// The search gives up before expanding any node when a robot has no path at all.
+				if (cbs.getLastExpandedNodes() == 0) {
+					unreachable++;
+				}
+				continue;
+			}
+
+			solved++;
+			cbsCost += cbs.getLastSumOfCosts();
+
+			final CooperativeAStarFactoryPathFinder prioritized = new CooperativeAStarFactoryPathFinder(factory,
+					RESOLUTION, () -> 0L);
+			final CellGrid grid = cbs.getCellGrid();
+
+			for (final Map.Entry<Robot, Component> assignment : assignments.entrySet()) {
+				prioritizedCost += prioritized.findPath(assignment.getKey(), assignment.getValue()).size();
+				lowerBound += grid.distancesTo(cbs.getCell(assignment.getValue().getPosition()))[cbs
+						.getCell(assignment.getKey().getPosition())];
+			}
+		}
+
+		System.out.println(String.format("  %4d %6d %4d/%-3d %7d %8.1f %8d %6d %9.1f %9.1f %12.1f", factorySize,
+				robotCount, solved, layouts - unreachable, unreachable, (double) totalMillis / layouts, maxMillis,
+				totalNodes / layouts, average(cbsCost, solved), average(prioritizedCost, solved),
+				average(lowerBound, solved)));
+	}
+
+	private static double average(final long total, final int count) {
+		return count == 0 ? Double.NaN : (double) total / count;
+	}
+
+	private static Map<Robot, Component> generateLayout(final Factory factory, final int robotCount,
+			final Random random) {
+		final int cells = factory.getWidth() / RESOLUTION;
+		final int rooms = cells / 6;
+
+		for (int index = 0; index < rooms; index++) {
+			final int width = (3 + random.nextInt(3)) * RESOLUTION;
+			final int height = (3 + random.nextInt(3)) * RESOLUTION;
+			final int xCoordinate = (1 + random.nextInt(cells - 2)) * RESOLUTION;
+			final int yCoordinate = (1 + random.nextInt(cells - 2)) * RESOLUTION;
+
+			if (xCoordinate + width + RESOLUTION >= factory.getWidth()
+					|| yCoordinate + height + RESOLUTION >= factory.getHeight()
+					|| factory.hasObstacleAt(new RectangularShape(xCoordinate - RESOLUTION, yCoordinate - RESOLUTION,
+							width + 3 * RESOLUTION, height + 3 * RESOLUTION))) {
+				continue;
+			}
+
+			final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, width, height),
+					"Room " + index);
+			final Room.WALL wall = Room.WALL.values()[random.nextInt(Room.WALL.values().length)];
+			new Door(room, wall, RESOLUTION, RESOLUTION, true, "Door " + index);
+		}
+
+		final Set<Integer> usedCells = new HashSet<>();
+		final Map<Robot, Component> assignments = new LinkedHashMap<>();
+
+		for (int index = 0; index < robotCount; index++) {
+			final int start = randomFreeCell(factory, cells, usedCells, random);
+			final int goal = randomFreeCell(factory, cells, usedCells, random);
+			final Robot robot = new Robot(factory, null,
+					new CircularShape(start % cells * RESOLUTION, start / cells * RESOLUTION, 2), new Battery(10),
+					"Robot " + index);
+			final Conveyor target = new Conveyor(factory, new RectangularShape(goal % cells * RESOLUTION,
+					goal / cells * RESOLUTION, RESOLUTION, RESOLUTION), "Target " + index);
+			assignments.put(robot, target);
+		}
+
+		return assignments;
+	}
+
+	private static int randomFreeCell(final Factory factory, final int cells, final Set<Integer> usedCells,
+			final Random random) {
+		while (true) {
+			final int cell = random.nextInt(cells * cells);
+			final RectangularShape shape = new RectangularShape(cell % cells * RESOLUTION, cell / cells * RESOLUTION,
+					RESOLUTION, RESOLUTION);
+
+			if (!usedCells.contains(cell) && !factory.hasObstacleAt(shape)) {
+				usedCells.add(cell);
+
+				return cell;
+			}
+		}
+	}
+}
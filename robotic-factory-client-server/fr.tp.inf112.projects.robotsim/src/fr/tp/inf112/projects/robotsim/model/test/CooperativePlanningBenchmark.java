@@ -0,0 +1,129 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.path.AbstractFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeAStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CustomDijkstraFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Compares reactive planning (Dijkstra, replanning after being blocked) with cooperative A* on a layout where robots
+ * cross a room in both directions through narrow doors.
+ *
+ * The simulation is stepped deterministically: every robot behaves once per tick, in a fixed order, and the
+ * reservation table reads the same tick counter. Each robot makes the same number of round trips; the makespan is the
+ * tick at which the last robot reaches its last target.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.CooperativePlanningBenchmark [robots per side] [round trips]
+ * [max ticks]
+ */
+public class CooperativePlanningBenchmark {
+
+	private static final int RESOLUTION = 5;
+
+	public static void main(String[] args) {
+		final int robotsPerSide = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		final int roundTrips = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		final int maxTicks = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+
+		// The reactive robots log every blocked move.
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		System.out.println("================================================================================");
+		System.out.println("                    COOPERATIVE PLANNING BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + 2 * robotsPerSide);
+		System.out.println("  Round trips:            " + roundTrips + " per robot");
+		run("Reactive Dijkstra", robotsPerSide, roundTrips, maxTicks, false);
+		run("Cooperative A*", robotsPerSide, roundTrips, maxTicks, true);
+		System.out.println("================================================================================");
+	}
+
+	private static void run(final String label, final int robotsPerSide, final int roundTrips, final int maxTicks,
+			final boolean cooperative) {
+		final AtomicLong clock = new AtomicLong();
+		final Factory factory = new Factory(120, 60, label);
+		final Room room = new Room(factory, new RectangularShape(40, 10, 40, 40), "Crossing");
+		new Door(room, Room.WALL.LEFT, 15, 10, true, "West Door");
+		new Door(room, Room.WALL.RIGHT, 15, 10, true, "East Door");
+
+		final AbstractFactoryPathFinder<?, ?> pathFinder = cooperative
+				? new CooperativeAStarFactoryPathFinder(factory, RESOLUTION, clock::get)
+				: new CustomDijkstraFactoryPathFinder(factory, RESOLUTION);
+		pathFinder.init();
+
+		final List<Robot> robots = new ArrayList<>();
+
+		for (int index = 0; index < robotsPerSide; index++) {
+			final int yCoordinate = 10 + index * 15;
+			final Conveyor west = new Conveyor(factory, new RectangularShape(5, yCoordinate, 5, 5), "West " + index);
+			final Conveyor east = new Conveyor(factory, new RectangularShape(110, yCoordinate, 5, 5), "East " + index);
+
+			final Robot eastbound = new Robot(factory, pathFinder, new CircularShape(15, yCoordinate, 2),
+					new Battery(10), "Eastbound " + index);
+			eastbound.addTargetComponent(east);
+			eastbound.addTargetComponent(west);
+			robots.add(eastbound);
+
+			final Robot westbound = new Robot(factory, pathFinder, new CircularShape(100, yCoordinate, 2),
+					new Battery(10), "Westbound " + index);
+			westbound.addTargetComponent(west);
+			westbound.addTargetComponent(east);
+			robots.add(westbound);
+		}
+
+		// Robots done keep shuttling, so that they do not park in the way of the others.
+		final int targets = 2 * roundTrips;
+		final long startTime = System.nanoTime();
+		int makespan = -1;
+
+		for (int tick = 0; tick < maxTicks && makespan < 0; tick++) {
+			clock.set(tick);
+			boolean done = true;
+
+			for (int index = 0; index < robots.size(); index++) {
+				final Robot robot = robots.get(index);
+				robot.behave();
+				done &= robot.getReachedTargets() >= targets;
+			}
+
+			if (done) {
+				makespan = tick + 1;
+			}
+		}
+
+		final long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+		long attempts = 0;
+		long blocked = 0;
+		long reached = 0;
+
+		for (final Robot robot : robots) {
+			attempts += robot.getMoveAttempts();
+			blocked += robot.getBlockedMoves();
+			reached += robot.getReachedTargets();
+		}
+
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  " + label);
+		System.out.println("    Move attempts:        " + attempts);
+		System.out.println("    Blocked moves:        " + blocked);
+		System.out.println(String.format("    Block rate:           %.2f%%",
+				attempts == 0 ? 0.0 : 100.0 * blocked / attempts));
+		System.out.println("    Targets reached:      " + reached);
+		System.out.println("    Makespan:             "
+				+ (makespan < 0 ? "not reached in " + maxTicks + " ticks" : makespan + " ticks"));
+		System.out.println("    Wall time:            " + elapsedMillis + " ms");
+	}
+}
@@ -0,0 +1,160 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Area;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Machine;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.dispatch.Dispatcher;
+import fr.tp.inf112.projects.robotsim.model.dispatch.GridTravelCostEstimator;
+import fr.tp.inf112.projects.robotsim.model.dispatch.TransportJob;
+import fr.tp.inf112.projects.robotsim.model.dispatch.TravelCostEstimator;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeAStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Throughput, in pucks moved per simulated hour, of the same transport jobs carried out either from fixed
+ * round-robin target lists or through the {@link Dispatcher}, with straight-line or path-cost estimates.
+ *
+ * One tick stands for the 100 ms sleep of the robot threads; the simulation is stepped deterministically.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.DispatchBenchmark [robots] [ticks]
+ */
+public class DispatchBenchmark {
+
+	private static final int RESOLUTION = 5;
+
+	private static final int JOB_COUNT = 2000;
+
+	private static final double TICKS_PER_HOUR = 36000.0;
+
+	public static void main(String[] args) {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		System.out.println("================================================================================");
+		System.out.println("                    DISPATCH BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Ticks:                  " + ticks);
+		run("Round-robin target lists", robotCount, ticks, null);
+		run("Dispatcher, straight-line costs", robotCount, ticks, false);
+		run("Dispatcher, path costs", robotCount, ticks, true);
+		System.out.println("================================================================================");
+	}
+
+	/**
+	 * @param pathCosts null for fixed target lists, otherwise whether the dispatcher uses path-cost estimates.
+	 */
+	private static void run(final String label, final int robotCount, final int ticks, final Boolean pathCosts) {
+		final AtomicLong clock = new AtomicLong();
+		final Factory factory = new Factory(160, 120, label);
+		final List<Component> pickups = new ArrayList<>();
+		final List<Component> dropoffs = new ArrayList<>();
+
+		// Four production rooms in the corners, opening on the central aisle where the conveyors are.
+		for (int index = 0; index < 4; index++) {
+			final int xCoordinate = index % 2 == 0 ? 10 : 110;
+			final int yCoordinate = index < 2 ? 10 : 70;
+			final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, 40, 40),
+					"Room " + index);
+			new Door(room, index % 2 == 0 ? Room.WALL.RIGHT : Room.WALL.LEFT, 15, 10, true, "Door " + index);
+			final Area area = new Area(room, new RectangularShape(xCoordinate + 10, yCoordinate + 10, 20, 20),
+					"Area " + index);
+			pickups.add(new Machine(area, new RectangularShape(xCoordinate + 15, yCoordinate + 15, 10, 10),
+					"Machine " + index));
+		}
+
+		for (int index = 0; index < 4; index++) {
+			dropoffs.add(new Conveyor(factory, new RectangularShape(75, 15 + index * 25, 10, 5),
+					"Conveyor " + index));
+		}
+
+		final CooperativeAStarFactoryPathFinder pathFinder = new CooperativeAStarFactoryPathFinder(factory,
+				RESOLUTION, clock::get);
+		pathFinder.init();
+
+		final List<Robot> robots = new ArrayList<>();
+
+		for (int index = 0; index < robotCount; index++) {
+			robots.add(new Robot(factory, pathFinder, new CircularShape(60 + index % 5 * 10, 55 + index / 5 * 10, 2), new Battery(10),
+					"Robot " + index));
+		}
+
+		final Random random = new Random(42);
+		final List<TransportJob> jobs = new ArrayList<>();
+
+		for (int index = 0; index < JOB_COUNT; index++) {
+			jobs.add(new TransportJob("Job " + index, pickups.get(random.nextInt(pickups.size())),
+					dropoffs.get(random.nextInt(dropoffs.size()))));
+		}
+
+		Dispatcher dispatcher = null;
+
+		if (pathCosts == null) {
+			for (int index = 0; index < jobs.size(); index++) {
+				final Robot robot = robots.get(index % robotCount);
+				robot.addTargetComponent(jobs.get(index).getPickup());
+				robot.addTargetComponent(jobs.get(index).getDropoff());
+			}
+		} else {
+			final TravelCostEstimator estimator = pathCosts ? new GridTravelCostEstimator(pathFinder)
+					: TravelCostEstimator.MANHATTAN;
+			dispatcher = new Dispatcher(estimator, clock::get);
+
+			for (final Robot robot : robots) {
+				dispatcher.addRobot(robot);
+			}
+
+			for (final TransportJob job : jobs) {
+				dispatcher.submit(job);
+			}
+		}
+
+		for (int tick = 0; tick < ticks; tick++) {
+			clock.set(tick);
+			for (int index = 0; index < robots.size(); index++) {
+				robots.get(index).behave();
+			}
+		}
+
+		long delivered = 0;
+		long blocked = 0;
+
+		for (final Robot robot : robots) {
+			blocked += robot.getBlockedMoves();
+			if (dispatcher == null) {
+				delivered += robot.getReachedTargets() / 2;
+			}
+		}
+
+		if (dispatcher != null) {
+			delivered = dispatcher.getCompletedJobs();
+		}
+
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  " + label);
+		System.out.println("    Pucks delivered:      " + delivered);
+		System.out.println(String.format("    Pucks / hour:         %.0f", delivered * TICKS_PER_HOUR / ticks));
+		System.out.println("    Blocked moves:        " + blocked);
+
+		if (dispatcher != null) {
+			System.out.println("    Reassignments:        " + dispatcher.getReassignments());
+			System.out.println(String.format("    Mean service ticks:   %.1f", dispatcher.getMeanServiceTime()));
+		}
+	}
+}
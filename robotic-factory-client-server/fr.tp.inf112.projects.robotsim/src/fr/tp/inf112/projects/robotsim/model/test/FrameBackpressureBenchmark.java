@@ -0,0 +1,172 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.BackpressurePolicy;
+import fr.tp.inf112.projects.robotsim.model.frame.CoalescingFrameNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameSink;
+
+/**
+ * Robot step time and frames delivered with each {@link BackpressurePolicy}, when the sink takes several frame
+ * intervals to accept a frame, as a saturated broker would.
+ *
+ * The sink encodes and decodes every frame, and applies it to a replica of the factory with the rules of the
+ * simulation event consumer: deltas following a gap are skipped until the next keyframe. The replica is compared to
+ * the simulated factory once the notifier is closed.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.FrameBackpressureBenchmark [robots] [seconds] [sinkDelayMillis]
+ */
+public class FrameBackpressureBenchmark {
+
+	private static final long TICK_MILLIS = 20;
+
+	private static final int QUEUE_CAPACITY = 4;
+
+	public static void main(String[] args) throws InterruptedException {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		final long sinkDelayMillis = args.length > 2 ? Long.parseLong(args[2]) : 3 * TICK_MILLIS;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		System.out.println("================================================================================");
+		System.out.println("                    FRAME BACKPRESSURE BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Duration:               " + seconds + " s");
+		System.out.println("  Tick:                   " + TICK_MILLIS + " ms");
+		System.out.println("  Sink delay:             " + sinkDelayMillis + " ms / frame");
+		System.out.println("  Queue capacity:         " + QUEUE_CAPACITY);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  policy            us / step  published  dropped  conflated  applied  skipped  consistent");
+
+		for (final BackpressurePolicy policy : BackpressurePolicy.values()) {
+			run(policy, robotCount, seconds, sinkDelayMillis);
+		}
+
+		System.out.println("================================================================================");
+	}
+
+	private static void run(final BackpressurePolicy policy, final int robotCount, final int seconds,
+			final long sinkDelayMillis) throws InterruptedException {
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Backpressure Benchmark Factory", robotCount);
+		final ReplicaSink sink = new ReplicaSink(sinkDelayMillis);
+		final CoalescingFrameNotifier notifier = new CoalescingFrameNotifier(factory, sink, TICK_MILLIS,
+				QUEUE_CAPACITY, policy);
+		factory.setNotifier(notifier);
+
+		final List<Robot> robots = BenchmarkFixtures.getRobots(factory);
+
+		final AtomicLong steps = new AtomicLong();
+		final AtomicLong stepNanos = new AtomicLong();
+		final long endTime = System.currentTimeMillis() + seconds * 1000L;
+		final List<Thread> threads = new ArrayList<>();
+
+		for (final Robot robot : robots) {
+			final Thread thread = new Thread(() -> {
+				try {
+					while (System.currentTimeMillis() < endTime) {
+						final long startTime = System.nanoTime();
+						robot.behave();
+						stepNanos.addAndGet(System.nanoTime() - startTime);
+						steps.incrementAndGet();
+						Thread.sleep(TICK_MILLIS);
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		// Leave time for the sink to take the queued frames, then send the last changes.
+		Thread.sleep(sinkDelayMillis * (QUEUE_CAPACITY + 2));
+		notifier.close();
+
+		System.out.println(String.format("  %-16s %10.1f %10d %8d %10d %8d %8d  %s", policy,
+				stepNanos.get() / 1000.0 / steps.get(), notifier.getPublishedFrames(), notifier.getDroppedFrames(),
+				notifier.getConflatedFrames(), sink.applied, sink.skipped, sink.matches(factory)));
+	}
+
+	/**
+	 * Slow sink keeping a replica of the factory up to date as a viewer would.
+	 */
+	private static class ReplicaSink implements FrameSink {
+
+		private final long delayMillis;
+
+		private final FrameCodec codec;
+
+		private Factory replica;
+
+		private long lastSequence = -1;
+
+		private long applied;
+
+		private long skipped;
+
+		ReplicaSink(final long delayMillis) {
+			this.delayMillis = delayMillis;
+			this.codec = new FrameCodec(BenchmarkFixtures.newMapper());
+		}
+
+		@Override
+		public void publish(final FactoryFrame published) {
+			try {
+				Thread.sleep(delayMillis);
+				final FactoryFrame frame = codec.decode(codec.encode(published));
+
+				if (frame.isLayout()) {
+					replica = frame.getFactory();
+				} else if (replica == null
+						|| !frame.isKeyframe() && (lastSequence < 0 || frame.getSequence() != lastSequence + 1)) {
+					lastSequence = -1;
+					skipped++;
+					return;
+				}
+
+				replica.applyStates(frame.getStates());
+				lastSequence = frame.getSequence();
+				applied++;
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		boolean matches(final Factory factory) {
+			if (replica == null || replica.getComponents().size() != factory.getComponents().size()) {
+				return false;
+			}
+
+			for (int index = 0; index < factory.getComponents().size(); index++) {
+				final Component original = factory.getComponents().get(index);
+				final Component copy = replica.getComponents().get(index);
+
+				if (original.getxCoordinate() != copy.getxCoordinate()
+						|| original.getyCoordinate() != copy.getyCoordinate()
+						|| original.getStateFlags() != copy.getStateFlags()) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
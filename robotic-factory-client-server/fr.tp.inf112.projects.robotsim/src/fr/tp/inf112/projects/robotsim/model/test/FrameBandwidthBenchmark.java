@@ -0,0 +1,171 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.canvas.controller.Observer;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrameBuilder;
+
+/**
+ * Bytes published per robot step, with the JSON mapper of the simulation event stream, when every notification
+ * carries the whole factory and when it carries a {@link FactoryFrame}.
+ *
+ * The frames are decoded into a replica of the factory as a viewer would, and the replica is checked against the
+ * simulated factory at the end.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.FrameBandwidthBenchmark [robots] [ticks]
+ */
+public class FrameBandwidthBenchmark {
+
+	public static void main(String[] args) throws JsonProcessingException {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final ObjectMapper mapper = BenchmarkFixtures.newMapper();
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Frame Benchmark Factory", robotCount);
+		final List<Robot> robots = BenchmarkFixtures.getRobots(factory);
+
+		final MeasuringNotifier notifier = new MeasuringNotifier(factory, mapper);
+		factory.setNotifier(notifier);
+
+		for (int tick = 0; tick < ticks; tick++) {
+			for (int index = 0; index < robots.size(); index++) {
+				robots.get(index).behave();
+			}
+		}
+
+		final Factory replica = notifier.replay();
+		boolean consistent = replica.getComponents().size() == factory.getComponents().size();
+
+		for (int index = 0; consistent && index < factory.getComponents().size(); index++) {
+			final Component original = factory.getComponents().get(index);
+			final Component copy = replica.getComponents().get(index);
+			consistent = original.getxCoordinate() == copy.getxCoordinate()
+					&& original.getyCoordinate() == copy.getyCoordinate()
+					&& original.getStateFlags() == copy.getStateFlags();
+		}
+
+		System.out.println("================================================================================");
+		System.out.println("                    FRAME BANDWIDTH BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Ticks:                  " + ticks);
+		System.out.println("  Components:             " + factory.getComponents().size());
+		System.out.println("  Notifications:          " + notifier.notifications);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println(String.format("  Full factory:           %,d bytes (%,.0f / notification)", notifier.factoryBytes,
+				(double) notifier.factoryBytes / notifier.notifications));
+		System.out.println(String.format("  Frames:                 %,d bytes (%,.0f / notification)", notifier.frameBytes,
+				(double) notifier.frameBytes / notifier.notifications));
+		System.out.println("    Layout frames:        " + notifier.layouts);
+		System.out.println("    Keyframes:            " + notifier.keyframes);
+		System.out.println("    Deltas:               " + notifier.deltas);
+		System.out.println(String.format("  Reduction:              %.1fx", (double) notifier.factoryBytes / notifier.frameBytes));
+		System.out.println("  Replica consistent:     " + consistent);
+		System.out.println("================================================================================");
+	}
+
+	/**
+	 * Same mapper configuration as the simulation service and its consumers.
+	 */
+
+	/**
+	 * Serializes every notification both ways, and keeps the frames for the replay.
+	 */
+	private static class MeasuringNotifier implements FactoryModelChangedNotifier {
+
+		private final Factory factory;
+
+		private final ObjectMapper mapper;
+
+		private final FactoryFrameBuilder frameBuilder;
+
+		private final List<String> frames;
+
+		private long notifications;
+
+		private long factoryBytes;
+
+		private long frameBytes;
+
+		private int layouts;
+
+		private int keyframes;
+
+		private int deltas;
+
+		MeasuringNotifier(final Factory factory, final ObjectMapper mapper) {
+			this.factory = factory;
+			this.mapper = mapper;
+			this.frameBuilder = new FactoryFrameBuilder(factory);
+			this.frames = new ArrayList<>();
+		}
+
+		@Override
+		public void notifyObservers() {
+			try {
+				notifications++;
+				factoryBytes += mapper.writeValueAsBytes(factory).length;
+
+				final FactoryFrame frame = frameBuilder.nextFrame();
+
+				if (frame != null) {
+					final String json = mapper.writeValueAsString(frame);
+					frameBytes += json.getBytes("UTF-8").length;
+					frames.add(json);
+
+					if (frame.isLayout()) {
+						layouts++;
+					} else if (frame.isKeyframe()) {
+						keyframes++;
+					} else {
+						deltas++;
+					}
+				}
+			} catch (final Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Decodes the frames in order into a replica, as the simulation event consumer does.
+		 */
+		Factory replay() throws JsonProcessingException {
+			Factory replica = null;
+
+			for (final String json : frames) {
+				final FactoryFrame frame = mapper.readValue(json, FactoryFrame.class);
+
+				if (frame.isLayout()) {
+					replica = frame.getFactory();
+				}
+
+				replica.applyStates(frame.getStates());
+			}
+
+			return replica;
+		}
+
+		@Override
+		public boolean addObserver(final Observer observer) {
+			return false;
+		}
+
+		@Override
+		public boolean removeObserver(final Observer observer) {
+			return false;
+		}
+	}
+}
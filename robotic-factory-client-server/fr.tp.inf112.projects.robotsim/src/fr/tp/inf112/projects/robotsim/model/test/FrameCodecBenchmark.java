@@ -0,0 +1,146 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.ComponentState;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrameBuilder;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+
+/**
+ * Size and encode / decode time of the frames of a simulation run, in the JSON of the former event stream and in
+ * the binary format of {@link FrameCodec}. Each frame type is reported apart, layout frames carrying the factory as
+ * JSON in both formats.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.FrameCodecBenchmark [robots] [ticks] [rounds]
+ */
+public class FrameCodecBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final ObjectMapper mapper = BenchmarkFixtures.newMapper();
+		final FrameCodec codec = new FrameCodec(mapper);
+		final List<FactoryFrame> layouts = new ArrayList<>();
+		final List<FactoryFrame> keyframes = new ArrayList<>();
+		final List<FactoryFrame> deltas = new ArrayList<>();
+		recordFrames(robotCount, ticks, layouts, keyframes, deltas);
+
+		System.out.println("================================================================================");
+		System.out.println("                    FRAME CODEC BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Layout frames:          " + layouts.size());
+		System.out.println("  Keyframes:              " + keyframes.size());
+		System.out.println("  Deltas:                 " + deltas.size());
+		System.out.println("  Rounds:                 " + rounds);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  frames     format   bytes / frame   encode us / frame   decode us / frame");
+
+		// Warm-up of both formats.
+		measure(mapper, codec, deltas, false, rounds);
+		measure(mapper, codec, deltas, true, rounds);
+
+		report("deltas", mapper, codec, deltas, rounds);
+		report("keyframes", mapper, codec, keyframes, rounds);
+		report("layouts", mapper, codec, layouts, rounds);
+		System.out.println("================================================================================");
+	}
+
+	private static void report(final String label, final ObjectMapper mapper, final FrameCodec codec,
+			final List<FactoryFrame> frames, final int rounds) throws IOException {
+		for (final boolean binary : new boolean[] { false, true }) {
+			final double[] result = measure(mapper, codec, frames, binary, rounds);
+			System.out.println(String.format("  %-10s %-7s %14.1f %19.2f %19.2f", label, binary ? "binary" : "json",
+					result[0], result[1], result[2]));
+		}
+	}
+
+	/**
+	 * @return the mean size, encode time and decode time of the frames.
+	 */
+	private static double[] measure(final ObjectMapper mapper, final FrameCodec codec,
+			final List<FactoryFrame> frames, final boolean binary, final int rounds) throws IOException {
+		final byte[][] encoded = new byte[frames.size()][];
+		long bytes = 0;
+		long encodeNanos = 0;
+		long decodeNanos = 0;
+
+		for (int round = 0; round < rounds; round++) {
+			long startTime = System.nanoTime();
+
+			for (int index = 0; index < frames.size(); index++) {
+				encoded[index] = binary ? codec.encode(frames.get(index)) : mapper.writeValueAsBytes(frames.get(index));
+			}
+
+			encodeNanos += System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+
+			for (int index = 0; index < frames.size(); index++) {
+				final FactoryFrame decoded = binary ? codec.decode(encoded[index])
+						: mapper.readValue(encoded[index], FactoryFrame.class);
+				check(frames.get(index), decoded);
+			}
+
+			decodeNanos += System.nanoTime() - startTime;
+		}
+
+		for (final byte[] frame : encoded) {
+			bytes += frame.length;
+		}
+
+		final double frameCount = frames.size();
+		final double encodings = frameCount * rounds;
+		return new double[] { bytes / frameCount, encodeNanos / 1000.0 / encodings, decodeNanos / 1000.0 / encodings };
+	}
+
+	private static void check(final FactoryFrame original, final FactoryFrame decoded) {
+		boolean same = original.getSequence() == decoded.getSequence() && original.getType() == decoded.getType()
+				&& original.getStates().size() == decoded.getStates().size();
+
+		for (int index = 0; same && index < original.getStates().size(); index++) {
+			final ComponentState expected = original.getStates().get(index);
+			final ComponentState actual = decoded.getStates().get(index);
+			same = expected.getIndex() == actual.getIndex() && expected.getxCoordinate() == actual.getxCoordinate()
+					&& expected.getyCoordinate() == actual.getyCoordinate()
+					&& expected.getStateFlags() == actual.getStateFlags();
+		}
+
+		if (!same) {
+			throw new IllegalStateException(original + " decoded as " + decoded);
+		}
+	}
+
+	private static void recordFrames(final int robotCount, final int ticks, final List<FactoryFrame> layouts,
+			final List<FactoryFrame> keyframes, final List<FactoryFrame> deltas) {
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Codec Benchmark Factory", robotCount);
+		final List<Robot> robots = BenchmarkFixtures.getRobots(factory);
+
+		// One frame per tick, as published by the coalescing notifier.
+		final FactoryFrameBuilder frameBuilder = new FactoryFrameBuilder(factory);
+
+		for (int tick = 0; tick < ticks; tick++) {
+			for (final Robot robot : robots) {
+				robot.behave();
+			}
+
+			final FactoryFrame frame = frameBuilder.nextFrame();
+
+			if (frame != null) {
+				(frame.isLayout() ? layouts : frame.isKeyframe() ? keyframes : deltas).add(frame);
+			}
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.CoalescingFrameNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameConflater;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameRingBuffer;
+
+/**
+ * Age of the state shown by a fast and a slow viewer of the same simulation, when each viewer is sent every frame in
+ * turn and when the frames published during a send are folded into the next one by a {@link FrameConflater}, as the
+ * stream endpoint of the simulation service does.
+ *
+ * A viewer is a thread reading the {@link FrameRingBuffer} of the simulation and taking a fixed time per frame sent;
+ * the age of a frame is the time since the newest frame it carries was published, when the viewer gets it.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.FrameConflationBenchmark [robots] [seconds] [slowSendMillis]
+ */
+public class FrameConflationBenchmark {
+
+	private static final long TICK_MILLIS = 20;
+
+	private static final long FAST_SEND_MILLIS = 1;
+
+	public static void main(String[] args) throws InterruptedException {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		final long slowSendMillis = args.length > 2 ? Long.parseLong(args[2]) : 5 * TICK_MILLIS;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		System.out.println("================================================================================");
+		System.out.println("                    FRAME CONFLATION BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Duration:               " + seconds + " s");
+		System.out.println("  Tick:                   " + TICK_MILLIS + " ms");
+		System.out.println("  Send time:              " + FAST_SEND_MILLIS + " ms (fast), " + slowSendMillis
+				+ " ms (slow)");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  viewer       conflation   frames sent   age p50 ms   age p99 ms   lost   consistent");
+
+		run(false, robotCount, seconds, slowSendMillis);
+		run(true, robotCount, seconds, slowSendMillis);
+		System.out.println("================================================================================");
+	}
+
+	private static void run(final boolean conflation, final int robotCount, final int seconds,
+			final long slowSendMillis) throws InterruptedException {
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Conflation Benchmark Factory", robotCount);
+		final FrameRingBuffer ring = new FrameRingBuffer(new FrameCodec(BenchmarkFixtures.newMapper()));
+		final CoalescingFrameNotifier notifier = new CoalescingFrameNotifier(factory, ring, TICK_MILLIS);
+		factory.setNotifier(notifier);
+
+		final Viewer fast = new Viewer(ring.newReader(), conflation, FAST_SEND_MILLIS);
+		final Viewer slow = new Viewer(ring.newReader(), conflation, slowSendMillis);
+		fast.start();
+		slow.start();
+		notifier.requestLayout();
+
+		final List<Thread> threads = new ArrayList<>();
+		final long endTime = System.currentTimeMillis() + seconds * 1000L;
+
+		for (final Component component : factory.getComponents()) {
+			if (component instanceof Robot) {
+				final Robot robot = (Robot) component;
+				final Thread thread = new Thread(() -> {
+					try {
+						while (System.currentTimeMillis() < endTime) {
+							robot.behave();
+							Thread.sleep(TICK_MILLIS);
+						}
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		notifier.close();
+
+		for (final Viewer viewer : new Viewer[] { fast, slow }) {
+			viewer.running = false;
+			viewer.join();
+			final long[] ages = Arrays.copyOf(viewer.ages, viewer.ageCount);
+			Arrays.sort(ages);
+			System.out.println(String.format("  %-12s %-10s %13d %12.1f %12.1f %6d   %s",
+					viewer == fast ? "fast" : "slow", conflation ? "yes" : "no", viewer.ageCount,
+					BenchmarkFixtures.percentile(ages, 0.50) / 1e6, BenchmarkFixtures.percentile(ages, 0.99) / 1e6,
+					viewer.reader.getLostFrames(),
+					viewer.matches(factory)));
+		}
+	}
+
+	/**
+	 * Sends the frames of the ring to a replica, taking a fixed time per frame sent.
+	 */
+	private static class Viewer extends Thread {
+
+		private final FrameRingBuffer.Reader reader;
+
+		private final boolean conflation;
+
+		private final long sendMillis;
+
+		private final FrameConflater conflater;
+
+		private volatile boolean running = true;
+
+		private Factory replica;
+
+		private long sequence;
+
+		private long[] ages = new long[1024];
+
+		private int ageCount;
+
+		Viewer(final FrameRingBuffer.Reader reader, final boolean conflation, final long sendMillis) {
+			this.reader = reader;
+			this.conflation = conflation;
+			this.sendMillis = sendMillis;
+			this.conflater = new FrameConflater();
+		}
+
+		@Override
+		public void run() {
+			try {
+				// Frames left in the ring once stopped are still sent.
+				while (running || reader.getLag() > 0) {
+					final FactoryFrame frame = reader.poll(TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+					if (frame != null) {
+						conflater.offer(frame);
+					}
+
+					if (conflation && reader.getLag() > 0 || !conflater.hasPending()) {
+						continue;
+					}
+
+					final long publishNanos = reader.getLastPublishNanos();
+					final FactoryFrame sent = conflater.drain(++sequence);
+					Thread.sleep(sendMillis);
+
+					if (ageCount == ages.length) {
+						ages = Arrays.copyOf(ages, ageCount * 2);
+					}
+
+					ages[ageCount++] = System.nanoTime() - publishNanos;
+
+					if (sent.isLayout()) {
+						replica = sent.getFactory();
+					}
+
+					if (replica != null) {
+						replica.applyStates(sent.getStates());
+					}
+				}
+			} catch (final Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		boolean matches(final Factory factory) {
+			if (replica == null || replica.getComponents().size() != factory.getComponents().size()) {
+				return false;
+			}
+
+			for (int index = 0; index < factory.getComponents().size(); index++) {
+				final Component original = factory.getComponents().get(index);
+				final Component copy = replica.getComponents().get(index);
+
+				if (original.getxCoordinate() != copy.getxCoordinate()
+						|| original.getyCoordinate() != copy.getyCoordinate()
+						|| original.getStateFlags() != copy.getStateFlags()) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrameBuilder;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameDecodePipeline;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+
+/**
+ * Time for a viewer to catch up with a backlog of encoded frames, as when it reads a simulation topic from its start:
+ * decoded one by one on the polling thread in polls of 10 records, and through a {@link FrameDecodePipeline} in polls
+ * of 100 records.
+ *
+ * The backlog holds a layout frame every so often, as sent each time a viewer connects, and a keyframe every
+ * {@value #KEYFRAME_INTERVAL} frames. Reported are the time to apply the whole backlog, the time the polling thread
+ * was busy, the frames decoded and whether the replica ends up like the factory.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.FrameDecodePipelineBenchmark [robots] [frames] [layoutInterval]
+ */
+public class FrameDecodePipelineBenchmark {
+
+	private static final int KEYFRAME_INTERVAL = 20;
+
+	public static void main(String[] args) throws Exception {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+		final int frameCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		final int layoutInterval = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final FrameCodec codec = new FrameCodec(BenchmarkFixtures.newMapper());
+		// Robots on a grid in the corridor between the rooms.
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Decode Benchmark Factory", robotCount,
+				index -> new CircularShape(55 + index % 10 * 5, 5 + index / 10 * 5, 2));
+		final List<byte[]> backlog = recordFrames(factory, codec, frameCount, layoutInterval);
+		long bytes = 0;
+
+		for (final byte[] data : backlog) {
+			bytes += data.length;
+		}
+
+		System.out.println("================================================================================");
+		System.out.println("                    FRAME DECODE PIPELINE BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Frames:                 " + backlog.size() + " (" + bytes / 1024 + " KiB)");
+		System.out.println("  Layout interval:        " + layoutInterval + " frames");
+		System.out.println("  Keyframe interval:      " + KEYFRAME_INTERVAL + " frames");
+		System.out.println("  Decoder threads:        " + FrameDecodePipeline.DEFAULT_WORKERS);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  decoding         catch-up ms   polling thread ms   decoded   consistent");
+
+		// Warm-up of both paths.
+		for (int round = 0; round < 5; round++) {
+			runSequential(codec, backlog, factory, false);
+			runPipeline(codec, backlog, factory, false);
+		}
+
+		runSequential(codec, backlog, factory, true);
+		runPipeline(codec, backlog, factory, true);
+		System.out.println("================================================================================");
+	}
+
+	private static void runSequential(final FrameCodec codec, final List<byte[]> backlog, final Factory factory,
+			final boolean report) throws IOException {
+		final Replica replica = new Replica();
+		final long start = System.nanoTime();
+
+		for (int offset = 0; offset < backlog.size(); offset += 10) {
+			for (final byte[] data : backlog.subList(offset, Math.min(backlog.size(), offset + 10))) {
+				replica.accept(codec.decode(data));
+			}
+		}
+
+		final double elapsedMillis = (System.nanoTime() - start) / 1e6;
+
+		if (report) {
+			System.out.println(String.format("  %-16s %11.1f %19.1f %9d   %s", "poll thread", elapsedMillis,
+					elapsedMillis, replica.frames, replica.matches(factory)));
+		}
+	}
+
+	private static void runPipeline(final FrameCodec codec, final List<byte[]> backlog, final Factory factory,
+			final boolean report) throws IOException, InterruptedException {
+		final Replica replica = new Replica();
+		final FrameDecodePipeline pipeline = new FrameDecodePipeline(codec, replica, "benchmark");
+		final long start = System.nanoTime();
+		long pollingNanos = 0;
+
+		for (int offset = 0; offset < backlog.size(); offset += 100) {
+			final long submitStart = System.nanoTime();
+			pipeline.submit(backlog.subList(offset, Math.min(backlog.size(), offset + 100)));
+			pollingNanos += System.nanoTime() - submitStart;
+		}
+
+		final long lastSequence = codec.decode(backlog.get(backlog.size() - 1)).getSequence();
+
+		while (replica.lastSequence != lastSequence) {
+			Thread.onSpinWait();
+		}
+
+		final double elapsedMillis = (System.nanoTime() - start) / 1e6;
+		pipeline.close();
+
+		if (report) {
+			System.out.println(String.format("  %-16s %11.1f %19.1f %9d   %s", "pipeline", elapsedMillis,
+					pollingNanos / 1e6, replica.frames, replica.matches(factory)));
+		}
+	}
+
+	/**
+	 * @return the frames of a simulation run, encoded, with a layout frame every given number of frames.
+	 */
+	private static List<byte[]> recordFrames(final Factory factory, final FrameCodec codec, final int frameCount,
+			final int layoutInterval) throws IOException {
+		final List<Robot> robots = BenchmarkFixtures.getRobots(factory);
+
+		final FactoryFrameBuilder frameBuilder = new FactoryFrameBuilder(factory, KEYFRAME_INTERVAL);
+		final List<byte[]> frames = new ArrayList<>();
+		frames.add(codec.encode(frameBuilder.nextLayoutFrame()));
+
+		while (frames.size() < frameCount) {
+			for (final Robot robot : robots) {
+				robot.behave();
+			}
+
+			final FactoryFrame frame = frames.size() % layoutInterval == 0 ? frameBuilder.nextLayoutFrame()
+					: frameBuilder.nextFrame();
+
+			if (frame != null) {
+				frames.add(codec.encode(frame));
+			}
+		}
+
+		return frames;
+	}
+
+	/**
+	 * Applies frames with the rules of the simulation event consumer.
+	 */
+	private static class Replica implements Consumer<FactoryFrame> {
+
+		private Factory factory;
+
+		private volatile long lastSequence = -1;
+
+		private int frames;
+
+		@Override
+		public void accept(final FactoryFrame frame) {
+			frames++;
+
+			if (frame.isLayout()) {
+				factory = frame.getFactory();
+			} else if (factory == null
+					|| !frame.isKeyframe() && (lastSequence < 0 || frame.getSequence() != lastSequence + 1)) {
+				lastSequence = -1;
+				return;
+			}
+
+			factory.applyStates(frame.getStates());
+			lastSequence = frame.getSequence();
+		}
+
+		boolean matches(final Factory expected) {
+			if (factory == null || factory.getComponents().size() != expected.getComponents().size()) {
+				return false;
+			}
+
+			for (int index = 0; index < expected.getComponents().size(); index++) {
+				final Component original = expected.getComponents().get(index);
+				final Component copy = factory.getComponents().get(index);
+
+				if (original.getxCoordinate() != copy.getxCoordinate()
+						|| original.getyCoordinate() != copy.getyCoordinate()
+						|| original.getStateFlags() != copy.getStateFlags()) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.ComponentState;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrameBuilder;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameConflater;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameLog;
+
+/**
+ * Cost of recording a simulation run into a {@link FrameLog} and of seeking in it, as the replay endpoint of the
+ * simulation service does: the state at a frame is folded from the layout and keyframe indexed before it and the
+ * deltas up to it, and compared with the state folded by reading the log from its start.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.FrameLogBenchmark [robots] [ticks] [seeks]
+ */
+public class FrameLogBenchmark {
+
+	private static final int SCANS = 20;
+
+	public static void main(String[] args) throws IOException {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+		final int seeks = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final FrameCodec codec = new FrameCodec(BenchmarkFixtures.newMapper());
+		final List<FactoryFrame> frames = recordFrames(robotCount, ticks);
+		final Path directory = Files.createTempDirectory("frame-log");
+		final Path file = directory.resolve("benchmark" + FrameLog.LOG_EXTENSION);
+
+		final long appendStart = System.nanoTime();
+		try (FrameLog log = FrameLog.create(file, codec)) {
+			for (final FactoryFrame frame : frames) {
+				log.publish(frame);
+			}
+		}
+		final long appendNanos = System.nanoTime() - appendStart;
+
+		final long openStart = System.nanoTime();
+		final FrameLog log = FrameLog.open(file, codec);
+		final long openNanos = System.nanoTime() - openStart;
+
+		final Random random = new Random(42);
+		final long first = log.getFirstSequence();
+		final long last = log.getLastSequence();
+
+		// Warm-up.
+		for (int index = 0; index < seeks; index++) {
+			fold(log, first + (long) (random.nextDouble() * (last - first)));
+		}
+
+		final long seekStart = System.nanoTime();
+		for (int index = 0; index < seeks; index++) {
+			fold(log, first + (long) (random.nextDouble() * (last - first)));
+		}
+		final long seekNanos = System.nanoTime() - seekStart;
+
+		long scanNanos = 0;
+		int consistent = 0;
+
+		for (int index = 0; index < SCANS; index++) {
+			final long target = first + (long) (random.nextDouble() * (last - first));
+			final long scanStart = System.nanoTime();
+			final FactoryFrame scanned = scan(log, target);
+			scanNanos += System.nanoTime() - scanStart;
+
+			if (sameStates(scanned, fold(log, target))) {
+				consistent++;
+			}
+		}
+
+		log.close();
+
+		System.out.println("================================================================================");
+		System.out.println("                    FRAME LOG BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Frames:                 " + log.getFrameCount() + " (sequences " + first + " to " + last
+				+ ")");
+		System.out.println("  Log size:               " + log.getLength() / 1024 + " KiB, "
+				+ log.getLength() / Math.max(1, log.getFrameCount()) + " bytes / frame");
+		System.out.println("  Index entries:          " + log.getIndexSize());
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println(String.format("  Append:                 %.2f us / frame", appendNanos / 1e3 / frames.size()));
+		System.out.println(String.format("  Open and index:         %.2f ms", openNanos / 1e6));
+		System.out.println(String.format("  Seek through index:     %.1f us / seek (%d seeks)", seekNanos / 1e3 / seeks,
+				seeks));
+		System.out.println(String.format("  Seek by reading all:    %.1f us / seek (%d seeks)", scanNanos / 1e3 / SCANS,
+				SCANS));
+		System.out.println("  Same state both ways:   " + consistent + " / " + SCANS);
+		System.out.println("================================================================================");
+
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(FrameLog.indexFile(file));
+		Files.deleteIfExists(directory);
+	}
+
+	/**
+	 * @return the state at the target frame, from the layout and keyframe indexed before it.
+	 */
+	private static FactoryFrame fold(final FrameLog log, final long target) throws IOException {
+		final FrameLog.Reader reader = log.newReader(target);
+		final FrameConflater conflater = new FrameConflater();
+		FactoryFrame frame = reader.next();
+
+		while (frame != null && frame.getSequence() <= target) {
+			conflater.offer(frame);
+			frame = reader.next();
+		}
+
+		return conflater.drain(0);
+	}
+
+	/**
+	 * @return the state at the target frame, reading the log from its start.
+	 */
+	private static FactoryFrame scan(final FrameLog log, final long target) throws IOException {
+		final FrameLog.Reader reader = log.newReader(log.getFirstSequence());
+		final FrameConflater conflater = new FrameConflater();
+		FactoryFrame frame = reader.next();
+
+		while (frame != null && frame.getSequence() <= target) {
+			conflater.offer(frame);
+			frame = reader.next();
+		}
+
+		return conflater.drain(0);
+	}
+
+	private static boolean sameStates(final FactoryFrame expected, final FactoryFrame actual) {
+		final List<ComponentState> expectedStates = expected.getStates();
+		final List<ComponentState> actualStates = actual.getStates();
+
+		if (expectedStates.size() != actualStates.size()) {
+			return false;
+		}
+
+		for (int index = 0; index < expectedStates.size(); index++) {
+			final ComponentState expectedState = expectedStates.get(index);
+			final ComponentState actualState = actualStates.get(index);
+
+			if (expectedState.getIndex() != actualState.getIndex()
+					|| expectedState.getxCoordinate() != actualState.getxCoordinate()
+					|| expectedState.getyCoordinate() != actualState.getyCoordinate()
+					|| expectedState.getStateFlags() != actualState.getStateFlags()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the frames of a simulation run, keyframes every {@value FactoryFrameBuilder#DEFAULT_KEYFRAME_INTERVAL}
+	 *         frames; layout frames are encoded at once since they carry the live factory.
+	 */
+	private static List<FactoryFrame> recordFrames(final int robotCount, final int ticks) throws IOException {
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Frame Log Benchmark Factory", robotCount);
+		final FrameCodec codec = new FrameCodec(BenchmarkFixtures.newMapper());
+		final List<Robot> robots = BenchmarkFixtures.getRobots(factory);
+
+		final FactoryFrameBuilder frameBuilder = new FactoryFrameBuilder(factory);
+		final List<FactoryFrame> frames = new ArrayList<>();
+		frames.add(codec.decode(codec.encode(frameBuilder.nextLayoutFrame())));
+
+		for (int tick = 0; tick < ticks; tick++) {
+			for (final Robot robot : robots) {
+				robot.behave();
+			}
+
+			final FactoryFrame frame = frameBuilder.nextFrame();
+
+			if (frame != null) {
+				frames.add(frame.isLayout() ? codec.decode(codec.encode(frame)) : frame);
+			}
+		}
+
+		return frames;
+	}
+}
@@ -0,0 +1,210 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.CoalescingFrameNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameRingBuffer;
+
+/**
+ * The whole simulate, publish and view pipeline in one JVM, through a {@link FrameRingBuffer} instead of a broker.
+ *
+ * Robots run on their own threads, a {@link CoalescingFrameNotifier} publishes the frames into the ring and each
+ * viewer thread decodes them into its own replica of the factory, with the rules of the simulation event consumer.
+ * Reported are the time to decode the first layout, the publish-to-view latency of the frames once each viewer
+ * has caught up with it, and the consistency of the replicas at the end.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.LocalPipelineBenchmark [robots] [viewers] [seconds]
+ */
+public class LocalPipelineBenchmark {
+
+	private static final long TICK_MILLIS = 20;
+
+	public static void main(String[] args) throws InterruptedException {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		final int viewerCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Local Pipeline Benchmark Factory", robotCount);
+		final FrameRingBuffer ring = new FrameRingBuffer(new FrameCodec(BenchmarkFixtures.newMapper()));
+		final CoalescingFrameNotifier notifier = new CoalescingFrameNotifier(factory, ring, TICK_MILLIS);
+		factory.setNotifier(notifier);
+
+		final List<Viewer> viewers = new ArrayList<>();
+
+		for (int index = 0; index < viewerCount; index++) {
+			final Viewer viewer = new Viewer(ring.newReader());
+			viewers.add(viewer);
+			viewer.start();
+		}
+
+		final List<Robot> robots = BenchmarkFixtures.getRobots(factory);
+
+		final AtomicLong steps = new AtomicLong();
+		final long endTime = System.currentTimeMillis() + seconds * 1000L;
+		final List<Thread> threads = new ArrayList<>();
+		notifier.requestLayout();
+
+		for (final Robot robot : robots) {
+			final Thread thread = new Thread(() -> {
+				try {
+					while (System.currentTimeMillis() < endTime) {
+						robot.behave();
+						steps.incrementAndGet();
+						Thread.sleep(TICK_MILLIS);
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		notifier.close();
+		// Leave time for the viewers to read the last frame.
+		Thread.sleep(4 * TICK_MILLIS);
+
+		long[] latencies = new long[0];
+		long firstLayoutNanos = 0;
+		int consistentViewers = 0;
+
+		for (final Viewer viewer : viewers) {
+			viewer.running = false;
+			viewer.join();
+			final int length = latencies.length;
+			latencies = Arrays.copyOf(latencies, length + viewer.latencyCount);
+			System.arraycopy(viewer.latencies, 0, latencies, length, viewer.latencyCount);
+			firstLayoutNanos = Math.max(firstLayoutNanos, viewer.firstLayoutNanos);
+
+			if (viewer.matches(factory)) {
+				consistentViewers++;
+			}
+		}
+
+		Arrays.sort(latencies);
+
+		System.out.println("================================================================================");
+		System.out.println("                    LOCAL PIPELINE BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Viewers:                " + viewerCount);
+		System.out.println("  Duration:               " + seconds + " s");
+		System.out.println("  Tick:                   " + TICK_MILLIS + " ms");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  Robot steps:            " + steps.get());
+		System.out.println("  Frames published:       " + ring.getPublishedFrames());
+		System.out.println(String.format("  First layout viewed:    %.1f ms", firstLayoutNanos / 1e6));
+		System.out.println("  Frames viewed:          " + latencies.length + " after catching up");
+		System.out.println(String.format("  Latency p50:            %.1f us",
+				BenchmarkFixtures.percentile(latencies, 0.50) / 1000.0));
+		System.out.println(String.format("  Latency p99:            %.1f us",
+				BenchmarkFixtures.percentile(latencies, 0.99) / 1000.0));
+		System.out.println(String.format("  Latency max:            %.1f us",
+				BenchmarkFixtures.percentile(latencies, 1.0) / 1000.0));
+		System.out.println("  Consistent replicas:    " + consistentViewers + " / " + viewerCount);
+		System.out.println("================================================================================");
+	}
+
+	/**
+	 * Keeps a replica of the factory up to date from the ring, as the simulation event consumer does.
+	 */
+	private static class Viewer extends Thread {
+
+		private final FrameRingBuffer.Reader reader;
+
+		private volatile boolean running = true;
+
+		private Factory replica;
+
+		private long lastSequence = -1;
+
+		private long firstLayoutNanos;
+
+		private boolean caughtUp;
+
+		private long[] latencies = new long[1024];
+
+		private int latencyCount;
+
+		Viewer(final FrameRingBuffer.Reader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					final FactoryFrame frame = reader.poll(TICK_MILLIS, TimeUnit.MILLISECONDS);
+
+					if (frame == null) {
+						continue;
+					}
+
+					final long latency = System.nanoTime() - reader.getLastPublishNanos();
+
+					// The first layout is decoded with a cold mapper, and the frames published meanwhile wait.
+					if (caughtUp) {
+						if (latencyCount == latencies.length) {
+							latencies = Arrays.copyOf(latencies, latencyCount * 2);
+						}
+
+						latencies[latencyCount++] = latency;
+					} else if (frame.isLayout() && firstLayoutNanos == 0) {
+						firstLayoutNanos = latency;
+					}
+
+					caughtUp |= replica != null && reader.getLag() == 0;
+
+					if (frame.isLayout()) {
+						replica = frame.getFactory();
+					} else if (replica == null
+							|| !frame.isKeyframe() && (lastSequence < 0 || frame.getSequence() != lastSequence + 1)) {
+						lastSequence = -1;
+						continue;
+					}
+
+					replica.applyStates(frame.getStates());
+					lastSequence = frame.getSequence();
+				}
+			} catch (final Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		boolean matches(final Factory factory) {
+			if (replica == null || replica.getComponents().size() != factory.getComponents().size()) {
+				return false;
+			}
+
+			for (int index = 0; index < factory.getComponents().size(); index++) {
+				final Component original = factory.getComponents().get(index);
+				final Component copy = replica.getComponents().get(index);
+
+				if (original.getxCoordinate() != copy.getxCoordinate()
+						|| original.getyCoordinate() != copy.getyCoordinate()
+						|| original.getStateFlags() != copy.getStateFlags()) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
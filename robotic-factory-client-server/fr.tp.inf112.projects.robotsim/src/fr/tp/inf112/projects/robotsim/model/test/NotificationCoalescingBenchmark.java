@@ -0,0 +1,169 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import fr.tp.inf112.projects.canvas.controller.Observer;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.CoalescingFrameNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrameBuilder;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameSink;
+
+/**
+ * Time spent by the robot threads per step, and frames published, when every notification builds and serializes a
+ * frame inline and when notifications are coalesced by a {@link CoalescingFrameNotifier}.
+ *
+ * Each robot runs on its own thread with a shortened tick; frames are serialized with the JSON mapper of the
+ * simulation event stream.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.NotificationCoalescingBenchmark [robots] [seconds]
+ */
+public class NotificationCoalescingBenchmark {
+
+	private static final long TICK_MILLIS = 20;
+
+	public static void main(String[] args) throws InterruptedException {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		System.out.println("================================================================================");
+		System.out.println("                    NOTIFICATION COALESCING BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Duration:               " + seconds + " s");
+		System.out.println("  Tick:                   " + TICK_MILLIS + " ms");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  notifier        steps   us / step   notifications    frames    frame bytes");
+		run(false, robotCount, seconds);
+		run(true, robotCount, seconds);
+		System.out.println("================================================================================");
+	}
+
+	private static void run(final boolean coalescing, final int robotCount, final int seconds)
+			throws InterruptedException {
+		final Factory factory = BenchmarkFixtures.createConveyorFactory("Coalescing Benchmark Factory", robotCount);
+		final CountingSink sink = new CountingSink();
+		final AtomicLong notifications = new AtomicLong();
+		final FactoryModelChangedNotifier notifier;
+
+		if (coalescing) {
+			notifier = new CoalescingFrameNotifier(factory, sink, TICK_MILLIS);
+		} else {
+			notifier = new InlineNotifier(factory, sink, notifications);
+		}
+
+		factory.setNotifier(notifier);
+
+		final List<Robot> robots = BenchmarkFixtures.getRobots(factory);
+
+		final AtomicLong steps = new AtomicLong();
+		final AtomicLong stepNanos = new AtomicLong();
+		final long endTime = System.currentTimeMillis() + seconds * 1000L;
+		final List<Thread> threads = new ArrayList<>();
+
+		for (final Robot robot : robots) {
+			final Thread thread = new Thread(() -> {
+				try {
+					while (System.currentTimeMillis() < endTime) {
+						final long startTime = System.nanoTime();
+						robot.behave();
+						stepNanos.addAndGet(System.nanoTime() - startTime);
+						steps.incrementAndGet();
+						Thread.sleep(TICK_MILLIS);
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		if (coalescing) {
+			final CoalescingFrameNotifier coalescingNotifier = (CoalescingFrameNotifier) notifier;
+			coalescingNotifier.close();
+			notifications.set(coalescingNotifier.getNotifications());
+		}
+
+		System.out.println(String.format("  %-12s %8d %11.1f %15d %9d %14d", coalescing ? "coalescing" : "inline",
+				steps.get(), stepNanos.get() / 1000.0 / steps.get(), notifications.get(), sink.frames, sink.bytes));
+	}
+
+	/**
+	 * Serializes the frames as the Kafka producer would.
+	 */
+	private static class CountingSink implements FrameSink {
+
+		private final ObjectMapper mapper;
+
+		private long frames;
+
+		private long bytes;
+
+		CountingSink() {
+			mapper = BenchmarkFixtures.newMapper();
+		}
+
+		@Override
+		public synchronized void publish(final FactoryFrame frame) {
+			try {
+				bytes += mapper.writeValueAsBytes(frame).length;
+				frames++;
+			} catch (final Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Builds and publishes a frame on the notifying thread, for every notification.
+	 */
+	private static class InlineNotifier implements FactoryModelChangedNotifier {
+
+		private final FactoryFrameBuilder frameBuilder;
+
+		private final FrameSink sink;
+
+		private final AtomicLong notifications;
+
+		InlineNotifier(final Factory factory, final FrameSink sink, final AtomicLong notifications) {
+			this.frameBuilder = new FactoryFrameBuilder(factory);
+			this.sink = sink;
+			this.notifications = notifications;
+		}
+
+		@Override
+		public synchronized void notifyObservers() {
+			notifications.incrementAndGet();
+			final FactoryFrame frame = frameBuilder.nextFrame();
+
+			if (frame != null) {
+				sink.publish(frame);
+			}
+		}
+
+		@Override
+		public boolean addObserver(final Observer observer) {
+			return false;
+		}
+
+		@Override
+		public boolean removeObserver(final Observer observer) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.RobotStateStore;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Tick time of a large fleet with the collision checks scanning the component list or the
+ * {@link RobotStateStore} arrays.
+ *
+ * Every robot shuttles between two conveyors of its own stretch of lane, so both runs make exactly the same moves
+ * and only the collision checks differ.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.RobotStateStoreBenchmark [robots] [ticks]
+ */
+public class RobotStateStoreBenchmark {
+
+	private static final int FACTORY_WIDTH = 2000;
+	private static final int LANE_SPACING = 10;
+	private static final int STRETCH_LENGTH = 60;
+	private static final int WARMUP_TICKS = 10;
+
+	public static void main(String[] args) {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		System.out.println("================================================================================");
+		System.out.println("                    ROBOT STATE STORE BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Measured ticks:         " + ticks);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  collision checks     ms / tick   ns / robot / tick   successful moves");
+		run("component list", robotCount, ticks, false);
+		run("state store", robotCount, ticks, true);
+		System.out.println("================================================================================");
+	}
+
+	private static void run(final String label, final int robotCount, final int ticks, final boolean stateStore) {
+		final List<Robot> robots = createFleet(robotCount, stateStore);
+
+		runTicks(robots, WARMUP_TICKS);
+
+		final long startTime = System.nanoTime();
+
+		runTicks(robots, ticks);
+
+		final long elapsedNanos = System.nanoTime() - startTime;
+		long successfulMoves = 0;
+
+		for (final Robot robot : robots) {
+			successfulMoves += robot.getSuccessfulMoves();
+		}
+
+		System.out.println(String.format("  %-18s %11.2f %19.1f %18d", label, elapsedNanos / 1e6 / ticks,
+				(double) elapsedNanos / ticks / robotCount, successfulMoves));
+	}
+
+	private static void runTicks(final List<Robot> robots, final int ticks) {
+		for (int tick = 0; tick < ticks; tick++) {
+			for (int index = 0; index < robots.size(); index++) {
+				robots.get(index).behave();
+			}
+		}
+	}
+
+	private static List<Robot> createFleet(final int robotCount, final boolean stateStore) {
+		final int stretchesPerLane = (FACTORY_WIDTH - LANE_SPACING) / STRETCH_LENGTH;
+		final int laneCount = (robotCount + stretchesPerLane - 1) / stretchesPerLane;
+		final Factory factory = new Factory(FACTORY_WIDTH, (laneCount + 2) * LANE_SPACING, "State Store Benchmark");
+
+		if (stateStore) {
+			factory.enableRobotStateStore();
+		}
+
+		final FactoryPathFinder pathFinder = new BenchmarkFixtures.LanePathFinder();
+		final List<Robot> robots = new ArrayList<>();
+
+		for (int index = 0; index < robotCount; index++) {
+			final int xCoordinate = LANE_SPACING + (index % stretchesPerLane) * STRETCH_LENGTH;
+			final int yCoordinate = LANE_SPACING + (index / stretchesPerLane) * LANE_SPACING;
+			final Conveyor west = new Conveyor(factory, new RectangularShape(xCoordinate, yCoordinate, 5, 5),
+					"West " + index);
+			final Conveyor east = new Conveyor(factory,
+					new RectangularShape(xCoordinate + STRETCH_LENGTH - 15, yCoordinate, 5, 5), "East " + index);
+			final Robot robot = new Robot(factory, pathFinder, new CircularShape(xCoordinate + 10, yCoordinate, 2),
+					new Battery(10), "Robot " + index);
+			robot.addTargetComponent(east);
+			robot.addTargetComponent(west);
+			robots.add(robot);
+		}
+
+		return robots;
+	}
+}
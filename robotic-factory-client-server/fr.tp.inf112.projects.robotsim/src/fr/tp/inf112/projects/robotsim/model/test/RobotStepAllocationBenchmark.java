@@ -0,0 +1,102 @@
+package fr.tp.inf112.projects.robotsim.model.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+
+/**
+ * Allocation profile of the robot step path, reported in bytes allocated per robot per tick.
+ *
+ * Robots shuttle along separate lanes between two conveyors so that the measurement covers steady-state moves
+ * rather than blocking. Paths come from a straight-lane path finder, so the (allocating) Dijkstra search does not
+ * drown the step path; the only other allocation left is the path list handed out at each end of a lane.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.model.test.RobotStepAllocationBenchmark [robots] [ticks]
+ */
+public class RobotStepAllocationBenchmark {
+
+	private static final Logger LOGGER = Logger.getLogger(RobotStepAllocationBenchmark.class.getName());
+
+	private static final int FACTORY_SIZE = 200;
+	private static final int LANE_SPACING = 10;
+	private static final int WARMUP_TICKS = 2000;
+
+	public static void main(String[] args) {
+		final int robotCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		final int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		// Keep the model quiet: the benchmark measures the step path, not the console.
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.WARNING);
+
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		if (!threadBean.isThreadAllocatedMemorySupported()) {
+			LOGGER.severe("Per-thread allocation accounting is not supported by this JVM.");
+			System.exit(1);
+		}
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		final List<Robot> robots = createFleet(robotCount);
+
+		runTicks(robots, WARMUP_TICKS);
+
+		final long threadId = Thread.currentThread().getId();
+		final long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+		final long startTime = System.nanoTime();
+
+		runTicks(robots, ticks);
+
+		final long elapsedNanos = System.nanoTime() - startTime;
+		final long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		final double robotTicks = (double) robotCount * ticks;
+
+		System.out.println("================================================================================");
+		System.out.println("                    ROBOT STEP ALLOCATION BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Measured ticks:         " + ticks);
+		System.out.println("  Allocated bytes:        " + allocatedBytes);
+		System.out.println(String.format("  Bytes / robot / tick:   %.2f", allocatedBytes / robotTicks));
+		System.out.println(String.format("  Time / robot / tick:    %.1f ns", elapsedNanos / robotTicks));
+		System.out.println("================================================================================");
+	}
+
+	private static void runTicks(final List<Robot> robots, final int ticks) {
+		for (int tick = 0; tick < ticks; tick++) {
+			for (int index = 0; index < robots.size(); index++) {
+				robots.get(index).behave();
+			}
+		}
+	}
+
+	private static List<Robot> createFleet(final int robotCount) {
+		final Factory factory = new Factory(FACTORY_SIZE, FACTORY_SIZE, "Allocation Benchmark Factory");
+		final FactoryPathFinder pathFinder = new BenchmarkFixtures.LanePathFinder();
+		final List<Robot> robots = new ArrayList<>();
+		final int laneCount = (FACTORY_SIZE - 2 * LANE_SPACING) / LANE_SPACING;
+
+		for (int index = 0; index < robotCount; index++) {
+			final int yCoordinate = LANE_SPACING + (index % laneCount) * LANE_SPACING;
+			final Conveyor west = new Conveyor(factory, new RectangularShape(5, yCoordinate, 5, 5), "West " + index);
+			final Conveyor east = new Conveyor(factory, new RectangularShape(FACTORY_SIZE - 15, yCoordinate, 5, 5),
+					"East " + index);
+			final Robot robot = new Robot(factory, pathFinder, new CircularShape(20, yCoordinate, 2), new Battery(10),
+					"Robot " + index);
+			robot.addTargetComponent(east);
+			robot.addTargetComponent(west);
+			robots.add(robot);
+		}
+
+		return robots;
+	}
+}
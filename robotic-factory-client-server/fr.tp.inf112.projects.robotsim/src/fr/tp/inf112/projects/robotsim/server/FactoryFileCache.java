@@ -0,0 +1,225 @@
+package fr.tp.inf112.projects.robotsim.server;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Contents of the factory files last read or written, up to a total size, the least recently used evicted first.
+ *
+ * An entry is used only while the file has the modification time and size it had when the entry was made, so that
+ * files changed by other means than the server are read again; checking costs one file status call. The arrays handed
+ * out are shared and must not be modified.
+ *
+ * For the files too large to be worth keeping, which are sent from disk, only the checksum of their content is kept.
+ */
+public class FactoryFileCache {
+
+	private final long maxBytes;
+
+	private final LinkedHashMap<Path, Entry> entries;
+
+	private final LinkedHashMap<Path, Checksum> checksums;
+
+	private long bytes;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	private static final class Entry {
+
+		private final byte[] content;
+
+		private final long modifiedMillis;
+
+		private Entry(final byte[] content, final long modifiedMillis) {
+			this.content = content;
+			this.modifiedMillis = modifiedMillis;
+		}
+	}
+
+	private static final class Checksum {
+
+		private final int value;
+
+		private final long modifiedMillis;
+
+		private final long size;
+
+		private Checksum(final int value, final long modifiedMillis, final long size) {
+			this.value = value;
+			this.modifiedMillis = modifiedMillis;
+			this.size = size;
+		}
+	}
+
+	private static final int MAX_CHECKSUMS = 1024;
+
+	/**
+	 * @param maxBytes Total size of the contents kept, 0 to keep none.
+	 */
+	public FactoryFileCache(final long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.checksums = new LinkedHashMap<>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Path, Checksum> eldest) {
+				return size() > MAX_CHECKSUMS;
+			}
+		};
+	}
+
+	/**
+	 * @return the content of the file, from memory if it did not change since it was last read or written.
+	 * @throws java.nio.file.NoSuchFileException if there is no such file.
+	 */
+	public byte[] read(final Path file) throws IOException {
+		final Path key = file.toAbsolutePath().normalize();
+		final BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+		final long modifiedMillis = attributes.lastModifiedTime().toMillis();
+
+		synchronized (this) {
+			final Entry entry = entries.get(key);
+
+			if (entry != null && entry.modifiedMillis == modifiedMillis
+					&& entry.content.length == attributes.size()) {
+				hits++;
+				return entry.content;
+			}
+
+			misses++;
+		}
+
+		// Should the file change while read, its new modification time invalidates the entry.
+		final byte[] content = Files.readAllBytes(key);
+		put(key, content, modifiedMillis);
+		return content;
+	}
+
+	/**
+	 * The file may be replaced between the time its attributes are read and the time it is opened: the checksum kept
+	 * is then used, or computed and kept, only if the file still has the attributes read before it was opened.
+	 *
+	 * @param attributes The attributes of the file, read before opening it.
+	 * @param channel The file, open for reading.
+	 * @return the CRC32 of the content of the channel, computed again only if the file changed since it was last
+	 *         computed.
+	 */
+	public int checksum(final Path file, final BasicFileAttributes attributes, final FileChannel channel)
+			throws IOException {
+		final Path key = file.toAbsolutePath().normalize();
+		final long modifiedMillis = attributes.lastModifiedTime().toMillis();
+		final long size = attributes.size();
+		Checksum checksum;
+
+		synchronized (this) {
+			checksum = checksums.get(key);
+		}
+
+		if (checksum == null || checksum.modifiedMillis != modifiedMillis || checksum.size != size) {
+			checksum = null;
+		}
+
+		final boolean unchanged = channel.size() == size
+				&& isSameFile(attributes, Files.readAttributes(key, BasicFileAttributes.class));
+
+		if (checksum != null && unchanged) {
+			return checksum.value;
+		}
+
+		final CRC32 crc = new CRC32();
+		crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		final int value = (int) crc.getValue();
+
+		if (unchanged) {
+			synchronized (this) {
+				checksums.put(key, new Checksum(value, modifiedMillis, size));
+			}
+		}
+
+		return value;
+	}
+
+	private static boolean isSameFile(final BasicFileAttributes before, final BasicFileAttributes after) {
+		return before.lastModifiedTime().equals(after.lastModifiedTime()) && before.size() == after.size()
+				&& Objects.equals(before.fileKey(), after.fileKey());
+	}
+
+	/**
+	 * Records the content just written to the file.
+	 */
+	public void written(final Path file, final byte[] content) throws IOException {
+		final Path key = file.toAbsolutePath().normalize();
+		put(key, content, Files.getLastModifiedTime(key).toMillis());
+	}
+
+	/**
+	 * Forgets the content of a file written without its content at hand.
+	 */
+	public synchronized void invalidate(final Path file) {
+		checksums.remove(file.toAbsolutePath().normalize());
+		final Entry entry = entries.remove(file.toAbsolutePath().normalize());
+
+		if (entry != null) {
+			bytes -= entry.content.length;
+		}
+	}
+
+	private synchronized void put(final Path key, final byte[] content, final long modifiedMillis) {
+		checksums.remove(key);
+		final Entry previous = entries.remove(key);
+
+		if (previous != null) {
+			bytes -= previous.content.length;
+		}
+
+		if (content.length > maxBytes) {
+			return;
+		}
+
+		entries.put(key, new Entry(content, modifiedMillis));
+		bytes += content.length;
+
+		for (final Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator(); bytes > maxBytes;) {
+			bytes -= iterator.next().getValue().content.length;
+			iterator.remove();
+			evictions++;
+		}
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the total size of the contents kept.
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+}
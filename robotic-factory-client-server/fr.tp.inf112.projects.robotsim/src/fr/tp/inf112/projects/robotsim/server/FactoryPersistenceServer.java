@@ -1,31 +1,149 @@
 package fr.tp.inf112.projects.robotsim.server;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import fr.tp.inf112.projects.robotsim.model.Factory;
-import fr.tp.inf112.projects.robotsim.model.FactoryPersistenceManager;
-
+import fr.tp.inf112.projects.robotsim.model.PersistenceProtocol;
+
+/**
+ * Serves factory files to {@link fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager}s, over the
+ * {@link PersistenceProtocol} or, for older clients, with one request and its response as serialized objects per
+ * connection.
+ *
+ * A selector thread accepts the connections and watches the idle ones; a connection is handed to one of a fixed
+ * number of worker threads only while it has a request to answer, so that kept-alive connections waiting for their
+ * next request hold no thread. Connections beyond the maximum are closed as soon as accepted.
+ *
+ * Binary reads of large files are sent from the file to the socket with {@link FileChannel#transferTo}, which the
+ * operating system does without copying the content through the heap.
+ *
+ * A factory file is written to a temporary file renamed over it, so that a crash leaves either its previous content or
+ * its new one, and the writes of a same file are serialized. Each write is forced to disk before it is acknowledged,
+ * either by itself or, with the {@link PersistenceJournal}, together with the writes coming in at the same time.
+ */
 public class FactoryPersistenceServer {
 
 	private static final Logger LOGGER = Logger.getLogger(FactoryPersistenceServer.class.getName());
 	private static final int DEFAULT_PORT = 8090;
+	private static final int KEEP_ALIVE_TIMEOUT_MS = 60000;
+
+	public static final int DEFAULT_WORKERS = 8;
+	public static final int DEFAULT_MAX_CONNECTIONS = 256;
+	public static final int DEFAULT_REQUEST_TIMEOUT_MS = 10000;
+	public static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+	public static final long DEFAULT_TRANSFER_BYTES = 1024 * 1024;
+	public static final boolean DEFAULT_JOURNAL = true;
+
+	private static final long SELECT_TIMEOUT_MS = 1000;
+	private static final int LINGER_MS = 2;
+	private static final long METRICS_INTERVAL_MS = 60000;
+	private static final int FILE_LOCK_STRIPES = 64;
 
 	private final int port;
-	private ServerSocket serverSocket;
-	private boolean running;
+	private final int workers;
+	private final int maxConnections;
+	private final int requestTimeoutMs;
+	private final long transferBytes;
+	private final boolean journalEnabled;
+	private volatile boolean running;
 	private final File workingDirectory;
 
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private ThreadPoolExecutor executor;
+
+	// Connections answered that wait for their next request, to be watched by the selector again.
+	private final Queue<ClientConnection> idleConnections;
+
+	private final AtomicInteger openConnections;
+	private final AtomicLong rejectedConnections;
+	private final AtomicLong requestCount;
+	private final AtomicLong requestNanos;
+	private final AtomicLong maxRequestNanos;
+
+	private final FactoryFileCache fileCache;
+
+	private PersistenceJournal journal;
+
+	// Serializes the writes of a same file; files share a lock when their paths hash alike.
+	private final Object[] fileLocks;
+
 	public FactoryPersistenceServer(final int port, final File workingDirectory) {
+		this(port, workingDirectory, DEFAULT_WORKERS, DEFAULT_MAX_CONNECTIONS, DEFAULT_REQUEST_TIMEOUT_MS,
+				DEFAULT_CACHE_BYTES, DEFAULT_TRANSFER_BYTES, DEFAULT_JOURNAL);
+	}
+
+	/**
+	 * @param workers          Number of threads answering requests.
+	 * @param maxConnections   Number of connections open at once, idle ones included.
+	 * @param requestTimeoutMs Time allowed to receive the rest of a request once it started coming in.
+	 * @param cacheBytes       Total size of the factory files kept in memory, 0 to read them from disk every time.
+	 * @param transferBytes    Size from which the files read with the binary protocol are sent from disk rather than
+	 *                         from memory, {@link Long#MAX_VALUE} to never do so.
+	 * @param journal          Whether the writes coming in together share an fsync of the journal rather than each
+	 *                         forcing its own file.
+	 */
+	public FactoryPersistenceServer(final int port, final File workingDirectory, final int workers,
+			final int maxConnections, final int requestTimeoutMs, final long cacheBytes, final long transferBytes,
+			final boolean journal) {
 		this.port = port;
+		this.workers = workers;
+		this.maxConnections = maxConnections;
+		this.requestTimeoutMs = requestTimeoutMs;
+		this.transferBytes = transferBytes;
+		this.journalEnabled = journal;
 		this.running = false;
 		this.workingDirectory = workingDirectory;
+		this.idleConnections = new ConcurrentLinkedQueue<>();
+		this.openConnections = new AtomicInteger();
+		this.rejectedConnections = new AtomicLong();
+		this.requestCount = new AtomicLong();
+		this.requestNanos = new AtomicLong();
+		this.maxRequestNanos = new AtomicLong();
+		this.fileCache = new FactoryFileCache(cacheBytes);
+		this.fileLocks = new Object[FILE_LOCK_STRIPES];
+
+		for (int index = 0; index < fileLocks.length; index++) {
+			fileLocks[index] = new Object();
+		}
 
 		if (!workingDirectory.exists()) {
 			workingDirectory.mkdirs();
@@ -34,126 +152,426 @@ public class FactoryPersistenceServer {
 	}
 
 	public void start() throws IOException {
-		serverSocket = new ServerSocket(port);
+		if (journalEnabled) {
+			journal = new PersistenceJournal(workingDirectory, PersistenceJournal.DEFAULT_CHECKPOINT_BYTES);
+			journal.recover((fileId, content) -> replaceFactoryFile(new File(workingDirectory, fileId).toPath(),
+					content, false));
+		}
+
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		final AtomicInteger workerCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+				runnable -> {
+					final Thread thread = new Thread(runnable, "Persistence worker " + workerCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
 		running = true;
 
-		LOGGER.info("Factory Persistence Server started on port " + port);
+		LOGGER.info("Factory Persistence Server started on port " + port + " (" + workers + " workers, "
+				+ maxConnections + " connections at most)");
 		LOGGER.info("Working directory: " + workingDirectory.getAbsolutePath());
 
-		while (running) {
-			try {
-				Socket clientSocket = serverSocket.accept();
-				LOGGER.info("Client connected: " + clientSocket.getInetAddress());
-
-				Thread clientThread = new Thread(() -> handleClient(clientSocket));
-				clientThread.start();
+		long lastMetricsTime = System.currentTimeMillis();
+		long lastRequestCount = 0;
+		long lastRequestNanos = 0;
 
-			} catch (IOException e) {
-				if (running) {
-					LOGGER.log(Level.SEVERE, "Error accepting client connection", e);
+		try {
+			while (running) {
+				try {
+					selector.select(SELECT_TIMEOUT_MS);
+					watchIdleConnections();
+
+					final List<ClientConnection> readyConnections = new ArrayList<>();
+
+					for (final Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext();) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+
+						if (!key.isValid()) {
+							continue;
+						}
+
+						if (key.isAcceptable()) {
+							acceptConnection();
+						} else if (key.isReadable()) {
+							key.cancel();
+							readyConnections.add((ClientConnection) key.attachment());
+						}
+					}
+
+					closeIdleConnections();
+
+					if (!readyConnections.isEmpty()) {
+						// Cancelled keys are deregistered by the next selection only; the channels cannot block before.
+						selector.selectNow();
+
+						for (final ClientConnection connection : readyConnections) {
+							connection.dispatch();
+						}
+					}
+
+					if (System.currentTimeMillis() - lastMetricsTime >= METRICS_INTERVAL_MS) {
+						final long requests = requestCount.get() - lastRequestCount;
+						final long nanos = requestNanos.get() - lastRequestNanos;
+
+						if (requests > 0) {
+							LOGGER.info(String.format(
+									"%d requests, %.2f ms on average, %.2f ms at most; %d connections open, %d waiting for a worker, %d rejected; %d files cached (%d KiB), %d hits, %d misses",
+									requests, nanos / 1e6 / requests, maxRequestNanos.getAndSet(0) / 1e6,
+									openConnections.get(), getQueuedConnections(), rejectedConnections.get(),
+									fileCache.getSize(), fileCache.getBytes() / 1024, fileCache.getHits(),
+									fileCache.getMisses()));
+						}
+
+						lastMetricsTime = System.currentTimeMillis();
+						lastRequestCount += requests;
+						lastRequestNanos += nanos;
+					}
+
+				} catch (IOException e) {
+					if (running) {
+						LOGGER.log(Level.SEVERE, "Error accepting client connection", e);
+					}
+				}
+			}
+		} finally {
+			for (final SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof ClientConnection) {
+					((ClientConnection) key.attachment()).close();
 				}
 			}
+
+			executor.shutdownNow();
+			serverChannel.close();
+			selector.close();
+
+			if (journal != null) {
+				journal.close();
+			}
+
+			LOGGER.info("Server stopped");
 		}
 	}
 
-	private void handleClient(Socket clientSocket) {
-		try (ObjectInputStream in = new ObjectInputStream(clientSocket.getInputStream());
-				ObjectOutputStream out = new ObjectOutputStream(clientSocket.getOutputStream())) {
+	private void acceptConnection() throws IOException {
+		final SocketChannel channel = serverChannel.accept();
 
-			Object request = in.readObject();
-			LOGGER.info("Received request of type: " + request.getClass().getName());
+		if (channel == null) {
+			return;
+		}
 
-			if (request instanceof String) {
-				String command = (String) request;
-				if ("LIST".equals(command)) {
-					handleListRequest(out);
-				} else {
-					handleReadRequest(command, out);
-				}
-			} else if (request instanceof Factory) {
-				handlePersistRequest((Factory) request, out);
-			} else {
-				LOGGER.warning("Unknown request type: " + request.getClass().getName());
-				out.writeObject(new IOException("Unknown request type"));
-			}
+		if (openConnections.get() >= maxConnections) {
+			rejectedConnections.incrementAndGet();
+			LOGGER.warning("Rejecting client " + channel.getRemoteAddress() + ": " + maxConnections
+					+ " connections already open");
+			channel.close();
+			return;
+		}
 
-		} catch (Exception e) {
-			LOGGER.log(Level.SEVERE, "Error handling client request", e);
-		} finally {
+		openConnections.incrementAndGet();
+		LOGGER.info("Client connected: " + channel.getRemoteAddress());
+		new ClientConnection(channel).dispatch();
+	}
+
+	private void watchIdleConnections() {
+		ClientConnection connection;
+
+		while ((connection = idleConnections.poll()) != null) {
 			try {
-				clientSocket.close();
-				LOGGER.info("Client disconnected");
+				connection.channel.configureBlocking(false);
+				connection.channel.register(selector, SelectionKey.OP_READ, connection);
 			} catch (IOException e) {
-				LOGGER.log(Level.WARNING, "Error closing client socket", e);
+				connection.close();
+			}
+		}
+	}
+
+	private void closeIdleConnections() {
+		final long now = System.currentTimeMillis();
+
+		for (final SelectionKey key : selector.keys()) {
+			if (key.isValid() && key.attachment() instanceof ClientConnection
+					&& now - ((ClientConnection) key.attachment()).idleSince > KEEP_ALIVE_TIMEOUT_MS) {
+				key.cancel();
+				((ClientConnection) key.attachment()).close();
 			}
 		}
 	}
 
-	private void handleReadRequest(String fileId, ObjectOutputStream out) throws IOException {
+	private void recordRequest(final long startNanos) {
+		final long nanos = System.nanoTime() - startNanos;
+		requestCount.incrementAndGet();
+		requestNanos.addAndGet(nanos);
+		maxRequestNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * @return the journal, null if the writes are forced one by one or the server is not started.
+	 */
+	public PersistenceJournal getJournal() {
+		return journal;
+	}
+
+	public FactoryFileCache getFileCache() {
+		return fileCache;
+	}
+
+	/**
+	 * @return the number of connections open, idle ones included.
+	 */
+	public int getOpenConnections() {
+		return openConnections.get();
+	}
+
+	/**
+	 * @return the number of connections with a request waiting for a worker.
+	 */
+	public int getQueuedConnections() {
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+
+	/**
+	 * @return the number of connections closed as soon as accepted, the maximum being reached.
+	 */
+	public long getRejectedConnections() {
+		return rejectedConnections.get();
+	}
+
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * @return the mean time from a request coming in to its response being sent, waiting for a worker included.
+	 */
+	public double getMeanRequestMillis() {
+		final long requests = requestCount.get();
+		return requests == 0 ? 0 : requestNanos.get() / 1e6 / requests;
+	}
+
+	/**
+	 * @return the payload of the response to a binary request; factories are not deserialized.
+	 */
+	private byte[] handleFrame(PersistenceProtocol.Frame request) throws IOException {
+		final byte[] payload = request.getPayload();
+
+		switch (request.getOpcode()) {
+		case PersistenceProtocol.READ:
+			return readFactoryFile(PersistenceProtocol.utf8(payload));
+		case PersistenceProtocol.PERSIST:
+			final DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+			final String fileId = in.readUTF();
+			writeFactoryFile(fileId, payload, payload.length - in.available());
+			return new byte[0];
+		case PersistenceProtocol.LIST:
+			return PersistenceProtocol.encodeList(handleListRequest());
+		case PersistenceProtocol.PING:
+			return new byte[0];
+		default:
+			throw new IOException("Unknown opcode " + request.getOpcode());
+		}
+	}
+
+	/**
+	 * @return the content of the file, shared with the cache.
+	 */
+	private byte[] readFactoryFile(String fileId) throws IOException {
 		LOGGER.info("Processing READ request for file: " + fileId);
 
+		try {
+			return fileCache.read(new File(workingDirectory, fileId).toPath());
+		} catch (NoSuchFileException e) {
+			throw new IOException("File not found: " + fileId);
+		}
+	}
+
+	/**
+	 * @return the attributes of the file if it is to be sent from disk, null otherwise.
+	 */
+	private BasicFileAttributes readLargeFactoryFileAttributes(final Path path) {
+		final BasicFileAttributes attributes;
+
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException e) {
+			return null;
+		}
+
+		return attributes.isRegularFile() && attributes.size() >= transferBytes ? attributes : null;
+	}
+
+	/**
+	 * @return the file, open, for the binary protocol to send it from disk.
+	 */
+	private FileChannel openLargeFactoryFile(String fileId, Path path) throws IOException {
+		final FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+
+		if (file.size() > PersistenceProtocol.MAX_PAYLOAD_LENGTH) {
+			file.close();
+			throw new IOException("File too large: " + fileId);
+		}
+
+		LOGGER.info("Processing READ request for file: " + fileId + " (" + file.size() + " bytes, from disk)");
+		return file;
+	}
+
+	/**
+	 * Writes the serialized factory as received; the id it holds is not the file path, which the readers of the file
+	 * replace with its name anyway.
+	 */
+	private void writeFactoryFile(String fileId, byte[] payload, int offset) throws IOException {
+		LOGGER.info("Processing PERSIST request for file: " + fileId);
+
+		if (fileId.trim().isEmpty()) {
+			throw new IOException("Invalid file ID");
+		}
+
+		if (!PersistenceProtocol.isSerialized(payload, offset)) {
+			throw new IOException("Not a serialized factory: " + fileId);
+		}
+
 		File factoryFile = new File(workingDirectory, fileId);
+		Path path = factoryFile.toPath().toAbsolutePath().normalize();
+		byte[] content = offset == 0 ? payload : Arrays.copyOfRange(payload, offset, payload.length);
 
-		if (!factoryFile.exists()) {
-			LOGGER.warning("File not found: " + factoryFile.getAbsolutePath());
-			out.writeObject(new IOException("File not found: " + fileId));
-			return;
+		synchronized (fileLocks[Math.floorMod(path.hashCode(), fileLocks.length)]) {
+			if (journal != null) {
+				journal.append(fileId, content);
+
+				try {
+					replaceFactoryFile(path, content, false);
+				} finally {
+					journal.applied(path);
+				}
+			} else {
+				replaceFactoryFile(path, content, true);
+			}
+
+			if (content.length < transferBytes) {
+				fileCache.written(path, content);
+			} else {
+				fileCache.invalidate(path);
+			}
+		}
+
+		LOGGER.info("Successfully saved factory: " + factoryFile.getAbsolutePath());
+	}
+
+	/**
+	 * Writes the content to a temporary file next to the file, then renames it over the file.
+	 *
+	 * @param force Whether to force the content and the rename to disk, which the journal otherwise guarantees.
+	 */
+	private static void replaceFactoryFile(final Path path, final byte[] content, final boolean force)
+			throws IOException {
+		// Hidden and not ending with .factory, so that it is not listed; only written under the lock of the file.
+		final Path temporary = path.resolveSibling("." + path.getFileName() + ".tmp");
+
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				final ByteBuffer buffer = ByteBuffer.wrap(content);
+
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+
+				if (force) {
+					channel.force(true);
+				}
+			}
+
+			try {
+				Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+
+		if (force) {
+			forceDirectory(path.getParent());
 		}
+	}
 
+	/**
+	 * Forces the entries of the directory, so that the files renamed in it stay renamed after a crash; not possible on
+	 * every platform.
+	 */
+	static void forceDirectory(final Path directory) {
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Cannot force directory " + directory, e);
+		}
+	}
+
+	private Object handleRequest(Object request) throws IOException {
+		if (request instanceof String) {
+			String command = (String) request;
+			if ("LIST".equals(command)) {
+				return handleListRequest();
+			} else {
+				return handleReadRequest(command);
+			}
+		} else if (request instanceof Factory) {
+			return handlePersistRequest((Factory) request);
+		}
+
+		LOGGER.warning("Unknown request type: " + request.getClass().getName());
+		return new IOException("Unknown request type");
+	}
+
+	private Object handleReadRequest(String fileId) {
 		try {
-			FactoryPersistenceManager manager = new FactoryPersistenceManager(null);
-			Factory factory = (Factory) manager.read(factoryFile.getAbsolutePath());
+			Factory factory = PersistenceProtocol.deserialize(readFactoryFile(fileId));
 			factory.setId(fileId);
 
-			out.writeObject(factory);
-			LOGGER.info("Successfully sent factory model: " + fileId);
+			LOGGER.info("Successfully read factory model: " + fileId);
+			return factory;
 
 		} catch (IOException e) {
-			LOGGER.log(Level.SEVERE, "Error reading factory file", e);
-			out.writeObject(e);
+			LOGGER.warning("Error reading factory file: " + e.getMessage());
+			return e;
 		}
 	}
 
-	private void handlePersistRequest(Factory factory, ObjectOutputStream out) throws IOException {
+	private Object handlePersistRequest(Factory factory) {
 		String fileId = factory.getId();
-		LOGGER.info("Processing PERSIST request for file: " + fileId);
 
 		if (fileId == null || fileId.trim().isEmpty()) {
 			IOException error = new IOException("Invalid file ID");
 			LOGGER.log(Level.SEVERE, "Invalid file ID", error);
-			out.writeObject(error);
-			return;
+			return error;
 		}
 
-		File factoryFile = new File(workingDirectory, fileId);
-
 		try {
-			String originalId = factory.getId();
-			factory.setId(factoryFile.getAbsolutePath());
-
-			FactoryPersistenceManager manager = new FactoryPersistenceManager(null);
-			manager.persist(factory);
-
-			factory.setId(originalId);
-
-			out.writeObject("SUCCESS");
-			LOGGER.info("Successfully saved factory: " + factoryFile.getAbsolutePath());
+			// Written as the binary protocol writes it, so that the cache keeps its bytes.
+			writeFactoryFile(fileId, PersistenceProtocol.serialize(factory), 0);
+			return "SUCCESS";
 
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, "Error persisting factory file", e);
-			out.writeObject(e);
+			return e;
 		}
 	}
 
-	private void handleListRequest(ObjectOutputStream out) throws IOException {
+	private String[] handleListRequest() {
 		LOGGER.info("Processing LIST request");
 
 		File[] files = workingDirectory.listFiles((dir, name) -> name.endsWith(".factory"));
 
 		if (files == null || files.length == 0) {
-			out.writeObject(new String[0]);
 			LOGGER.info("No factory files found");
-			return;
+			return new String[0];
 		}
 
 		String[] fileNames = new String[files.length];
@@ -161,15 +579,217 @@ public class FactoryPersistenceServer {
 			fileNames[i] = files[i].getName();
 		}
 
-		out.writeObject(fileNames);
-		LOGGER.info("Sent list of " + fileNames.length + " factory files");
+		LOGGER.info("Sending list of " + fileNames.length + " factory files");
+		return fileNames;
 	}
 
 	public void stop() throws IOException {
 		running = false;
-		if (serverSocket != null && !serverSocket.isClosed()) {
-			serverSocket.close();
-			LOGGER.info("Server stopped");
+		if (selector != null) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * A client connection, answered by a worker while it has requests and watched by the selector in between.
+	 */
+	private class ClientConnection implements Runnable {
+
+		private final SocketChannel channel;
+
+		private BufferedInputStream input;
+
+		// Either the data streams of the binary protocol or the object streams of the older ones.
+		private DataInputStream dataIn;
+
+		private DataOutputStream dataOut;
+
+		private ObjectInputStream in;
+
+		private ObjectOutputStream out;
+
+		// When the pending request came in, and when the connection was last answered.
+		private long readyNanos;
+
+		private volatile long idleSince;
+
+		private boolean closed;
+
+		private ClientConnection(final SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		private void dispatch() {
+			try {
+				channel.configureBlocking(true);
+				readyNanos = System.nanoTime();
+				executor.execute(this);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Error dispatching client connection", e);
+				close();
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				final Socket socket = channel.socket();
+				socket.setSoTimeout(requestTimeoutMs);
+
+				if (input == null) {
+					socket.setTcpNoDelay(true);
+					input = new BufferedInputStream(socket.getInputStream());
+					final BufferedOutputStream output = new BufferedOutputStream(socket.getOutputStream());
+					dataIn = new DataInputStream(input);
+					input.mark(Integer.BYTES);
+
+					if (dataIn.readInt() == PersistenceProtocol.MAGIC) {
+						dataOut = new DataOutputStream(output);
+					} else {
+						input.reset();
+						out = new ObjectOutputStream(output);
+						out.flush();
+						in = new ObjectInputStream(input);
+					}
+				}
+
+				if (dataOut == null) {
+					answerObject();
+					return;
+				}
+
+				do {
+					answerFrame();
+					recordRequest(readyNanos);
+					readyNanos = System.nanoTime();
+				} while (input.available() > 0 || lingerForRequest(socket));
+
+				idleSince = System.currentTimeMillis();
+				idleConnections.add(this);
+				selector.wakeup();
+
+			} catch (EOFException e) {
+				close();
+			} catch (SocketTimeoutException e) {
+				LOGGER.warning("Request not received within " + requestTimeoutMs + " ms, closing connection");
+				close();
+			} catch (Exception e) {
+				LOGGER.log(Level.SEVERE, "Error handling client request", e);
+				close();
+			}
+		}
+
+		private void answerFrame() throws IOException {
+			final PersistenceProtocol.Frame request = PersistenceProtocol.readFrame(dataIn);
+			byte opcode = request.getOpcode();
+			byte[] payload = null;
+			FileChannel file = null;
+			int checksum = 0;
+
+			try {
+				if (!request.isIntact()) {
+					throw new IOException("Corrupted request " + request.getRequestId());
+				}
+
+				if (opcode == PersistenceProtocol.READ) {
+					final String fileId = PersistenceProtocol.utf8(request.getPayload());
+					final Path path = new File(workingDirectory, fileId).toPath();
+					// Read before the file is opened, for the cache to tell whether the file opened is the one read.
+					final BasicFileAttributes attributes = readLargeFactoryFileAttributes(path);
+
+					if (attributes != null) {
+						file = openLargeFactoryFile(fileId, path);
+						checksum = fileCache.checksum(path, attributes, file);
+					}
+				}
+
+				if (file == null) {
+					payload = handleFrame(request);
+				}
+			} catch (IOException e) {
+				LOGGER.warning("Request " + request.getRequestId() + " failed: " + e.getMessage());
+				opcode = PersistenceProtocol.ERROR;
+				payload = PersistenceProtocol.utf8(String.valueOf(e.getMessage()));
+
+				if (file != null) {
+					file.close();
+					file = null;
+				}
+			}
+
+			if (file == null) {
+				PersistenceProtocol.writeFrame(dataOut, opcode, request.getRequestId(), payload);
+				dataOut.flush();
+				return;
+			}
+
+			// Once the header is sent, a failure leaves the client out of step and closes the connection.
+			try (FileChannel content = file) {
+				final long size = content.size();
+				PersistenceProtocol.writeHeader(dataOut, opcode, request.getRequestId(), (int) size, checksum);
+				dataOut.flush();
+
+				for (long position = 0; position < size;) {
+					position += content.transferTo(position, size - position, channel);
+				}
+			}
+		}
+
+		/**
+		 * Answers the single request of a client sending serialized objects, which waits for the connection to be
+		 * closed.
+		 */
+		private void answerObject() throws IOException, ClassNotFoundException {
+			final Object request = in.readObject();
+			LOGGER.info("Received request of type: " + request.getClass().getName());
+			out.writeObject(handleRequest(request));
+			out.flush();
+			recordRequest(readyNanos);
+			close();
+		}
+
+		/**
+		 * @return whether a request came in within {@value #LINGER_MS} ms, waited for only while no other connection
+		 *         waits for a worker; clients sending requests one after the other are then answered without going
+		 *         through the selector.
+		 */
+		private boolean lingerForRequest(final Socket socket) throws IOException {
+			if (!executor.getQueue().isEmpty()) {
+				return false;
+			}
+
+			socket.setSoTimeout(LINGER_MS);
+			input.mark(1);
+
+			try {
+				if (input.read() < 0) {
+					throw new EOFException();
+				}
+
+				input.reset();
+				readyNanos = System.nanoTime();
+				return true;
+			} catch (SocketTimeoutException e) {
+				return false;
+			} finally {
+				socket.setSoTimeout(requestTimeoutMs);
+			}
+		}
+
+		private synchronized void close() {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+			openConnections.decrementAndGet();
+
+			try {
+				channel.close();
+				LOGGER.info("Client disconnected");
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Error closing client socket", e);
+			}
 		}
 	}
 
@@ -189,7 +809,15 @@ public class FactoryPersistenceServer {
 			workingDir = args[1];
 		}
 
-		FactoryPersistenceServer server = new FactoryPersistenceServer(port, new File(workingDir));
+		int workers = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_WORKERS;
+		int maxConnections = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_MAX_CONNECTIONS;
+		int requestTimeoutMs = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_REQUEST_TIMEOUT_MS;
+		long cacheBytes = args.length > 5 ? Long.parseLong(args[5]) : DEFAULT_CACHE_BYTES;
+		long transferBytes = args.length > 6 ? Long.parseLong(args[6]) : DEFAULT_TRANSFER_BYTES;
+		boolean journal = args.length > 7 ? Boolean.parseBoolean(args[7]) : DEFAULT_JOURNAL;
+
+		FactoryPersistenceServer server = new FactoryPersistenceServer(port, new File(workingDir), workers,
+				maxConnections, requestTimeoutMs, cacheBytes, transferBytes, journal);
 
 		try {
 			server.start();
@@ -0,0 +1,375 @@
+package fr.tp.inf112.projects.robotsim.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of the factory files written by the server, so that saves coming in together share one fsync.
+ *
+ * A file is appended to the journal, which is forced to disk, before it replaces the factory file; the factory file
+ * itself is then not forced. The appends waiting while the journal is forced are written and forced together next. Once
+ * the journal grows beyond a size, and no appended file remains to be written, the files written since the last
+ * checkpoint are forced and the journal is emptied. After a crash, the files of the journal are written again.
+ *
+ * Each record is:
+ *
+ * <pre>
+ * int length | int CRC32 | file id as written by DataOutputStream#writeUTF | content
+ * </pre>
+ *
+ * A record cut short or not matching its checksum ends the journal, being the one appended when the crash occurred.
+ * For the same reason, a batch that fails to be written or forced is cut off the journal before the next one is
+ * appended: the records after it would not be recovered.
+ */
+public class PersistenceJournal implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(PersistenceJournal.class.getName());
+
+	public static final String FILE_NAME = "persistence.journal";
+
+	public static final long DEFAULT_CHECKPOINT_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * Writes a factory file, without forcing it to disk.
+	 */
+	public interface FileWriter {
+
+		void write(String fileId, byte[] content) throws IOException;
+	}
+
+	private static final class Append {
+
+		private final byte[] record;
+
+		private final CompletableFuture<Void> durable;
+
+		private Append(final byte[] record) {
+			this.record = record;
+			this.durable = new CompletableFuture<>();
+		}
+	}
+
+	// Wakes the committer up to close the journal.
+	private static final Append CLOSE = new Append(new byte[0]);
+
+	private final File directory;
+
+	private final long checkpointBytes;
+
+	private final FileChannel channel;
+
+	private final LinkedBlockingQueue<Append> appends;
+
+	private final Thread committer;
+
+	// Files written since the last checkpoint, and records appended but not written to their file yet.
+	private final Set<Path> dirtyFiles;
+
+	private int unappliedRecords;
+
+	private long commits;
+
+	private long records;
+
+	// Length of the journal before the batch that failed, to cut it back to before appending; -1 if none failed.
+	private long failedBatchStart = -1;
+
+	private volatile boolean closed;
+
+	/**
+	 * Opens the journal of the directory, which no other server may use meanwhile; {@link #recover} must be called
+	 * before anything is appended.
+	 *
+	 * @param checkpointBytes Size of the journal from which the files are forced and the journal emptied.
+	 */
+	public PersistenceJournal(final File directory, final long checkpointBytes) throws IOException {
+		this.directory = directory;
+		this.checkpointBytes = checkpointBytes;
+		this.channel = FileChannel.open(new File(directory, FILE_NAME).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			if (channel.tryLock() == null) {
+				throw new OverlappingFileLockException();
+			}
+		} catch (OverlappingFileLockException e) {
+			channel.close();
+			throw new IOException("Journal of " + directory + " already used by another server");
+		}
+
+		this.appends = new LinkedBlockingQueue<>();
+		this.dirtyFiles = new LinkedHashSet<>();
+		this.committer = new Thread(this::commit, "Persistence journal");
+		this.committer.setDaemon(true);
+	}
+
+	/**
+	 * Writes again the files of the journal left by the previous run, then empties it.
+	 *
+	 * @return the number of files written.
+	 */
+	public int recover(final FileWriter writer) throws IOException {
+		int recovered = 0;
+		channel.position(0);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+		while (true) {
+			final byte[] record;
+
+			try {
+				final int length = in.readInt();
+				final int checksum = in.readInt();
+
+				if (length < 0 || length > channel.size()) {
+					break;
+				}
+
+				record = new byte[length];
+				in.readFully(record);
+
+				if (checksum(record) != checksum) {
+					break;
+				}
+			} catch (EOFException e) {
+				break;
+			}
+
+			final DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+			final String fileId = recordIn.readUTF();
+			final byte[] content = new byte[recordIn.available()];
+			recordIn.readFully(content);
+
+			writer.write(fileId, content);
+			dirtyFiles.add(new File(directory, fileId).toPath());
+			recovered++;
+		}
+
+		if (recovered > 0) {
+			LOGGER.info("Recovered " + recovered + " factory files from the journal");
+		}
+
+		checkpoint();
+		committer.start();
+		return recovered;
+	}
+
+	/**
+	 * Appends the file, then waits for it and the files appended with it to be on disk; the caller then writes the
+	 * file and calls {@link #applied}.
+	 */
+	public void append(final String fileId, final byte[] content) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(content.length + fileId.length() + 10);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeInt(0);
+		out.writeUTF(fileId);
+		out.write(content);
+
+		final byte[] record = bytes.toByteArray();
+		final ByteBuffer header = ByteBuffer.wrap(record, 0, 2 * Integer.BYTES);
+		header.putInt(record.length - 2 * Integer.BYTES);
+		header.putInt(checksum(record, 2 * Integer.BYTES));
+
+		final Append append = new Append(record);
+		appends.add(append);
+
+		if (closed) {
+			append.durable.completeExceptionally(new IOException("Journal closed"));
+		}
+
+		try {
+			append.durable.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the journal", e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Records that a file appended was written, whether it succeeded or not; it is forced at the next checkpoint.
+	 */
+	public synchronized void applied(final Path file) {
+		dirtyFiles.add(file.toAbsolutePath().normalize());
+		unappliedRecords--;
+		notifyAll();
+	}
+
+	private void commit() {
+		final List<Append> batch = new ArrayList<>();
+
+		while (!closed) {
+			try {
+				batch.add(appends.take());
+				appends.drainTo(batch);
+
+				if (batch.remove(CLOSE) && batch.isEmpty()) {
+					break;
+				}
+
+				// Fails the batch, like the one before, as long as the journal cannot be cut back.
+				cutFailedBatch();
+
+				if (channel.size() >= checkpointBytes) {
+					synchronized (this) {
+						while (unappliedRecords > 0) {
+							wait();
+						}
+					}
+
+					checkpoint();
+				}
+
+				final ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+				long length = 0;
+
+				for (int index = 0; index < buffers.length; index++) {
+					buffers[index] = ByteBuffer.wrap(batch.get(index).record);
+					length += buffers[index].remaining();
+				}
+
+				failedBatchStart = channel.position();
+
+				for (long written = 0; written < length;) {
+					written += channel.write(buffers);
+				}
+
+				channel.force(false);
+				failedBatchStart = -1;
+
+				synchronized (this) {
+					unappliedRecords += batch.size();
+					commits++;
+					records += batch.size();
+				}
+
+				for (final Append append : batch) {
+					append.durable.complete(null);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, "Error writing the journal", e);
+
+				for (final Append append : batch) {
+					append.durable.completeExceptionally(e);
+				}
+
+				try {
+					cutFailedBatch();
+				} catch (IOException cutException) {
+					LOGGER.log(Level.SEVERE, "Error cutting the failed batch off the journal", cutException);
+				}
+			}
+
+			batch.clear();
+		}
+
+		for (final Append append : appends) {
+			append.durable.completeExceptionally(new IOException("Journal closed"));
+		}
+	}
+
+	/**
+	 * Truncates the journal to its length before the batch that failed, if any.
+	 */
+	private void cutFailedBatch() throws IOException {
+		if (failedBatchStart < 0) {
+			return;
+		}
+
+		channel.truncate(failedBatchStart);
+		channel.position(failedBatchStart);
+		channel.force(true);
+		failedBatchStart = -1;
+	}
+
+	/**
+	 * Forces the files written since the last checkpoint, then empties the journal.
+	 */
+	private void checkpoint() throws IOException {
+		final List<Path> files;
+
+		synchronized (this) {
+			files = new ArrayList<>(dirtyFiles);
+			dirtyFiles.clear();
+		}
+
+		for (final Path file : files) {
+			try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+				fileChannel.force(true);
+			} catch (NoSuchFileException e) {
+				// Deleted since.
+			}
+		}
+
+		FactoryPersistenceServer.forceDirectory(directory.toPath());
+		channel.truncate(0);
+		channel.position(0);
+		channel.force(true);
+	}
+
+	/**
+	 * @return the number of times the journal was forced to disk.
+	 */
+	public synchronized long getCommits() {
+		return commits;
+	}
+
+	/**
+	 * @return the number of files appended to the journal.
+	 */
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		appends.add(CLOSE);
+
+		try {
+			committer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		channel.close();
+	}
+
+	private static int checksum(final byte[] record) {
+		return checksum(record, 0);
+	}
+
+	private static int checksum(final byte[] bytes, final int offset) {
+		final CRC32 crc = new CRC32();
+		crc.update(bytes, offset, bytes.length - offset);
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,254 @@
+package fr.tp.inf112.projects.robotsim.server.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.PersistenceProtocol;
+import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
+import fr.tp.inf112.projects.robotsim.model.test.BenchmarkFixtures;
+import fr.tp.inf112.projects.robotsim.server.FactoryPersistenceServer;
+import fr.tp.inf112.projects.robotsim.server.PersistenceJournal;
+
+/**
+ * Throughput of durable PERSISTs from a growing number of concurrent clients, each saving its own factory, against a
+ * {@link FactoryPersistenceServer} forcing every file to disk and one sharing the fsyncs of its
+ * {@link PersistenceJournal}. Then checks that concurrent saves of a same factory leave one of them whole, and that a
+ * save journaled but not written to its file before a crash is written when the server starts again.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.server.test.DurablePersistBenchmark [persists per client] [robots]
+ */
+public class DurablePersistBenchmark {
+
+	private static final int[] CLIENTS = { 1, 2, 4, 8, 16 };
+
+	private static final List<FactoryPersistenceServer> SERVERS = new ArrayList<>();
+
+	private static final List<Integer> PORTS = new ArrayList<>();
+
+	public static void main(String[] args) throws Exception {
+		final int persists = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		final int robots = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		Logger.getLogger("").setLevel(Level.OFF);
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final File forcedDirectory = Files.createTempDirectory("persistence").toFile();
+		final File journalDirectory = Files.createTempDirectory("persistence").toFile();
+		final int forcedPort = startServer(forcedDirectory, false);
+		final int journalPort = startServer(journalDirectory, true);
+		final Factory factory = BenchmarkFixtures.createRoomsFactory("Benchmark Factory", robots);
+
+		System.out.println("================================================================================");
+		System.out.println("                    DURABLE PERSIST BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Factory:                " + factory.getComponents().size() + " components, "
+				+ PersistenceProtocol.serialize(factory).length + " bytes serialized");
+		System.out.println("  Persists:               " + persists + " per client, each client its own file");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println(String.format("  %-10s %20s %20s %16s", "Clients", "fsync each (/s)", "journal (/s)",
+				"files/fsync"));
+
+		// Warm-up.
+		measure(forcedPort, 2, persists / 2, robots);
+		measure(journalPort, 2, persists / 2, robots);
+
+		for (final int clients : CLIENTS) {
+			final double forcedRate = measure(forcedPort, clients, persists, robots);
+			final long commitsBefore = server(journalPort).getJournal().getCommits();
+			final long recordsBefore = server(journalPort).getJournal().getRecords();
+			final double journalRate = measure(journalPort, clients, persists, robots);
+			final double filesPerCommit = (server(journalPort).getJournal().getRecords() - recordsBefore)
+					/ (double) (server(journalPort).getJournal().getCommits() - commitsBefore);
+
+			System.out.println(String.format("  %-10d %20.0f %20.0f %16.1f", clients, forcedRate, journalRate,
+					filesPerCommit));
+		}
+
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  Concurrent saves of one factory leave one whole, no temporary file: "
+				+ checkSameFactory(journalPort, journalDirectory, robots));
+		System.out.println("  Save journaled before a crash written on restart: " + checkRecovery(robots));
+		System.out.println("================================================================================");
+
+		for (final FactoryPersistenceServer server : SERVERS) {
+			server.stop();
+		}
+		delete(forcedDirectory);
+		delete(journalDirectory);
+		System.exit(0);
+	}
+
+	private static FactoryPersistenceServer server(final int port) {
+		return SERVERS.get(PORTS.indexOf(port));
+	}
+
+	/**
+	 * @return the persists per second of all the clients together.
+	 */
+	private static double measure(final int port, final int clients, final int persists, final int robots)
+			throws Exception {
+		final CountDownLatch ready = new CountDownLatch(clients);
+		final CountDownLatch go = new CountDownLatch(1);
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		final List<Thread> threads = new ArrayList<>();
+
+		for (int client = 0; client < clients; client++) {
+			final Factory factory = BenchmarkFixtures.createRoomsFactory("Benchmark Factory", robots);
+			factory.setId("client-" + client + ".factory");
+			final Thread thread = new Thread(() -> {
+				final RemoteFactoryPersistenceManager manager = new RemoteFactoryPersistenceManager(null, "localhost",
+						port, 1);
+
+				try {
+					manager.testConnection();
+					ready.countDown();
+					go.await();
+
+					for (int index = 0; index < persists; index++) {
+						manager.persist(factory);
+					}
+				} catch (Exception e) {
+					failure.set(e);
+				} finally {
+					manager.close();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		ready.await();
+		final long start = System.nanoTime();
+		go.countDown();
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		final long nanos = System.nanoTime() - start;
+
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+
+		return clients * persists / (nanos / 1e9);
+	}
+
+	private static boolean checkSameFactory(final int port, final File directory, final int robots)
+			throws Exception {
+		final String fileId = "shared.factory";
+		final List<Thread> threads = new ArrayList<>();
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+
+		for (int client = 0; client < 8; client++) {
+			final Factory factory = BenchmarkFixtures.createRoomsFactory("Client " + client, robots + client);
+			factory.setId(fileId);
+			final Thread thread = new Thread(() -> {
+				final RemoteFactoryPersistenceManager manager = new RemoteFactoryPersistenceManager(null, "localhost",
+						port, 1);
+
+				try {
+					for (int index = 0; index < 20; index++) {
+						manager.persist(factory);
+					}
+				} catch (Exception e) {
+					failure.set(e);
+				} finally {
+					manager.close();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+
+		final Factory read = (Factory) new RemoteFactoryPersistenceManager(null, "localhost", port, 0).read(fileId);
+		final int client = Integer.parseInt(read.getName().substring("Client ".length()));
+		final boolean whole = read.getComponents().size() == BenchmarkFixtures.createRoomsFactory("", robots + client)
+				.getComponents().size();
+		final String[] temporaryFiles = directory.list((dir, name) -> name.endsWith(".tmp"));
+
+		return whole && temporaryFiles.length == 0;
+	}
+
+	/**
+	 * Appends a save to the journal of a directory without writing its file, as a crash right after the fsync would,
+	 * then a record cut short, and starts a server on the directory.
+	 */
+	private static boolean checkRecovery(final int robots) throws Exception {
+		final File directory = Files.createTempDirectory("persistence").toFile();
+		final PersistenceJournal journal = new PersistenceJournal(directory, PersistenceJournal.DEFAULT_CHECKPOINT_BYTES);
+		journal.recover((fileId, content) -> {
+		});
+		journal.append("crashed.factory",
+				PersistenceProtocol.serialize(BenchmarkFixtures.createRoomsFactory("Crashed Factory", robots)));
+		journal.close();
+		Files.write(new File(directory, PersistenceJournal.FILE_NAME).toPath(), new byte[] { 0, 0, 1, 0, 42 },
+				StandardOpenOption.APPEND);
+
+		final int port = startServer(directory, true);
+		final Factory read = (Factory) new RemoteFactoryPersistenceManager(null, "localhost", port, 0)
+				.read("crashed.factory");
+		server(port).stop();
+		delete(directory);
+
+		return "Crashed Factory".equals(read.getName());
+	}
+
+	/**
+	 * @return the port of the server started.
+	 */
+	private static int startServer(final File directory, final boolean journal) throws Exception {
+		final int port;
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+
+		final FactoryPersistenceServer server = new FactoryPersistenceServer(port, directory,
+				FactoryPersistenceServer.DEFAULT_WORKERS, FactoryPersistenceServer.DEFAULT_MAX_CONNECTIONS,
+				FactoryPersistenceServer.DEFAULT_REQUEST_TIMEOUT_MS, FactoryPersistenceServer.DEFAULT_CACHE_BYTES,
+				FactoryPersistenceServer.DEFAULT_TRANSFER_BYTES, journal);
+		final Thread serverThread = new Thread(() -> {
+			try {
+				server.start();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, "Persistence server " + port);
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		SERVERS.add(server);
+		PORTS.add(port);
+
+		while (!new RemoteFactoryPersistenceManager(null, "localhost", port, 0).testConnection()) {
+			Thread.sleep(50);
+		}
+
+		return port;
+	}
+
+	private static void delete(final File directory) {
+		for (final File entry : directory.listFiles()) {
+			entry.delete();
+		}
+		directory.delete();
+	}
+}
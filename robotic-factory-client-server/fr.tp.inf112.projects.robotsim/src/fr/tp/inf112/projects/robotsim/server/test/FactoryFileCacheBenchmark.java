@@ -0,0 +1,181 @@
+package fr.tp.inf112.projects.robotsim.server.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.PersistenceProtocol;
+import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.test.BenchmarkFixtures;
+import fr.tp.inf112.projects.robotsim.server.FactoryFileCache;
+import fr.tp.inf112.projects.robotsim.server.FactoryPersistenceServer;
+
+/**
+ * Latency of reading the same factory again and again, as repeated simulation starts do, from a
+ * {@link FactoryPersistenceServer} keeping factory files in memory and from one reading them from disk, with the binary
+ * protocol and with one serialized object per connection. Then checks that a file changed behind the server is read
+ * again.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.server.test.FactoryFileCacheBenchmark [requests] [robots]
+ */
+public class FactoryFileCacheBenchmark {
+
+	private static final String FILE_ID = "benchmark.factory";
+
+	private static final int FILE_READS = 10000;
+
+	private static final List<FactoryPersistenceServer> SERVERS = new ArrayList<>();
+
+	public static void main(String[] args) throws Exception {
+		final int requests = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		final int robots = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		Logger.getLogger("").setLevel(Level.OFF);
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final File directory = Files.createTempDirectory("persistence").toFile();
+		final int cachedPort = startServer(directory, FactoryPersistenceServer.DEFAULT_CACHE_BYTES);
+		final int uncachedPort = startServer(directory, 0);
+
+		final Factory factory = createFactory("Benchmark Factory", robots);
+		factory.setId(FILE_ID);
+		manager(cachedPort, 1).persist(factory);
+		final long fileLength = new File(directory, FILE_ID).length();
+
+		final long[] cachedBinary = measure(manager(cachedPort, 1), requests);
+		final long[] uncachedBinary = measure(manager(uncachedPort, 1), requests);
+		final long[] cachedObject = measure(manager(cachedPort, 0), requests);
+		final long[] uncachedObject = measure(manager(uncachedPort, 0), requests);
+
+		// What the server itself spends getting the content of the file.
+		final FactoryFileCache cache = new FactoryFileCache(FactoryPersistenceServer.DEFAULT_CACHE_BYTES);
+		final Path path = new File(directory, FILE_ID).toPath();
+		long cacheNanos = 0;
+		long diskNanos = 0;
+		for (int round = 0; round < 2; round++) {
+			long start = System.nanoTime();
+			for (int index = 0; index < FILE_READS; index++) {
+				cache.read(path);
+			}
+			cacheNanos = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int index = 0; index < FILE_READS; index++) {
+				Files.readAllBytes(path);
+			}
+			diskNanos = System.nanoTime() - start;
+		}
+
+		// A file written behind the server must not be served from memory.
+		final File file = new File(directory, FILE_ID);
+		final Factory changed = createFactory("Changed Factory", robots);
+		changed.setId(FILE_ID);
+		Files.write(file.toPath(), PersistenceProtocol.serialize(changed));
+		Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(file.lastModified() + 2000));
+		final boolean reread = "Changed Factory".equals(((Factory) manager(cachedPort, 1).read(FILE_ID)).getName());
+
+		System.out.println("================================================================================");
+		System.out.println("                    FACTORY FILE CACHE BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Factory:                " + factory.getComponents().size() + " components, "
+				+ fileLength / 1024 + " KiB serialized");
+		System.out.println("  Requests:               " + requests + " READs of the same file, one at a time");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println(String.format("  %-34s %12s %12s", "", "p50 (us)", "p99 (us)"));
+		print("Binary, cached", cachedBinary);
+		print("Binary, from disk", uncachedBinary);
+		print("Object per connection, cached", cachedObject);
+		print("Object per connection, from disk", uncachedObject);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println(String.format("  File content from the cache:      %8.1f us", cacheNanos / 1e3 / FILE_READS));
+		System.out.println(String.format("  File content from disk:           %8.1f us", diskNanos / 1e3 / FILE_READS));
+		System.out.println("  Cache hits / misses:    " + SERVERS.get(0).getFileCache().getHits() + " / "
+				+ SERVERS.get(0).getFileCache().getMisses());
+		System.out.println("  File changed behind the server read again: " + reread);
+		System.out.println("================================================================================");
+
+		for (final FactoryPersistenceServer server : SERVERS) {
+			server.stop();
+		}
+		for (final File entry : directory.listFiles()) {
+			entry.delete();
+		}
+		directory.delete();
+		System.exit(0);
+	}
+
+	/**
+	 * @return the port of the server started.
+	 */
+	private static int startServer(final File directory, final long cacheBytes) throws Exception {
+		final int port;
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+
+		final FactoryPersistenceServer server = new FactoryPersistenceServer(port, directory,
+				FactoryPersistenceServer.DEFAULT_WORKERS, FactoryPersistenceServer.DEFAULT_MAX_CONNECTIONS,
+				FactoryPersistenceServer.DEFAULT_REQUEST_TIMEOUT_MS, cacheBytes,
+				FactoryPersistenceServer.DEFAULT_TRANSFER_BYTES, false);
+		final Thread serverThread = new Thread(() -> {
+			try {
+				server.start();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, "Persistence server " + port);
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		SERVERS.add(server);
+		while (!manager(port, 0).testConnection()) {
+			Thread.sleep(50);
+		}
+
+		return port;
+	}
+
+	private static RemoteFactoryPersistenceManager manager(final int port, final int poolSize) {
+		return new RemoteFactoryPersistenceManager(null, "localhost", port, poolSize);
+	}
+
+	/**
+	 * @return the sorted round-trip times, in nanoseconds, after as many warm-up requests.
+	 */
+	private static long[] measure(final RemoteFactoryPersistenceManager manager, final int requests)
+			throws IOException {
+		final long[] times = new long[requests];
+
+		for (int index = -requests; index < requests; index++) {
+			final long start = System.nanoTime();
+			manager.read(FILE_ID);
+
+			if (index >= 0) {
+				times[index] = System.nanoTime() - start;
+			}
+		}
+
+		manager.close();
+		Arrays.sort(times);
+		return times;
+	}
+
+	private static void print(final String label, final long[] times) {
+		System.out.println(String.format("  %-34s %12.1f %12.1f", label,
+				BenchmarkFixtures.percentile(times, 0.50) / 1e3, BenchmarkFixtures.percentile(times, 0.99) / 1e3));
+	}
+
+	private static Factory createFactory(final String name, final int robotCount) {
+		return BenchmarkFixtures.createRoomsFactory(name, robotCount,
+				index -> new CircularShape(5 + index % 20 * 4, 85 + index / 20 * 4, 1));
+	}
+}
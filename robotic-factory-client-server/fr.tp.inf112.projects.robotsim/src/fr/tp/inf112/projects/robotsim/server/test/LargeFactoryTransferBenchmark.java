@@ -0,0 +1,193 @@
+package fr.tp.inf112.projects.robotsim.server.test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.PersistenceProtocol;
+import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.test.BenchmarkFixtures;
+import fr.tp.inf112.projects.robotsim.server.FactoryPersistenceServer;
+
+/**
+ * Throughput of binary READs of a factory file of several megabytes from a {@link FactoryPersistenceServer} sending
+ * it from disk with {@link java.nio.channels.FileChannel#transferTo}, from one sending it from its cache and from one
+ * reading it into memory every time. The client reads and checks the frames without deserializing the factory, so
+ * that the server and the socket are measured; the rounds alternate between the servers.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.server.test.LargeFactoryTransferBenchmark [reads] [robots] [rounds]
+ */
+public class LargeFactoryTransferBenchmark {
+
+	private static final String FILE_ID = "large.factory";
+
+	private static final String[] LABELS = { "transferTo from disk", "heap copy, cached", "heap copy, from disk" };
+
+	public static void main(String[] args) throws Exception {
+		final int reads = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		final int robots = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		Logger.getLogger("").setLevel(Level.OFF);
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final File directory = Files.createTempDirectory("persistence").toFile();
+		final FactoryPersistenceServer[] servers = new FactoryPersistenceServer[LABELS.length];
+		final int[] ports = new int[LABELS.length];
+		ports[0] = startServer(servers, 0, directory, FactoryPersistenceServer.DEFAULT_CACHE_BYTES,
+				FactoryPersistenceServer.DEFAULT_TRANSFER_BYTES);
+		ports[1] = startServer(servers, 1, directory, FactoryPersistenceServer.DEFAULT_CACHE_BYTES, Long.MAX_VALUE);
+		ports[2] = startServer(servers, 2, directory, 0, Long.MAX_VALUE);
+
+		// Robots stacked on the same cells: only the size of the file matters here.
+		final Factory factory = BenchmarkFixtures.createRoomsFactory("Large Benchmark Factory", robots,
+				index -> new CircularShape(5 + index % 40 * 4, 85 + index / 40 % 20 * 4, 1));
+		factory.setId(FILE_ID);
+		final RemoteFactoryPersistenceManager writer = new RemoteFactoryPersistenceManager(null, "localhost",
+				ports[1], 1);
+		writer.persist(factory);
+		writer.close();
+		final long fileLength = new File(directory, FILE_ID).length();
+
+		final long[][] times = new long[LABELS.length][reads * rounds];
+		final long[] allocated = new long[LABELS.length];
+
+		for (int round = -1; round < rounds; round++) {
+			for (int server = 0; server < LABELS.length; server++) {
+				final long allocatedBefore = workerAllocatedBytes();
+				final long[] roundTimes = measure(ports[server], reads, fileLength);
+
+				if (round >= 0) {
+					System.arraycopy(roundTimes, 0, times[server], round * reads, reads);
+					allocated[server] += workerAllocatedBytes() - allocatedBefore;
+				}
+			}
+		}
+
+		// The factory sent from disk is the one persisted.
+		final boolean intact = ((Factory) new RemoteFactoryPersistenceManager(null, "localhost", ports[0], 1)
+				.read(FILE_ID)).getComponents().size() == factory.getComponents().size();
+
+		System.out.println("================================================================================");
+		System.out.println("                    LARGE FACTORY TRANSFER BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Factory:                " + factory.getComponents().size() + " components, "
+				+ String.format("%.1f", fileLength / 1048576.0) + " MiB serialized");
+		System.out.println("  Reads:                  " + rounds + " rounds of " + reads
+				+ " binary READs per server, one at a time");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println(String.format("  %-24s %10s %10s %12s %16s", "Server", "p50 (ms)", "p99 (ms)", "MiB/s",
+				"alloc/read (KiB)"));
+
+		for (int server = 0; server < LABELS.length; server++) {
+			final long[] sorted = times[server].clone();
+			Arrays.sort(sorted);
+			final long total = Arrays.stream(sorted).sum();
+			System.out.println(String.format("  %-24s %10.2f %10.2f %12.0f %16.0f", LABELS[server],
+					BenchmarkFixtures.percentile(sorted, 0.50) / 1e6, BenchmarkFixtures.percentile(sorted, 0.99) / 1e6,
+					fileLength * (double) sorted.length / 1048576.0 / (total / 1e9),
+					allocated[server] / 1024.0 / sorted.length));
+		}
+
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  Factory read from the transferring server deserializes intact: " + intact);
+		System.out.println("================================================================================");
+
+		for (final FactoryPersistenceServer server : servers) {
+			server.stop();
+		}
+		for (final File entry : directory.listFiles()) {
+			entry.delete();
+		}
+		directory.delete();
+		System.exit(0);
+	}
+
+	/**
+	 * @return the port of the server started.
+	 */
+	private static int startServer(final FactoryPersistenceServer[] servers, final int index, final File directory,
+			final long cacheBytes, final long transferBytes) throws Exception {
+		final int port;
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+
+		servers[index] = new FactoryPersistenceServer(port, directory, FactoryPersistenceServer.DEFAULT_WORKERS,
+				FactoryPersistenceServer.DEFAULT_MAX_CONNECTIONS, FactoryPersistenceServer.DEFAULT_REQUEST_TIMEOUT_MS,
+				cacheBytes, transferBytes, false);
+		final Thread serverThread = new Thread(() -> {
+			try {
+				servers[index].start();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, "Persistence server " + port);
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		while (!new RemoteFactoryPersistenceManager(null, "localhost", port, 0).testConnection()) {
+			Thread.sleep(50);
+		}
+
+		return port;
+	}
+
+	/**
+	 * @return the round-trip times, in nanoseconds, of reads of the whole file on one connection.
+	 */
+	private static long[] measure(final int port, final int reads, final long fileLength) throws IOException {
+		final long[] times = new long[reads];
+
+		try (Socket socket = new Socket("localhost", port)) {
+			socket.setTcpNoDelay(true);
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+			out.writeInt(PersistenceProtocol.MAGIC);
+
+			for (int index = 0; index < reads; index++) {
+				final long start = System.nanoTime();
+				PersistenceProtocol.writeFrame(out, PersistenceProtocol.READ, index, PersistenceProtocol.utf8(FILE_ID));
+				out.flush();
+				final PersistenceProtocol.Frame response = PersistenceProtocol.readFrame(in);
+				times[index] = System.nanoTime() - start;
+
+				if (response.getOpcode() != PersistenceProtocol.READ || !response.isIntact()
+						|| response.getPayload().length != fileLength) {
+					throw new IOException("Unexpected response to read " + index);
+				}
+			}
+		}
+
+		return times;
+	}
+
+	/**
+	 * @return the bytes allocated so far by the worker threads of all the servers.
+	 */
+	private static long workerAllocatedBytes() {
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long bytes = 0;
+
+		for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().startsWith("Persistence worker")) {
+				bytes += Math.max(0, threads.getThreadAllocatedBytes(thread.getId()));
+			}
+		}
+
+		return bytes;
+	}
+}
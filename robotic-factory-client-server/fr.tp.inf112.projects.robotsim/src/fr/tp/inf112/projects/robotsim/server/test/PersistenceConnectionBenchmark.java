@@ -0,0 +1,178 @@
+package fr.tp.inf112.projects.robotsim.server.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
+import fr.tp.inf112.projects.robotsim.model.test.BenchmarkFixtures;
+import fr.tp.inf112.projects.robotsim.server.FactoryPersistenceServer;
+
+/**
+ * Time of small persistence requests with a connection opened per request and with kept-alive connections, from one
+ * thread and from several, against a {@link FactoryPersistenceServer} started in-process on a temporary directory.
+ * Then a burst of clients, each with a kept-alive connection of its own, more than the server has workers.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.server.test.PersistenceConnectionBenchmark [requests] [threads] [clients]
+ */
+public class PersistenceConnectionBenchmark {
+
+	private static final String FILE_ID = "benchmark.factory";
+
+	public static void main(String[] args) throws Exception {
+		final int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		final int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		final int clients = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+
+		Logger.getLogger("").setLevel(Level.OFF);
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final File directory = Files.createTempDirectory("persistence").toFile();
+		final int port;
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+
+		final FactoryPersistenceServer server = new FactoryPersistenceServer(port, directory);
+		final Thread serverThread = new Thread(() -> {
+			try {
+				server.start();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, "Persistence server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		final RemoteFactoryPersistenceManager perRequest = new RemoteFactoryPersistenceManager(null, "localhost", port,
+				0);
+		final RemoteFactoryPersistenceManager pooled = new RemoteFactoryPersistenceManager(null, "localhost", port);
+
+		while (!perRequest.testConnection()) {
+			Thread.sleep(50);
+		}
+
+		final Factory factory = BenchmarkFixtures.createRoomsFactory("Benchmark Factory", 1);
+		factory.setId(FILE_ID);
+		pooled.persist(factory);
+
+		// Warm-up.
+		run(perRequest, requests / 4, 1);
+		run(pooled, requests / 4, 1);
+
+		final long perRequestSequential = run(perRequest, requests, 1);
+		final long pooledSequential = run(pooled, requests, 1);
+		final long perRequestConcurrent = run(perRequest, requests, threads);
+		final long pooledConcurrent = run(pooled, requests, threads);
+		final long burst = runBurst(port, requests, clients);
+		final int burstConnections = server.getOpenConnections();
+
+		pooled.close();
+		server.stop();
+
+		System.out.println("================================================================================");
+		System.out.println("                    PERSISTENCE CONNECTION BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Requests:               " + requests + " (LIST and READ alternately)");
+		System.out.println("  Concurrent threads:     " + threads);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println(String.format("  One thread, connection per request:   %8.1f us / request",
+				perRequestSequential / 1e3 / requests));
+		System.out.println(String.format("  One thread, kept-alive connections:   %8.1f us / request",
+				pooledSequential / 1e3 / requests));
+		System.out.println(String.format("  %d threads, connection per request:    %8.1f us / request", threads,
+				perRequestConcurrent / 1e3 / requests));
+		System.out.println(String.format("  %d threads, kept-alive connections:    %8.1f us / request", threads,
+				pooledConcurrent / 1e3 / requests));
+		System.out.println(String.format("  %d clients, one connection each:     %8.1f us / request", clients,
+				burst / 1e3 / requests));
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  Server workers:         " + FactoryPersistenceServer.DEFAULT_WORKERS);
+		System.out.println("  Connections after burst: " + burstConnections + " open, "
+				+ server.getRejectedConnections() + " rejected");
+		System.out.println("  Requests served:        " + server.getRequestCount());
+		System.out.println(String.format("  Server-side latency:    %.3f ms on average", server.getMeanRequestMillis()));
+		System.out.println("================================================================================");
+
+		for (final File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+		System.exit(0);
+	}
+
+	/**
+	 * @return the nanoseconds taken by the requests, spread over the threads.
+	 */
+	private static long run(final RemoteFactoryPersistenceManager manager, final int requests, final int threads)
+			throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Future<?>> results = new ArrayList<>();
+		final long start = System.nanoTime();
+
+		for (int thread = 0; thread < threads; thread++) {
+			final int count = requests / threads + (thread < requests % threads ? 1 : 0);
+			results.add(executor.submit(() -> {
+				for (int index = 0; index < count; index++) {
+					if (index % 2 == 0) {
+						manager.listFactoryFiles();
+					} else if (!FILE_ID.equals(((Factory) manager.read(FILE_ID)).getId())) {
+						throw new IllegalStateException("Wrong factory read");
+					}
+				}
+				return null;
+			}));
+		}
+
+		for (final Future<?> result : results) {
+			result.get();
+		}
+
+		final long nanos = System.nanoTime() - start;
+		executor.shutdown();
+		return nanos;
+	}
+
+	/**
+	 * @return the nanoseconds taken by the requests, spread over clients of their own.
+	 */
+	private static long runBurst(final int port, final int requests, final int clients) throws Exception {
+		final List<RemoteFactoryPersistenceManager> managers = new ArrayList<>();
+
+		for (int client = 0; client < clients; client++) {
+			managers.add(new RemoteFactoryPersistenceManager(null, "localhost", port, 1));
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(clients);
+		final List<Future<?>> results = new ArrayList<>();
+		final long start = System.nanoTime();
+
+		for (int client = 0; client < clients; client++) {
+			final RemoteFactoryPersistenceManager manager = managers.get(client);
+			final int count = requests / clients + (client < requests % clients ? 1 : 0);
+			results.add(executor.submit(() -> {
+				for (int index = 0; index < count; index++) {
+					manager.listFactoryFiles();
+				}
+				return null;
+			}));
+		}
+
+		for (final Future<?> result : results) {
+			result.get();
+		}
+
+		final long nanos = System.nanoTime() - start;
+		executor.shutdown();
+		return nanos;
+	}
+}
@@ -0,0 +1,157 @@
+package fr.tp.inf112.projects.robotsim.server.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
+import fr.tp.inf112.projects.robotsim.model.test.BenchmarkFixtures;
+import fr.tp.inf112.projects.robotsim.server.FactoryPersistenceServer;
+
+/**
+ * Round-trip latency of each persistence request with the protocols the server speaks: one serialized object per
+ * connection, and the binary frames of {@link fr.tp.inf112.projects.robotsim.model.PersistenceProtocol} on a
+ * kept-alive connection. Requests are sent one
+ * at a time against a {@link FactoryPersistenceServer} started in-process on a temporary directory.
+ *
+ * Usage: java fr.tp.inf112.projects.robotsim.server.test.PersistenceProtocolBenchmark [requests] [robots]
+ */
+public class PersistenceProtocolBenchmark {
+
+	private static final String FILE_ID = "benchmark.factory";
+
+	private enum Command {
+		READ, PERSIST, LIST, PING
+	}
+
+	private interface Client {
+
+		Object call(Command command, Factory factory) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final int requests = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		final int robots = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+		Logger.getLogger("").setLevel(Level.OFF);
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final File directory = Files.createTempDirectory("persistence").toFile();
+		final int port;
+		try (ServerSocket probe = new ServerSocket(0)) {
+			port = probe.getLocalPort();
+		}
+
+		final FactoryPersistenceServer server = new FactoryPersistenceServer(port, directory);
+		final Thread serverThread = new Thread(() -> {
+			try {
+				server.start();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}, "Persistence server");
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		final RemoteFactoryPersistenceManager perRequest = new RemoteFactoryPersistenceManager(null, "localhost", port,
+				0);
+		final RemoteFactoryPersistenceManager binary = new RemoteFactoryPersistenceManager(null, "localhost", port, 1);
+
+		while (!perRequest.testConnection()) {
+			Thread.sleep(50);
+		}
+
+		final Factory factory = BenchmarkFixtures.createRoomsFactory("Benchmark Factory", robots);
+		factory.setId(FILE_ID);
+		perRequest.persist(factory);
+
+		final Client perRequestClient = (command, data) -> {
+			switch (command) {
+			case READ:
+				return perRequest.read(FILE_ID);
+			case PERSIST:
+				perRequest.persist(data);
+				return null;
+			case LIST:
+				return perRequest.listFactoryFiles();
+			default:
+				return null;
+			}
+		};
+
+		final Client binaryClient = (command, data) -> {
+			switch (command) {
+			case READ:
+				return binary.read(FILE_ID);
+			case PERSIST:
+				binary.persist(data);
+				return null;
+			case LIST:
+				return binary.listFactoryFiles();
+			default:
+				return binary.testConnection();
+			}
+		};
+
+		System.out.println("================================================================================");
+		System.out.println("                    PERSISTENCE PROTOCOL BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Requests:               " + requests + " of each kind, one at a time");
+		System.out.println("  Factory:                " + factory.getComponents().size() + " components, "
+				+ new File(directory, FILE_ID).length() + " bytes serialized");
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println(String.format("  %-30s %-8s %12s %12s", "Protocol", "Request", "p50 (us)", "p99 (us)"));
+
+		for (final Command command : Command.values()) {
+			if (command != Command.PING) {
+				print("object per connection", command, measure(perRequestClient, command, factory, requests));
+			}
+			print("binary frames, kept-alive", command, measure(binaryClient, command, factory, requests));
+		}
+
+		System.out.println("================================================================================");
+
+		binary.close();
+		server.stop();
+
+		for (final File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+		System.exit(0);
+	}
+
+	/**
+	 * @return the sorted round-trip times, in nanoseconds, after as many warm-up requests.
+	 */
+	private static long[] measure(final Client client, final Command command,
+			final Factory factory, final int requests) throws Exception {
+		final long[] times = new long[requests];
+
+		for (int index = -requests; index < requests; index++) {
+			final long start = System.nanoTime();
+			final Object result = client.call(command, factory);
+
+			if (result instanceof Exception) {
+				throw (Exception) result;
+			}
+
+			if (index >= 0) {
+				times[index] = System.nanoTime() - start;
+			}
+		}
+
+		Arrays.sort(times);
+		return times;
+	}
+
+	private static void print(final String protocol, final Command command, final long[] times) {
+		System.out.println(String.format("  %-30s %-8s %12.1f %12.1f", protocol, command,
+				BenchmarkFixtures.percentile(times, 0.50) / 1e3, BenchmarkFixtures.percentile(times, 0.99) / 1e3));
+	}
+}
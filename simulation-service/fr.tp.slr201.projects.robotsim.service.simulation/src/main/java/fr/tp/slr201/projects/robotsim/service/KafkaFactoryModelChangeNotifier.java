@@ -1,6 +1,11 @@
 package fr.tp.slr201.projects.robotsim.service;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -10,48 +15,188 @@ import org.springframework.kafka.support.SendResult;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 
-import fr.tp.inf112.projects.canvas.controller.Observer;
 import fr.tp.inf112.projects.robotsim.model.Factory;
-import fr.tp.inf112.projects.robotsim.model.FactoryModelChangedNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.BackpressurePolicy;
+import fr.tp.inf112.projects.robotsim.model.frame.CoalescingFrameNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameSink;
 
-public class KafkaFactoryModelChangeNotifier implements FactoryModelChangedNotifier {
+/**
+ * Publishes the changes of a factory on its Kafka topic as frames: the layout of the factory once, then periodic
+ * keyframes carrying the state of all components and deltas carrying only the components that moved or changed
+ * state in between. Changes are coalesced into at most one frame per interval, sent from the publisher thread.
+ *
+ * The frames go to the local sink from the sender thread of the notifier, and to Kafka from a thread of their own
+ * with its own bounded queue: when the producer buffer is full or the broker is down, sending blocks only that
+ * thread, for up to max.block.ms, and the local viewers and the frame log keep up. A frame that finds the Kafka queue
+ * full is dropped and the next frame made a keyframe, or a layout frame if it was one. The simulation itself never
+ * waits for the broker.
+ *
+ * Frames are keyed by factory id: on a topic shared by several simulations, all the frames of a factory go to the
+ * same partition and are consumed in order.
+ */
+public class KafkaFactoryModelChangeNotifier extends CoalescingFrameNotifier {
 
 	private static final Logger LOGGER = Logger.getLogger(KafkaFactoryModelChangeNotifier.class.getName());
 
-	private final Factory factoryModel;
-	private final KafkaTemplate<String, Factory> simulationEventTemplate;
-	private final String topicName;
+	/**
+	 * Sends the frames to the topic from its own thread, in order.
+	 */
+	private static final class KafkaSender implements FrameSink {
 
-	public KafkaFactoryModelChangeNotifier(Factory factory, KafkaTemplate<String, Factory> kafkaTemplate) {
-		this.factoryModel = factory;
-		this.simulationEventTemplate = kafkaTemplate;
-		this.topicName = SimulationServiceUtils.getTopicName(factoryModel);
+		private final KafkaTemplate<String, FactoryFrame> kafkaTemplate;
+
+		private final String topicName;
+
+		private final String key;
+
+		private final BlockingQueue<FactoryFrame> queue;
+
+		private final Thread thread;
+
+		private final AtomicLong droppedFrames = new AtomicLong();
+
+		private volatile Consumer<FactoryFrame> overflowHandler;
+
+		private volatile boolean closed;
+
+		private KafkaSender(final Factory factory, final KafkaTemplate<String, FactoryFrame> kafkaTemplate,
+				final String topicName, final int queueCapacity) {
+			this.kafkaTemplate = kafkaTemplate;
+			this.topicName = topicName;
+			this.key = factory.getId();
+			this.queue = new ArrayBlockingQueue<>(queueCapacity);
+			this.thread = new Thread(this::run, "Kafka sender " + factory.getName());
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		@Override
+		public void publish(final FactoryFrame frame) {
+			if (queue.offer(frame)) {
+				return;
+			}
+
+			droppedFrames.incrementAndGet();
+			LOGGER.fine("Dropped " + frame + ", Kafka is behind");
+
+			final Consumer<FactoryFrame> handler = overflowHandler;
+			if (handler != null)
+				handler.accept(frame);
+		}
+
+		private void run() {
+			try {
+				while (!closed || !queue.isEmpty()) {
+					final FactoryFrame frame = queue.poll(DEFAULT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+					if (frame == null) {
+						continue;
+					}
+
+					try {
+						send(kafkaTemplate, topicName, key, frame);
+					} catch (final RuntimeException e) {
+						LOGGER.log(Level.WARNING, "Failed to send " + frame, e);
+					}
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void close() {
+			closed = true;
+
+			try {
+				thread.join(1000);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
+	private final KafkaSender kafkaSender;
+
+	public KafkaFactoryModelChangeNotifier(Factory factory, KafkaTemplate<String, FactoryFrame> kafkaTemplate,
+			String topicName, long intervalMillis, int queueCapacity, BackpressurePolicy policy) {
+		this(factory, kafkaTemplate, topicName, null, intervalMillis, queueCapacity, policy);
+	}
+
+	/**
+	 * @param localSink Also receives every frame sent, for viewers streaming from the service; may be null.
+	 */
+	public KafkaFactoryModelChangeNotifier(Factory factory, KafkaTemplate<String, FactoryFrame> kafkaTemplate,
+			String topicName, FrameSink localSink, long intervalMillis, int queueCapacity, BackpressurePolicy policy) {
+		this(factory, new KafkaSender(factory, kafkaTemplate, topicName, queueCapacity), localSink, intervalMillis,
+				queueCapacity, policy);
+	}
+
+	private KafkaFactoryModelChangeNotifier(Factory factory, KafkaSender kafkaSender, FrameSink localSink,
+			long intervalMillis, int queueCapacity, BackpressurePolicy policy) {
+		super(factory, frame -> {
+			try {
+				if (localSink != null)
+					localSink.publish(frame);
+			} finally {
+				kafkaSender.publish(frame);
+			}
+		}, intervalMillis, queueCapacity, policy);
+		this.kafkaSender = kafkaSender;
+		// The frames sent to Kafka after a dropped one no longer follow the previous one.
+		kafkaSender.overflowHandler = dropped -> {
+			if (dropped.isLayout())
+				requestLayout();
+			else
+				requestKeyframe();
+		};
+	}
+
+	/**
+	 * Sends the layout and the current state with the next frame, for consumers that just connected.
+	 */
+	public void sendLayout() {
+		requestLayout();
+	}
+
+	/**
+	 * @return the number of frames dropped because the Kafka queue was full.
+	 */
+	public long getKafkaDroppedFrames() {
+		return kafkaSender.droppedFrames.get();
+	}
+
+	/**
+	 * @return the number of frames waiting to be sent to Kafka.
+	 */
+	public int getKafkaQueuedFrames() {
+		return kafkaSender.queue.size();
+	}
+
+	/**
+	 * Closes the notifier, then lets the Kafka thread send the frames left.
+	 */
 	@Override
-	public void notifyObservers() {
-		final Message<Factory> factoryMessage = MessageBuilder.withPayload(factoryModel)
-				.setHeader(KafkaHeaders.TOPIC, topicName).build();
+	public void close() {
+		super.close();
+		kafkaSender.close();
+	}
 
-		final CompletableFuture<SendResult<String, Factory>> sendResult = simulationEventTemplate.send(factoryMessage);
+	private static void send(final KafkaTemplate<String, FactoryFrame> kafkaTemplate, final String topicName,
+			final String key, final FactoryFrame frame) {
+		final Message<FactoryFrame> frameMessage = MessageBuilder.withPayload(frame)
+				.setHeader(KafkaHeaders.TOPIC, topicName).setHeader(KafkaHeaders.KEY, key).build();
+
+		final CompletableFuture<SendResult<String, FactoryFrame>> sendResult = kafkaTemplate.send(frameMessage);
 
 		// Asynchronous callback for logging. Does not block.
 		sendResult.whenComplete((result, ex) -> {
 			if (ex != null) {
 				LOGGER.log(Level.WARNING, "Failed to send async message: " + ex.getMessage());
 			} else {
-				LOGGER.fine("Sent factory state to " + result.getRecordMetadata().topic());
+				LOGGER.fine("Sent " + frame + " to " + result.getRecordMetadata().topic() + "-"
+						+ result.getRecordMetadata().partition());
 			}
 		});
 	}
-
-	@Override
-	public boolean addObserver(Observer observer) {
-		return false;
-	}
-
-	@Override
-	public boolean removeObserver(Observer observer) {
-		return false;
-	}
-}
\ No newline at end of file
+}
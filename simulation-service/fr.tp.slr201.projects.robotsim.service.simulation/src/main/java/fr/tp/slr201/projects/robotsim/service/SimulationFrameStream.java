@@ -0,0 +1,128 @@
+package fr.tp.slr201.projects.robotsim.service;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import fr.tp.inf112.projects.robotsim.model.frame.CoalescingFrameNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameConflater;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameRingBuffer;
+
+/**
+ * Streams the frames of a simulation to one viewer as server-sent events, straight from the frame buffer of the
+ * simulation.
+ *
+ * Each event is a frame in the binary format of {@link FrameCodec}, base64 encoded, named after its type. Frames are
+ * numbered per connection, so the viewer applies them with the usual sequence checks. While a send is in progress,
+ * the frames published meanwhile are folded into one: a slow viewer gets fewer, larger frames and never holds back the
+ * simulation or the other viewers.
+ */
+public class SimulationFrameStream implements Runnable {
+
+	private static final Logger LOGGER = Logger.getLogger(SimulationFrameStream.class.getName());
+
+	private static final long POLL_MILLIS = 100;
+
+	private static final long KEEP_ALIVE_MILLIS = 15000;
+
+	private static final long PREPARE_TIMEOUT_MILLIS = 10000;
+
+	private final String factoryId;
+
+	private final Supplier<FrameRingBuffer> frameBuffer;
+
+	private final Supplier<CoalescingFrameNotifier> notifier;
+
+	private final FrameCodec codec;
+
+	private final SseEmitter emitter;
+
+	private volatile boolean open = true;
+
+	/**
+	 * @param frameBuffer Supplies the frame buffer of the simulation, null while it is not prepared or once reset.
+	 * @param notifier Supplies the notifier of the simulation, asked for a keyframe when this stream lost frames.
+	 */
+	public SimulationFrameStream(String factoryId, Supplier<FrameRingBuffer> frameBuffer,
+			Supplier<CoalescingFrameNotifier> notifier, FrameCodec codec, SseEmitter emitter) {
+		this.factoryId = factoryId;
+		this.frameBuffer = frameBuffer;
+		this.notifier = notifier;
+		this.codec = codec;
+		this.emitter = emitter;
+		emitter.onCompletion(() -> open = false);
+		emitter.onTimeout(() -> open = false);
+		emitter.onError(e -> open = false);
+	}
+
+	@Override
+	public void run() {
+		try {
+			final FrameRingBuffer buffer = awaitFrameBuffer();
+
+			if (buffer == null) {
+				emitter.completeWithError(new IllegalStateException("Simulation not prepared: " + factoryId));
+				return;
+			}
+
+			final FrameRingBuffer.Reader reader = buffer.newReader();
+			final FrameConflater conflater = new FrameConflater();
+			long sequence = 0;
+			long lastSendTime = System.currentTimeMillis();
+
+			while (open && frameBuffer.get() == buffer) {
+				final FactoryFrame frame = reader.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+
+				if (frame != null && !conflater.offer(frame) && conflater.isWaitingForKeyframe()) {
+					final CoalescingFrameNotifier simulationNotifier = notifier.get();
+					if (simulationNotifier != null)
+						simulationNotifier.requestKeyframe();
+				}
+
+				// Frames still in the buffer go with this one.
+				if (reader.getLag() > 0)
+					continue;
+
+				if (conflater.hasPending()) {
+					final FactoryFrame folded = conflater.drain(++sequence);
+					emitter.send(SseEmitter.event().id(Long.toString(sequence))
+							.name(folded.getType().name().toLowerCase())
+							.data(Base64.getEncoder().encodeToString(codec.encode(folded))));
+					lastSendTime = System.currentTimeMillis();
+				} else if (System.currentTimeMillis() - lastSendTime > KEEP_ALIVE_MILLIS) {
+					emitter.send(SseEmitter.event().comment("keep-alive"));
+					lastSendTime = System.currentTimeMillis();
+				}
+			}
+
+			LOGGER.info("Stream of " + factoryId + " ended, " + sequence + " frames sent, "
+					+ conflater.getConflatedFrames() + " conflated, " + reader.getLostFrames() + " lost");
+			emitter.complete();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			emitter.complete();
+		} catch (IOException | IllegalStateException e) {
+			// The viewer went away.
+			LOGGER.log(Level.FINE, "Stream of " + factoryId + " closed", e);
+		}
+	}
+
+	private FrameRingBuffer awaitFrameBuffer() throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + PREPARE_TIMEOUT_MILLIS;
+		FrameRingBuffer buffer = frameBuffer.get();
+
+		while (buffer == null && open && System.currentTimeMillis() < deadline) {
+			Thread.sleep(POLL_MILLIS);
+			buffer = frameBuffer.get();
+		}
+
+		return buffer;
+	}
+}
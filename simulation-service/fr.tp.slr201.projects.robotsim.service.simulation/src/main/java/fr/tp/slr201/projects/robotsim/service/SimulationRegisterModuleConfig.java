@@ -3,30 +3,41 @@ package fr.tp.slr201.projects.robotsim.service;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
-import java.util.HashMap;
-import java.util.Map;
-import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonSerializer;
 
 import fr.tp.inf112.projects.robotsim.model.Component;
-import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.app.FactoryFrameSerializer;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
 import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
 import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
 
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.Map;
 
 @Configuration
 public class SimulationRegisterModuleConfig {
 
+	@Value("${simulation.kafka.producer-profile:" + SimulationServiceUtils.THROUGHPUT_PRODUCER_PROFILE + "}")
+	private String producerProfile;
+
+	@Value("${simulation.kafka.shared-topic:}")
+	private String sharedTopic;
+
+	@Value("${simulation.kafka.shared-topic-partitions:6}")
+	private int sharedTopicPartitions;
+
     @Bean
     @Primary
     ObjectMapper objectMapper() {
@@ -43,21 +54,19 @@ public class SimulationRegisterModuleConfig {
 	}
 
     /**
-     * Configures the Kafka Producer Factory.
+     * Configures the Kafka Producer Factory with the settings of simulation.kafka.producer-profile.
      *
      */
     @Bean
-    ProducerFactory<String, Factory> producerFactory() {
-		final Map<String, Object> config = new HashMap<>();
-		// Set the Kafka broker address
-		config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, SimulationServiceUtils.BOOTSTRAP_SERVERS);
+    ProducerFactory<String, FactoryFrame> producerFactory() {
+		final Map<String, Object> config = SimulationServiceUtils.getProducerProperties(producerProfile);
 
-		// Create a JSON serializer for the Factory object, using our custom ObjectMapper
-		final JsonSerializer<Factory> factorySerializer = new JsonSerializer<>(objectMapper());
+		// Binary frames; the factories of layout frames are written with our custom ObjectMapper
+		final FactoryFrameSerializer frameSerializer = new FactoryFrameSerializer(objectMapper());
 
 		// Create the producer factory
 		return new DefaultKafkaProducerFactory<>(config, new StringSerializer(),
-				factorySerializer);
+				frameSerializer);
 	}
 
     /**
@@ -66,7 +75,18 @@ public class SimulationRegisterModuleConfig {
      */
     @Bean
     @Primary
-    KafkaTemplate<String, Factory> kafkaTemplate() {
+    KafkaTemplate<String, FactoryFrame> kafkaTemplate() {
 		return new KafkaTemplate<>(producerFactory());
 	}
+
+    /**
+     * Creates the topic shared by all simulations when simulation.kafka.shared-topic is set. Frames are keyed by
+     * factory, so each simulation stays on one partition and keeps its order.
+     *
+     */
+    @Bean
+    @ConditionalOnExpression("!'${simulation.kafka.shared-topic:}'.isEmpty()")
+    NewTopic sharedSimulationTopic() {
+		return TopicBuilder.name(sharedTopic).partitions(sharedTopicPartitions).replicas(1).build();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package fr.tp.slr201.projects.robotsim.service;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameConflater;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameLog;
+
+/**
+ * Replays a recorded simulation run to one viewer, from any frame of it, as server-sent events in the format of
+ * {@link SimulationFrameStream}.
+ *
+ * The first event is a layout frame of the state at the requested frame, folded from the layout and keyframe before
+ * it and the deltas up to it; the following frames are sent at the pace they were recorded at, scaled by the speed. A
+ * run still being recorded is followed until it ends.
+ */
+public class SimulationReplayStream implements Runnable {
+
+	private static final Logger LOGGER = Logger.getLogger(SimulationReplayStream.class.getName());
+
+	private static final long POLL_MILLIS = 100;
+
+	private static final long KEEP_ALIVE_MILLIS = 15000;
+
+	// Pauses of the recorded run are not replayed longer than this.
+	private static final long MAX_WAIT_MILLIS = 1000;
+
+	private final FrameLog log;
+
+	private final boolean closeLog;
+
+	private final long fromSequence;
+
+	private final double speed;
+
+	private final FrameCodec codec;
+
+	private final SseEmitter emitter;
+
+	private volatile boolean open = true;
+
+	/**
+	 * @param closeLog Whether the log was opened for this replay only and is closed with it.
+	 * @param speed Replay speed relative to the recording, 0 for as fast as the viewer reads.
+	 */
+	public SimulationReplayStream(FrameLog log, boolean closeLog, long fromSequence, double speed, FrameCodec codec,
+			SseEmitter emitter) {
+		this.log = log;
+		this.closeLog = closeLog;
+		this.fromSequence = fromSequence;
+		this.speed = speed;
+		this.codec = codec;
+		this.emitter = emitter;
+		emitter.onCompletion(() -> open = false);
+		emitter.onTimeout(() -> open = false);
+		emitter.onError(e -> open = false);
+	}
+
+	@Override
+	public void run() {
+		long sequence = 0;
+
+		try {
+			final FrameLog.Reader reader = log.newReader(fromSequence);
+
+			if (reader == null) {
+				emitter.completeWithError(new IllegalStateException("No layout before frame " + fromSequence));
+				return;
+			}
+
+			// Everything up to the requested frame is sent as one layout frame.
+			final FrameConflater conflater = new FrameConflater();
+			FactoryFrame frame = reader.next();
+
+			while (frame != null && frame.getSequence() <= fromSequence) {
+				conflater.offer(frame);
+				frame = reader.next();
+			}
+
+			send(conflater.drain(++sequence));
+			long previousTime = reader.getTimeMillis();
+			long lastSendTime = System.currentTimeMillis();
+
+			while (open) {
+				if (frame == null) {
+					if (!log.isAppending())
+						break;
+					if (System.currentTimeMillis() - lastSendTime > KEEP_ALIVE_MILLIS) {
+						emitter.send(SseEmitter.event().comment("keep-alive"));
+						lastSendTime = System.currentTimeMillis();
+					}
+					Thread.sleep(POLL_MILLIS);
+					frame = reader.next();
+					continue;
+				}
+
+				if (speed > 0) {
+					final long wait = (long) ((reader.getTimeMillis() - previousTime) / speed);
+					if (wait > 0)
+						Thread.sleep(Math.min(wait, MAX_WAIT_MILLIS));
+				}
+
+				previousTime = reader.getTimeMillis();
+
+				// Renumbered for this connection; after a gap of the recording, deltas are skipped until a keyframe.
+				if (conflater.offer(frame)) {
+					send(conflater.drain(++sequence));
+					lastSendTime = System.currentTimeMillis();
+				}
+
+				frame = reader.next();
+			}
+
+			LOGGER.info("Replay of " + log.getFile().getFileName() + " from " + fromSequence + " ended, " + sequence
+					+ " frames sent");
+			emitter.complete();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			emitter.complete();
+		} catch (IOException | IllegalStateException e) {
+			// The viewer went away, or the log is corrupted.
+			LOGGER.log(Level.FINE, "Replay of " + log.getFile().getFileName() + " closed", e);
+		} finally {
+			if (closeLog) {
+				try {
+					log.close();
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, "Failed to close " + log.getFile(), e);
+				}
+			}
+		}
+	}
+
+	private void send(final FactoryFrame frame) throws IOException {
+		if (frame == null)
+			return;
+		emitter.send(SseEmitter.event().id(Long.toString(frame.getSequence())).name(frame.getType().name().toLowerCase())
+				.data(Base64.getEncoder().encodeToString(codec.encode(frame))));
+	}
+}
@@ -1,28 +1,49 @@
 package fr.tp.slr201.projects.robotsim.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import fr.tp.inf112.projects.robotsim.model.Component;
 import fr.tp.inf112.projects.robotsim.model.Factory;
 import fr.tp.inf112.projects.robotsim.model.RemoteFactoryPersistenceManager;
 import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.frame.BackpressurePolicy;
+import fr.tp.inf112.projects.robotsim.model.frame.CoalescingFrameNotifier;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameLog;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameRingBuffer;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameSink;
+import fr.tp.inf112.projects.robotsim.model.path.AbstractFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeAStarFactoryPathFinder;
 import fr.tp.inf112.projects.robotsim.model.path.CustomDijkstraFactoryPathFinder;
 import fr.tp.inf112.projects.robotsim.model.path.FactoryPathFinder;
 
 import org.apache.kafka.clients.admin.AdminClient;
 import org.apache.kafka.clients.admin.AdminClientConfig;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.support.MessageBuilder;
-import org.springframework.kafka.support.KafkaHeaders;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,12 +54,32 @@ import org.springframework.kafka.core.KafkaTemplate;
 public class SimulationServiceController {
 
 	private static final Logger LOGGER = Logger.getLogger(SimulationServiceController.class.getName());
+	private static final DateTimeFormatter RUN_ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
 	private final Map<String, Factory> activeSimulations = new ConcurrentHashMap<>();
+	private final Map<String, KafkaFactoryModelChangeNotifier> activeNotifiers = new ConcurrentHashMap<>();
+	private final Map<String, FrameRingBuffer> activeFrameBuffers = new ConcurrentHashMap<>();
+	private final Map<String, FrameLog> activeFrameLogs = new ConcurrentHashMap<>();
 	private final Map<String, FactoryPathFinder> customPathFinderCache = new ConcurrentHashMap<>();
+	private final ExecutorService streamExecutor = Executors.newCachedThreadPool(runnable -> {
+		final Thread thread = new Thread(runnable, "Frame stream");
+		thread.setDaemon(true);
+		return thread;
+	});
 	private final RemoteFactoryPersistenceManager persistenceManager;
 
 	@Autowired
-	private KafkaTemplate<String, Factory> simulationEventTemplate;
+	private KafkaTemplate<String, FactoryFrame> simulationEventTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	// Topic of all simulations, or empty for one topic per simulation
+	@Value("${simulation.kafka.shared-topic:}")
+	private String sharedTopic;
+
+	// Directory of the frame logs of the runs, or empty not to record them
+	@Value("${simulation.frame-log.dir:}")
+	private String frameLogDir;
 
 	public SimulationServiceController() {
 		String persistenceHost = System.getenv("PERSISTENCE_HOST");
@@ -53,7 +94,9 @@ public class SimulationServiceController {
 		try {
 			if (activeSimulations.containsKey(factoryId)) {
 				// Resend state for reconnecting clients
-				sendFactoryState(activeSimulations.get(factoryId));
+				final KafkaFactoryModelChangeNotifier notifier = activeNotifiers.get(factoryId);
+				if (notifier != null)
+					notifier.sendLayout();
 				return ResponseEntity.ok("Simulation prepared (existing)");
 			}
 
@@ -64,7 +107,7 @@ public class SimulationServiceController {
 			CompletableFuture.runAsync(() -> {
 				try {
 					FactoryPathFinder pf = customPathFinderCache.computeIfAbsent(factoryId, k -> {
-						CustomDijkstraFactoryPathFinder newPf = new CustomDijkstraFactoryPathFinder(finalFactory, 5);
+						AbstractFactoryPathFinder<?, ?> newPf = newPathFinder(finalFactory);
 						newPf.init();
 						return newPf;
 					});
@@ -73,16 +116,30 @@ public class SimulationServiceController {
 							((Robot) c).setPathFinder(pf);
 					}
 
-					finalFactory
-							.setNotifier(new KafkaFactoryModelChangeNotifier(finalFactory, simulationEventTemplate));
+					final FrameRingBuffer frameBuffer = new FrameRingBuffer(new FrameCodec(objectMapper));
+					final FrameLog frameLog = newFrameLog(factoryId);
+					final FrameSink localSink = frameLog == null ? frameBuffer : frame -> {
+						frameBuffer.publish(frame);
+						frameLog.publish(frame);
+					};
+					final KafkaFactoryModelChangeNotifier notifier = new KafkaFactoryModelChangeNotifier(finalFactory,
+							simulationEventTemplate, topicName(finalFactory), localSink, frameIntervalMillis(),
+							frameQueueCapacity(), backpressurePolicy());
+					finalFactory.setNotifier(notifier);
+					activeNotifiers.put(factoryId, notifier);
+					activeFrameBuffers.put(factoryId, frameBuffer);
+					if (frameLog != null)
+						activeFrameLogs.put(factoryId, frameLog);
 					activeSimulations.put(factoryId, finalFactory);
 
 					// Send T=0, but DO NOT START THREADS
-					sendFactoryState(finalFactory);
+					notifier.sendLayout();
 
 				} catch (Exception e) {
 					LOGGER.log(Level.SEVERE, "Setup failed", e);
 					activeSimulations.remove(factoryId);
+					activeFrameBuffers.remove(factoryId);
+					activeFrameLogs.remove(factoryId);
 				}
 			});
 
@@ -92,10 +149,186 @@ public class SimulationServiceController {
 		}
 	}
 
-	private void sendFactoryState(Factory factory) {
-		Message<Factory> message = MessageBuilder.withPayload(factory)
-				.setHeader(KafkaHeaders.TOPIC, SimulationServiceUtils.getTopicName(factory)).build();
-		simulationEventTemplate.send(message);
+	/**
+	 * @return the frame log of a new run of the factory, or null if runs are not recorded.
+	 */
+	private FrameLog newFrameLog(final String factoryId) throws IOException {
+		if (frameLogDir.isEmpty())
+			return null;
+		final Path directory = Paths.get(frameLogDir);
+		Files.createDirectories(directory);
+		final String runId = logName(factoryId) + "-" + RUN_ID_FORMAT.format(LocalDateTime.now());
+		final FrameLog frameLog = FrameLog.create(directory.resolve(runId + FrameLog.LOG_EXTENSION),
+				new FrameCodec(objectMapper));
+		LOGGER.info("Recording run " + runId);
+		return frameLog;
+	}
+
+	/**
+	 * Factory ids are file paths: the logs of a factory are named after it with the other characters replaced.
+	 */
+	private static String logName(final String factoryId) {
+		return factoryId.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+	/**
+	 * PATH_FINDER=cooperative makes the robots plan around each other's reservations instead of replanning after
+	 * bumping into each other.
+	 */
+	private AbstractFactoryPathFinder<?, ?> newPathFinder(final Factory factory) {
+		if ("cooperative".equalsIgnoreCase(System.getenv("PATH_FINDER")))
+			return new CooperativeAStarFactoryPathFinder(factory, 5);
+		return new CustomDijkstraFactoryPathFinder(factory, 5);
+	}
+
+	private String topicName(final Factory factory) {
+		return sharedTopic.isEmpty() ? SimulationServiceUtils.getTopicName(factory) : sharedTopic;
+	}
+
+	/**
+	 * FRAME_INTERVAL_MS sets the minimum time between two frames published for a simulation, the robot tick by
+	 * default.
+	 */
+	private long frameIntervalMillis() {
+		final String interval = System.getenv("FRAME_INTERVAL_MS");
+		if (interval != null) {
+			try {
+				return Long.parseLong(interval.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warning("Invalid FRAME_INTERVAL_MS: " + interval);
+			}
+		}
+		return CoalescingFrameNotifier.DEFAULT_INTERVAL_MILLIS;
+	}
+
+	/**
+	 * FRAME_QUEUE_CAPACITY bounds the frames of a simulation waiting for the broker.
+	 */
+	private int frameQueueCapacity() {
+		final String capacity = System.getenv("FRAME_QUEUE_CAPACITY");
+		if (capacity != null) {
+			try {
+				return Integer.parseInt(capacity.trim());
+			} catch (NumberFormatException e) {
+				LOGGER.warning("Invalid FRAME_QUEUE_CAPACITY: " + capacity);
+			}
+		}
+		return CoalescingFrameNotifier.DEFAULT_QUEUE_CAPACITY;
+	}
+
+	/**
+	 * FRAME_BACKPRESSURE=drop_oldest|conflate_latest|block chooses what happens to new frames when the queue is full.
+	 */
+	private BackpressurePolicy backpressurePolicy() {
+		final String policy = System.getenv("FRAME_BACKPRESSURE");
+		if (policy != null) {
+			try {
+				return BackpressurePolicy.valueOf(policy.trim().toUpperCase());
+			} catch (IllegalArgumentException e) {
+				LOGGER.warning("Invalid FRAME_BACKPRESSURE: " + policy);
+			}
+		}
+		return CoalescingFrameNotifier.DEFAULT_POLICY;
+	}
+
+	@GetMapping("/frames/{factoryId}")
+	public ResponseEntity<String> frameStatistics(@PathVariable String factoryId) {
+		KafkaFactoryModelChangeNotifier notifier = activeNotifiers.get(factoryId);
+		if (notifier == null)
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Simulation not found");
+		return ResponseEntity.ok("policy=" + notifier.getPolicy() + " notifications=" + notifier.getNotifications()
+				+ " published=" + notifier.getPublishedFrames() + " queued=" + notifier.getQueuedFrames()
+				+ " dropped=" + notifier.getDroppedFrames() + " conflated=" + notifier.getConflatedFrames()
+				+ " kafkaQueued=" + notifier.getKafkaQueuedFrames() + " kafkaDropped=" + notifier.getKafkaDroppedFrames());
+	}
+
+	/**
+	 * Streams the frames of a simulation as server-sent events, preparing it if needed. The stream starts with the
+	 * latest layout of the simulation, without going through Kafka.
+	 */
+	@GetMapping(path = "/stream/{factoryId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public SseEmitter streamSimulation(@PathVariable String factoryId) {
+		if (!activeSimulations.containsKey(factoryId))
+			prepareSimulation(factoryId);
+
+		final SseEmitter emitter = new SseEmitter(0L);
+		streamExecutor.execute(new SimulationFrameStream(factoryId, () -> activeFrameBuffers.get(factoryId),
+				() -> activeNotifiers.get(factoryId), new FrameCodec(objectMapper), emitter));
+		return emitter;
+	}
+
+	/**
+	 * Lists the recorded runs of a factory, one per line: run id, frames, first and last frame sequence, bytes.
+	 */
+	@GetMapping("/replay/{factoryId}")
+	public ResponseEntity<String> recordedRuns(@PathVariable String factoryId) {
+		if (frameLogDir.isEmpty())
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Runs are not recorded");
+
+		final StringBuilder runs = new StringBuilder();
+		try (DirectoryStream<Path> logs = Files.newDirectoryStream(Paths.get(frameLogDir),
+				logName(factoryId) + "-*" + FrameLog.LOG_EXTENSION)) {
+			for (Path file : logs) {
+				final String runId = file.getFileName().toString().replace(FrameLog.LOG_EXTENSION, "");
+				final FrameLog active = activeFrameLog(file);
+				if (active != null) {
+					appendRun(runs, runId, active);
+					continue;
+				}
+				try (FrameLog frameLog = FrameLog.open(file, new FrameCodec(objectMapper))) {
+					appendRun(runs, runId, frameLog);
+				} catch (IOException e) {
+					LOGGER.log(Level.WARNING, "Unreadable frame log " + file, e);
+				}
+			}
+		} catch (IOException e) {
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+		}
+		return ResponseEntity.ok(runs.toString());
+	}
+
+	private static void appendRun(final StringBuilder runs, final String runId, final FrameLog frameLog) {
+		runs.append(runId).append(" frames=").append(frameLog.getFrameCount()).append(" first=")
+				.append(frameLog.getFirstSequence()).append(" last=").append(frameLog.getLastSequence())
+				.append(" bytes=").append(frameLog.getLength()).append(frameLog.isAppending() ? " recording" : "")
+				.append('\n');
+	}
+
+	/**
+	 * Replays a recorded run as server-sent events, from the given frame and at the given speed relative to the
+	 * recording (0 for as fast as the viewer reads). A run still recording is followed until it ends.
+	 */
+	@GetMapping(path = "/replay/{factoryId}/{runId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> replayRun(@PathVariable String factoryId, @PathVariable String runId,
+			@RequestParam(defaultValue = "0") long from, @RequestParam(defaultValue = "1") double speed) {
+		if (frameLogDir.isEmpty() || !runId.startsWith(logName(factoryId) + "-") || !runId.matches("[A-Za-z0-9._-]+"))
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+
+		final Path file = Paths.get(frameLogDir).resolve(runId + FrameLog.LOG_EXTENSION);
+		FrameLog frameLog = activeFrameLog(file);
+		final boolean opened = frameLog == null;
+		try {
+			if (opened)
+				frameLog = FrameLog.open(file, new FrameCodec(objectMapper));
+		} catch (NoSuchFileException e) {
+			return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Unreadable frame log " + file, e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+
+		final SseEmitter emitter = new SseEmitter(0L);
+		streamExecutor.execute(
+				new SimulationReplayStream(frameLog, opened, from, speed, new FrameCodec(objectMapper), emitter));
+		return ResponseEntity.ok(emitter);
+	}
+
+	private FrameLog activeFrameLog(final Path file) {
+		for (FrameLog frameLog : activeFrameLogs.values()) {
+			if (frameLog.getFile().equals(file))
+				return frameLog;
+		}
+		return null;
 	}
 
 	@GetMapping("/run/{factoryId}")
@@ -119,8 +352,27 @@ public class SimulationServiceController {
 	@DeleteMapping("/reset/{factoryId}")
 	public ResponseEntity<String> resetSimulation(@PathVariable String factoryId) {
 		Factory factory = activeSimulations.remove(factoryId);
+		KafkaFactoryModelChangeNotifier notifier = activeNotifiers.remove(factoryId);
+		activeFrameBuffers.remove(factoryId);
+		FrameLog frameLog = activeFrameLogs.remove(factoryId);
+		// The path finder tracks the robots of the factory it was built for: the next run reads a new one.
+		customPathFinderCache.remove(factoryId);
 		if (factory != null)
 			factory.stopSimulation();
+		if (notifier != null)
+			notifier.close();
+		// The log of the run outlives its topic, for replays. Closing the notifier waited for its last frame.
+		if (frameLog != null) {
+			try {
+				frameLog.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to close " + frameLog.getFile(), e);
+			}
+		}
+
+		// Viewers of a shared topic start from its end, only a topic of its own is replayed
+		if (!sharedTopic.isEmpty())
+			return ResponseEntity.ok("Reset complete");
 
 		// Delete topic to prevent history replay on next run
 		Properties config = new Properties();
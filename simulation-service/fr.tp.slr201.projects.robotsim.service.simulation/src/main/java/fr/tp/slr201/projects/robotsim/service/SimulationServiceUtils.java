@@ -1,7 +1,10 @@
 package fr.tp.slr201.projects.robotsim.service;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import fr.tp.inf112.projects.robotsim.model.Factory;
 
 /**
@@ -15,6 +18,21 @@ public class SimulationServiceUtils {
 	private static final String AUTO_OFFSET_RESET = "earliest";
 	private static final String TOPIC_PREFIX = "simulation-";
 
+	/**
+	 * Producer settings of the broker client, one frame per record as soon as it is published.
+	 */
+	public static final String DEFAULT_PRODUCER_PROFILE = "default";
+
+	/**
+	 * Frames of concurrent simulations batched for a few milliseconds and compressed with lz4.
+	 */
+	public static final String THROUGHPUT_PRODUCER_PROFILE = "throughput";
+
+	/**
+	 * As {@link #THROUGHPUT_PRODUCER_PROFILE}, with zstd: smaller batches on the wire for more producer CPU.
+	 */
+	public static final String COMPACT_PRODUCER_PROFILE = "compact";
+
 	/**
 	 * Gets the unique topic name for a given factory model.
 	 *
@@ -25,6 +43,32 @@ public class SimulationServiceUtils {
 		return TOPIC_PREFIX + factoryModel.getId();
 	}
 
+	/**
+	 * Gets the properties of the frame producer for a tuning profile.
+	 *
+	 * Tuned profiles keep idempotence with acks from all replicas, so that retried batches are neither duplicated nor
+	 * reordered and the frames of a factory stay in sequence on their partition.
+	 *
+	 * @param profile One of the *_PRODUCER_PROFILE names; unknown names fall back to the default profile.
+	 * @return A map of producer settings, bootstrap servers included.
+	 */
+	public static Map<String, Object> getProducerProperties(String profile) {
+		final Map<String, Object> config = new HashMap<>();
+		config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP_SERVERS);
+
+		if (THROUGHPUT_PRODUCER_PROFILE.equalsIgnoreCase(profile) || COMPACT_PRODUCER_PROFILE.equalsIgnoreCase(profile)) {
+			final boolean compact = COMPACT_PRODUCER_PROFILE.equalsIgnoreCase(profile);
+			config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compact ? "zstd" : "lz4");
+			config.put(ProducerConfig.LINGER_MS_CONFIG, compact ? 20 : 5);
+			config.put(ProducerConfig.BATCH_SIZE_CONFIG, compact ? 256 * 1024 : 64 * 1024);
+			config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+			config.put(ProducerConfig.ACKS_CONFIG, "all");
+			config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+		}
+
+		return config;
+	}
+
 	/**
 	 * Gets the default properties for a Kafka Consumer.
 	 *
@@ -0,0 +1,253 @@
+package fr.tp.slr201.projects.robotsim.service.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+
+import fr.tp.inf112.projects.canvas.model.impl.BasicVertex;
+import fr.tp.inf112.projects.robotsim.model.Area;
+import fr.tp.inf112.projects.robotsim.model.Battery;
+import fr.tp.inf112.projects.robotsim.model.Component;
+import fr.tp.inf112.projects.robotsim.model.Conveyor;
+import fr.tp.inf112.projects.robotsim.model.Door;
+import fr.tp.inf112.projects.robotsim.model.Factory;
+import fr.tp.inf112.projects.robotsim.model.Machine;
+import fr.tp.inf112.projects.robotsim.model.Robot;
+import fr.tp.inf112.projects.robotsim.model.Room;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrame;
+import fr.tp.inf112.projects.robotsim.model.frame.FactoryFrameBuilder;
+import fr.tp.inf112.projects.robotsim.model.frame.FrameCodec;
+import fr.tp.inf112.projects.robotsim.model.path.CooperativeAStarFactoryPathFinder;
+import fr.tp.inf112.projects.robotsim.model.shapes.CircularShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.PositionedShape;
+import fr.tp.inf112.projects.robotsim.model.shapes.RectangularShape;
+import fr.tp.slr201.projects.robotsim.service.SimulationServiceUtils;
+
+/**
+ * Frames per second sent by the producer of the simulation service for each tuning profile of
+ * {@link SimulationServiceUtils#getProducerProperties(String)}, to a running broker.
+ *
+ * The frames are recorded from a simulation run and encoded with {@link FrameCodec} once; they are then sent for a
+ * number of concurrent simulations on a shared multi-partition topic, keyed by factory id as the service does. The
+ * topics are created for the run and deleted afterwards.
+ *
+ * Usage: java fr.tp.slr201.projects.robotsim.service.test.ProducerThroughputBenchmark [simulations] [frames] [robots]
+ * [bootstrap servers, {@value SimulationServiceUtils#BOOTSTRAP_SERVERS} by default]
+ */
+public class ProducerThroughputBenchmark {
+
+	private static final int RESOLUTION = 5;
+
+	private static final int PARTITIONS = 6;
+
+	private static final String[] PROFILES = { SimulationServiceUtils.DEFAULT_PRODUCER_PROFILE,
+			SimulationServiceUtils.THROUGHPUT_PRODUCER_PROFILE, SimulationServiceUtils.COMPACT_PRODUCER_PROFILE };
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		final int simulationCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		final int frameCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		final int robotCount = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+		final String bootstrapServers = args.length > 3 ? args[3] : SimulationServiceUtils.BOOTSTRAP_SERVERS;
+
+		Logger.getLogger("fr.tp.inf112.projects.robotsim").setLevel(Level.OFF);
+
+		final List<byte[]> frames = recordFrames(robotCount, frameCount);
+		final String run = Long.toString(System.currentTimeMillis());
+		final String[] topics = new String[PROFILES.length + 1];
+		topics[0] = "bench-warm-up-" + run;
+
+		for (int index = 0; index < PROFILES.length; index++) {
+			topics[index + 1] = "bench-" + PROFILES[index] + "-" + run;
+		}
+
+		final Properties adminConfig = new Properties();
+		adminConfig.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+
+		try (AdminClient admin = AdminClient.create(adminConfig)) {
+			final List<NewTopic> newTopics = new ArrayList<>();
+
+			for (final String topic : topics) {
+				newTopics.add(new NewTopic(topic, PARTITIONS, (short) 1));
+			}
+
+			admin.createTopics(newTopics).all().get();
+
+			try {
+				report(bootstrapServers, topics, frames, simulationCount, robotCount);
+			} finally {
+				admin.deleteTopics(Arrays.asList(topics)).all().get();
+			}
+		}
+	}
+
+	private static void report(final String bootstrapServers, final String[] topics, final List<byte[]> frames,
+			final int simulationCount, final int robotCount) {
+		System.out.println("================================================================================");
+		System.out.println("                    PRODUCER THROUGHPUT BENCHMARK");
+		System.out.println("================================================================================");
+		System.out.println("  Simulations:            " + simulationCount);
+		System.out.println("  Frames / simulation:    " + frames.size());
+		System.out.println("  Robots:                 " + robotCount);
+		System.out.println("  Partitions:             " + PARTITIONS);
+		System.out.println("--------------------------------------------------------------------------------");
+		System.out.println("  profile       frames / s    payload MB / s    wire bytes   compression   partitions");
+
+		send(bootstrapServers, SimulationServiceUtils.DEFAULT_PRODUCER_PROFILE, topics[0], frames, simulationCount);
+
+		for (int index = 0; index < PROFILES.length; index++) {
+			final double[] result = send(bootstrapServers, PROFILES[index], topics[index + 1], frames, simulationCount);
+			System.out.println(String.format("  %-12s %11.0f %17.2f %13.0f %13.2f %12.0f", PROFILES[index],
+					result[0], result[1], result[2], result[3], result[4]));
+		}
+
+		System.out.println("================================================================================");
+	}
+
+	/**
+	 * Sends the frames of every simulation in turn, as the publisher threads of concurrent simulations would, and
+	 * waits for all of them to be acknowledged.
+	 *
+	 * @return the frames per second, payload MB per second, bytes sent to the broker, compression rate and number of
+	 *         partitions written.
+	 */
+	private static double[] send(final String bootstrapServers, final String profile, final String topic,
+			final List<byte[]> frames, final int simulationCount) {
+		final Map<String, Object> config = SimulationServiceUtils.getProducerProperties(profile);
+		config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+
+		final Set<Integer> partitions = ConcurrentHashMap.newKeySet();
+		final AtomicLong failures = new AtomicLong();
+		long payloadBytes = 0;
+
+		try (KafkaProducer<String, byte[]> producer = new KafkaProducer<>(config, new StringSerializer(),
+				new ByteArraySerializer())) {
+			final long startTime = System.nanoTime();
+
+			for (final byte[] frame : frames) {
+				for (int simulation = 0; simulation < simulationCount; simulation++) {
+					producer.send(new ProducerRecord<>(topic, "factory-" + simulation, frame), (metadata, ex) -> {
+						if (ex != null) {
+							failures.incrementAndGet();
+						} else {
+							partitions.add(metadata.partition());
+						}
+					});
+					payloadBytes += frame.length;
+				}
+			}
+
+			producer.flush();
+			final double seconds = (System.nanoTime() - startTime) / 1e9;
+
+			if (failures.get() > 0) {
+				throw new IllegalStateException(failures.get() + " frames not acknowledged with profile " + profile);
+			}
+
+			final double sentFrames = (double) frames.size() * simulationCount;
+			return new double[] { sentFrames / seconds, payloadBytes / seconds / 1e6,
+					metric(producer, "outgoing-byte-total"), metric(producer, "compression-rate-avg"),
+					partitions.size() };
+		}
+	}
+
+	private static double metric(final KafkaProducer<String, byte[]> producer, final String name) {
+		for (final Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+			if (entry.getKey().name().equals(name) && entry.getKey().group().equals("producer-metrics")) {
+				final Object value = entry.getValue().metricValue();
+				return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+			}
+		}
+
+		return Double.NaN;
+	}
+
+	/**
+	 * @return the binary frames of one simulation, one per tick as published by the coalescing notifier.
+	 */
+	private static List<byte[]> recordFrames(final int robotCount, final int frameCount) throws IOException {
+		final Factory factory = new Factory(160, 120, "Producer Benchmark Factory");
+		final List<Component> machines = new ArrayList<>();
+
+		for (int index = 0; index < 4; index++) {
+			final int xCoordinate = index % 2 == 0 ? 10 : 110;
+			final int yCoordinate = index < 2 ? 10 : 70;
+			final Room room = new Room(factory, new RectangularShape(xCoordinate, yCoordinate, 40, 40),
+					"Room " + index);
+			new Door(room, index % 2 == 0 ? Room.WALL.RIGHT : Room.WALL.LEFT, 15, 10, true, "Door " + index);
+			final Area area = new Area(room, new RectangularShape(xCoordinate + 10, yCoordinate + 10, 20, 20),
+					"Area " + index);
+			machines.add(new Machine(area, new RectangularShape(xCoordinate + 15, yCoordinate + 15, 10, 10),
+					"Machine " + index));
+		}
+
+		final Conveyor conveyor = new Conveyor(factory, new RectangularShape(75, 55, 10, 5), "Conveyor");
+		final CooperativeAStarFactoryPathFinder pathFinder = new CooperativeAStarFactoryPathFinder(factory,
+				RESOLUTION);
+		pathFinder.init();
+
+		final List<Robot> robots = new ArrayList<>();
+
+		for (int index = 0; index < robotCount; index++) {
+			final Robot robot = new Robot(factory, pathFinder,
+					new CircularShape(60 + index % 5 * 10, 85 + index / 5 * 10, 2), new Battery(10), "Robot " + index);
+			robot.addTargetComponent(machines.get(index % machines.size()));
+			robot.addTargetComponent(conveyor);
+			robots.add(robot);
+		}
+
+		final FrameCodec codec = new FrameCodec(newMapper());
+		final FactoryFrameBuilder frameBuilder = new FactoryFrameBuilder(factory);
+		final List<byte[]> frames = new ArrayList<>();
+
+		for (int tick = 0; tick < frameCount; tick++) {
+			for (final Robot robot : robots) {
+				robot.behave();
+			}
+
+			final FactoryFrame frame = frameBuilder.nextFrame();
+
+			if (frame != null) {
+				frames.add(codec.encode(frame));
+			}
+		}
+
+		return frames;
+	}
+
+	/**
+	 * Same mapper configuration as the simulation service.
+	 */
+	private static ObjectMapper newMapper() {
+		final BasicPolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+				.allowIfSubType(Component.class.getPackageName()).allowIfSubType(PositionedShape.class.getPackageName())
+				.allowIfSubType(BasicVertex.class.getPackageName()).allowIfSubType(ArrayList.class.getName())
+				.allowIfSubType(LinkedHashSet.class.getName()).build();
+		final ObjectMapper mapper = new ObjectMapper();
+		mapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL);
+		return mapper;
+	}
+}